@@ -0,0 +1,144 @@
+package com.cmayes.common.chem;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntConsumer;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.cmayes.common.model.AtomTable;
+
+/**
+ * Measures how atom order affects bond perception and neighbor distance
+ * passes over a random structure at roughly liquid density, in its generated
+ * (spatially random) order and after {@link AtomOrdering} space-filling
+ * curve reorders. Also measures the cost of computing each order.
+ *
+ * @author cmayes
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AtomOrderingBenchmark {
+    /** Atoms per cubic Angstrom. */
+    private static final double DENSITY = 0.1;
+    private static final AtomicElement[] ELEMENTS = { AtomicElement.CARBON,
+            AtomicElement.HYDROGEN, AtomicElement.HYDROGEN,
+            AtomicElement.OXYGEN };
+
+    @Param({ "100000", "1000000" })
+    private int atomCount;
+
+    @Param({ "random", "MORTON", "HILBERT" })
+    private String order;
+
+    private AtomTable table;
+    private CellList cells;
+    private DistanceSum distances;
+
+    /**
+     * Builds the structure in the requested order.
+     */
+    @Setup(Level.Trial)
+    public void setUp() {
+        final Random rand = new Random(17);
+        final double side = Math.cbrt(atomCount / DENSITY);
+        table = new AtomTable(atomCount);
+        for (int i = 0; i < atomCount; i++) {
+            table.set(i, i + 1, ELEMENTS[i % ELEMENTS.length],
+                    rand.nextDouble() * side, rand.nextDouble() * side,
+                    rand.nextDouble() * side);
+        }
+        if (!"random".equals(order)) {
+            AtomOrdering.sortBySpace(table, AtomOrdering.Curve.valueOf(order),
+                    false);
+        }
+        cells = new CellList(table, 3);
+        distances = new DistanceSum(table);
+    }
+
+    /**
+     * @return The bond graph of the structure.
+     */
+    @Benchmark
+    public BondGraph buildBondGraph() {
+        return BondGraph.build(table, false);
+    }
+
+    /**
+     * @return The summed distances from each atom to its neighbors within 3
+     *         Angstroms, read back from the table by index.
+     */
+    @Benchmark
+    public double neighborDistances() {
+        final double[] xs = table.getXs();
+        final double[] ys = table.getYs();
+        final double[] zs = table.getZs();
+        distances.sum = 0;
+        for (int i = 0; i < atomCount; i++) {
+            distances.current = i;
+            cells.forEachWithin(xs[i], ys[i], zs[i], 3, null, distances);
+        }
+        return distances.sum;
+    }
+
+    /**
+     * @return The Hilbert order of the structure.
+     */
+    @Benchmark
+    public int[] hilbertOrder() {
+        return AtomOrdering.bySpace(table.getXs(), table.getYs(),
+                table.getZs(), AtomOrdering.Curve.HILBERT, false);
+    }
+
+    /**
+     * @return The ID order of the structure.
+     */
+    @Benchmark
+    public int[] idOrder() {
+        return AtomOrdering.byId(table, false);
+    }
+
+    /**
+     * Sums distances from the current atom to each neighbor reported.
+     */
+    private static final class DistanceSum implements IntConsumer {
+        private final double[] xs;
+        private final double[] ys;
+        private final double[] zs;
+        private int current;
+        private double sum;
+
+        /**
+         * @param table
+         *            The structure.
+         */
+        private DistanceSum(final AtomTable table) {
+            this.xs = table.getXs();
+            this.ys = table.getYs();
+            this.zs = table.getZs();
+        }
+
+        @Override
+        public void accept(final int other) {
+            final double dx = xs[other] - xs[current];
+            final double dy = ys[other] - ys[current];
+            final double dz = zs[other] - zs[current];
+            sum += Math.sqrt(dx * dx + dy * dy + dz * dz);
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package com.cmayes.common.model.impl;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.cmayes.common.chem.AtomicElement;
+import com.cmayes.common.model.Atom;
+
+/**
+ * Compares {@link DefaultAtom} and {@link ImmutableAtom} as hash keys. The
+ * atom list holds every structure atom twice, as separate but equal objects,
+ * so deduplication and lookups exercise both <code>hashCode</code> and
+ * <code>equals</code>.
+ *
+ * @author cmayes
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AtomHashBenchmark {
+    private static final AtomicElement[] ELEMENTS = { AtomicElement.CARBON,
+            AtomicElement.HYDROGEN, AtomicElement.HYDROGEN,
+            AtomicElement.OXYGEN };
+
+    @Param({ "1000", "100000" })
+    private int atomCount;
+
+    @Param({ "default", "immutable" })
+    private String impl;
+
+    private List<Atom> atoms;
+    private Map<Atom, Integer> indexes;
+
+    /**
+     * Builds the duplicated atom list and a map keyed by the first copies.
+     */
+    @Setup(Level.Trial)
+    public void setUp() {
+        final Random rand = new Random(17);
+        final boolean immutable = "immutable".equals(impl);
+        final ImmutableAtom.Builder builder = ImmutableAtom.builder();
+        final List<Atom> firsts = new ArrayList<Atom>(atomCount);
+        final List<Atom> seconds = new ArrayList<Atom>(atomCount);
+        for (int i = 0; i < atomCount; i++) {
+            builder.id(i + 1).type(ELEMENTS[i % ELEMENTS.length]).position(
+                    rand.nextDouble() * 50, rand.nextDouble() * 50,
+                    rand.nextDouble() * 50);
+            final ImmutableAtom atom = builder.build();
+            firsts.add(immutable ? atom : new DefaultAtom(atom));
+            seconds.add(immutable ? builder.build() : new DefaultAtom(atom));
+        }
+        atoms = new ArrayList<Atom>(firsts);
+        atoms.addAll(seconds);
+        indexes = new HashMap<Atom, Integer>(atomCount * 2);
+        for (int i = 0; i < atomCount; i++) {
+            indexes.put(firsts.get(i), i);
+        }
+    }
+
+    /**
+     * @return The distinct atoms.
+     */
+    @Benchmark
+    public Set<Atom> deduplicate() {
+        final Set<Atom> seen = new HashSet<Atom>(atomCount * 2);
+        seen.addAll(atoms);
+        return seen;
+    }
+
+    /**
+     * @return The summed indices of every atom looked up by value.
+     */
+    @Benchmark
+    public long lookup() {
+        long sum = 0;
+        for (Atom atom : atoms) {
+            sum += indexes.get(atom);
+        }
+        return sum;
+    }
+
+    /**
+     * @return The summed hashes of every atom.
+     */
+    @Benchmark
+    public int hashAll() {
+        int sum = 0;
+        for (Atom atom : atoms) {
+            sum += atom.hashCode();
+        }
+        return sum;
+    }
+}
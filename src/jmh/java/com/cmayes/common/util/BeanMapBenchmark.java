@@ -0,0 +1,64 @@
+package com.cmayes.common.util;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks for {@link BeanMap} creation and property access.
+ *
+ * @author cmayes
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BeanMapBenchmark {
+    private final SampleBean bean = new SampleBean("alpha", 3, 1.5);
+    private final BeanMap<SampleBean> map = new BeanMap<SampleBean>(bean);
+    private double weight;
+
+    /**
+     * @return A new map over the bean, including introspection.
+     */
+    @Benchmark
+    public BeanMap<SampleBean> create() {
+        return new BeanMap<SampleBean>(bean);
+    }
+
+    /**
+     * @return A property read through an existing map.
+     */
+    @Benchmark
+    public Object get() {
+        return map.get("name");
+    }
+
+    /**
+     * @return The previous value after writing a property of the same type.
+     */
+    @Benchmark
+    public Object put() {
+        weight += 0.5;
+        return map.put("weight", weight);
+    }
+
+    /**
+     * @return The previous value after writing a property that needs type
+     *         conversion.
+     */
+    @Benchmark
+    public Object putConverted() {
+        return map.put("group", "7");
+    }
+}
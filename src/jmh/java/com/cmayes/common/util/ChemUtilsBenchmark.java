@@ -0,0 +1,181 @@
+package com.cmayes.common.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.cmayes.common.chem.AtomicElement;
+import com.cmayes.common.chem.CellList;
+import com.cmayes.common.model.Atom;
+import com.cmayes.common.model.AtomTable;
+import com.cmayes.common.model.impl.DefaultAtom;
+
+/**
+ * Benchmarks for the bond, distance and dihedral methods of {@link ChemUtils}
+ * over random structures at roughly liquid density. Bond searches measure one
+ * query against the whole structure; distance and dihedral benchmarks measure
+ * a pass over every consecutive pair or quadruplet.
+ *
+ * @author cmayes
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ChemUtilsBenchmark {
+    /** Atoms per cubic Angstrom. */
+    private static final double DENSITY = 0.1;
+    private static final AtomicElement[] ELEMENTS = { AtomicElement.CARBON,
+            AtomicElement.HYDROGEN, AtomicElement.HYDROGEN,
+            AtomicElement.OXYGEN };
+
+    @Param({ "1000", "10000", "100000", "1000000" })
+    private int atomCount;
+
+    private List<Atom> atoms;
+    private AtomTable table;
+    private CellList cells;
+    private int[][] quads;
+    private double[] angles;
+    private int target;
+
+    /**
+     * Builds the structure and its indexes.
+     */
+    @Setup(Level.Trial)
+    public void setUp() {
+        final Random rand = new Random(17);
+        final double side = Math.cbrt(atomCount / DENSITY);
+        atoms = new ArrayList<Atom>(atomCount);
+        for (int i = 0; i < atomCount; i++) {
+            final Atom atom = new DefaultAtom();
+            atom.setId(i + 1);
+            atom.setType(ELEMENTS[i % ELEMENTS.length]);
+            atom.setX(rand.nextDouble() * side);
+            atom.setY(rand.nextDouble() * side);
+            atom.setZ(rand.nextDouble() * side);
+            atoms.add(atom);
+        }
+        table = AtomTable.fromAtoms(atoms);
+        cells = new CellList(atoms);
+        final int quadCount = atomCount - 3;
+        quads = new int[4][quadCount];
+        for (int i = 0; i < quadCount; i++) {
+            for (int j = 0; j < 4; j++) {
+                quads[j][i] = i + j;
+            }
+        }
+        angles = new double[quadCount];
+    }
+
+    /**
+     * @return The next query atom; strides through the structure so queries
+     *         don't repeat.
+     */
+    private int nextTarget() {
+        target = (target + 7919) % atomCount;
+        return target;
+    }
+
+    /**
+     * @return Carbons bonded to a query atom, by scanning the atom list.
+     */
+    @Benchmark
+    public List<Atom> findBondAtomsList() {
+        return ChemUtils.findBondAtoms(atoms.get(nextTarget()), atoms,
+                AtomicElement.CARBON);
+    }
+
+    /**
+     * @return Carbons bonded to a query atom, by scanning the atom table.
+     */
+    @Benchmark
+    public int[] findBondAtomsTable() {
+        return ChemUtils.findBondAtoms(table, nextTarget(),
+                AtomicElement.CARBON);
+    }
+
+    /**
+     * @return Carbons bonded to a query atom, from the prebuilt cell list.
+     */
+    @Benchmark
+    public List<Atom> findBondAtomsCellList() {
+        return ChemUtils.findBondAtoms(atoms.get(nextTarget()), cells,
+                AtomicElement.CARBON);
+    }
+
+    /**
+     * @return The summed distances between consecutive atoms.
+     */
+    @Benchmark
+    public double findDistanceAtoms() {
+        double sum = 0;
+        for (int i = 1; i < atomCount; i++) {
+            sum += ChemUtils.findDistance(atoms.get(i - 1), atoms.get(i));
+        }
+        return sum;
+    }
+
+    /**
+     * @return The summed distances between consecutive table rows.
+     */
+    @Benchmark
+    public double findDistanceTable() {
+        double sum = 0;
+        for (int i = 1; i < atomCount; i++) {
+            sum += ChemUtils.findDistance(table, i - 1, i);
+        }
+        return sum;
+    }
+
+    /**
+     * @return The summed dihedrals of consecutive atoms, one call each.
+     */
+    @Benchmark
+    public double calcDihedralAngleAtoms() {
+        double sum = 0;
+        for (int i = 3; i < atomCount; i++) {
+            sum += ChemUtils.calcDihedralAngle(atoms.get(i - 3),
+                    atoms.get(i - 2), atoms.get(i - 1), atoms.get(i));
+        }
+        return sum;
+    }
+
+    /**
+     * @return The dihedrals of consecutive atoms from the serial batch call.
+     */
+    @Benchmark
+    public double[] calcDihedralAnglesBatch() {
+        ChemUtils.calcDihedralAngles(table.getXs(), table.getYs(),
+                table.getZs(), quads[0], quads[1], quads[2], quads[3], angles,
+                false);
+        return angles;
+    }
+
+    /**
+     * @return The dihedrals of consecutive atoms from the parallel batch call.
+     */
+    @Benchmark
+    public double[] calcDihedralAnglesParallel() {
+        ChemUtils.calcDihedralAngles(table.getXs(), table.getYs(),
+                table.getZs(), quads[0], quads[1], quads[2], quads[3], angles,
+                true);
+        return angles;
+    }
+}
@@ -0,0 +1,68 @@
+package com.cmayes.common.util;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks for the bean-property grouping and filtering methods of
+ * {@link CollectionUtils2}.
+ *
+ * @author cmayes
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CollectionUtils2Benchmark {
+    private static final int GROUPS = 16;
+
+    @Param({ "100", "10000" })
+    private int beanCount;
+
+    private List<SampleBean> beans;
+
+    /**
+     * Builds the beans, spread evenly over the groups.
+     */
+    @Setup(Level.Trial)
+    public void setUp() {
+        beans = new ArrayList<SampleBean>(beanCount);
+        for (int i = 0; i < beanCount; i++) {
+            beans.add(new SampleBean("bean" + i, i % GROUPS, i * 0.5));
+        }
+    }
+
+    /**
+     * @return The beans grouped by group number.
+     */
+    @Benchmark
+    public Map<Integer, List<SampleBean>> mapByValue() {
+        return CollectionUtils2.mapByValue(beans, "group", Integer.class);
+    }
+
+    /**
+     * @return The beans in one group.
+     */
+    @Benchmark
+    public Collection<SampleBean> retainByBeanValue() {
+        return CollectionUtils2.retainByBeanValue(beans, "group", 3);
+    }
+}
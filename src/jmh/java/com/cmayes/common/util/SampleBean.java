@@ -0,0 +1,98 @@
+package com.cmayes.common.util;
+
+/**
+ * Simple bean used by the reflection-based benchmarks.
+ *
+ * @author cmayes
+ */
+public class SampleBean {
+    private String name;
+    private int group;
+    private double weight;
+    private boolean active;
+
+    /**
+     * Creates an empty bean.
+     */
+    public SampleBean() {
+
+    }
+
+    /**
+     * Creates a populated bean.
+     *
+     * @param theName
+     *            The name.
+     * @param theGroup
+     *            The group number.
+     * @param theWeight
+     *            The weight.
+     */
+    public SampleBean(final String theName, final int theGroup,
+            final double theWeight) {
+        this.name = theName;
+        this.group = theGroup;
+        this.weight = theWeight;
+        this.active = true;
+    }
+
+    /**
+     * @return The name.
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @param theName
+     *            The name to set.
+     */
+    public void setName(final String theName) {
+        this.name = theName;
+    }
+
+    /**
+     * @return The group number.
+     */
+    public int getGroup() {
+        return group;
+    }
+
+    /**
+     * @param theGroup
+     *            The group number to set.
+     */
+    public void setGroup(final int theGroup) {
+        this.group = theGroup;
+    }
+
+    /**
+     * @return The weight.
+     */
+    public double getWeight() {
+        return weight;
+    }
+
+    /**
+     * @param theWeight
+     *            The weight to set.
+     */
+    public void setWeight(final double theWeight) {
+        this.weight = theWeight;
+    }
+
+    /**
+     * @return Whether the bean is active.
+     */
+    public boolean isActive() {
+        return active;
+    }
+
+    /**
+     * @param isActive
+     *            Whether the bean is active.
+     */
+    public void setActive(final boolean isActive) {
+        this.active = isActive;
+    }
+}
@@ -0,0 +1,84 @@
+package com.cmayes.common.util;
+
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks for the conversion paths of
+ * {@link TypeUtils#convertType(Class, Object)}.
+ *
+ * @author cmayes
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TypeUtilsBenchmark {
+    private final String number = "42";
+    private final String flag = "y";
+    private final String unit = "SECONDS";
+    private final Object[] values = { "a", "b", "c", "a" };
+
+    /**
+     * @return A wrapper built through its String constructor.
+     * @throws Exception
+     *             If the conversion fails.
+     */
+    @Benchmark
+    public Integer toWrapper() throws Exception {
+        return TypeUtils.convertType(Integer.class, number);
+    }
+
+    /**
+     * @return A primitive parsed by a transformer after the constructor
+     *         lookup fails.
+     * @throws Exception
+     *             If the conversion fails.
+     */
+    @Benchmark
+    public Integer toPrimitive() throws Exception {
+        return TypeUtils.convertType(Integer.TYPE, number);
+    }
+
+    /**
+     * @return A primitive boolean from a non-standard string.
+     * @throws Exception
+     *             If the conversion fails.
+     */
+    @Benchmark
+    public Boolean toBoolean() throws Exception {
+        return TypeUtils.convertType(Boolean.TYPE, flag);
+    }
+
+    /**
+     * @return An enum constant by name.
+     * @throws Exception
+     *             If the conversion fails.
+     */
+    @Benchmark
+    public TimeUnit toEnum() throws Exception {
+        return TypeUtils.convertType(TimeUnit.class, unit);
+    }
+
+    /**
+     * @return A set built from an array.
+     * @throws Exception
+     *             If the conversion fails.
+     */
+    @Benchmark
+    public Set<?> toSet() throws Exception {
+        return TypeUtils.convertType(Set.class, values);
+    }
+}
@@ -0,0 +1,107 @@
+package com.cmayes.common.web;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Proxy;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import javax.servlet.FilterChain;
+import javax.servlet.FilterConfig;
+import javax.servlet.ServletRequest;
+import javax.servlet.http.HttpServletRequest;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks for {@link AcceptServletFilter#doFilter}, with and without a
+ * mapped extension in the URI. The servlet objects are JDK proxies so no
+ * container is needed.
+ *
+ * @author cmayes
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AcceptServletFilterBenchmark {
+    @Param({ "/api/items.json", "/api/items" })
+    private String uri;
+
+    private final AcceptServletFilter filter = new AcceptServletFilter();
+    private HttpServletRequest request;
+    private ServletRequest filtered;
+    private final FilterChain chain = (req, resp) -> filtered = req;
+
+    /**
+     * Configures the filter and builds the request.
+     *
+     * @throws Exception
+     *             If the filter can't be configured.
+     */
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        final Map<String, String> params = new HashMap<String, String>();
+        params.put("json", "application/json");
+        params.put("xml", "application/xml");
+        filter.init(proxy(FilterConfig.class, (obj, method, args) -> {
+            if ("getInitParameterNames".equals(method.getName())) {
+                return Collections.enumeration(params.keySet());
+            }
+            return params.get(args[0]);
+        }));
+        request = proxy(HttpServletRequest.class, (obj, method, args) -> {
+            switch (method.getName()) {
+            case "getRequestURI":
+                return uri;
+            case "getHeaders":
+                return Collections.enumeration(Arrays.asList("text/html",
+                        "application/xhtml+xml"));
+            default:
+                return null;
+            }
+        });
+    }
+
+    /**
+     * @return The wrapped request passed down the chain.
+     * @throws Exception
+     *             If the filter fails.
+     */
+    @Benchmark
+    public ServletRequest doFilter() throws Exception {
+        filter.doFilter(request, null, chain);
+        return filtered;
+    }
+
+    /**
+     * @param <T>
+     *            The interface type.
+     * @param type
+     *            The interface to implement.
+     * @param handler
+     *            Answers the calls.
+     * @return A proxy implementing the interface.
+     */
+    private static <T> T proxy(final Class<T> type,
+            final InvocationHandler handler) {
+        return type.cast(Proxy.newProxyInstance(
+                AcceptServletFilterBenchmark.class.getClassLoader(),
+                new Class<?>[] { type }, handler));
+    }
+}
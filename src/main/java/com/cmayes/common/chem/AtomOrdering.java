@@ -0,0 +1,565 @@
+package com.cmayes.common.chem;
+
+import static com.cmayes.common.exception.ExceptionUtils.asNotNull;
+
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+import com.cmayes.common.model.Atom;
+import com.cmayes.common.model.AtomTable;
+
+/**
+ * Linear-time atom orderings as <code>int[]</code> permutations, and in-place
+ * application of permutations to structure-of-arrays data. A permutation
+ * <code>perm</code> lists old indices in their new order: after applying it,
+ * position <code>k</code> holds what was at <code>perm[k]</code>.
+ *
+ * ID orderings are stable LSD radix sorts over the 32-bit IDs, one pass per
+ * byte, skipping bytes that every ID shares, so they give the same order as a
+ * stable sort with {@link AtomIdComparator} without any comparisons.
+ *
+ * Spatial orderings sort atoms along a space-filling {@link Curve} through
+ * their quantized coordinates, so atoms that are close in space are mostly
+ * close in memory and neighbor searches over a reordered table touch fewer
+ * cache lines. They are stable too; {@link #inverse(int[])} maps each
+ * original row to its new position, and {@link #sortById(AtomTable, boolean)}
+ * puts a reordered table back in {@link AtomIdComparator} order for output.
+ *
+ * @author cmayes
+ */
+public final class AtomOrdering {
+    private static final int RADIX_BITS = 8;
+    private static final int RADIX = 1 << RADIX_BITS;
+    private static final int MASK = RADIX - 1;
+    /** Sizes below which the parallel variants run serially. */
+    private static final int PARALLEL_MIN = 1 << 16;
+    /** Bits per axis in a space-filling curve key. */
+    private static final int CURVE_BITS = 21;
+    private static final int CURVE_MAX = (1 << CURVE_BITS) - 1;
+
+    /**
+     * Space-filling curves for spatial orderings.
+     */
+    public enum Curve {
+        /**
+         * Z-order: the interleaved bits of the coordinates. Cheap, with
+         * occasional long jumps between octants.
+         */
+        MORTON,
+        /**
+         * Hilbert order: consecutive keys are always adjacent cells, for
+         * somewhat better locality at a higher cost per key.
+         */
+        HILBERT
+    }
+
+    /**
+     * Private constructor for util class.
+     */
+    private AtomOrdering() {
+    }
+
+    /**
+     * @param ids
+     *            The atom IDs.
+     * @return The permutation that orders the IDs ascending, keeping equal IDs
+     *         in their original order.
+     */
+    public static int[] byId(final int[] ids) {
+        return byId(ids, false);
+    }
+
+    /**
+     * @param ids
+     *            The atom IDs.
+     * @param parallel
+     *            Whether to count and scatter each pass in parallel.
+     * @return The permutation that orders the IDs ascending, keeping equal IDs
+     *         in their original order.
+     */
+    public static int[] byId(final int[] ids, final boolean parallel) {
+        asNotNull(ids, "ID array is null");
+        final int size = ids.length;
+        int[] keys = new int[size];
+        int[] perm = new int[size];
+        for (int i = 0; i < size; i++) {
+            // Flipping the sign bit orders signed IDs as unsigned keys.
+            keys[i] = ids[i] ^ Integer.MIN_VALUE;
+            perm[i] = i;
+        }
+        final int chunks = parallel && size >= PARALLEL_MIN ? Math.min(
+                size / PARALLEL_MIN + 1,
+                4 * ForkJoinPool.getCommonPoolParallelism()) : 1;
+        int[] keysOut = new int[size];
+        int[] permOut = new int[size];
+        for (int shift = 0; shift < Integer.SIZE; shift += RADIX_BITS) {
+            if (radixPass(keys, perm, keysOut, permOut, shift, chunks)) {
+                final int[] swapKeys = keys;
+                keys = keysOut;
+                keysOut = swapKeys;
+                final int[] swapPerm = perm;
+                perm = permOut;
+                permOut = swapPerm;
+            }
+        }
+        return perm;
+    }
+
+    /**
+     * @param table
+     *            The structure.
+     * @param parallel
+     *            Whether to sort in parallel.
+     * @return The permutation that orders the table's rows by ID.
+     */
+    public static int[] byId(final AtomTable table, final boolean parallel) {
+        asNotNull(table, "Atom table is null");
+        return byId(table.getIds(), parallel);
+    }
+
+    /**
+     * @param atoms
+     *            The atoms.
+     * @param parallel
+     *            Whether to sort in parallel.
+     * @return The permutation that orders the atoms by ID.
+     */
+    public static int[] byId(final List<? extends Atom> atoms,
+            final boolean parallel) {
+        asNotNull(atoms, "Atom list is null");
+        final int[] ids = new int[atoms.size()];
+        int idx = 0;
+        for (Atom atom : atoms) {
+            ids[idx++] = atom.getId();
+        }
+        return byId(ids, parallel);
+    }
+
+    /**
+     * Reorders the table's rows by ID in place.
+     *
+     * @param table
+     *            The structure to reorder.
+     * @param parallel
+     *            Whether to sort in parallel.
+     * @return The permutation applied.
+     */
+    public static int[] sortById(final AtomTable table,
+            final boolean parallel) {
+        final int[] perm = byId(table, parallel);
+        apply(perm, table);
+        return perm;
+    }
+
+    /**
+     * @param xs
+     *            The X coordinates.
+     * @param ys
+     *            The Y coordinates.
+     * @param zs
+     *            The Z coordinates.
+     * @param curve
+     *            The curve to order along.
+     * @param parallel
+     *            Whether to compute keys and sort in parallel.
+     * @return The permutation that orders the positions along the curve,
+     *         keeping positions in the same cell in their original order.
+     */
+    public static int[] bySpace(final double[] xs, final double[] ys,
+            final double[] zs, final Curve curve, final boolean parallel) {
+        asNotNull(curve, "Curve is null");
+        final int size = xs.length;
+        if (ys.length != size || zs.length != size) {
+            throw new IllegalArgumentException(String.format(
+                    "Coordinate columns differ in length: %d, %d, %d", size,
+                    ys.length, zs.length));
+        }
+        double minX = Double.POSITIVE_INFINITY;
+        double minY = Double.POSITIVE_INFINITY;
+        double minZ = Double.POSITIVE_INFINITY;
+        double maxX = Double.NEGATIVE_INFINITY;
+        double maxY = Double.NEGATIVE_INFINITY;
+        double maxZ = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < size; i++) {
+            minX = Math.min(minX, xs[i]);
+            minY = Math.min(minY, ys[i]);
+            minZ = Math.min(minZ, zs[i]);
+            maxX = Math.max(maxX, xs[i]);
+            maxY = Math.max(maxY, ys[i]);
+            maxZ = Math.max(maxZ, zs[i]);
+        }
+        // One scale for all axes keeps the cells cubic.
+        final double extent = Math.max(maxX - minX,
+                Math.max(maxY - minY, maxZ - minZ));
+        final double scale = extent > 0 ? CURVE_MAX / extent : 0;
+        final double originX = minX;
+        final double originY = minY;
+        final double originZ = minZ;
+        final int[] highs = new int[size];
+        final int[] lows = new int[size];
+        final IntStream atoms = IntStream.range(0, size);
+        (parallel && size >= PARALLEL_MIN ? atoms.parallel() : atoms)
+                .forEach(i -> {
+                    final int qx = quantize(xs[i], originX, scale);
+                    final int qy = quantize(ys[i], originY, scale);
+                    final int qz = quantize(zs[i], originZ, scale);
+                    final long key = curve == Curve.MORTON ? morton(qx, qy,
+                            qz) : hilbert(qx, qy, qz);
+                    highs[i] = (int) (key >>> Integer.SIZE);
+                    // byId sorts signed values; flip to order the low word
+                    // as unsigned.
+                    lows[i] = (int) key ^ Integer.MIN_VALUE;
+                });
+        // Stable sort by the low word, then stably by the high word.
+        final int[] byLow = byId(lows, parallel);
+        apply(byLow, highs);
+        final int[] byHigh = byId(highs, parallel);
+        final int[] perm = new int[size];
+        for (int k = 0; k < size; k++) {
+            perm[k] = byLow[byHigh[k]];
+        }
+        return perm;
+    }
+
+    /**
+     * Reorders the table's rows along a space-filling curve in place.
+     *
+     * @param table
+     *            The structure to reorder.
+     * @param curve
+     *            The curve to order along.
+     * @param parallel
+     *            Whether to compute keys and sort in parallel.
+     * @return The permutation applied.
+     */
+    public static int[] sortBySpace(final AtomTable table, final Curve curve,
+            final boolean parallel) {
+        asNotNull(table, "Atom table is null");
+        final int[] perm = bySpace(table.getXs(), table.getYs(),
+                table.getZs(), curve, parallel);
+        apply(perm, table);
+        return perm;
+    }
+
+    /**
+     * @param qx
+     *            The quantized X coordinate.
+     * @param qy
+     *            The quantized Y coordinate.
+     * @param qz
+     *            The quantized Z coordinate.
+     * @return The Morton key, X bits most significant in each triple.
+     */
+    static long morton(final int qx, final int qy, final int qz) {
+        return spread(qx) << 2 | spread(qy) << 1 | spread(qz);
+    }
+
+    /**
+     * Computes the Hilbert key with Skilling's transpose algorithm (AIP
+     * Conf. Proc. 707, 381, 2004).
+     *
+     * @param qx
+     *            The quantized X coordinate.
+     * @param qy
+     *            The quantized Y coordinate.
+     * @param qz
+     *            The quantized Z coordinate.
+     * @return The Hilbert key.
+     */
+    static long hilbert(final int qx, final int qy, final int qz) {
+        int x = qx;
+        int y = qy;
+        int z = qz;
+        // Inverse undo of the excess work.
+        for (int q = 1 << (CURVE_BITS - 1); q > 1; q >>>= 1) {
+            final int p = q - 1;
+            if ((x & q) != 0) {
+                x ^= p;
+            }
+            if ((y & q) != 0) {
+                x ^= p;
+            } else {
+                final int t = (x ^ y) & p;
+                x ^= t;
+                y ^= t;
+            }
+            if ((z & q) != 0) {
+                x ^= p;
+            } else {
+                final int t = (x ^ z) & p;
+                x ^= t;
+                z ^= t;
+            }
+        }
+        // Gray encode.
+        y ^= x;
+        z ^= y;
+        int t = 0;
+        for (int q = 1 << (CURVE_BITS - 1); q > 1; q >>>= 1) {
+            if ((z & q) != 0) {
+                t ^= q - 1;
+            }
+        }
+        return morton(x ^ t, y ^ t, z ^ t);
+    }
+
+    /**
+     * @param perm
+     *            A permutation.
+     * @return The inverse permutation: the new position of each old index.
+     */
+    public static int[] inverse(final int[] perm) {
+        final int[] inv = new int[perm.length];
+        for (int k = 0; k < perm.length; k++) {
+            inv[perm[k]] = k;
+        }
+        return inv;
+    }
+
+    /**
+     * Applies a permutation to every column of a table in place, following
+     * each cycle once for all columns.
+     *
+     * @param perm
+     *            The permutation.
+     * @param table
+     *            The table to reorder.
+     */
+    public static void apply(final int[] perm, final AtomTable table) {
+        asNotNull(table, "Atom table is null");
+        checkSize(perm, table.size());
+        final double[] xs = table.getXs();
+        final double[] ys = table.getYs();
+        final double[] zs = table.getZs();
+        final int[] ids = table.getIds();
+        final byte[] types = table.getTypeOrdinals();
+        final boolean[] done = new boolean[perm.length];
+        for (int start = 0; start < perm.length; start++) {
+            if (done[start] || perm[start] == start) {
+                continue;
+            }
+            final double x = xs[start];
+            final double y = ys[start];
+            final double z = zs[start];
+            final int id = ids[start];
+            final byte type = types[start];
+            int cur = start;
+            int next = perm[cur];
+            while (next != start) {
+                checkNext(perm, done, next);
+                xs[cur] = xs[next];
+                ys[cur] = ys[next];
+                zs[cur] = zs[next];
+                ids[cur] = ids[next];
+                types[cur] = types[next];
+                done[cur] = true;
+                cur = next;
+                next = perm[cur];
+            }
+            xs[cur] = x;
+            ys[cur] = y;
+            zs[cur] = z;
+            ids[cur] = id;
+            types[cur] = type;
+            done[cur] = true;
+        }
+    }
+
+    /**
+     * Applies a permutation to a column in place.
+     *
+     * @param perm
+     *            The permutation.
+     * @param values
+     *            The column to reorder.
+     */
+    public static void apply(final int[] perm, final double[] values) {
+        checkSize(perm, values.length);
+        final boolean[] done = new boolean[perm.length];
+        for (int start = 0; start < perm.length; start++) {
+            if (done[start] || perm[start] == start) {
+                continue;
+            }
+            final double first = values[start];
+            int cur = start;
+            int next = perm[cur];
+            while (next != start) {
+                checkNext(perm, done, next);
+                values[cur] = values[next];
+                done[cur] = true;
+                cur = next;
+                next = perm[cur];
+            }
+            values[cur] = first;
+            done[cur] = true;
+        }
+    }
+
+    /**
+     * Applies a permutation to a column in place.
+     *
+     * @param perm
+     *            The permutation.
+     * @param values
+     *            The column to reorder.
+     */
+    public static void apply(final int[] perm, final int[] values) {
+        checkSize(perm, values.length);
+        final boolean[] done = new boolean[perm.length];
+        for (int start = 0; start < perm.length; start++) {
+            if (done[start] || perm[start] == start) {
+                continue;
+            }
+            final int first = values[start];
+            int cur = start;
+            int next = perm[cur];
+            while (next != start) {
+                checkNext(perm, done, next);
+                values[cur] = values[next];
+                done[cur] = true;
+                cur = next;
+                next = perm[cur];
+            }
+            values[cur] = first;
+            done[cur] = true;
+        }
+    }
+
+    /**
+     * Runs one stable counting pass over a byte of the keys.
+     *
+     * @param keys
+     *            The keys in their current order.
+     * @param perm
+     *            The permutation in its current order.
+     * @param keysOut
+     *            Receives the reordered keys.
+     * @param permOut
+     *            Receives the reordered permutation.
+     * @param shift
+     *            The bit offset of the byte.
+     * @param chunks
+     *            The number of ranges to count and scatter concurrently.
+     * @return False if every key has the same byte and nothing was moved.
+     */
+    private static boolean radixPass(final int[] keys, final int[] perm,
+            final int[] keysOut, final int[] permOut, final int shift,
+            final int chunks) {
+        final int size = keys.length;
+        final int[][] counts = new int[chunks][RADIX];
+        final IntStream ranges = IntStream.range(0, chunks);
+        (chunks > 1 ? ranges.parallel() : ranges).forEach(c -> {
+            final int[] count = counts[c];
+            final int end = chunkEnd(c, chunks, size);
+            for (int i = chunkEnd(c - 1, chunks, size); i < end; i++) {
+                count[(keys[i] >>> shift) & MASK]++;
+            }
+        });
+        // Turn the counts into starting offsets, digit-major then chunk.
+        int total = 0;
+        for (int d = 0; d < RADIX; d++) {
+            int digitTotal = 0;
+            for (int c = 0; c < chunks; c++) {
+                final int count = counts[c][d];
+                counts[c][d] = total;
+                total += count;
+                digitTotal += count;
+            }
+            if (digitTotal == size) {
+                return false;
+            }
+        }
+        final IntStream scatter = IntStream.range(0, chunks);
+        (chunks > 1 ? scatter.parallel() : scatter).forEach(c -> {
+            final int[] next = counts[c];
+            final int end = chunkEnd(c, chunks, size);
+            for (int i = chunkEnd(c - 1, chunks, size); i < end; i++) {
+                final int dst = next[(keys[i] >>> shift) & MASK]++;
+                keysOut[dst] = keys[i];
+                permOut[dst] = perm[i];
+            }
+        });
+        return true;
+    }
+
+    /**
+     * @param value
+     *            The coordinate.
+     * @param origin
+     *            The lowest coordinate on the axis.
+     * @param scale
+     *            Cells per unit length.
+     * @return The cell index along the axis.
+     */
+    private static int quantize(final double value, final double origin,
+            final double scale) {
+        final double cell = (value - origin) * scale;
+        // Also maps NaN to zero.
+        return cell > 0 ? (int) Math.min(cell, CURVE_MAX) : 0;
+    }
+
+    /**
+     * @param value
+     *            A {@value #CURVE_BITS}-bit value.
+     * @return The value's bits spread to every third bit.
+     */
+    private static long spread(final int value) {
+        long bits = value & CURVE_MAX;
+        bits = (bits | bits << 32) & 0x1f00000000ffffL;
+        bits = (bits | bits << 16) & 0x1f0000ff0000ffL;
+        bits = (bits | bits << 8) & 0x100f00f00f00f00fL;
+        bits = (bits | bits << 4) & 0x10c30c30c30c30c3L;
+        bits = (bits | bits << 2) & 0x1249249249249249L;
+        return bits;
+    }
+
+    /**
+     * @param chunk
+     *            The chunk, or -1 for the start of the first.
+     * @param chunks
+     *            The number of chunks.
+     * @param size
+     *            The number of keys.
+     * @return One past the last index of the chunk.
+     */
+    private static int chunkEnd(final int chunk, final int chunks,
+            final int size) {
+        return (int) ((long) size * (chunk + 1) / chunks);
+    }
+
+    /**
+     * @param perm
+     *            The permutation.
+     * @param size
+     *            The length of the data it is applied to.
+     */
+    private static void checkSize(final int[] perm, final int size) {
+        if (perm.length != size) {
+            throw new IllegalArgumentException(String.format(
+                    "Permutation of %d can't reorder %d values", perm.length,
+                    size));
+        }
+    }
+
+    /**
+     * Checks the next step of a cycle walk, so that arrays that aren't
+     * permutations fail instead of looping forever. The data is left partly
+     * reordered.
+     *
+     * @param perm
+     *            The permutation.
+     * @param done
+     *            Whether each position has been filled.
+     * @param next
+     *            The index about to be read.
+     */
+    private static void checkNext(final int[] perm, final boolean[] done,
+            final int next) {
+        if (next < 0 || next >= perm.length || done[next]) {
+            throw new IllegalArgumentException(String.format(
+                    "Not a permutation: index %d is out of range or repeated",
+                    next));
+        }
+    }
+}
@@ -92,11 +92,17 @@ public enum AtomicElement {
      * @throws IllegalArgumentException If not elements match the given number.
      */
     public static AtomicElement valueOf(final int number) {
-        for (AtomicElement val : AtomicElement.values()) {
-            if (number == val.getNumber()) {
-                return val;
-            }
-        }
-        throw new IllegalArgumentException("No element number " + number);
+        return ElementTable.forNumber(number);
+    }
+
+    /**
+     * Look up an element by chemical symbol, ignoring case.
+     *
+     * @param symbol The symbol to look up.
+     * @return The element matching the given symbol.
+     * @throws IllegalArgumentException If no element matches the given symbol.
+     */
+    public static AtomicElement valueOfSymbol(final String symbol) {
+        return ElementTable.valueOfSymbol(symbol);
     }
 }
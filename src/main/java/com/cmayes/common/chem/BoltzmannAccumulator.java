@@ -0,0 +1,317 @@
+package com.cmayes.common.chem;
+
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+import com.cmayes.common.chem.PhysicalConstants.Conversions;
+
+/**
+ * Boltzmann-weighted averages over a conformer ensemble, accumulated in one
+ * pass without holding on to the energies. Energies are in Hartrees and are
+ * turned into reduced energies with {@link Conversions#HARTREE_TO_KCALTH} and
+ * {@link PhysicalConstants#GAS_KCAL}.
+ *
+ * The normalizer is kept as a log-sum-exp: weights are stored relative to the
+ * lowest energy seen so far and rescaled when a lower one arrives, so sums
+ * never overflow however many conformers or however wide the energy range.
+ * Each conformer may carry a fixed number of properties whose weighted
+ * averages are accumulated alongside. Accumulators filled on separate threads
+ * can be merged with {@link #combine}; {@link #of} does this over the
+ * fork-join pool.
+ *
+ * Instances are not thread-safe.
+ *
+ * @author cmayes
+ */
+public final class BoltzmannAccumulator {
+    private final double temperature;
+    /** Reduced energy per Hartree, 1/RT. */
+    private final double beta;
+    private final double[] propSums;
+    private long count;
+    /** The lowest energy seen; weights are relative to it. */
+    private double minEnergy = Double.POSITIVE_INFINITY;
+    /** The first energy seen; energies are averaged relative to it. */
+    private double shift = Double.NaN;
+    private double weightSum;
+    private double energySum;
+
+    /**
+     * @param temp
+     *            The temperature in Kelvin.
+     * @param propertyCount
+     *            The number of properties given with each conformer.
+     */
+    public BoltzmannAccumulator(final double temp, final int propertyCount) {
+        if (!(temp > 0) || propertyCount < 0) {
+            throw new IllegalArgumentException(String.format(
+                    "Invalid temperature %s or property count %d", temp,
+                    propertyCount));
+        }
+        this.temperature = temp;
+        this.beta = Conversions.HARTREE_TO_KCALTH
+                / (PhysicalConstants.GAS_KCAL * temp);
+        this.propSums = new double[propertyCount];
+    }
+
+    /**
+     * Accumulates an ensemble held in flat arrays, optionally splitting it
+     * across the fork-join pool and merging the partial results.
+     *
+     * @param temp
+     *            The temperature in Kelvin.
+     * @param energies
+     *            The conformer energies in Hartrees.
+     * @param props
+     *            The conformer properties, <code>propertyCount</code> per
+     *            conformer in conformer order; may be null when there are
+     *            none.
+     * @param propertyCount
+     *            The number of properties per conformer.
+     * @param parallel
+     *            Whether to reduce in parallel.
+     * @return The filled accumulator.
+     */
+    public static BoltzmannAccumulator of(final double temp,
+            final double[] energies, final double[] props,
+            final int propertyCount, final boolean parallel) {
+        if (propertyCount > 0
+                && (props == null || props.length < energies.length
+                        * propertyCount)) {
+            throw new IllegalArgumentException(String.format(
+                    "Need %d properties for %d conformers", energies.length
+                            * propertyCount, energies.length));
+        }
+        final IntStream confs = IntStream.range(0, energies.length);
+        return (parallel ? confs.parallel() : confs).collect(
+                () -> new BoltzmannAccumulator(temp, propertyCount),
+                (acc, i) -> acc.add(energies[i], props, i * propertyCount),
+                BoltzmannAccumulator::combine);
+    }
+
+    /**
+     * Adds a conformer with no properties.
+     *
+     * @param energy
+     *            The energy in Hartrees.
+     */
+    public void add(final double energy) {
+        add(energy, null, 0);
+    }
+
+    /**
+     * Adds a conformer.
+     *
+     * @param energy
+     *            The energy in Hartrees.
+     * @param props
+     *            The conformer's properties.
+     */
+    public void add(final double energy, final double[] props) {
+        add(energy, props, 0);
+    }
+
+    /**
+     * Adds a conformer whose properties start at the given offset.
+     *
+     * @param energy
+     *            The energy in Hartrees.
+     * @param props
+     *            The array holding the conformer's properties; ignored when
+     *            there are none.
+     * @param offset
+     *            The index of the conformer's first property.
+     * @throws IllegalArgumentException
+     *             If the energy isn't finite or the array doesn't hold every
+     *             property from the offset.
+     */
+    public void add(final double energy, final double[] props,
+            final int offset) {
+        if (Double.isNaN(energy) || Double.isInfinite(energy)) {
+            throw new IllegalArgumentException("Energy is not finite: "
+                    + energy);
+        }
+        if (propSums.length > 0
+                && (props == null || offset < 0 || offset + propSums.length
+                        > props.length)) {
+            throw new IllegalArgumentException(String.format(
+                    "Need %d properties at offset %d", propSums.length,
+                    offset));
+        }
+        if (count == 0) {
+            shift = energy;
+        }
+        if (energy < minEnergy) {
+            rescale(energy);
+        }
+        final double weight = Math.exp(-beta * (energy - minEnergy));
+        count++;
+        weightSum += weight;
+        energySum += weight * (energy - shift);
+        for (int p = 0; p < propSums.length; p++) {
+            propSums[p] += weight * props[offset + p];
+        }
+    }
+
+    /**
+     * Merges another accumulator's conformers into this one.
+     *
+     * @param other
+     *            The accumulator to merge.
+     * @return This accumulator.
+     */
+    public BoltzmannAccumulator combine(final BoltzmannAccumulator other) {
+        if (other.temperature != temperature
+                || other.propSums.length != propSums.length) {
+            throw new IllegalArgumentException(String.format(
+                    "Can't combine %s with %s", this, other));
+        }
+        if (other.count == 0) {
+            return this;
+        }
+        if (count == 0) {
+            shift = other.shift;
+        }
+        if (other.minEnergy < minEnergy) {
+            rescale(other.minEnergy);
+        }
+        final double scale = Math.exp(-beta * (other.minEnergy - minEnergy));
+        count += other.count;
+        weightSum += scale * other.weightSum;
+        energySum += scale
+                * (other.energySum + (other.shift - shift) * other.weightSum);
+        for (int p = 0; p < propSums.length; p++) {
+            propSums[p] += scale * other.propSums[p];
+        }
+        return this;
+    }
+
+    /**
+     * Discards every conformer added.
+     */
+    public void reset() {
+        count = 0;
+        minEnergy = Double.POSITIVE_INFINITY;
+        shift = Double.NaN;
+        weightSum = 0;
+        energySum = 0;
+        Arrays.fill(propSums, 0);
+    }
+
+    /**
+     * @return The temperature in Kelvin.
+     */
+    public double getTemperature() {
+        return temperature;
+    }
+
+    /**
+     * @return The number of conformers added.
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * @return The lowest energy added, in Hartrees.
+     */
+    public double getMinEnergy() {
+        checkNotEmpty();
+        return minEnergy;
+    }
+
+    /**
+     * @return The log of the partition function, ln sum exp(-E/RT), with E
+     *         in Hartrees.
+     */
+    public double getLogPartition() {
+        checkNotEmpty();
+        return Math.log(weightSum) - beta * minEnergy;
+    }
+
+    /**
+     * @return The ensemble free energy, -RT ln sum exp(-E/RT), in Hartrees.
+     */
+    public double getFreeEnergy() {
+        checkNotEmpty();
+        return minEnergy - Math.log(weightSum) / beta;
+    }
+
+    /**
+     * Returns the normalized weight of a conformer with the given energy, for
+     * a second pass over an ensemble that has been fully added.
+     *
+     * @param energy
+     *            The energy in Hartrees.
+     * @return The conformer's Boltzmann population.
+     */
+    public double getWeight(final double energy) {
+        checkNotEmpty();
+        return Math.exp(-beta * (energy - minEnergy)) / weightSum;
+    }
+
+    /**
+     * @return The Boltzmann-weighted average energy in Hartrees.
+     */
+    public double getAverageEnergy() {
+        checkNotEmpty();
+        return shift + energySum / weightSum;
+    }
+
+    /**
+     * @param property
+     *            The property index.
+     * @return The Boltzmann-weighted average of the property.
+     */
+    public double getAverage(final int property) {
+        checkNotEmpty();
+        return propSums[property] / weightSum;
+    }
+
+    /**
+     * @return The Boltzmann-weighted average of every property.
+     */
+    public double[] getAverages() {
+        checkNotEmpty();
+        final double[] avgs = new double[propSums.length];
+        for (int p = 0; p < avgs.length; p++) {
+            avgs[p] = propSums[p] / weightSum;
+        }
+        return avgs;
+    }
+
+    @Override
+    public String toString() {
+        return String.format(
+                "BoltzmannAccumulator[T=%s, count=%d, properties=%d]",
+                temperature, count, propSums.length);
+    }
+
+    /**
+     * Moves the weight reference to a new, lower energy.
+     *
+     * @param energy
+     *            The new lowest energy.
+     */
+    private void rescale(final double energy) {
+        if (count > 0) {
+            final double scale = Math.exp(-beta * (minEnergy - energy));
+            weightSum *= scale;
+            energySum *= scale;
+            for (int p = 0; p < propSums.length; p++) {
+                propSums[p] *= scale;
+            }
+        }
+        minEnergy = energy;
+    }
+
+    /**
+     * @throws IllegalStateException
+     *             If no conformer has been added.
+     */
+    private void checkNotEmpty() {
+        if (count == 0) {
+            throw new IllegalStateException("No conformers added");
+        }
+    }
+}
@@ -0,0 +1,237 @@
+package com.cmayes.common.chem;
+
+import java.util.Arrays;
+
+import com.cmayes.common.model.Atom;
+import com.cmayes.common.model.AtomTable;
+import com.cmayes.common.util.ChemUtils;
+
+/**
+ * Decides whether two atoms are bonded from their element types and squared
+ * distance. Cutoffs are precomputed into a flat table of squared distances
+ * indexed by {@link AtomicElement} ordinal pairs, so a bond test is a table
+ * lookup and a comparison with no square root. Untyped atoms (see
+ * {@link AtomTable#NO_TYPE}) use {@link ChemUtils#BOND_LEN}.
+ *
+ * @author cmayes
+ */
+public final class BondCriterion {
+    /** Tolerance added to the sum of covalent radii by {@link #covalent()}. */
+    public static final double DEFAULT_TOLERANCE = 0.45;
+    /** Table width: one slot per element plus a leading slot for no type. */
+    private static final int WIDTH = AtomicElement.values().length + 1;
+    /**
+     * The classic criterion: any two atoms within {@link ChemUtils#BOND_LEN}
+     * are bonded. Declared after {@link #WIDTH}, which it needs at class init.
+     */
+    public static final BondCriterion DEFAULT = uniform(ChemUtils.BOND_LEN);
+
+    private final double[] cutoffsSq;
+    private final double maxCutoff;
+
+    /**
+     * @param squares
+     *            The squared cutoff table.
+     */
+    private BondCriterion(final double[] squares) {
+        this.cutoffsSq = squares;
+        double max = 0;
+        for (double sq : squares) {
+            max = Math.max(max, sq);
+        }
+        this.maxCutoff = Math.sqrt(max);
+    }
+
+    /**
+     * Creates a criterion that uses the same cutoff for every element pair.
+     *
+     * @param cutoff
+     *            The bond cutoff in Angstroms.
+     * @return The criterion.
+     */
+    public static BondCriterion uniform(final double cutoff) {
+        checkCutoff(cutoff);
+        final double[] squares = new double[WIDTH * WIDTH];
+        Arrays.fill(squares, cutoff * cutoff);
+        return new BondCriterion(squares);
+    }
+
+    /**
+     * Creates a criterion that bonds atoms within the sum of their covalent
+     * radii plus {@link #DEFAULT_TOLERANCE}.
+     *
+     * @return The criterion.
+     */
+    public static BondCriterion covalent() {
+        return covalent(DEFAULT_TOLERANCE);
+    }
+
+    /**
+     * Creates a criterion that bonds atoms within the sum of their covalent
+     * radii (see {@link ElementTable#getCovalentRadius(AtomicElement)}) plus
+     * the given tolerance.
+     *
+     * @param tolerance
+     *            The tolerance in Angstroms.
+     * @return The criterion.
+     */
+    public static BondCriterion covalent(final double tolerance) {
+        final double[] radii = ElementTable.covalentRadii();
+        final double[] squares = new double[WIDTH * WIDTH];
+        final double untypedSq = ChemUtils.BOND_LEN * ChemUtils.BOND_LEN;
+        for (int row = 0; row < WIDTH; row++) {
+            for (int col = 0; col < WIDTH; col++) {
+                if (row == 0 || col == 0) {
+                    squares[row * WIDTH + col] = untypedSq;
+                    continue;
+                }
+                final double cutoff = radii[row - 1] + radii[col - 1]
+                        + tolerance;
+                checkCutoff(cutoff);
+                squares[row * WIDTH + col] = cutoff * cutoff;
+            }
+        }
+        return new BondCriterion(squares);
+    }
+
+    /**
+     * @return The largest cutoff of any element pair; use it to size
+     *         neighbor searches.
+     */
+    public double getMaxCutoff() {
+        return maxCutoff;
+    }
+
+    /**
+     * Returns the cutoff for the given element pair.
+     *
+     * @param first
+     *            The first element (may be null).
+     * @param second
+     *            The second element (may be null).
+     * @return The bond cutoff in Angstroms.
+     */
+    public double getCutoff(final AtomicElement first,
+            final AtomicElement second) {
+        return Math.sqrt(getCutoffSq(ordinal(first), ordinal(second)));
+    }
+
+    /**
+     * Returns the squared cutoff for the given element ordinals.
+     *
+     * @param firstOrd
+     *            The first {@link AtomicElement} ordinal or
+     *            {@link AtomTable#NO_TYPE}.
+     * @param secondOrd
+     *            The second {@link AtomicElement} ordinal or
+     *            {@link AtomTable#NO_TYPE}.
+     * @return The squared cutoff.
+     */
+    public double getCutoffSq(final int firstOrd, final int secondOrd) {
+        return cutoffsSq[(firstOrd + 1) * WIDTH + secondOrd + 1];
+    }
+
+    /**
+     * Returns whether atoms of the given element ordinals at the given squared
+     * distance are bonded.
+     *
+     * @param firstOrd
+     *            The first {@link AtomicElement} ordinal or
+     *            {@link AtomTable#NO_TYPE}.
+     * @param secondOrd
+     *            The second {@link AtomicElement} ordinal or
+     *            {@link AtomTable#NO_TYPE}.
+     * @param distSq
+     *            The squared distance between the atoms.
+     * @return Whether the atoms are bonded.
+     */
+    public boolean isBonded(final int firstOrd, final int secondOrd,
+            final double distSq) {
+        return distSq <= cutoffsSq[(firstOrd + 1) * WIDTH + secondOrd + 1];
+    }
+
+    /**
+     * Returns whether the two atoms are bonded.
+     *
+     * @param first
+     *            The first atom.
+     * @param second
+     *            The second atom.
+     * @return Whether the atoms are bonded.
+     */
+    public boolean isBonded(final Atom first, final Atom second) {
+        final double dx = first.getX() - second.getX();
+        final double dy = first.getY() - second.getY();
+        final double dz = first.getZ() - second.getZ();
+        return isBonded(ordinal(first.getType()), ordinal(second.getType()),
+                dx * dx + dy * dy + dz * dz);
+    }
+
+    /**
+     * Returns whether the two table atoms are bonded.
+     *
+     * @param table
+     *            The table holding the atoms.
+     * @param first
+     *            The index of the first atom.
+     * @param second
+     *            The index of the second atom.
+     * @return Whether the atoms are bonded.
+     */
+    public boolean isBonded(final AtomTable table, final int first,
+            final int second) {
+        final double dx = table.getX(first) - table.getX(second);
+        final double dy = table.getY(first) - table.getY(second);
+        final double dz = table.getZ(first) - table.getZ(second);
+        return isBonded(table.getTypeOrdinal(first),
+                table.getTypeOrdinal(second), dx * dx + dy * dy + dz * dz);
+    }
+
+    /**
+     * Returns whether the two table atoms are bonded, using the minimum-image
+     * distance when a periodic cell is given.
+     *
+     * @param table
+     *            The table holding the atoms.
+     * @param first
+     *            The index of the first atom.
+     * @param second
+     *            The index of the second atom.
+     * @param cell
+     *            The periodic cell, or null for an isolated structure.
+     * @return Whether the atoms are bonded.
+     */
+    public boolean isBonded(final AtomTable table, final int first,
+            final int second, final UnitCell cell) {
+        if (cell == null) {
+            return isBonded(table, first, second);
+        }
+        return isBonded(table.getTypeOrdinal(first),
+                table.getTypeOrdinal(second), cell.distanceSq(
+                        table.getX(first), table.getY(first),
+                        table.getZ(first), table.getX(second),
+                        table.getY(second), table.getZ(second)));
+    }
+
+    /**
+     * @param elem
+     *            The element (may be null).
+     * @return The element's ordinal or {@link AtomTable#NO_TYPE}.
+     */
+    private static int ordinal(final AtomicElement elem) {
+        return elem == null ? AtomTable.NO_TYPE : elem.ordinal();
+    }
+
+    /**
+     * @param cutoff
+     *            The cutoff to check.
+     * @throws IllegalArgumentException
+     *             If the cutoff is not positive.
+     */
+    private static void checkCutoff(final double cutoff) {
+        if (!(cutoff > 0)) {
+            throw new IllegalArgumentException("Bond cutoff must be positive: "
+                    + cutoff);
+        }
+    }
+}
@@ -0,0 +1,458 @@
+package com.cmayes.common.chem;
+
+import static com.cmayes.common.exception.ExceptionUtils.asNotNull;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.IntConsumer;
+
+import com.cmayes.common.exception.NotFoundException;
+import com.cmayes.common.exception.TooManyException;
+import com.cmayes.common.model.Atom;
+import com.cmayes.common.model.AtomTable;
+import com.cmayes.common.util.ChemUtils;
+
+/**
+ * Immutable bond graph for a structure, perceived in a single cell-list pass
+ * and stored in compressed-sparse-row form: the neighbors of atom
+ * <code>i</code> are <code>neighbors[offsets[i]]</code> through
+ * <code>neighbors[offsets[i + 1] - 1]</code> in ascending index order. Each
+ * bond appears once in each direction. Bond lengths are optionally kept in a
+ * parallel <code>float[]</code>.
+ *
+ * Unlike {@link ChemUtils#findBondAtoms(Atom, List, AtomicElement)}, an atom
+ * is never its own neighbor.
+ *
+ * @author cmayes
+ */
+public final class BondGraph {
+    private final int[] offsets;
+    private final int[] neighbors;
+    private final float[] lengths;
+    private final byte[] types;
+
+    /**
+     * Creates a graph from already-built CSR arrays.
+     *
+     * @param offs
+     *            The per-atom start offsets plus an end marker.
+     * @param nbrs
+     *            The neighbor indices.
+     * @param lens
+     *            The bond lengths or null.
+     * @param atomTypes
+     *            The {@link AtomicElement} ordinals of the atoms.
+     */
+    private BondGraph(final int[] offs, final int[] nbrs, final float[] lens,
+            final byte[] atomTypes) {
+        this.offsets = offs;
+        this.neighbors = nbrs;
+        this.lengths = lens;
+        this.types = atomTypes;
+    }
+
+    /**
+     * Perceives the bonds of the given atoms using
+     * {@link BondCriterion#DEFAULT}. Atom indices in the graph are list indices.
+     *
+     * @param atoms
+     *            The structure to perceive.
+     * @return The bond graph.
+     */
+    public static BondGraph build(final List<? extends Atom> atoms) {
+        return build(AtomTable.fromAtoms(asNotNull(atoms, "Atom list is null")),
+                false);
+    }
+
+    /**
+     * Perceives the bonds of the atoms in the given table using
+     * {@link BondCriterion#DEFAULT}. Atom indices in the graph are table rows.
+     *
+     * @param table
+     *            The structure to perceive.
+     * @param withLengths
+     *            Whether to store bond lengths.
+     * @return The bond graph.
+     */
+    public static BondGraph build(final AtomTable table,
+            final boolean withLengths) {
+        return build(table, BondCriterion.DEFAULT, withLengths);
+    }
+
+    /**
+     * Perceives the bonds of the atoms in the given table using the given
+     * criterion. Atom indices in the graph are table rows.
+     *
+     * @param table
+     *            The structure to perceive.
+     * @param criterion
+     *            The bond criterion to apply.
+     * @param withLengths
+     *            Whether to store bond lengths.
+     * @return The bond graph.
+     */
+    public static BondGraph build(final AtomTable table,
+            final BondCriterion criterion, final boolean withLengths) {
+        return build(table, criterion, null, withLengths);
+    }
+
+    /**
+     * Perceives the bonds of the atoms in a periodic cell using the given
+     * criterion, including bonds across the cell faces. Atom indices in the
+     * graph are table rows and bond lengths are minimum-image distances.
+     *
+     * @param table
+     *            The structure to perceive.
+     * @param criterion
+     *            The bond criterion to apply; its largest cutoff may not
+     *            exceed {@link UnitCell#getMaxCutoff()}.
+     * @param cell
+     *            The periodic cell, or null for an isolated structure.
+     * @param withLengths
+     *            Whether to store bond lengths.
+     * @return The bond graph.
+     */
+    public static BondGraph build(final AtomTable table,
+            final BondCriterion criterion, final UnitCell cell,
+            final boolean withLengths) {
+        asNotNull(table, "Atom table is null");
+        asNotNull(criterion, "Bond criterion is null");
+        final double reach = reach(table, criterion);
+        final CellList cells = cell == null ? new CellList(table, reach)
+                : new CellList(table, reach, cell);
+        final PairCollector pairs = new PairCollector(table, criterion, cell);
+        final double[] xs = table.getXs();
+        final double[] ys = table.getYs();
+        final double[] zs = table.getZs();
+        for (int i = 0; i < xs.length; i++) {
+            pairs.current = i;
+            cells.forEachWithin(xs[i], ys[i], zs[i], reach, null, pairs);
+        }
+        return fromPairs(table, pairs.firsts, pairs.seconds, pairs.count,
+                cell, withLengths);
+    }
+
+    /**
+     * Returns the largest cutoff between any two elements present, which is
+     * usually much shorter than the criterion's overall largest cutoff.
+     *
+     * @param table
+     *            The structure being perceived.
+     * @param criterion
+     *            The bond criterion to apply.
+     * @return The search radius.
+     */
+    static double reach(final AtomTable table,
+            final BondCriterion criterion) {
+        final boolean[] present = new boolean[AtomicElement.values().length + 1];
+        for (byte ord : table.getTypeOrdinals()) {
+            present[ord + 1] = true;
+        }
+        double maxSq = 0;
+        for (int first = 0; first < present.length; first++) {
+            for (int second = first; present[first]
+                    && second < present.length; second++) {
+                if (present[second]) {
+                    maxSq = Math.max(maxSq,
+                            criterion.getCutoffSq(first - 1, second - 1));
+                }
+            }
+        }
+        return maxSq > 0 ? Math.sqrt(maxSq) : criterion.getMaxCutoff();
+    }
+
+    /**
+     * Builds the CSR arrays from a list of unique pairs.
+     *
+     * @param table
+     *            The structure the pairs index into.
+     * @param firsts
+     *            The first index of each pair.
+     * @param seconds
+     *            The second index of each pair.
+     * @param count
+     *            The number of pairs.
+     * @param withLengths
+     *            Whether to store bond lengths.
+     * @return The bond graph.
+     */
+    static BondGraph fromPairs(final AtomTable table, final int[] firsts,
+            final int[] seconds, final int count, final boolean withLengths) {
+        return fromPairs(table, firsts, seconds, count, null, withLengths);
+    }
+
+    /**
+     * Builds the CSR arrays from a list of unique pairs.
+     *
+     * @param table
+     *            The structure the pairs index into.
+     * @param firsts
+     *            The first index of each pair.
+     * @param seconds
+     *            The second index of each pair.
+     * @param count
+     *            The number of pairs.
+     * @param cell
+     *            The periodic cell for bond lengths, or null.
+     * @param withLengths
+     *            Whether to store bond lengths.
+     * @return The bond graph.
+     */
+    static BondGraph fromPairs(final AtomTable table, final int[] firsts,
+            final int[] seconds, final int count, final UnitCell cell,
+            final boolean withLengths) {
+        final int size = table.size();
+        final int[] offs = new int[size + 1];
+        for (int p = 0; p < count; p++) {
+            offs[firsts[p] + 1]++;
+            offs[seconds[p] + 1]++;
+        }
+        for (int i = 0; i < size; i++) {
+            offs[i + 1] += offs[i];
+        }
+        final int[] fill = Arrays.copyOf(offs, size);
+        final int[] nbrs = new int[count * 2];
+        for (int p = 0; p < count; p++) {
+            nbrs[fill[firsts[p]]++] = seconds[p];
+            nbrs[fill[seconds[p]]++] = firsts[p];
+        }
+        float[] lens = null;
+        if (withLengths) {
+            lens = new float[nbrs.length];
+        }
+        for (int i = 0; i < size; i++) {
+            Arrays.sort(nbrs, offs[i], offs[i + 1]);
+            if (lens != null) {
+                for (int k = offs[i]; k < offs[i + 1]; k++) {
+                    lens[k] = (float) ChemUtils.findDistance(table, i,
+                            nbrs[k], cell);
+                }
+            }
+        }
+        return new BondGraph(offs, nbrs, lens, table.getTypeOrdinals().clone());
+    }
+
+    /**
+     * @return The number of atoms in the graph.
+     */
+    public int size() {
+        return types.length;
+    }
+
+    /**
+     * @return The number of bonds in the graph.
+     */
+    public int bondCount() {
+        return neighbors.length / 2;
+    }
+
+    /**
+     * @return Whether bond lengths were stored.
+     */
+    public boolean hasLengths() {
+        return lengths != null;
+    }
+
+    /**
+     * @param atomIdx
+     *            The atom index.
+     * @return The number of atoms bonded to the given atom.
+     */
+    public int degree(final int atomIdx) {
+        return offsets[atomIdx + 1] - offsets[atomIdx];
+    }
+
+    /**
+     * Returns a copy of the indices of the atoms bonded to the given atom.
+     *
+     * @param atomIdx
+     *            The atom index.
+     * @return The bonded atom indices in ascending order.
+     */
+    public int[] neighborsOf(final int atomIdx) {
+        return Arrays.copyOfRange(neighbors, offsets[atomIdx],
+                offsets[atomIdx + 1]);
+    }
+
+    /**
+     * Returns the indices of the atoms of the given type bonded to the given
+     * atom. Replaces {@link ChemUtils#findBondAtoms(Atom, List, AtomicElement)}
+     * for perceived structures.
+     *
+     * @param atomIdx
+     *            The atom index.
+     * @param elemType
+     *            The element type to search for.
+     * @return The bonded atom indices of the given type in ascending order.
+     */
+    public int[] neighborsOf(final int atomIdx, final AtomicElement elemType) {
+        final byte want = (byte) elemType.ordinal();
+        final int start = offsets[atomIdx];
+        final int end = offsets[atomIdx + 1];
+        int count = 0;
+        for (int k = start; k < end; k++) {
+            if (types[neighbors[k]] == want) {
+                count++;
+            }
+        }
+        final int[] found = new int[count];
+        int idx = 0;
+        for (int k = start; idx < count; k++) {
+            if (types[neighbors[k]] == want) {
+                found[idx++] = neighbors[k];
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Passes each neighbor of the given type to the consumer without
+     * allocating.
+     *
+     * @param atomIdx
+     *            The atom index.
+     * @param elemType
+     *            The element type to visit, or null for all neighbors.
+     * @param consumer
+     *            Receives the bonded atom indices in ascending order.
+     */
+    public void forEachNeighbor(final int atomIdx,
+            final AtomicElement elemType, final IntConsumer consumer) {
+        final int want = elemType == null ? -1 : elemType.ordinal();
+        for (int k = offsets[atomIdx]; k < offsets[atomIdx + 1]; k++) {
+            if (want < 0 || types[neighbors[k]] == want) {
+                consumer.accept(neighbors[k]);
+            }
+        }
+    }
+
+    /**
+     * Returns the single atom of the given type bonded to the given atom.
+     * Replaces
+     * {@link ChemUtils#findSingleBondAtom(Atom, List, AtomicElement)} for
+     * perceived structures.
+     *
+     * @param atomIdx
+     *            The atom index.
+     * @param elemType
+     *            The element type to search for.
+     * @return The bonded atom index.
+     * @throws NotFoundException
+     *             When no atom of the given type is bonded.
+     * @throws TooManyException
+     *             When more than one atom of the given type is bonded.
+     */
+    public int singleNeighbor(final int atomIdx, final AtomicElement elemType) {
+        final byte want = (byte) elemType.ordinal();
+        int found = -1;
+        int count = 0;
+        for (int k = offsets[atomIdx]; k < offsets[atomIdx + 1]; k++) {
+            if (types[neighbors[k]] == want) {
+                found = neighbors[k];
+                count++;
+            }
+        }
+        switch (count) {
+        case 0:
+            throw new NotFoundException("No %s found for atom index %d",
+                    elemType.name().toLowerCase(), atomIdx);
+        case 1:
+            return found;
+        default:
+            throw new TooManyException(
+                    "Found %d %s bonded atoms where one was expected for atom index %d",
+                    count, elemType, atomIdx);
+        }
+    }
+
+    /**
+     * Returns the length of the given bond.
+     *
+     * @param atomIdx
+     *            The atom index.
+     * @param nbrIdx
+     *            The position of the neighbor in the atom's neighbor list
+     *            (from zero to {@link #degree(int)} - 1).
+     * @return The bond length in Angstroms.
+     * @throws IllegalStateException
+     *             If the graph was built without lengths.
+     */
+    public float bondLength(final int atomIdx, final int nbrIdx) {
+        if (lengths == null) {
+            throw new IllegalStateException("Bond lengths were not stored");
+        }
+        return lengths[offsets[atomIdx] + nbrIdx];
+    }
+
+    /**
+     * Returns the backing offsets array; do not modify.
+     *
+     * @return The per-atom start offsets plus an end marker.
+     */
+    public int[] getOffsets() {
+        return offsets;
+    }
+
+    /**
+     * Returns the backing neighbors array; do not modify.
+     *
+     * @return The neighbor indices.
+     */
+    public int[] getNeighbors() {
+        return neighbors;
+    }
+
+    /**
+     * Returns the backing lengths array; do not modify.
+     *
+     * @return The bond lengths parallel to {@link #getNeighbors()} or null.
+     */
+    public float[] getLengths() {
+        return lengths;
+    }
+
+    /**
+     * Collects each bonded pair once, with the lower index first.
+     */
+    private static final class PairCollector implements IntConsumer {
+        private final AtomTable table;
+        private final BondCriterion criterion;
+        private final UnitCell cell;
+        private int current;
+        private int count;
+        private int[] firsts;
+        private int[] seconds;
+
+        /**
+         * @param atoms
+         *            The structure being perceived.
+         * @param crit
+         *            The bond criterion to apply.
+         * @param unitCell
+         *            The periodic cell, or null.
+         */
+        private PairCollector(final AtomTable atoms, final BondCriterion crit,
+                final UnitCell unitCell) {
+            this.table = atoms;
+            this.criterion = crit;
+            this.cell = unitCell;
+            final int cap = Math.max(16, atoms.size() * 2);
+            this.firsts = new int[cap];
+            this.seconds = new int[cap];
+        }
+
+        @Override
+        public void accept(final int other) {
+            if (other <= current
+                    || !criterion.isBonded(table, current, other, cell)) {
+                return;
+            }
+            if (count == firsts.length) {
+                firsts = Arrays.copyOf(firsts, count * 2);
+                seconds = Arrays.copyOf(seconds, count * 2);
+            }
+            firsts[count] = current;
+            seconds[count++] = other;
+        }
+    }
+}
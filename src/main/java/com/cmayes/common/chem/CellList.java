@@ -0,0 +1,575 @@
+package com.cmayes.common.chem;
+
+import static com.cmayes.common.exception.ExceptionUtils.asNotNull;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.IntConsumer;
+
+import com.cmayes.common.model.Atom;
+import com.cmayes.common.model.AtomTable;
+import com.cmayes.common.util.ChemUtils;
+
+/**
+ * Uniform cell-list spatial index over a fixed set of atoms. The bounding box
+ * of the atoms is split into cells at least as wide as the cutoff, so every
+ * atom within the cutoff of a point lies in the point's cell or one of its 26
+ * neighbors. Atoms are counting-sorted by cell into flat arrays at build time,
+ * giving O(1) expected work per query for atoms at ordinary densities.
+ *
+ * Given a {@link UnitCell}, the index is periodic: cells tile the unit cell
+ * in fractional coordinates, neighbor cells wrap around its faces and
+ * distances are minimum-image, so atoms bonded across the boundary are found
+ * without replicating images. Positions need not be wrapped into the cell.
+ *
+ * The index does not track changes to the atoms it was built from; rebuild it
+ * when coordinates change.
+ *
+ * @author cmayes
+ */
+public class CellList {
+    /** Cap on the number of cells per atom to bound memory for sparse sets. */
+    private static final int MAX_CELLS_PER_ATOM = 8;
+
+    private final List<? extends Atom> atoms;
+    private final double cutoff;
+    /** The periodic cell, or null for an isolated structure. */
+    private final UnitCell unitCell;
+    private final double minX;
+    private final double minY;
+    private final double minZ;
+    private final double cellWidth;
+    private final int numX;
+    private final int numY;
+    private final int numZ;
+    /** Start offset in the sorted arrays for each cell plus an end marker. */
+    private final int[] cellStart;
+    /** Original atom index for each cell-sorted slot. */
+    private final int[] order;
+    private final double[] sortedX;
+    private final double[] sortedY;
+    private final double[] sortedZ;
+    private final byte[] sortedTypes;
+
+    /**
+     * Builds an index over the given atoms using {@link ChemUtils#BOND_LEN} as
+     * the cutoff.
+     *
+     * @param atoms
+     *            The atoms to index.
+     */
+    public CellList(final List<? extends Atom> atoms) {
+        this(atoms, ChemUtils.BOND_LEN);
+    }
+
+    /**
+     * Builds an index over the given atoms.
+     *
+     * @param atoms
+     *            The atoms to index.
+     * @param cutoff
+     *            The largest query radius the index will answer.
+     */
+    public CellList(final List<? extends Atom> atoms, final double cutoff) {
+        this(AtomTable.fromAtoms(asNotNull(atoms, "Atom list is null")), atoms,
+                cutoff, null);
+    }
+
+    /**
+     * Builds a periodic index over the given atoms.
+     *
+     * @param atoms
+     *            The atoms to index.
+     * @param cutoff
+     *            The largest query radius the index will answer; may not
+     *            exceed {@link UnitCell#getMaxCutoff()}.
+     * @param cell
+     *            The periodic cell.
+     */
+    public CellList(final List<? extends Atom> atoms, final double cutoff,
+            final UnitCell cell) {
+        this(AtomTable.fromAtoms(asNotNull(atoms, "Atom list is null")), atoms,
+                cutoff, asNotNull(cell, "Unit cell is null"));
+    }
+
+    /**
+     * Builds an index over the atoms in the given table.
+     *
+     * @param table
+     *            The table to index.
+     * @param cutoff
+     *            The largest query radius the index will answer.
+     */
+    public CellList(final AtomTable table, final double cutoff) {
+        this(table, table.asList(), cutoff, null);
+    }
+
+    /**
+     * Builds a periodic index over the atoms in the given table.
+     *
+     * @param table
+     *            The table to index.
+     * @param cutoff
+     *            The largest query radius the index will answer; may not
+     *            exceed {@link UnitCell#getMaxCutoff()}.
+     * @param cell
+     *            The periodic cell.
+     */
+    public CellList(final AtomTable table, final double cutoff,
+            final UnitCell cell) {
+        this(table, table.asList(), cutoff, asNotNull(cell,
+                "Unit cell is null"));
+    }
+
+    /**
+     * Builds the index.
+     *
+     * @param table
+     *            The coordinates to index.
+     * @param atomList
+     *            The atoms returned from queries, in table order.
+     * @param cutoffDist
+     *            The largest query radius the index will answer.
+     * @param cell
+     *            The periodic cell, or null.
+     */
+    private CellList(final AtomTable table,
+            final List<? extends Atom> atomList, final double cutoffDist,
+            final UnitCell cell) {
+        if (!(cutoffDist > 0)) {
+            throw new IllegalArgumentException("Cutoff must be positive: "
+                    + cutoffDist);
+        }
+        if (cell != null && cutoffDist > cell.getMaxCutoff()) {
+            throw new IllegalArgumentException(String.format(
+                    "Cutoff %s exceeds half the cell width %s", cutoffDist,
+                    cell.getMaxCutoff()));
+        }
+        this.atoms = atomList;
+        this.cutoff = cutoffDist;
+        this.unitCell = cell;
+        final int size = table.size();
+        final double[] xs;
+        final double[] ys;
+        final double[] zs;
+        if (cell == null) {
+            xs = table.getXs();
+            ys = table.getYs();
+            zs = table.getZs();
+        } else {
+            // Bin by wrapped fractional coordinates; cells then tile [0, 1).
+            xs = new double[size];
+            ys = new double[size];
+            zs = new double[size];
+            for (int i = 0; i < size; i++) {
+                final double x = table.getX(i);
+                final double y = table.getY(i);
+                final double z = table.getZ(i);
+                xs[i] = wrap(cell.fractionalA(x, y, z));
+                ys[i] = wrap(cell.fractionalB(y, z));
+                zs[i] = wrap(cell.fractionalC(z));
+            }
+        }
+
+        double loX = Double.POSITIVE_INFINITY;
+        double loY = Double.POSITIVE_INFINITY;
+        double loZ = Double.POSITIVE_INFINITY;
+        double hiX = Double.NEGATIVE_INFINITY;
+        double hiY = Double.NEGATIVE_INFINITY;
+        double hiZ = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < size; i++) {
+            loX = Math.min(loX, xs[i]);
+            loY = Math.min(loY, ys[i]);
+            loZ = Math.min(loZ, zs[i]);
+            hiX = Math.max(hiX, xs[i]);
+            hiY = Math.max(hiY, ys[i]);
+            hiZ = Math.max(hiZ, zs[i]);
+        }
+        if (size == 0 || cell != null) {
+            loX = 0;
+            loY = 0;
+            loZ = 0;
+            hiX = 0;
+            hiY = 0;
+            hiZ = 0;
+        }
+        this.minX = loX;
+        this.minY = loY;
+        this.minZ = loZ;
+
+        // Grow the cells past the cutoff when the box is sparse.
+        final long maxCells = Math.max(27L, (long) size * MAX_CELLS_PER_ATOM);
+        final double[] widths = cell == null ? null : cell.getWidths();
+        double width = cutoffDist;
+        long total;
+        int nx;
+        int ny;
+        int nz;
+        while (true) {
+            if (cell == null) {
+                nx = cellCount(hiX - loX, width);
+                ny = cellCount(hiY - loY, width);
+                nz = cellCount(hiZ - loZ, width);
+            } else {
+                nx = periodicCount(widths[0], width);
+                ny = periodicCount(widths[1], width);
+                nz = periodicCount(widths[2], width);
+            }
+            total = (long) nx * ny * nz;
+            if (total <= maxCells) {
+                break;
+            }
+            width *= Math.max(1.01, Math.cbrt((double) total / maxCells));
+        }
+        this.numX = nx;
+        this.numY = ny;
+        this.numZ = nz;
+        // Periodic cells are binned in fractional units.
+        this.cellWidth = cell == null ? width : Double.NaN;
+
+        // Counting sort of atoms by cell.
+        final int[] cellOf = new int[size];
+        this.cellStart = new int[(int) total + 1];
+        for (int i = 0; i < size; i++) {
+            final int idx;
+            if (cell == null) {
+                idx = cellIndex(cellCoord(xs[i], minX, cellWidth, numX),
+                        cellCoord(ys[i], minY, cellWidth, numY),
+                        cellCoord(zs[i], minZ, cellWidth, numZ));
+            } else {
+                idx = cellIndex(fracCoord(xs[i], numX),
+                        fracCoord(ys[i], numY), fracCoord(zs[i], numZ));
+            }
+            cellOf[i] = idx;
+            cellStart[idx + 1]++;
+        }
+        for (int c = 0; c < total; c++) {
+            cellStart[c + 1] += cellStart[c];
+        }
+        final int[] fill = Arrays.copyOf(cellStart, (int) total);
+        final byte[] types = table.getTypeOrdinals();
+        final double[] posX = table.getXs();
+        final double[] posY = table.getYs();
+        final double[] posZ = table.getZs();
+        this.order = new int[size];
+        this.sortedX = new double[size];
+        this.sortedY = new double[size];
+        this.sortedZ = new double[size];
+        this.sortedTypes = new byte[size];
+        for (int i = 0; i < size; i++) {
+            final int slot = fill[cellOf[i]]++;
+            order[slot] = i;
+            sortedX[slot] = posX[i];
+            sortedY[slot] = posY[i];
+            sortedZ[slot] = posZ[i];
+            sortedTypes[slot] = types[i];
+        }
+    }
+
+    /**
+     * @return The largest query radius this index answers.
+     */
+    public double getCutoff() {
+        return cutoff;
+    }
+
+    /**
+     * @return The periodic cell, or null if the index is not periodic.
+     */
+    public UnitCell getUnitCell() {
+        return unitCell;
+    }
+
+    /**
+     * @return The number of indexed atoms.
+     */
+    public int size() {
+        return order.length;
+    }
+
+    /**
+     * Returns the indexed atom at the given position of the list or table the
+     * index was built from.
+     *
+     * @param index
+     *            The atom index.
+     * @return The atom at the given index.
+     */
+    public Atom getAtom(final int index) {
+        return atoms.get(index);
+    }
+
+    /**
+     * Finds all indexed atoms of the given type within the cutoff of the
+     * given atom, in the order of the source list. Equivalent to
+     * {@link ChemUtils#findBondAtoms(Atom, List, AtomicElement)} against the
+     * indexed list when the cutoff is {@link ChemUtils#BOND_LEN}.
+     *
+     * @param tgtAtom
+     *            The atom to search around.
+     * @param elemType
+     *            The element type to search for.
+     * @return The matching atoms.
+     */
+    public List<Atom> findWithin(final Atom tgtAtom,
+            final AtomicElement elemType) {
+        final int[] found = findWithin(tgtAtom.getX(), tgtAtom.getY(),
+                tgtAtom.getZ(), elemType);
+        final List<Atom> founds = new ArrayList<Atom>(found.length);
+        for (int idx : found) {
+            founds.add(atoms.get(idx));
+        }
+        return founds;
+    }
+
+    /**
+     * Finds the indices of all indexed atoms of the given type within the
+     * cutoff of the given point.
+     *
+     * @param x
+     *            The X coordinate of the point.
+     * @param y
+     *            The Y coordinate of the point.
+     * @param z
+     *            The Z coordinate of the point.
+     * @param elemType
+     *            The element type to search for, or null for any type.
+     * @return The matching indices in ascending order.
+     */
+    public int[] findWithin(final double x, final double y, final double z,
+            final AtomicElement elemType) {
+        final IndexCollector collector = new IndexCollector();
+        forEachWithin(x, y, z, cutoff, elemType, collector);
+        final int[] found = collector.toArray();
+        Arrays.sort(found);
+        return found;
+    }
+
+    /**
+     * Passes the index of every indexed atom of the given type within the
+     * given radius of the point to the consumer. Indices are visited in cell
+     * order; nothing is allocated. Periodic indexes use minimum-image
+     * distances.
+     *
+     * @param x
+     *            The X coordinate of the point.
+     * @param y
+     *            The Y coordinate of the point.
+     * @param z
+     *            The Z coordinate of the point.
+     * @param radius
+     *            The search radius; may not exceed the cutoff.
+     * @param elemType
+     *            The element type to search for, or null for any type.
+     * @param consumer
+     *            Receives the matching indices.
+     */
+    public void forEachWithin(final double x, final double y, final double z,
+            final double radius, final AtomicElement elemType,
+            final IntConsumer consumer) {
+        if (radius > cutoff) {
+            throw new IllegalArgumentException(String.format(
+                    "Radius %s exceeds cell list cutoff %s", radius, cutoff));
+        }
+        final int want = elemType == null ? -1 : elemType.ordinal();
+        final double radSq = radius * radius;
+        if (unitCell != null) {
+            forEachPeriodic(x, y, z, radSq, want, consumer);
+            return;
+        }
+        final int cx = (int) Math.floor((x - minX) / cellWidth);
+        final int cy = (int) Math.floor((y - minY) / cellWidth);
+        final int cz = (int) Math.floor((z - minZ) / cellWidth);
+        final int loX = Math.max(0, cx - 1);
+        final int hiX = Math.min(numX - 1, cx + 1);
+        final int loY = Math.max(0, cy - 1);
+        final int hiY = Math.min(numY - 1, cy + 1);
+        final int loZ = Math.max(0, cz - 1);
+        final int hiZ = Math.min(numZ - 1, cz + 1);
+        for (int ix = loX; ix <= hiX; ix++) {
+            for (int iy = loY; iy <= hiY; iy++) {
+                // Cells along Z are adjacent in the sorted arrays.
+                final int first = cellIndex(ix, iy, loZ);
+                final int end = cellStart[first + hiZ - loZ + 1];
+                for (int slot = cellStart[first]; slot < end; slot++) {
+                    if (want >= 0 && sortedTypes[slot] != want) {
+                        continue;
+                    }
+                    final double dx = sortedX[slot] - x;
+                    final double dy = sortedY[slot] - y;
+                    final double dz = sortedZ[slot] - z;
+                    if (dx * dx + dy * dy + dz * dz <= radSq) {
+                        consumer.accept(order[slot]);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Visits matching atoms in the 27 cells around the point, wrapping across
+     * the cell faces; axes with fewer than three cells are visited once each.
+     *
+     * @param x
+     *            The X coordinate of the point.
+     * @param y
+     *            The Y coordinate of the point.
+     * @param z
+     *            The Z coordinate of the point.
+     * @param radSq
+     *            The squared search radius.
+     * @param want
+     *            The element ordinal to match, or -1 for any.
+     * @param consumer
+     *            Receives the matching indices.
+     */
+    private void forEachPeriodic(final double x, final double y,
+            final double z, final double radSq, final int want,
+            final IntConsumer consumer) {
+        final int cx = fracCoord(wrap(unitCell.fractionalA(x, y, z)), numX);
+        final int cy = fracCoord(wrap(unitCell.fractionalB(y, z)), numY);
+        final int cz = fracCoord(wrap(unitCell.fractionalC(z)), numZ);
+        final int spanX = Math.min(3, numX);
+        final int spanY = Math.min(3, numY);
+        final int spanZ = Math.min(3, numZ);
+        for (int ox = 0; ox < spanX; ox++) {
+            final int ix = neighborCoord(cx, ox, numX);
+            for (int oy = 0; oy < spanY; oy++) {
+                final int iy = neighborCoord(cy, oy, numY);
+                for (int oz = 0; oz < spanZ; oz++) {
+                    final int cell = cellIndex(ix, iy, neighborCoord(cz, oz,
+                            numZ));
+                    final int end = cellStart[cell + 1];
+                    for (int slot = cellStart[cell]; slot < end; slot++) {
+                        if (want >= 0 && sortedTypes[slot] != want) {
+                            continue;
+                        }
+                        if (unitCell.imageSq(sortedX[slot] - x, sortedY[slot]
+                                - y, sortedZ[slot] - z) <= radSq) {
+                            consumer.accept(order[slot]);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the flat index for the given cell coordinates.
+     *
+     * @param ix
+     *            The X cell.
+     * @param iy
+     *            The Y cell.
+     * @param iz
+     *            The Z cell.
+     * @return The flat cell index.
+     */
+    private int cellIndex(final int ix, final int iy, final int iz) {
+        return (ix * numY + iy) * numZ + iz;
+    }
+
+    /**
+     * Returns the number of cells needed to span the given extent.
+     *
+     * @param extent
+     *            The extent of the bounding box along one axis.
+     * @param width
+     *            The cell width.
+     * @return The number of cells.
+     */
+    private static int cellCount(final double extent, final double width) {
+        return (int) Math.floor(extent / width) + 1;
+    }
+
+    /**
+     * Returns the cell coordinate of a value inside the bounding box.
+     *
+     * @param val
+     *            The coordinate value.
+     * @param min
+     *            The minimum of the bounding box.
+     * @param width
+     *            The cell width.
+     * @param count
+     *            The number of cells.
+     * @return The cell coordinate.
+     */
+    private static int cellCoord(final double val, final double min,
+            final double width, final int count) {
+        return Math.min(count - 1, (int) ((val - min) / width));
+    }
+
+    /**
+     * Returns the number of periodic cells that fit across a face separation.
+     *
+     * @param faceWidth
+     *            The distance between opposite faces of the unit cell.
+     * @param width
+     *            The minimum cell width.
+     * @return The number of cells.
+     */
+    private static int periodicCount(final double faceWidth,
+            final double width) {
+        return Math.max(1, (int) Math.floor(faceWidth / width));
+    }
+
+    /**
+     * @param frac
+     *            A fractional coordinate.
+     * @return The coordinate wrapped into [0, 1).
+     */
+    private static double wrap(final double frac) {
+        return frac - Math.floor(frac);
+    }
+
+    /**
+     * @param frac
+     *            A wrapped fractional coordinate.
+     * @param count
+     *            The number of cells along the axis.
+     * @return The cell coordinate.
+     */
+    private static int fracCoord(final double frac, final int count) {
+        return Math.min(count - 1, (int) (frac * count));
+    }
+
+    /**
+     * @param center
+     *            The cell holding the query point.
+     * @param step
+     *            The neighbor step, from zero to two.
+     * @param count
+     *            The number of cells along the axis.
+     * @return The wrapped neighbor cell; every cell once when there are
+     *         fewer than three.
+     */
+    private static int neighborCoord(final int center, final int step,
+            final int count) {
+        return count < 3 ? step : (center + step - 1 + count) % count;
+    }
+
+    /**
+     * Gathers indices into a growable array.
+     */
+    private static final class IndexCollector implements IntConsumer {
+        private int[] vals = new int[8];
+        private int count;
+
+        @Override
+        public void accept(final int value) {
+            if (count == vals.length) {
+                vals = Arrays.copyOf(vals, count * 2);
+            }
+            vals[count++] = value;
+        }
+
+        /**
+         * @return The collected indices.
+         */
+        private int[] toArray() {
+            return Arrays.copyOf(vals, count);
+        }
+    }
+}
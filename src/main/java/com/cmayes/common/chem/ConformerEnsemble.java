@@ -0,0 +1,506 @@
+package com.cmayes.common.chem;
+
+import static com.cmayes.common.exception.ExceptionUtils.asNotNull;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import com.cmayes.common.exception.InvalidDataException;
+import com.cmayes.common.model.Atom;
+import com.cmayes.common.model.AtomTable;
+import com.cmayes.common.model.Coordinates;
+
+/**
+ * A set of conformers of one structure, with optimally superposed (Kabsch)
+ * RMSD between any two and clustering by RMSD. RMSDs are computed with the
+ * quaternion characteristic polynomial method (Theobald, Acta Cryst. A 2005,
+ * 61, 478; Liu et al., J. Comput. Chem. 2010, 31, 1561), which finds the
+ * minimum RMSD from the 3x3 inner product matrix without building a rotation.
+ *
+ * Each conformer is copied once into a centered, interleaved coordinate array
+ * along with its squared radius, which gives a lower bound on the RMSD to any
+ * other conformer for free; calls with a threshold use it to skip pairs that
+ * can't be within it. The clustering methods never hold the full matrix.
+ *
+ * Atoms are matched by position: conformer <code>k</code> atom
+ * <code>i</code> is compared with atom <code>i</code> of every other
+ * conformer. {@link #fromAtoms(List)} sorts each conformer with
+ * {@link AtomIdComparator} and checks the IDs line up.
+ *
+ * @author cmayes
+ */
+public final class ConformerEnsemble {
+    /** Relative precision of the QCP eigenvalue. */
+    private static final double EIGEN_PRECISION = 1e-11;
+    private static final int MAX_NEWTON = 50;
+    /** Leader counts below this are searched serially. */
+    private static final int PARALLEL_LEADERS = 256;
+
+    private final int atomCount;
+    private final double[][] coords;
+    private final double[] radiiSq;
+    private final double[] radii;
+
+    /**
+     * Creates an ensemble from conformers whose atoms are in the same order.
+     *
+     * @param conformers
+     *            The conformers; all must be the same size.
+     */
+    public ConformerEnsemble(final List<? extends Coordinates> conformers) {
+        asNotNull(conformers, "Conformers are null");
+        if (conformers.isEmpty()) {
+            throw new IllegalArgumentException("No conformers");
+        }
+        this.atomCount = asNotNull(conformers.get(0), "Conformer 0 is null")
+                .size();
+        if (atomCount == 0) {
+            throw new IllegalArgumentException("Conformers have no atoms");
+        }
+        final int count = conformers.size();
+        this.coords = new double[count][];
+        this.radiiSq = new double[count];
+        this.radii = new double[count];
+        for (int k = 0; k < count; k++) {
+            final Coordinates conf = asNotNull(conformers.get(k),
+                    "Conformer %d is null", k);
+            if (conf.size() != atomCount) {
+                throw new InvalidDataException(
+                        "Conformer %d has %d atoms, expected %d", k,
+                        conf.size(), atomCount);
+            }
+            coords[k] = center(conf);
+            double sq = 0;
+            for (double val : coords[k]) {
+                sq += val * val;
+            }
+            radiiSq[k] = sq;
+            radii[k] = Math.sqrt(sq);
+        }
+    }
+
+    /**
+     * Creates an ensemble from lists of atoms, matching atoms by ID.
+     *
+     * @param conformers
+     *            The conformers; each must contain the same atom IDs.
+     * @return The ensemble.
+     */
+    public static ConformerEnsemble fromAtoms(
+            final List<? extends Collection<? extends Atom>> conformers) {
+        asNotNull(conformers, "Conformers are null");
+        final AtomIdComparator byId = new AtomIdComparator();
+        final List<Coordinates> sorted = new ArrayList<Coordinates>(
+                conformers.size());
+        int[] ids = null;
+        for (int k = 0; k < conformers.size(); k++) {
+            final List<Atom> atoms = new ArrayList<Atom>(asNotNull(
+                    conformers.get(k), "Conformer %d is null", k));
+            Collections.sort(atoms, byId);
+            final int[] confIds = new int[atoms.size()];
+            for (int i = 0; i < confIds.length; i++) {
+                confIds[i] = atoms.get(i).getId();
+            }
+            if (ids == null) {
+                ids = confIds;
+            } else if (!Arrays.equals(ids, confIds)) {
+                throw new InvalidDataException(
+                        "Conformer %d atom IDs don't match conformer 0", k);
+            }
+            sorted.add(AtomTable.fromAtoms(atoms));
+        }
+        return new ConformerEnsemble(sorted);
+    }
+
+    /**
+     * @return The number of conformers.
+     */
+    public int size() {
+        return coords.length;
+    }
+
+    /**
+     * @return The number of atoms in each conformer.
+     */
+    public int getAtomCount() {
+        return atomCount;
+    }
+
+    /**
+     * @param first
+     *            The first conformer.
+     * @param second
+     *            The second conformer.
+     * @return The RMSD after optimal superposition.
+     */
+    public double rmsd(final int first, final int second) {
+        return qcp(coords[first], coords[second], radiiSq[first],
+                radiiSq[second]);
+    }
+
+    /**
+     * Returns the RMSD of two conformers if it is within a threshold.
+     *
+     * @param first
+     *            The first conformer.
+     * @param second
+     *            The second conformer.
+     * @param maxRmsd
+     *            The threshold.
+     * @return The RMSD after optimal superposition, or positive infinity if
+     *         it is greater than the threshold.
+     */
+    public double rmsd(final int first, final int second, final double maxRmsd) {
+        // The superposed inner product can't exceed |a||b|, so
+        // n * RMSD^2 >= |a|^2 + |b|^2 - 2|a||b| = (|a| - |b|)^2.
+        final double bound = Math.abs(radii[first] - radii[second]);
+        if (bound * bound > maxRmsd * maxRmsd * atomCount) {
+            return Double.POSITIVE_INFINITY;
+        }
+        final double val = rmsd(first, second);
+        return val <= maxRmsd ? val : Double.POSITIVE_INFINITY;
+    }
+
+    /**
+     * Computes the RMSD between every pair of conformers.
+     *
+     * @param parallel
+     *            Whether to compute rows in parallel.
+     * @return The condensed matrix: the RMSD of <code>i &lt; j</code> is at
+     *         {@link #condensedIndex(int, int, int)}.
+     */
+    public double[] rmsdMatrix(final boolean parallel) {
+        return rmsdMatrix(Double.POSITIVE_INFINITY, parallel);
+    }
+
+    /**
+     * Computes the RMSD between every pair of conformers, skipping pairs
+     * that are certainly more than a threshold apart.
+     *
+     * @param maxRmsd
+     *            The threshold.
+     * @param parallel
+     *            Whether to compute rows in parallel.
+     * @return The condensed matrix: the RMSD of <code>i &lt; j</code> is at
+     *         {@link #condensedIndex(int, int, int)}, or positive infinity
+     *         if it is greater than the threshold.
+     */
+    public double[] rmsdMatrix(final double maxRmsd, final boolean parallel) {
+        final int count = coords.length;
+        final long cells = (long) count * (count - 1) / 2;
+        if (cells > Integer.MAX_VALUE - 8) {
+            throw new IllegalStateException(String.format(
+                    "%d conformers are too many for a condensed matrix", count));
+        }
+        final double[] matrix = new double[(int) cells];
+        IntStream rows = IntStream.range(0, count);
+        if (parallel) {
+            rows = rows.parallel();
+        }
+        rows.forEach(i -> {
+            int idx = condensedIndex(count, i, i + 1);
+            for (int j = i + 1; j < count; j++) {
+                matrix[idx++] = rmsd(i, j, maxRmsd);
+            }
+        });
+        return matrix;
+    }
+
+    /**
+     * @param count
+     *            The number of conformers.
+     * @param first
+     *            The first conformer.
+     * @param second
+     *            The second conformer; must be greater than the first.
+     * @return The pair's position in a condensed matrix.
+     */
+    public static int condensedIndex(final int count, final int first,
+            final int second) {
+        return (int) ((long) first * (2L * count - first - 1) / 2 + second
+                - first - 1);
+    }
+
+    /**
+     * Leader clustering: each conformer in turn joins the first cluster
+     * whose leader is within the threshold, or leads a new cluster.
+     *
+     * @param maxRmsd
+     *            The threshold.
+     * @param parallel
+     *            Whether to compare against the leaders in parallel.
+     * @return The clusters in order of creation; the first member of each is
+     *         its leader.
+     */
+    public List<int[]> leaderCluster(final double maxRmsd,
+            final boolean parallel) {
+        final int count = coords.length;
+        final int[] leaders = new int[count];
+        final int[] assignments = new int[count];
+        final int[] sizes = new int[count];
+        int leaderCount = 0;
+        for (int i = 0; i < count; i++) {
+            final int conf = i;
+            final int found;
+            if (parallel && leaderCount >= PARALLEL_LEADERS) {
+                found = IntStream.range(0, leaderCount).parallel()
+                        .filter(c -> rmsd(leaders[c], conf, maxRmsd) <= maxRmsd)
+                        .findFirst().orElse(-1);
+            } else {
+                int match = -1;
+                for (int c = 0; c < leaderCount && match < 0; c++) {
+                    if (rmsd(leaders[c], conf, maxRmsd) <= maxRmsd) {
+                        match = c;
+                    }
+                }
+                found = match;
+            }
+            if (found < 0) {
+                leaders[leaderCount] = i;
+                assignments[i] = leaderCount++;
+            } else {
+                assignments[i] = found;
+            }
+            sizes[assignments[i]]++;
+        }
+        return collect(assignments, sizes, leaderCount);
+    }
+
+    /**
+     * Butina (Taylor-Butina) clustering: conformers with the most neighbors
+     * within the threshold become centroids first, taking all of their
+     * unassigned neighbors; conformers left with no unassigned neighbors
+     * form singletons.
+     *
+     * @param maxRmsd
+     *            The threshold.
+     * @param parallel
+     *            Whether to find neighbors in parallel.
+     * @return The clusters in order of creation; the first member of each is
+     *         its centroid.
+     */
+    public List<int[]> butinaCluster(final double maxRmsd,
+            final boolean parallel) {
+        final int count = coords.length;
+        // Neighbors above the diagonal for each row, then mirrored into
+        // compressed rows holding both directions.
+        final int[][] upper = new int[count][];
+        IntStream rows = IntStream.range(0, count);
+        if (parallel) {
+            rows = rows.parallel();
+        }
+        rows.forEach(i -> {
+            int[] found = new int[8];
+            int size = 0;
+            for (int j = i + 1; j < count; j++) {
+                if (rmsd(i, j, maxRmsd) <= maxRmsd) {
+                    if (size == found.length) {
+                        found = Arrays.copyOf(found, size * 2);
+                    }
+                    found[size++] = j;
+                }
+            }
+            upper[i] = Arrays.copyOf(found, size);
+        });
+        final int[] offsets = new int[count + 1];
+        for (int i = 0; i < count; i++) {
+            offsets[i + 1] += upper[i].length;
+            for (int j : upper[i]) {
+                offsets[j + 1]++;
+            }
+        }
+        for (int i = 0; i < count; i++) {
+            offsets[i + 1] += offsets[i];
+        }
+        final int[] neighbors = new int[offsets[count]];
+        final int[] fill = Arrays.copyOf(offsets, count);
+        for (int i = 0; i < count; i++) {
+            for (int j : upper[i]) {
+                neighbors[fill[i]++] = j;
+                neighbors[fill[j]++] = i;
+            }
+            upper[i] = null;
+        }
+
+        final Integer[] order = new Integer[count];
+        for (int i = 0; i < count; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> {
+            final int byCount = Integer.compare(offsets[b + 1] - offsets[b],
+                    offsets[a + 1] - offsets[a]);
+            return byCount != 0 ? byCount : Integer.compare(a, b);
+        });
+        final List<int[]> clusters = new ArrayList<int[]>();
+        final boolean[] assigned = new boolean[count];
+        final int[] members = new int[count];
+        for (int centroid : order) {
+            if (assigned[centroid]) {
+                continue;
+            }
+            assigned[centroid] = true;
+            int size = 0;
+            members[size++] = centroid;
+            for (int n = offsets[centroid]; n < offsets[centroid + 1]; n++) {
+                final int other = neighbors[n];
+                if (!assigned[other]) {
+                    assigned[other] = true;
+                    members[size++] = other;
+                }
+            }
+            clusters.add(Arrays.copyOf(members, size));
+        }
+        return clusters;
+    }
+
+    /**
+     * @param assignments
+     *            The cluster of each conformer.
+     * @param sizes
+     *            The size of each cluster.
+     * @param clusterCount
+     *            The number of clusters.
+     * @return The members of each cluster in conformer order.
+     */
+    private static List<int[]> collect(final int[] assignments,
+            final int[] sizes, final int clusterCount) {
+        final List<int[]> clusters = new ArrayList<int[]>(clusterCount);
+        final int[] fill = new int[clusterCount];
+        for (int c = 0; c < clusterCount; c++) {
+            clusters.add(new int[sizes[c]]);
+        }
+        for (int i = 0; i < assignments.length; i++) {
+            clusters.get(assignments[i])[fill[assignments[i]]++] = i;
+        }
+        return clusters;
+    }
+
+    /**
+     * @param conf
+     *            A conformer.
+     * @return Its positions, interleaved and shifted to the centroid.
+     */
+    private static double[] center(final Coordinates conf) {
+        final int size = conf.size();
+        double cx = 0;
+        double cy = 0;
+        double cz = 0;
+        for (int i = 0; i < size; i++) {
+            cx += conf.getX(i);
+            cy += conf.getY(i);
+            cz += conf.getZ(i);
+        }
+        cx /= size;
+        cy /= size;
+        cz /= size;
+        final double[] out = new double[size * 3];
+        for (int i = 0; i < size; i++) {
+            out[3 * i] = conf.getX(i) - cx;
+            out[3 * i + 1] = conf.getY(i) - cy;
+            out[3 * i + 2] = conf.getZ(i) - cz;
+        }
+        return out;
+    }
+
+    /**
+     * Computes the minimum RMSD of two centered conformers by the QCP method.
+     *
+     * @param a
+     *            The first conformer's interleaved coordinates.
+     * @param b
+     *            The second conformer's interleaved coordinates.
+     * @param ga
+     *            The first conformer's summed squared coordinates.
+     * @param gb
+     *            The second conformer's summed squared coordinates.
+     * @return The RMSD.
+     */
+    private static double qcp(final double[] a, final double[] b,
+            final double ga, final double gb) {
+        double sxx = 0;
+        double sxy = 0;
+        double sxz = 0;
+        double syx = 0;
+        double syy = 0;
+        double syz = 0;
+        double szx = 0;
+        double szy = 0;
+        double szz = 0;
+        for (int i = 0; i < a.length; i += 3) {
+            final double x1 = a[i];
+            final double y1 = a[i + 1];
+            final double z1 = a[i + 2];
+            final double x2 = b[i];
+            final double y2 = b[i + 1];
+            final double z2 = b[i + 2];
+            sxx += x1 * x2;
+            sxy += x1 * y2;
+            sxz += x1 * z2;
+            syx += y1 * x2;
+            syy += y1 * y2;
+            syz += y1 * z2;
+            szx += z1 * x2;
+            szy += z1 * y2;
+            szz += z1 * z2;
+        }
+        final double sxx2 = sxx * sxx;
+        final double syy2 = syy * syy;
+        final double szz2 = szz * szz;
+        final double sxy2 = sxy * sxy;
+        final double syz2 = syz * syz;
+        final double sxz2 = sxz * sxz;
+        final double syx2 = syx * syx;
+        final double szy2 = szy * szy;
+        final double szx2 = szx * szx;
+
+        final double syzSzymSyySzz2 = 2.0 * (syz * szy - syy * szz);
+        final double sxx2Syy2Szz2Syz2Szy2 = syy2 + szz2 - sxx2 + syz2 + szy2;
+        final double c2 = -2.0
+                * (sxx2 + syy2 + szz2 + sxy2 + syx2 + sxz2 + szx2 + syz2 + szy2);
+        final double c1 = 8.0 * (sxx * syz * szy + syy * szx * sxz + szz * sxy
+                * syx - sxx * syy * szz - syz * szx * sxy - szy * syx * sxz);
+        final double sxzpSzx = sxz + szx;
+        final double syzpSzy = syz + szy;
+        final double sxypSyx = sxy + syx;
+        final double syzmSzy = syz - szy;
+        final double sxzmSzx = sxz - szx;
+        final double sxymSyx = sxy - syx;
+        final double sxxpSyy = sxx + syy;
+        final double sxxmSyy = sxx - syy;
+        final double sxy2Sxz2Syx2Szx2 = sxy2 + sxz2 - syx2 - szx2;
+        final double c0 = sxy2Sxz2Syx2Szx2 * sxy2Sxz2Syx2Szx2
+                + (sxx2Syy2Szz2Syz2Szy2 + syzSzymSyySzz2)
+                * (sxx2Syy2Szz2Syz2Szy2 - syzSzymSyySzz2)
+                + (-sxzpSzx * syzmSzy + sxymSyx * (sxxmSyy - szz))
+                * (-sxzmSzx * syzpSzy + sxymSyx * (sxxmSyy + szz))
+                + (-sxzpSzx * syzpSzy - sxypSyx * (sxxpSyy - szz))
+                * (-sxzmSzx * syzmSzy - sxypSyx * (sxxpSyy + szz))
+                + (sxypSyx * syzpSzy + sxzpSzx * (sxxmSyy + szz))
+                * (-sxymSyx * syzmSzy + sxzpSzx * (sxxpSyy + szz))
+                + (sxypSyx * syzmSzy + sxzmSzx * (sxxmSyy - szz))
+                * (-sxymSyx * syzpSzy + sxzmSzx * (sxxpSyy - szz));
+
+        // Newton-Raphson from E0, which bounds the largest root from above.
+        final double e0 = (ga + gb) * 0.5;
+        double eigen = e0;
+        for (int i = 0; i < MAX_NEWTON; i++) {
+            final double prev = eigen;
+            final double x2 = eigen * eigen;
+            final double b2 = (x2 + c2) * eigen;
+            final double a2 = b2 + c1;
+            final double denom = 2.0 * x2 * eigen + b2 + a2;
+            if (denom == 0) {
+                break;
+            }
+            eigen -= (a2 * eigen + c0) / denom;
+            if (Math.abs(eigen - prev) <= Math.abs(EIGEN_PRECISION * eigen)) {
+                break;
+            }
+        }
+        return Math.sqrt(Math.abs(2.0 * (e0 - eigen) / (a.length / 3)));
+    }
+}
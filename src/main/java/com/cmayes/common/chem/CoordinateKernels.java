@@ -0,0 +1,223 @@
+package com.cmayes.common.chem;
+
+import org.apache.commons.math3.util.FastMath;
+
+/**
+ * Batch distance, cutoff and dihedral kernels over structure-of-arrays
+ * coordinates. On Java 17 and later the multi-release jar carries kernels
+ * built on the incubating Vector API, which process several positions per
+ * instruction; they are used when the JVM is started with
+ * <code>--add-modules jdk.incubator.vector</code>. Otherwise, or when the
+ * {@value #SCALAR_PROPERTY} system property is <code>true</code>, plain loops
+ * are used. Both give bitwise-identical results.
+ *
+ * @author cmayes
+ */
+public final class CoordinateKernels {
+    /** System property that forces the scalar kernels. */
+    public static final String SCALAR_PROPERTY = "cmayes.kernels.scalar";
+    /** Java 17+ implementation, present only in the versioned jar entries. */
+    private static final String VECTOR_IMPL = "com.cmayes.common.chem.VectorKernelSet";
+    private static final KernelSet IMPL = load();
+
+    /**
+     * Private constructor for util class.
+     */
+    private CoordinateKernels() {
+
+    }
+
+    /**
+     * @return Whether the Vector API kernels are in use.
+     */
+    public static boolean isVectorized() {
+        return !(IMPL instanceof ScalarKernelSet);
+    }
+
+    /**
+     * Writes the distance from a point to each position in a range.
+     *
+     * @param x
+     *            The point's X.
+     * @param y
+     *            The point's Y.
+     * @param z
+     *            The point's Z.
+     * @param xs
+     *            The X coordinates.
+     * @param ys
+     *            The Y coordinates.
+     * @param zs
+     *            The Z coordinates.
+     * @param from
+     *            The first position.
+     * @param to
+     *            One past the last position.
+     * @param out
+     *            Receives the distance to position <code>j</code> at
+     *            <code>outOffset + j - from</code>.
+     * @param outOffset
+     *            The output position for the first distance.
+     */
+    public static void distances(final double x, final double y,
+            final double z, final double[] xs, final double[] ys,
+            final double[] zs, final int from, final int to,
+            final double[] out, final int outOffset) {
+        checkRange(xs, ys, zs, from, to);
+        if (outOffset < 0 || out.length - outOffset < to - from) {
+            throw new IndexOutOfBoundsException(String.format(
+                    "Output of length %d can't hold %d values at %d",
+                    out.length, to - from, outOffset));
+        }
+        IMPL.distances(x, y, z, xs, ys, zs, from, to, out, outOffset);
+    }
+
+    /**
+     * Collects the positions in a range that are within the cutoff of a point.
+     *
+     * @param x
+     *            The point's X.
+     * @param y
+     *            The point's Y.
+     * @param z
+     *            The point's Z.
+     * @param xs
+     *            The X coordinates.
+     * @param ys
+     *            The Y coordinates.
+     * @param zs
+     *            The Z coordinates.
+     * @param from
+     *            The first position.
+     * @param to
+     *            One past the last position.
+     * @param cutoffSq
+     *            The squared cutoff (inclusive).
+     * @param out
+     *            Receives the matching positions in ascending order; must
+     *            hold <code>to - from</code> entries.
+     * @return The number of matches.
+     */
+    public static int within(final double x, final double y, final double z,
+            final double[] xs, final double[] ys, final double[] zs,
+            final int from, final int to, final double cutoffSq,
+            final int[] out) {
+        checkRange(xs, ys, zs, from, to);
+        if (out.length < to - from) {
+            throw new IndexOutOfBoundsException(String.format(
+                    "Output of length %d can't hold %d positions", out.length,
+                    to - from));
+        }
+        return IMPL.within(x, y, z, xs, ys, zs, from, to, cutoffSq, out);
+    }
+
+    /**
+     * Calculates the dihedral angles in degrees for a range of quadruplets,
+     * with the conventions of
+     * {@link com.cmayes.common.util.ChemUtils#calcDihedralAngle(double, double, double, double, double, double, double, double, double, double, double, double)}
+     * . Indices are not checked beyond the usual array bounds checks.
+     *
+     * @param xs
+     *            The X coordinates.
+     * @param ys
+     *            The Y coordinates.
+     * @param zs
+     *            The Z coordinates.
+     * @param first
+     *            The first atom index of each quadruplet.
+     * @param second
+     *            The second atom index of each quadruplet.
+     * @param third
+     *            The third atom index of each quadruplet.
+     * @param fourth
+     *            The fourth atom index of each quadruplet.
+     * @param results
+     *            Receives the angles.
+     * @param start
+     *            The first quadruplet to calculate.
+     * @param end
+     *            One past the last quadruplet to calculate.
+     */
+    public static void dihedrals(final double[] xs, final double[] ys,
+            final double[] zs, final int[] first, final int[] second,
+            final int[] third, final int[] fourth, final double[] results,
+            final int start, final int end) {
+        IMPL.dihedrals(xs, ys, zs, first, second, third, fourth, results,
+                start, end);
+    }
+
+    /**
+     * Turns the reduced terms of a dihedral into the angle, exactly as the
+     * scalar calculation does. Used by kernels that compute the terms for
+     * several quadruplets at once.
+     *
+     * @param dot
+     *            The dot product of the plane normals.
+     * @param normProd
+     *            The product of the normals' lengths.
+     * @param crossNorm
+     *            The length of the cross product of the normals.
+     * @param side
+     *            The dot product of the first normal with the fourth atom's
+     *            position; its sign is the angle's sign.
+     * @return The angle in degrees, or NaN if either plane is undefined.
+     */
+    static double dihedralAngle(final double dot, final double normProd,
+            final double crossNorm, final double side) {
+        if (normProd == 0) {
+            return Double.NaN;
+        }
+        final double threshold = normProd * 0.9999;
+        final double angle;
+        if (dot < -threshold || dot > threshold) {
+            final double sin = crossNorm / normProd;
+            angle = dot >= 0 ? FastMath.asin(sin) : FastMath.PI
+                    - FastMath.asin(sin);
+        } else {
+            angle = FastMath.acos(dot / normProd);
+        }
+        final double dhAngle = FastMath.toDegrees(angle);
+        return side < 0 ? -dhAngle : dhAngle;
+    }
+
+    /**
+     * Validates a coordinate range.
+     *
+     * @param xs
+     *            The X coordinates.
+     * @param ys
+     *            The Y coordinates.
+     * @param zs
+     *            The Z coordinates.
+     * @param from
+     *            The first position.
+     * @param to
+     *            One past the last position.
+     */
+    private static void checkRange(final double[] xs, final double[] ys,
+            final double[] zs, final int from, final int to) {
+        if (from < 0 || from > to || to > xs.length || to > ys.length
+                || to > zs.length) {
+            throw new IndexOutOfBoundsException(String.format(
+                    "Range %d-%d is outside the coordinates", from, to));
+        }
+    }
+
+    /**
+     * @return The vector kernels if they can be loaded, else the scalar ones.
+     */
+    private static KernelSet load() {
+        if (!Boolean.getBoolean(SCALAR_PROPERTY)) {
+            try {
+                return (KernelSet) Class.forName(VECTOR_IMPL)
+                        .getDeclaredConstructor().newInstance();
+            } catch (final ReflectiveOperationException e) {
+                // Java 8, not running from the multi-release jar, or no
+                // useful vector shape on this CPU.
+            } catch (final LinkageError e) {
+                // The jdk.incubator.vector module wasn't added.
+            }
+        }
+        return new ScalarKernelSet();
+    }
+}
@@ -0,0 +1,343 @@
+package com.cmayes.common.chem;
+
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+import com.cmayes.common.model.AtomTable;
+
+/**
+ * Pairwise distance calculations over coordinate arrays. Full matrices are
+ * returned in condensed (upper-triangular, row-major) form: the distance
+ * between atoms <code>i &lt; j</code> of <code>n</code> is at
+ * {@link #condensedIndex(int, int, int)}, the same layout as SciPy's
+ * <code>pdist</code>.
+ *
+ * Work is split into blocks of rows, and each block walks the columns in
+ * tiles small enough that the tile's coordinates stay in cache while every
+ * row of the block is compared against them; each row segment goes through
+ * {@link CoordinateKernels}. Blocks run on the common fork-join pool when
+ * parallel execution is requested.
+ *
+ * @author cmayes
+ */
+public final class DistanceMatrix {
+    /** Rows handled by one task. */
+    private static final int ROW_BLOCK = 64;
+    /** Columns whose coordinates are reused across a row block. */
+    private static final int COL_TILE = 512;
+    /** Largest atom count whose condensed matrix fits in a Java array. */
+    private static final int MAX_SIZE = 65536;
+
+    /**
+     * Private constructor for util class.
+     */
+    private DistanceMatrix() {
+
+    }
+
+    /**
+     * Returns the condensed index of the pair (i, j).
+     *
+     * @param size
+     *            The number of atoms.
+     * @param first
+     *            One atom index.
+     * @param second
+     *            The other atom index; must differ from the first.
+     * @return The position of the pair in a condensed matrix.
+     */
+    public static int condensedIndex(final int size, final int first,
+            final int second) {
+        if (first == second) {
+            throw new IllegalArgumentException(
+                    "No condensed entry for the diagonal index " + first);
+        }
+        final int low = Math.min(first, second);
+        final int high = Math.max(first, second);
+        return rowOffset(size, low) + high - low - 1;
+    }
+
+    /**
+     * Calculates the condensed distance matrix for the table's atoms.
+     *
+     * @param table
+     *            The atoms.
+     * @param parallel
+     *            Whether to use the common fork-join pool.
+     * @return The condensed distances.
+     */
+    public static double[] condensed(final AtomTable table,
+            final boolean parallel) {
+        return condensed(table.getXs(), table.getYs(), table.getZs(), parallel);
+    }
+
+    /**
+     * Calculates the condensed distance matrix for the given coordinates.
+     *
+     * @param xs
+     *            The X coordinates.
+     * @param ys
+     *            The Y coordinates.
+     * @param zs
+     *            The Z coordinates.
+     * @param parallel
+     *            Whether to use the common fork-join pool.
+     * @return The condensed distances.
+     */
+    public static double[] condensed(final double[] xs, final double[] ys,
+            final double[] zs, final boolean parallel) {
+        final int size = checkCoords(xs, ys, zs);
+        final double[] out = new double[condensedLength(size)];
+        blocks(size, parallel).forEach(
+                block -> fillBlock(xs, ys, zs, size, block, out, null));
+        return out;
+    }
+
+    /**
+     * Calculates the condensed distance matrix for the given coordinates in
+     * single precision, halving the memory of the result.
+     *
+     * @param xs
+     *            The X coordinates.
+     * @param ys
+     *            The Y coordinates.
+     * @param zs
+     *            The Z coordinates.
+     * @param parallel
+     *            Whether to use the common fork-join pool.
+     * @return The condensed distances.
+     */
+    public static float[] condensedFloat(final double[] xs, final double[] ys,
+            final double[] zs, final boolean parallel) {
+        final int size = checkCoords(xs, ys, zs);
+        final float[] out = new float[condensedLength(size)];
+        blocks(size, parallel).forEach(
+                block -> fillBlock(xs, ys, zs, size, block, null, out));
+        return out;
+    }
+
+    /**
+     * Finds every pair of atoms within the cutoff of each other without
+     * materializing the full matrix. Pairs are ordered by first and then
+     * second index.
+     *
+     * @param xs
+     *            The X coordinates.
+     * @param ys
+     *            The Y coordinates.
+     * @param zs
+     *            The Z coordinates.
+     * @param cutoff
+     *            The largest distance to report.
+     * @param parallel
+     *            Whether to use the common fork-join pool.
+     * @return The pairs within the cutoff.
+     */
+    public static PairList pairsWithin(final double[] xs, final double[] ys,
+            final double[] zs, final double cutoff, final boolean parallel) {
+        final int size = xs.length;
+        if (ys.length != size || zs.length != size) {
+            throw new IllegalArgumentException(
+                    "Coordinate arrays differ in length");
+        }
+        if (!(cutoff > 0)) {
+            throw new IllegalArgumentException("Cutoff must be positive: "
+                    + cutoff);
+        }
+        final double cutoffSq = cutoff * cutoff;
+        final Object[] parts = blocks(size, parallel).mapToObj(
+                block -> scanBlock(xs, ys, zs, size, block, cutoffSq))
+                .toArray();
+        int total = 0;
+        for (Object part : parts) {
+            total += ((PairBuffer) part).count;
+        }
+        final int[] firsts = new int[total];
+        final int[] seconds = new int[total];
+        final double[] dists = new double[total];
+        int pos = 0;
+        for (Object part : parts) {
+            final PairBuffer buf = (PairBuffer) part;
+            System.arraycopy(buf.firsts, 0, firsts, pos, buf.count);
+            System.arraycopy(buf.seconds, 0, seconds, pos, buf.count);
+            System.arraycopy(buf.dists, 0, dists, pos, buf.count);
+            pos += buf.count;
+        }
+        return new PairList(firsts, seconds, dists);
+    }
+
+    /**
+     * Fills the condensed entries for one block of rows.
+     *
+     * @param xs
+     *            The X coordinates.
+     * @param ys
+     *            The Y coordinates.
+     * @param zs
+     *            The Z coordinates.
+     * @param size
+     *            The number of atoms.
+     * @param block
+     *            The row block number.
+     * @param dblOut
+     *            The double output or null.
+     * @param fltOut
+     *            The float output or null.
+     */
+    private static void fillBlock(final double[] xs, final double[] ys,
+            final double[] zs, final int size, final int block,
+            final double[] dblOut, final float[] fltOut) {
+        final int rowStart = block * ROW_BLOCK;
+        final int rowEnd = Math.min(size, rowStart + ROW_BLOCK);
+        final double[] scratch = fltOut == null ? null : new double[COL_TILE];
+        for (int colStart = rowStart + 1; colStart < size; colStart += COL_TILE) {
+            final int colEnd = Math.min(size, colStart + COL_TILE);
+            for (int i = rowStart; i < rowEnd; i++) {
+                final int base = rowOffset(size, i) - i - 1;
+                final int jStart = Math.max(i + 1, colStart);
+                if (dblOut != null) {
+                    CoordinateKernels.distances(xs[i], ys[i], zs[i], xs, ys,
+                            zs, jStart, colEnd, dblOut, base + jStart);
+                } else {
+                    CoordinateKernels.distances(xs[i], ys[i], zs[i], xs, ys,
+                            zs, jStart, colEnd, scratch, 0);
+                    for (int j = jStart; j < colEnd; j++) {
+                        fltOut[base + j] = (float) scratch[j - jStart];
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Collects the pairs within the cutoff for one block of rows.
+     *
+     * @param xs
+     *            The X coordinates.
+     * @param ys
+     *            The Y coordinates.
+     * @param zs
+     *            The Z coordinates.
+     * @param size
+     *            The number of atoms.
+     * @param block
+     *            The row block number.
+     * @param cutoffSq
+     *            The squared cutoff.
+     * @return The block's pairs.
+     */
+    private static PairBuffer scanBlock(final double[] xs, final double[] ys,
+            final double[] zs, final int size, final int block,
+            final double cutoffSq) {
+        final PairBuffer buf = new PairBuffer();
+        final int rowStart = block * ROW_BLOCK;
+        final int rowEnd = Math.min(size, rowStart + ROW_BLOCK);
+        final int[] hits = new int[COL_TILE];
+        for (int i = rowStart; i < rowEnd; i++) {
+            final double xi = xs[i];
+            final double yi = ys[i];
+            final double zi = zs[i];
+            for (int colStart = i + 1; colStart < size; colStart += COL_TILE) {
+                final int numHits = CoordinateKernels.within(xi, yi, zi, xs,
+                        ys, zs, colStart, Math.min(size, colStart + COL_TILE),
+                        cutoffSq, hits);
+                for (int h = 0; h < numHits; h++) {
+                    final int j = hits[h];
+                    final double dx = xs[j] - xi;
+                    final double dy = ys[j] - yi;
+                    final double dz = zs[j] - zi;
+                    buf.add(i, j, Math.sqrt(dx * dx + dy * dy + dz * dz));
+                }
+            }
+        }
+        return buf;
+    }
+
+    /**
+     * @param size
+     *            The number of atoms.
+     * @param parallel
+     *            Whether the stream should be parallel.
+     * @return A stream of row block numbers.
+     */
+    private static IntStream blocks(final int size, final boolean parallel) {
+        final IntStream blocks = IntStream.range(0, (size + ROW_BLOCK - 1)
+                / ROW_BLOCK);
+        return parallel ? blocks.parallel() : blocks;
+    }
+
+    /**
+     * @param size
+     *            The number of atoms.
+     * @param row
+     *            The row.
+     * @return The condensed index of the entry (row, row + 1).
+     */
+    private static int rowOffset(final int size, final int row) {
+        return (int) ((long) row * size - (long) row * (row + 1) / 2);
+    }
+
+    /**
+     * @param size
+     *            The number of atoms.
+     * @return The length of the condensed matrix.
+     */
+    private static int condensedLength(final int size) {
+        return (int) ((long) size * (size - 1) / 2);
+    }
+
+    /**
+     * Validates coordinate arrays for a full matrix.
+     *
+     * @param xs
+     *            The X coordinates.
+     * @param ys
+     *            The Y coordinates.
+     * @param zs
+     *            The Z coordinates.
+     * @return The number of atoms.
+     */
+    private static int checkCoords(final double[] xs, final double[] ys,
+            final double[] zs) {
+        final int size = xs.length;
+        if (ys.length != size || zs.length != size) {
+            throw new IllegalArgumentException(
+                    "Coordinate arrays differ in length");
+        }
+        if (size > MAX_SIZE) {
+            throw new IllegalArgumentException(String.format(
+                    "%d atoms exceeds the condensed matrix limit of %d; "
+                            + "use pairsWithin", size, MAX_SIZE));
+        }
+        return size;
+    }
+
+    /**
+     * Growable buffer of pairs for one block.
+     */
+    private static final class PairBuffer {
+        private int[] firsts = new int[64];
+        private int[] seconds = new int[64];
+        private double[] dists = new double[64];
+        private int count;
+
+        /**
+         * @param first
+         *            The lower index.
+         * @param second
+         *            The higher index.
+         * @param dist
+         *            The distance.
+         */
+        private void add(final int first, final int second, final double dist) {
+            if (count == firsts.length) {
+                firsts = Arrays.copyOf(firsts, count * 2);
+                seconds = Arrays.copyOf(seconds, count * 2);
+                dists = Arrays.copyOf(dists, count * 2);
+            }
+            firsts[count] = first;
+            seconds[count] = second;
+            dists[count++] = dist;
+        }
+    }
+}
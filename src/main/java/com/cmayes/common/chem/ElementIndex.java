@@ -0,0 +1,329 @@
+package com.cmayes.common.chem;
+
+import static com.cmayes.common.exception.ExceptionUtils.asNotNull;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.RandomAccess;
+import java.util.function.IntConsumer;
+
+import com.cmayes.common.exception.NotFoundException;
+import com.cmayes.common.exception.TooManyException;
+import com.cmayes.common.model.Atom;
+import com.cmayes.common.model.AtomTable;
+
+/**
+ * Atom indices bucketed by element. The indices are counting-sorted by
+ * {@link AtomicElement} ordinal into one <code>int[]</code>, so the atoms of
+ * element <code>e</code> are <code>members[offsets[e.ordinal()]]</code>
+ * through <code>members[offsets[e.ordinal() + 1] - 1]</code> in ascending
+ * order, and "all oxygens" is a slice rather than a scan. Atoms with no type
+ * are left out.
+ *
+ * The index is a snapshot: rebuild it after changing atom types. An index
+ * built from a list can be wrapped with {@link #asList()}, which
+ * {@link com.cmayes.common.util.ChemUtils#findAllForType(AtomicElement, List)}
+ * and {@link com.cmayes.common.util.ChemUtils#findSingle(AtomicElement, List)}
+ * recognize and answer from the index.
+ *
+ * @author cmayes
+ */
+public final class ElementIndex {
+    private static final int ELEMENT_COUNT = AtomicElement.values().length;
+
+    private final int[] offsets;
+    private final int[] members;
+    private final Atom[] atoms;
+
+    /**
+     * @param offs
+     *            The per-element start offsets plus an end marker.
+     * @param mems
+     *            The atom indices grouped by element.
+     * @param source
+     *            The indexed atoms, or null for a table index.
+     */
+    private ElementIndex(final int[] offs, final int[] mems,
+            final Atom[] source) {
+        this.offsets = offs;
+        this.members = mems;
+        this.atoms = source;
+    }
+
+    /**
+     * Indexes the rows of the given table.
+     *
+     * @param table
+     *            The table to index.
+     * @return The index.
+     */
+    public static ElementIndex of(final AtomTable table) {
+        asNotNull(table, "Atom table is null");
+        final byte[] types = table.getTypeOrdinals();
+        final int[] offs = new int[ELEMENT_COUNT + 1];
+        for (byte type : types) {
+            if (type != AtomTable.NO_TYPE) {
+                offs[type + 1]++;
+            }
+        }
+        return new ElementIndex(offs, fill(offs, types), null);
+    }
+
+    /**
+     * Indexes the given atoms. The index keeps a copy of the list's atom
+     * references for {@link #asList()}.
+     *
+     * @param atoms
+     *            The atoms to index.
+     * @return The index.
+     */
+    public static ElementIndex of(final List<? extends Atom> atoms) {
+        asNotNull(atoms, "Atom list is null");
+        final Atom[] source = atoms.toArray(new Atom[atoms.size()]);
+        final byte[] types = new byte[source.length];
+        final int[] offs = new int[ELEMENT_COUNT + 1];
+        for (int i = 0; i < source.length; i++) {
+            final AtomicElement type = source[i].getType();
+            if (type == null) {
+                types[i] = AtomTable.NO_TYPE;
+            } else {
+                types[i] = (byte) type.ordinal();
+                offs[types[i] + 1]++;
+            }
+        }
+        return new ElementIndex(offs, fill(offs, types), source);
+    }
+
+    /**
+     * @param elemType
+     *            The element.
+     * @return The number of atoms of the element.
+     */
+    public int count(final AtomicElement elemType) {
+        final int ord = elemType.ordinal();
+        return offsets[ord + 1] - offsets[ord];
+    }
+
+    /**
+     * @param elemType
+     *            The element.
+     * @return The offset in {@link #getMembers()} of the element's first atom.
+     */
+    public int start(final AtomicElement elemType) {
+        return offsets[elemType.ordinal()];
+    }
+
+    /**
+     * @param elemType
+     *            The element.
+     * @return The offset in {@link #getMembers()} just past the element's last
+     *         atom.
+     */
+    public int end(final AtomicElement elemType) {
+        return offsets[elemType.ordinal() + 1];
+    }
+
+    /**
+     * @param elemType
+     *            The element.
+     * @return A copy of the indices of the element's atoms in ascending order.
+     */
+    public int[] indicesOf(final AtomicElement elemType) {
+        return Arrays.copyOfRange(members, start(elemType), end(elemType));
+    }
+
+    /**
+     * Passes the index of each atom of the given element, in ascending order,
+     * to the given consumer.
+     *
+     * @param elemType
+     *            The element.
+     * @param consumer
+     *            The consumer of atom indices.
+     */
+    public void forEach(final AtomicElement elemType,
+            final IntConsumer consumer) {
+        final int end = end(elemType);
+        for (int k = start(elemType); k < end; k++) {
+            consumer.accept(members[k]);
+        }
+    }
+
+    /**
+     * Returns the index of the single atom of the given element.
+     *
+     * @param elemType
+     *            The element.
+     * @return The atom index.
+     * @throws NotFoundException
+     *             When there is no atom of the element.
+     * @throws TooManyException
+     *             When there is more than one atom of the element.
+     */
+    public int singleIndex(final AtomicElement elemType) {
+        final int count = count(elemType);
+        if (count == 0) {
+            throw new NotFoundException("No atoms of type %s found",
+                    elemType.name());
+        }
+        if (count > 1) {
+            throw new TooManyException(
+                    "%d atoms of type %s found where 1 was expected", count,
+                    elemType.name());
+        }
+        return members[start(elemType)];
+    }
+
+    /**
+     * Returns a fixed-size view of the atoms of the given element from an
+     * index built over a list.
+     *
+     * @param elemType
+     *            The element.
+     * @return The atoms of the element in list order.
+     * @throws IllegalStateException
+     *             When the index was built over a table.
+     */
+    public List<Atom> atomsOf(final AtomicElement elemType) {
+        requireAtoms();
+        final int start = start(elemType);
+        final int size = end(elemType) - start;
+        return new Slice(start, size);
+    }
+
+    /**
+     * Returns a fixed-size list of the indexed atoms that carries this index,
+     * for the type searches in {@link com.cmayes.common.util.ChemUtils}.
+     *
+     * @return The indexed atoms.
+     * @throws IllegalStateException
+     *             When the index was built over a table.
+     */
+    public IndexedList asList() {
+        requireAtoms();
+        return new IndexedList(this);
+    }
+
+    /**
+     * Returns the backing offsets array; do not modify.
+     *
+     * @return The per-element start offsets into {@link #getMembers()} by
+     *         ordinal, plus an end marker.
+     */
+    public int[] getOffsets() {
+        return offsets;
+    }
+
+    /**
+     * Returns the backing members array; do not modify.
+     *
+     * @return The typed atom indices grouped by element.
+     */
+    public int[] getMembers() {
+        return members;
+    }
+
+    /**
+     * Groups the atom indices by type with the second pass of a counting
+     * sort.
+     *
+     * @param offs
+     *            The per-type counts, shifted one place up; turned into
+     *            offsets in place.
+     * @param types
+     *            The type ordinal of each atom.
+     * @return The grouped indices.
+     */
+    private static int[] fill(final int[] offs, final byte[] types) {
+        for (int e = 0; e < ELEMENT_COUNT; e++) {
+            offs[e + 1] += offs[e];
+        }
+        final int[] next = Arrays.copyOf(offs, ELEMENT_COUNT);
+        final int[] mems = new int[offs[ELEMENT_COUNT]];
+        for (int i = 0; i < types.length; i++) {
+            if (types[i] != AtomTable.NO_TYPE) {
+                mems[next[types[i]]++] = i;
+            }
+        }
+        return mems;
+    }
+
+    /**
+     * @throws IllegalStateException
+     *             When the index was built over a table.
+     */
+    private void requireAtoms() {
+        if (atoms == null) {
+            throw new IllegalStateException(
+                    "Index was built over a table; use the atom indices");
+        }
+    }
+
+    /**
+     * View of the atoms in one element's range of the members array.
+     */
+    private final class Slice extends AbstractList<Atom> implements
+            RandomAccess {
+        private final int start;
+        private final int size;
+
+        /**
+         * @param first
+         *            The offset of the first member.
+         * @param count
+         *            The number of members.
+         */
+        private Slice(final int first, final int count) {
+            this.start = first;
+            this.size = count;
+        }
+
+        @Override
+        public Atom get(final int index) {
+            if (index < 0 || index >= size) {
+                throw new IndexOutOfBoundsException("No atom at index "
+                        + index);
+            }
+            return atoms[members[start + index]];
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+    }
+
+    /**
+     * Fixed-size list of indexed atoms that carries its {@link ElementIndex}.
+     */
+    public static final class IndexedList extends AbstractList<Atom>
+            implements RandomAccess {
+        private final ElementIndex index;
+
+        /**
+         * @param elementIndex
+         *            The index over the atoms.
+         */
+        private IndexedList(final ElementIndex elementIndex) {
+            this.index = elementIndex;
+        }
+
+        /**
+         * @return The index over these atoms.
+         */
+        public ElementIndex getIndex() {
+            return index;
+        }
+
+        @Override
+        public Atom get(final int idx) {
+            return index.atoms[idx];
+        }
+
+        @Override
+        public int size() {
+            return index.atoms.length;
+        }
+    }
+}
@@ -0,0 +1,426 @@
+package com.cmayes.common.chem;
+
+import static com.cmayes.common.exception.ExceptionUtils.asNotNull;
+
+import java.util.Arrays;
+
+/**
+ * Packed per-element property table with constant-time lookups by atomic
+ * number, by {@link AtomicElement} ordinal and by chemical symbol. Properties
+ * are held in one primitive array in ordinal order (mass, covalent radius, van
+ * der Waals radius, electronegativity for each element), so bulk code can copy
+ * a column once and index it with the type ordinals of an
+ * {@link com.cmayes.common.model.AtomTable}.
+ *
+ * Sources:
+ * <ul>
+ * <li>Masses: {@link AtomicElement#getMass()}.</li>
+ * <li>Covalent radii: Cordero et al., Dalton Trans. 2008, 2832 (low-spin
+ * values for transition metals).</li>
+ * <li>Van der Waals radii: Bondi, J. Phys. Chem. 1964, 68, 441, with Mantina
+ * et al., J. Phys. Chem. A 2009, 113, 5806 for the main-group elements Bondi
+ * lacks; 2.0 Angstroms for the remaining transition metals.</li>
+ * <li>Electronegativities: Pauling scale (Allred 1961 revisions); NaN for
+ * helium, neon and argon, which have none.</li>
+ * </ul>
+ *
+ * Symbols are resolved with a perfect hash of the case-normalized first two
+ * characters, so parsers can look up a token straight from a byte buffer
+ * without building a String.
+ *
+ * @author cmayes
+ */
+public final class ElementTable {
+    /** The largest atomic number of any {@link AtomicElement}. */
+    public static final int MAX_NUMBER;
+
+    private static final double NA = Double.NaN;
+    private static final int MASS = 0;
+    private static final int COVALENT = 1;
+    private static final int VDW = 2;
+    private static final int ELECTRONEG = 3;
+    private static final int STRIDE = 4;
+    /**
+     * Covalent radius, van der Waals radius and electronegativity for each
+     * element in ordinal order.
+     */
+    private static final double[] SOURCE = {
+            0.31, 1.20, 2.20, // H
+            0.28, 1.40, NA, // He
+            1.28, 1.82, 0.98, // Li
+            0.96, 1.53, 1.57, // Be
+            0.84, 1.92, 2.04, // B
+            0.76, 1.70, 2.55, // C
+            0.71, 1.55, 3.04, // N
+            0.66, 1.52, 3.44, // O
+            0.57, 1.47, 3.98, // F
+            0.58, 1.54, NA, // Ne
+            1.66, 2.27, 0.93, // Na
+            1.41, 1.73, 1.31, // Mg
+            1.21, 1.84, 1.61, // Al
+            1.11, 2.10, 1.90, // Si
+            1.07, 1.80, 2.19, // P
+            1.05, 1.80, 2.58, // S
+            1.02, 1.75, 3.16, // Cl
+            1.06, 1.88, NA, // Ar
+            2.03, 2.75, 0.82, // K
+            1.76, 2.31, 1.00, // Ca
+            1.70, 2.00, 1.36, // Sc
+            1.60, 2.00, 1.54, // Ti
+            1.53, 2.00, 1.63, // V
+            1.39, 2.00, 1.66, // Cr
+            1.39, 2.00, 1.55, // Mn
+            1.32, 2.00, 1.83, // Fe
+            1.26, 2.00, 1.88, // Co
+            1.24, 1.63, 1.91, // Ni
+            1.32, 1.40, 1.90, // Cu
+            1.22, 1.39, 1.65, // Zn
+            1.22, 1.87, 1.81, // Ga
+            1.20, 2.11, 2.01, // Ge
+            1.19, 1.85, 2.18, // As
+            1.20, 1.90, 2.55, // Se
+            1.20, 1.85, 2.96, // Br
+            1.16, 2.02, 3.00, // Kr
+            2.20, 3.03, 0.82, // Rb
+            1.95, 2.49, 0.95, // Sr
+            1.90, 2.00, 1.22, // Y
+            1.75, 2.00, 1.33, // Zr
+            1.64, 2.00, 1.60, // Nb
+            1.54, 2.00, 2.16, // Mo
+            1.47, 2.00, 1.90, // Tc
+            1.46, 2.00, 2.20, // Ru
+            1.42, 2.00, 2.28, // Rh
+            1.39, 1.63, 2.20, // Pd
+            1.45, 1.72, 1.93, // Ag
+            1.44, 1.58, 1.69, // Cd
+            1.42, 1.93, 1.78, // In
+            1.39, 2.17, 1.96, // Sn
+            1.39, 2.06, 2.05, // Sb
+            1.38, 2.06, 2.10, // Te
+            1.39, 1.98, 2.66, // I
+            1.40, 2.16, 2.60, // Xe
+            2.44, 3.43, 0.79, // Cs
+            2.15, 2.68, 0.89, // Ba
+            1.87, 2.00, 1.27, // Lu
+            1.75, 2.00, 1.30, // Hf
+            1.70, 2.00, 1.50, // Ta
+            1.62, 2.00, 2.36, // W
+            1.51, 2.00, 1.90, // Re
+            1.44, 2.00, 2.20, // Os
+            1.41, 2.00, 2.20, // Ir
+            1.36, 1.72, 2.28, // Pt
+            1.36, 1.66, 2.54, // Au
+            1.32, 1.55, 2.00, // Hg
+            1.45, 1.96, 1.62, // Tl
+            1.46, 2.02, 2.33 // Pb
+    };
+    /** Alternative symbols accepted by the parser. */
+    private static final String[] ALIAS_SYMBOLS = { "Mn" };
+    /** The elements named by {@link #ALIAS_SYMBOLS}. */
+    private static final AtomicElement[] ALIAS_ELEMENTS = { AtomicElement.MANGANESE };
+    private static final int HASH_BITS = 9;
+
+    private static final AtomicElement[] ELEMENTS = AtomicElement.values();
+    private static final double[] PROPS = new double[ELEMENTS.length * STRIDE];
+    private static final byte[] ORDINAL_BY_NUMBER;
+    private static final AtomicElement[] BY_HASH = new AtomicElement[1 << HASH_BITS];
+    private static final int[] CODE_BY_HASH = new int[1 << HASH_BITS];
+    private static final int HASH_MULT;
+
+    static {
+        if (SOURCE.length != ELEMENTS.length * (STRIDE - 1)) {
+            throw new IllegalStateException(
+                    "Element property table doesn't match AtomicElement");
+        }
+        int maxNum = 0;
+        for (AtomicElement elem : ELEMENTS) {
+            final int base = elem.ordinal() * STRIDE;
+            PROPS[base + MASS] = elem.getMass();
+            System.arraycopy(SOURCE, elem.ordinal() * (STRIDE - 1), PROPS,
+                    base + COVALENT, STRIDE - 1);
+            maxNum = Math.max(maxNum, elem.getNumber());
+        }
+        MAX_NUMBER = maxNum;
+        ORDINAL_BY_NUMBER = new byte[maxNum + 1];
+        Arrays.fill(ORDINAL_BY_NUMBER, (byte) -1);
+        for (AtomicElement elem : ELEMENTS) {
+            ORDINAL_BY_NUMBER[elem.getNumber()] = (byte) elem.ordinal();
+        }
+
+        final int[] codes = new int[ELEMENTS.length + ALIAS_SYMBOLS.length];
+        final AtomicElement[] targets = new AtomicElement[codes.length];
+        for (AtomicElement elem : ELEMENTS) {
+            codes[elem.ordinal()] = code(elem.getSymbol());
+            targets[elem.ordinal()] = elem;
+        }
+        for (int i = 0; i < ALIAS_SYMBOLS.length; i++) {
+            codes[ELEMENTS.length + i] = code(ALIAS_SYMBOLS[i]);
+            targets[ELEMENTS.length + i] = ALIAS_ELEMENTS[i];
+        }
+        HASH_MULT = findMultiplier(codes);
+        Arrays.fill(CODE_BY_HASH, -1);
+        for (int i = 0; i < codes.length; i++) {
+            CODE_BY_HASH[hash(codes[i])] = codes[i];
+            BY_HASH[hash(codes[i])] = targets[i];
+        }
+    }
+
+    /**
+     * Private constructor for util class.
+     */
+    private ElementTable() {
+
+    }
+
+    /**
+     * Looks up an element by atomic number.
+     *
+     * @param number
+     *            The atomic number.
+     * @return The element.
+     * @throws IllegalArgumentException
+     *             If no element has the given number.
+     */
+    public static AtomicElement forNumber(final int number) {
+        final int ord = ordinalForNumber(number);
+        if (ord < 0) {
+            throw new IllegalArgumentException("No element number " + number);
+        }
+        return ELEMENTS[ord];
+    }
+
+    /**
+     * @param number
+     *            The atomic number.
+     * @return The ordinal of the element with the given number, or -1 if
+     *         there is none.
+     */
+    public static int ordinalForNumber(final int number) {
+        if (number < 0 || number > MAX_NUMBER) {
+            return -1;
+        }
+        return ORDINAL_BY_NUMBER[number];
+    }
+
+    /**
+     * @param ordinal
+     *            The element ordinal.
+     * @return The element.
+     */
+    public static AtomicElement forOrdinal(final int ordinal) {
+        return ELEMENTS[ordinal];
+    }
+
+    /**
+     * Resolves a chemical symbol, ignoring case.
+     *
+     * @param symbol
+     *            The symbol.
+     * @return The element.
+     * @throws IllegalArgumentException
+     *             If the symbol isn't recognized.
+     */
+    public static AtomicElement valueOfSymbol(final CharSequence symbol) {
+        final AtomicElement elem = lookupSymbol(asNotNull(symbol,
+                "Symbol is null"), 0, symbol.length());
+        if (elem == null) {
+            throw new IllegalArgumentException("No element for symbol "
+                    + symbol);
+        }
+        return elem;
+    }
+
+    /**
+     * Resolves a chemical symbol within a character sequence, ignoring case.
+     *
+     * @param chars
+     *            The characters.
+     * @param start
+     *            The index of the symbol's first character.
+     * @param end
+     *            One past the index of its last character.
+     * @return The element, or null if the range is not a known symbol.
+     */
+    public static AtomicElement lookupSymbol(final CharSequence chars,
+            final int start, final int end) {
+        switch (end - start) {
+        case 1:
+            return find(code(chars.charAt(start), 0));
+        case 2:
+            return find(code(chars.charAt(start), chars.charAt(start + 1)));
+        default:
+            return null;
+        }
+    }
+
+    /**
+     * Resolves an ASCII chemical symbol within a byte array, ignoring case.
+     *
+     * @param bytes
+     *            The bytes.
+     * @param off
+     *            The index of the symbol's first byte.
+     * @param len
+     *            The symbol's length.
+     * @return The element, or null if the range is not a known symbol.
+     */
+    public static AtomicElement lookupSymbol(final byte[] bytes,
+            final int off, final int len) {
+        switch (len) {
+        case 1:
+            return find(code(bytes[off] & 0xff, 0));
+        case 2:
+            return find(code(bytes[off] & 0xff, bytes[off + 1] & 0xff));
+        default:
+            return null;
+        }
+    }
+
+    /**
+     * @param elem
+     *            The element.
+     * @return The atomic mass.
+     */
+    public static double getMass(final AtomicElement elem) {
+        return PROPS[elem.ordinal() * STRIDE + MASS];
+    }
+
+    /**
+     * @param elem
+     *            The element.
+     * @return The single-bond covalent radius in Angstroms.
+     */
+    public static double getCovalentRadius(final AtomicElement elem) {
+        return PROPS[elem.ordinal() * STRIDE + COVALENT];
+    }
+
+    /**
+     * @param elem
+     *            The element.
+     * @return The van der Waals radius in Angstroms.
+     */
+    public static double getVdwRadius(final AtomicElement elem) {
+        return PROPS[elem.ordinal() * STRIDE + VDW];
+    }
+
+    /**
+     * @param elem
+     *            The element.
+     * @return The Pauling electronegativity, or NaN if it is undefined.
+     */
+    public static double getElectronegativity(final AtomicElement elem) {
+        return PROPS[elem.ordinal() * STRIDE + ELECTRONEG];
+    }
+
+    /**
+     * @return A new array of atomic masses indexed by element ordinal.
+     */
+    public static double[] masses() {
+        return column(MASS);
+    }
+
+    /**
+     * @return A new array of covalent radii indexed by element ordinal.
+     */
+    public static double[] covalentRadii() {
+        return column(COVALENT);
+    }
+
+    /**
+     * @return A new array of van der Waals radii indexed by element ordinal.
+     */
+    public static double[] vdwRadii() {
+        return column(VDW);
+    }
+
+    /**
+     * @return A new array of electronegativities indexed by element ordinal.
+     */
+    public static double[] electronegativities() {
+        return column(ELECTRONEG);
+    }
+
+    /**
+     * @param prop
+     *            The property offset.
+     * @return A copy of the property for every element in ordinal order.
+     */
+    private static double[] column(final int prop) {
+        final double[] col = new double[ELEMENTS.length];
+        for (int i = 0; i < col.length; i++) {
+            col[i] = PROPS[i * STRIDE + prop];
+        }
+        return col;
+    }
+
+    /**
+     * @param code
+     *            A symbol code.
+     * @return The element with the given code, or null.
+     */
+    private static AtomicElement find(final int code) {
+        final int slot = hash(code);
+        return CODE_BY_HASH[slot] == code ? BY_HASH[slot] : null;
+    }
+
+    /**
+     * @param symbol
+     *            A one- or two-character symbol.
+     * @return The symbol's code.
+     */
+    private static int code(final String symbol) {
+        return code(symbol.charAt(0), symbol.length() > 1 ? symbol.charAt(1)
+                : 0);
+    }
+
+    /**
+     * Packs two characters into a code, upper-casing the first and
+     * lower-casing the second. Only ASCII letters map onto letter codes, so
+     * other characters can never match a symbol.
+     *
+     * @param first
+     *            The first character.
+     * @param second
+     *            The second character, or zero for one-letter symbols.
+     * @return The code.
+     */
+    private static int code(final int first, final int second) {
+        return (first & ~0x20) << 16 | (second == 0 ? 0 : second | 0x20);
+    }
+
+    /**
+     * @param code
+     *            A symbol code.
+     * @return The code's slot.
+     */
+    private static int hash(final int code) {
+        return (code * HASH_MULT) >>> (Integer.SIZE - HASH_BITS);
+    }
+
+    /**
+     * Finds a multiplier that maps every code to a distinct slot.
+     *
+     * @param codes
+     *            The symbol codes.
+     * @return The multiplier.
+     */
+    private static int findMultiplier(final int[] codes) {
+        final boolean[] used = new boolean[1 << HASH_BITS];
+        for (int mult = 0x9E3779B1, tries = 0; tries < 1000000; mult += 2, tries++) {
+            Arrays.fill(used, false);
+            boolean perfect = true;
+            for (int code : codes) {
+                final int slot = (code * mult) >>> (Integer.SIZE - HASH_BITS);
+                if (used[slot]) {
+                    perfect = false;
+                    break;
+                }
+                used[slot] = true;
+            }
+            if (perfect) {
+                return mult;
+            }
+        }
+        throw new IllegalStateException("No perfect hash for element symbols");
+    }
+}
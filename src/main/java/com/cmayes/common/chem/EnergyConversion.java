@@ -0,0 +1,209 @@
+package com.cmayes.common.chem;
+
+import static com.cmayes.common.exception.ExceptionUtils.asNotNull;
+
+import java.nio.DoubleBuffer;
+import java.util.stream.IntStream;
+
+/**
+ * A conversion between two {@link EnergyUnit}s with its factor composed once,
+ * applied in place to single values, array ranges and buffer ranges. Ranges
+ * longer than {@link #PARALLEL_THRESHOLD} are split into chunks across the
+ * common pool.
+ *
+ * Instances are immutable and thread-safe.
+ *
+ * @author cmayes
+ */
+public final class EnergyConversion {
+    /** Ranges longer than this are converted in parallel. */
+    public static final int PARALLEL_THRESHOLD = 1 << 16;
+    /** Values handed to each task by parallel conversions. */
+    private static final int CHUNK = 1 << 14;
+
+    private final EnergyUnit source;
+    private final EnergyUnit target;
+    private final double factor;
+
+    /**
+     * @param from
+     *            The unit converted from.
+     * @param to
+     *            The unit converted to.
+     */
+    public EnergyConversion(final EnergyUnit from, final EnergyUnit to) {
+        this.source = asNotNull(from, "Source unit is null");
+        this.target = asNotNull(to, "Target unit is null");
+        this.factor = from.factorTo(to);
+    }
+
+    /**
+     * @return The unit converted from.
+     */
+    public EnergyUnit getSource() {
+        return source;
+    }
+
+    /**
+     * @return The unit converted to.
+     */
+    public EnergyUnit getTarget() {
+        return target;
+    }
+
+    /**
+     * @return The multiplier applied to each value.
+     */
+    public double getFactor() {
+        return factor;
+    }
+
+    /**
+     * @return The reverse conversion.
+     */
+    public EnergyConversion inverse() {
+        return new EnergyConversion(target, source);
+    }
+
+    /**
+     * @param value
+     *            A value in the source unit.
+     * @return The value in the target unit.
+     */
+    public double apply(final double value) {
+        return value * factor;
+    }
+
+    /**
+     * Converts every value of the array in place.
+     *
+     * @param values
+     *            The values to convert.
+     */
+    public void apply(final double[] values) {
+        apply(values, 0, values.length);
+    }
+
+    /**
+     * Converts a range of the array in place.
+     *
+     * @param values
+     *            The values to convert.
+     * @param from
+     *            The index of the first value.
+     * @param to
+     *            One past the index of the last value.
+     */
+    public void apply(final double[] values, final int from, final int to) {
+        checkRange(from, to, values.length);
+        if (factor == 1) {
+            return;
+        }
+        if (to - from <= PARALLEL_THRESHOLD) {
+            scale(values, from, to);
+            return;
+        }
+        final int chunks = (to - from + CHUNK - 1) / CHUNK;
+        IntStream.range(0, chunks).parallel().forEach(chunk -> {
+            final int start = from + chunk * CHUNK;
+            scale(values, start, Math.min(to, start + CHUNK));
+        });
+    }
+
+    /**
+     * Converts the buffer's remaining values in place, leaving its position
+     * unchanged.
+     *
+     * @param values
+     *            The values to convert.
+     */
+    public void apply(final DoubleBuffer values) {
+        apply(values, values.position(), values.limit());
+    }
+
+    /**
+     * Converts a range of the buffer in place using absolute indices; the
+     * buffer's position and limit are unchanged.
+     *
+     * @param values
+     *            The values to convert.
+     * @param from
+     *            The index of the first value.
+     * @param to
+     *            One past the index of the last value.
+     */
+    public void apply(final DoubleBuffer values, final int from,
+            final int to) {
+        checkRange(from, to, values.limit());
+        if (factor == 1) {
+            return;
+        }
+        if (values.hasArray()) {
+            final int offset = values.arrayOffset();
+            apply(values.array(), offset + from, offset + to);
+            return;
+        }
+        if (to - from <= PARALLEL_THRESHOLD) {
+            scale(values, from, to);
+            return;
+        }
+        final int chunks = (to - from + CHUNK - 1) / CHUNK;
+        IntStream.range(0, chunks).parallel().forEach(chunk -> {
+            final int start = from + chunk * CHUNK;
+            scale(values, start, Math.min(to, start + CHUNK));
+        });
+    }
+
+    @Override
+    public String toString() {
+        return String.format("EnergyConversion[%s -> %s, factor=%s]", source,
+                target, factor);
+    }
+
+    /**
+     * @param values
+     *            The values to scale.
+     * @param from
+     *            The index of the first value.
+     * @param to
+     *            One past the index of the last value.
+     */
+    private void scale(final double[] values, final int from, final int to) {
+        final double mult = factor;
+        for (int i = from; i < to; i++) {
+            values[i] *= mult;
+        }
+    }
+
+    /**
+     * @param values
+     *            The values to scale.
+     * @param from
+     *            The index of the first value.
+     * @param to
+     *            One past the index of the last value.
+     */
+    private void scale(final DoubleBuffer values, final int from,
+            final int to) {
+        final double mult = factor;
+        for (int i = from; i < to; i++) {
+            values.put(i, values.get(i) * mult);
+        }
+    }
+
+    /**
+     * @param from
+     *            The index of the first value.
+     * @param to
+     *            One past the index of the last value.
+     * @param length
+     *            The number of values available.
+     */
+    private static void checkRange(final int from, final int to,
+            final int length) {
+        if (from < 0 || to > length || from > to) {
+            throw new IndexOutOfBoundsException(String.format(
+                    "Range [%d, %d) is outside [0, %d)", from, to, length));
+        }
+    }
+}
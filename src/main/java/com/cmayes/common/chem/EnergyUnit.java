@@ -0,0 +1,73 @@
+package com.cmayes.common.chem;
+
+import com.cmayes.common.chem.PhysicalConstants.Conversions;
+
+/**
+ * Units of energy, each defined by its size in Hartrees from the values in
+ * {@link PhysicalConstants}. Use {@link #to(EnergyUnit)} for a conversion
+ * that can be applied in bulk.
+ *
+ * @author cmayes
+ */
+public enum EnergyUnit {
+    /** Hartrees per particle. */
+    HARTREE(1),
+    /** Thermochemical kilocalories per mole. */
+    KCAL_MOL(1 / Conversions.HARTREE_TO_KCALTH),
+    /** Kilojoules per mole. */
+    KJ_MOL(1 / (Conversions.HARTREE_TO_KCALTH * Conversions.CALTH_TO_JOULE)),
+    /** Electron volts per particle. */
+    EV(PhysicalConstants.ELEM_CHARGE / Conversions.HARTREES_TO_JOULES),
+    /** Wavenumbers (cm^-1). */
+    WAVENUMBER(PhysicalConstants.PLANCK * PhysicalConstants.LIGHT_CM
+            / Conversions.HARTREES_TO_JOULES),
+    /** Joules per particle. */
+    JOULE(1 / Conversions.HARTREES_TO_JOULES);
+
+    private final double hartrees;
+
+    /**
+     * @param size
+     *            The size of one unit in Hartrees.
+     */
+    private EnergyUnit(final double size) {
+        this.hartrees = size;
+    }
+
+    /**
+     * @return The size of one unit in Hartrees.
+     */
+    public double getHartrees() {
+        return hartrees;
+    }
+
+    /**
+     * @param target
+     *            The unit to convert to.
+     * @return The number to multiply by to convert values in this unit to the
+     *         target unit.
+     */
+    public double factorTo(final EnergyUnit target) {
+        return this == target ? 1 : hartrees / target.hartrees;
+    }
+
+    /**
+     * @param value
+     *            A value in this unit.
+     * @param target
+     *            The unit to convert to.
+     * @return The value in the target unit.
+     */
+    public double convert(final double value, final EnergyUnit target) {
+        return value * factorTo(target);
+    }
+
+    /**
+     * @param target
+     *            The unit to convert to.
+     * @return A conversion from this unit to the target unit.
+     */
+    public EnergyConversion to(final EnergyUnit target) {
+        return new EnergyConversion(this, target);
+    }
+}
@@ -0,0 +1,338 @@
+package com.cmayes.common.chem;
+
+import static com.cmayes.common.exception.ExceptionUtils.asNotNull;
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+import com.cmayes.common.model.AtomTable;
+
+/**
+ * The connected components (molecules or fragments) of a bonded structure.
+ * Components are found with a union-find over <code>int[]</code> parent
+ * arrays (union by size with path halving), fed either from a single
+ * cell-list pass over the coordinates or from existing bonds, so no bond list
+ * or graph has to be materialized.
+ *
+ * Fragments are numbered in order of their lowest atom index. The atoms of
+ * fragment <code>f</code> are <code>members[offsets[f]]</code> through
+ * <code>members[offsets[f + 1] - 1]</code> in ascending order.
+ *
+ * @author cmayes
+ */
+public final class Fragments {
+    private final int[] labels;
+    private final int[] offsets;
+    private final int[] members;
+
+    /**
+     * @param atomLabels
+     *            The fragment of each atom.
+     * @param offs
+     *            The per-fragment start offsets plus an end marker.
+     * @param mems
+     *            The atom indices grouped by fragment.
+     */
+    private Fragments(final int[] atomLabels, final int[] offs,
+            final int[] mems) {
+        this.labels = atomLabels;
+        this.offsets = offs;
+        this.members = mems;
+    }
+
+    /**
+     * Finds the fragments of the atoms in the given table using
+     * {@link BondCriterion#DEFAULT}.
+     *
+     * @param table
+     *            The structure to split.
+     * @return The fragments.
+     */
+    public static Fragments find(final AtomTable table) {
+        return find(table, BondCriterion.DEFAULT, null);
+    }
+
+    /**
+     * Finds the fragments of the atoms in the given table, optionally in a
+     * periodic cell, in one neighbor-search pass.
+     *
+     * @param table
+     *            The structure to split.
+     * @param criterion
+     *            The bond criterion to apply.
+     * @param cell
+     *            The periodic cell, or null for an isolated structure.
+     * @return The fragments.
+     */
+    public static Fragments find(final AtomTable table,
+            final BondCriterion criterion, final UnitCell cell) {
+        asNotNull(table, "Atom table is null");
+        asNotNull(criterion, "Bond criterion is null");
+        final double reach = BondGraph.reach(table, criterion);
+        final CellList cells = cell == null ? new CellList(table, reach)
+                : new CellList(table, reach, cell);
+        final BondUnion union = new BondUnion(table, criterion, cell);
+        final double[] xs = table.getXs();
+        final double[] ys = table.getYs();
+        final double[] zs = table.getZs();
+        for (int i = 0; i < xs.length; i++) {
+            union.current = i;
+            cells.forEachWithin(xs[i], ys[i], zs[i], reach, null, union);
+        }
+        return fromParents(union.parents);
+    }
+
+    /**
+     * Finds the fragments of a perceived bond graph.
+     *
+     * @param graph
+     *            The bond graph.
+     * @return The fragments.
+     */
+    public static Fragments fromGraph(final BondGraph graph) {
+        asNotNull(graph, "Bond graph is null");
+        final int[] offs = graph.getOffsets();
+        final int[] nbrs = graph.getNeighbors();
+        final int[] parents = identity(graph.size());
+        final int[] sizes = new int[parents.length];
+        for (int i = 0; i < parents.length; i++) {
+            for (int k = offs[i]; k < offs[i + 1]; k++) {
+                if (nbrs[k] > i) {
+                    union(parents, sizes, i, nbrs[k]);
+                }
+            }
+        }
+        return fromParents(parents);
+    }
+
+    /**
+     * Finds the fragments defined by a list of bonded pairs.
+     *
+     * @param atomCount
+     *            The number of atoms.
+     * @param firsts
+     *            The first atom of each pair.
+     * @param seconds
+     *            The second atom of each pair.
+     * @param count
+     *            The number of pairs.
+     * @return The fragments.
+     */
+    public static Fragments fromPairs(final int atomCount, final int[] firsts,
+            final int[] seconds, final int count) {
+        if (count > firsts.length || count > seconds.length) {
+            throw new IllegalArgumentException(String.format(
+                    "%d pairs requested from arrays of %d and %d", count,
+                    firsts.length, seconds.length));
+        }
+        final int[] parents = identity(atomCount);
+        final int[] sizes = new int[atomCount];
+        for (int p = 0; p < count; p++) {
+            union(parents, sizes, firsts[p], seconds[p]);
+        }
+        return fromParents(parents);
+    }
+
+    /**
+     * @return The number of atoms.
+     */
+    public int size() {
+        return labels.length;
+    }
+
+    /**
+     * @return The number of fragments.
+     */
+    public int getFragmentCount() {
+        return offsets.length - 1;
+    }
+
+    /**
+     * @param atomIdx
+     *            The atom index.
+     * @return The fragment holding the atom.
+     */
+    public int fragmentOf(final int atomIdx) {
+        return labels[atomIdx];
+    }
+
+    /**
+     * @param fragment
+     *            The fragment.
+     * @return The number of atoms in the fragment.
+     */
+    public int fragmentSize(final int fragment) {
+        return offsets[fragment + 1] - offsets[fragment];
+    }
+
+    /**
+     * @param fragment
+     *            The fragment.
+     * @return The atom indices of the fragment in ascending order.
+     */
+    public int[] atomsOf(final int fragment) {
+        return Arrays.copyOfRange(members, offsets[fragment],
+                offsets[fragment + 1]);
+    }
+
+    /**
+     * Returns the backing labels array; do not modify.
+     *
+     * @return The fragment of each atom.
+     */
+    public int[] getLabels() {
+        return labels;
+    }
+
+    /**
+     * Returns the backing offsets array; do not modify.
+     *
+     * @return The per-fragment start offsets into {@link #getMembers()} plus
+     *         an end marker.
+     */
+    public int[] getOffsets() {
+        return offsets;
+    }
+
+    /**
+     * Returns the backing members array; do not modify.
+     *
+     * @return The atom indices grouped by fragment.
+     */
+    public int[] getMembers() {
+        return members;
+    }
+
+    /**
+     * Labels the components of a union-find forest and groups their atoms
+     * with a counting sort.
+     *
+     * @param parents
+     *            The parent array; compressed in place.
+     * @return The fragments.
+     */
+    private static Fragments fromParents(final int[] parents) {
+        final int size = parents.length;
+        final int[] labels = new int[size];
+        int count = 0;
+        // A fragment's label is assigned when its lowest atom is reached.
+        final int[] rootLabel = new int[size];
+        Arrays.fill(rootLabel, -1);
+        for (int i = 0; i < size; i++) {
+            final int root = find(parents, i);
+            if (rootLabel[root] < 0) {
+                rootLabel[root] = count++;
+            }
+            labels[i] = rootLabel[root];
+        }
+        final int[] offs = new int[count + 1];
+        for (int label : labels) {
+            offs[label + 1]++;
+        }
+        for (int f = 0; f < count; f++) {
+            offs[f + 1] += offs[f];
+        }
+        final int[] fill = Arrays.copyOf(offs, count);
+        final int[] mems = new int[size];
+        for (int i = 0; i < size; i++) {
+            mems[fill[labels[i]]++] = i;
+        }
+        return new Fragments(labels, offs, mems);
+    }
+
+    /**
+     * @param size
+     *            The number of atoms.
+     * @return A forest of singletons.
+     */
+    private static int[] identity(final int size) {
+        final int[] parents = new int[size];
+        for (int i = 0; i < size; i++) {
+            parents[i] = i;
+        }
+        return parents;
+    }
+
+    /**
+     * Finds the root of an atom's tree, halving the path on the way.
+     *
+     * @param parents
+     *            The parent array.
+     * @param atom
+     *            The atom.
+     * @return The root.
+     */
+    private static int find(final int[] parents, final int atom) {
+        int node = atom;
+        while (parents[node] != node) {
+            parents[node] = parents[parents[node]];
+            node = parents[node];
+        }
+        return node;
+    }
+
+    /**
+     * Joins the trees of two atoms, hanging the smaller under the larger.
+     *
+     * @param parents
+     *            The parent array.
+     * @param sizes
+     *            The tree sizes less one, valid at the roots.
+     * @param first
+     *            The first atom.
+     * @param second
+     *            The second atom.
+     */
+    private static void union(final int[] parents, final int[] sizes,
+            final int first, final int second) {
+        int rootA = find(parents, first);
+        int rootB = find(parents, second);
+        if (rootA == rootB) {
+            return;
+        }
+        if (sizes[rootA] < sizes[rootB]) {
+            final int tmp = rootA;
+            rootA = rootB;
+            rootB = tmp;
+        }
+        parents[rootB] = rootA;
+        sizes[rootA] += sizes[rootB] + 1;
+    }
+
+    /**
+     * Unions each bonded pair as the neighbor search reports it.
+     */
+    private static final class BondUnion implements IntConsumer {
+        private final AtomTable table;
+        private final BondCriterion criterion;
+        private final UnitCell cell;
+        private final int[] parents;
+        private final int[] sizes;
+        private int current;
+
+        /**
+         * @param atoms
+         *            The structure being split.
+         * @param crit
+         *            The bond criterion to apply.
+         * @param unitCell
+         *            The periodic cell, or null.
+         */
+        private BondUnion(final AtomTable atoms, final BondCriterion crit,
+                final UnitCell unitCell) {
+            this.table = atoms;
+            this.criterion = crit;
+            this.cell = unitCell;
+            this.parents = identity(atoms.size());
+            this.sizes = new int[atoms.size()];
+        }
+
+        @Override
+        public void accept(final int other) {
+            if (other > current
+                    && criterion.isBonded(table, current, other, cell)) {
+                union(parents, sizes, current, other);
+            }
+        }
+    }
+}
@@ -0,0 +1,452 @@
+package com.cmayes.common.chem;
+
+import static com.cmayes.common.exception.ExceptionUtils.asNotNull;
+
+import java.util.Arrays;
+
+import org.apache.commons.math3.linear.Array2DRowRealMatrix;
+import org.apache.commons.math3.linear.EigenDecomposition;
+import org.apache.commons.math3.linear.RealVector;
+
+import com.cmayes.common.model.Atom;
+import com.cmayes.common.model.AtomTable;
+import com.cmayes.common.model.Coordinates;
+
+/**
+ * Accumulates the mass-weighted moments of a set of atoms as they are added,
+ * giving the center of mass, inertia tensor, radius of gyration, principal
+ * axes and rotational constants without holding on to the atoms. Masses come
+ * from {@link AtomicElement#getMass()} (or are given explicitly); positions
+ * are in Angstroms, so moments are in amu Angstrom^2.
+ *
+ * The moments are kept relative to the first position added and summed with
+ * Neumaier's compensated summation, so large frames, or frames far from the
+ * origin, don't lose the small second moments to cancellation. Accumulators
+ * filled on separate threads can be merged with {@link #combine}.
+ *
+ * Instances are not thread-safe.
+ *
+ * @author cmayes
+ */
+public final class InertiaAccumulator {
+    private static final int MASS = 0;
+    private static final int X = 1;
+    private static final int Y = 2;
+    private static final int Z = 3;
+    private static final int XX = 4;
+    private static final int YY = 5;
+    private static final int ZZ = 6;
+    private static final int XY = 7;
+    private static final int XZ = 8;
+    private static final int YZ = 9;
+    private static final int SUM_COUNT = 10;
+    /** Converts amu Angstrom^2 to kg m^2. */
+    private static final double AMU_A2_TO_KG_M2 = PhysicalConstants.AMU_KG * 1e-20;
+
+    private final double[] sums = new double[SUM_COUNT];
+    private final double[] comps = new double[SUM_COUNT];
+    private long count;
+    private double refX;
+    private double refY;
+    private double refZ;
+
+    /**
+     * Adds a point mass.
+     *
+     * @param mass
+     *            The mass in amu.
+     * @param x
+     *            The X coordinate.
+     * @param y
+     *            The Y coordinate.
+     * @param z
+     *            The Z coordinate.
+     */
+    public void add(final double mass, final double x, final double y,
+            final double z) {
+        if (!(mass >= 0)) {
+            throw new IllegalArgumentException("Mass must not be negative: "
+                    + mass);
+        }
+        if (count == 0) {
+            refX = x;
+            refY = y;
+            refZ = z;
+        }
+        count++;
+        final double dx = x - refX;
+        final double dy = y - refY;
+        final double dz = z - refZ;
+        final double mx = mass * dx;
+        final double my = mass * dy;
+        final double mz = mass * dz;
+        sum(MASS, mass);
+        sum(X, mx);
+        sum(Y, my);
+        sum(Z, mz);
+        sum(XX, mx * dx);
+        sum(YY, my * dy);
+        sum(ZZ, mz * dz);
+        sum(XY, mx * dy);
+        sum(XZ, mx * dz);
+        sum(YZ, my * dz);
+    }
+
+    /**
+     * Adds an atom of the given element.
+     *
+     * @param type
+     *            The element.
+     * @param x
+     *            The X coordinate.
+     * @param y
+     *            The Y coordinate.
+     * @param z
+     *            The Z coordinate.
+     */
+    public void add(final AtomicElement type, final double x, final double y,
+            final double z) {
+        add(asNotNull(type, "Element is null").getMass(), x, y, z);
+    }
+
+    /**
+     * Adds an atom.
+     *
+     * @param atom
+     *            The atom; it must have a type.
+     */
+    public void add(final Atom atom) {
+        asNotNull(atom, "Atom is null");
+        if (atom.getType() == null) {
+            throw new IllegalArgumentException(String.format(
+                    "Atom %d has no type", atom.getId()));
+        }
+        add(atom.getType().getMass(), atom.getX(), atom.getY(), atom.getZ());
+    }
+
+    /**
+     * Adds every atom.
+     *
+     * @param atoms
+     *            The atoms; each must have a type.
+     */
+    public void addAll(final Iterable<? extends Atom> atoms) {
+        for (Atom atom : asNotNull(atoms, "Atoms are null")) {
+            add(atom);
+        }
+    }
+
+    /**
+     * Adds every atom in a table.
+     *
+     * @param table
+     *            The table; every row must have a type.
+     */
+    public void addAll(final AtomTable table) {
+        asNotNull(table, "Table is null");
+        final double[] masses = ElementTable.masses();
+        final double[] xs = table.getXs();
+        final double[] ys = table.getYs();
+        final double[] zs = table.getZs();
+        final byte[] types = table.getTypeOrdinals();
+        for (int i = 0; i < table.size(); i++) {
+            if (types[i] == AtomTable.NO_TYPE) {
+                throw new IllegalArgumentException(String.format(
+                        "Atom %d at index %d has no type", table.getId(i), i));
+            }
+            add(masses[types[i]], xs[i], ys[i], zs[i]);
+        }
+    }
+
+    /**
+     * Adds every position with the mass at the same index.
+     *
+     * @param coords
+     *            The positions.
+     * @param masses
+     *            The mass of each position.
+     */
+    public void addAll(final Coordinates coords, final double[] masses) {
+        checkMasses(asNotNull(coords, "Coordinates are null").size(), masses);
+        for (int i = 0; i < coords.size(); i++) {
+            add(masses[i], coords.getX(i), coords.getY(i), coords.getZ(i));
+        }
+    }
+
+    /**
+     * Adds a range of positions from coordinate arrays.
+     *
+     * @param xs
+     *            The X coordinates.
+     * @param ys
+     *            The Y coordinates.
+     * @param zs
+     *            The Z coordinates.
+     * @param masses
+     *            The mass of each position.
+     * @param from
+     *            The first position.
+     * @param to
+     *            One past the last position.
+     */
+    public void addAll(final double[] xs, final double[] ys,
+            final double[] zs, final double[] masses, final int from,
+            final int to) {
+        if (from < 0 || from > to || to > xs.length || to > ys.length
+                || to > zs.length || to > masses.length) {
+            throw new IndexOutOfBoundsException(String.format(
+                    "Range %d-%d is outside the coordinates", from, to));
+        }
+        for (int i = from; i < to; i++) {
+            add(masses[i], xs[i], ys[i], zs[i]);
+        }
+    }
+
+    /**
+     * Merges another accumulator's atoms into this one.
+     *
+     * @param other
+     *            The accumulator to merge; it is not changed.
+     * @return This accumulator.
+     */
+    public InertiaAccumulator combine(final InertiaAccumulator other) {
+        asNotNull(other, "Accumulator is null");
+        if (other.count == 0) {
+            return this;
+        }
+        if (count == 0) {
+            System.arraycopy(other.sums, 0, sums, 0, SUM_COUNT);
+            System.arraycopy(other.comps, 0, comps, 0, SUM_COUNT);
+            count = other.count;
+            refX = other.refX;
+            refY = other.refY;
+            refZ = other.refZ;
+            return this;
+        }
+        // Shift the other moments from its reference point to ours.
+        final double dx = other.refX - refX;
+        final double dy = other.refY - refY;
+        final double dz = other.refZ - refZ;
+        final double mass = other.total(MASS);
+        final double sx = other.total(X);
+        final double sy = other.total(Y);
+        final double sz = other.total(Z);
+        count += other.count;
+        sum(MASS, mass);
+        sum(X, sx + mass * dx);
+        sum(Y, sy + mass * dy);
+        sum(Z, sz + mass * dz);
+        sum(XX, other.total(XX) + 2 * dx * sx + mass * dx * dx);
+        sum(YY, other.total(YY) + 2 * dy * sy + mass * dy * dy);
+        sum(ZZ, other.total(ZZ) + 2 * dz * sz + mass * dz * dz);
+        sum(XY, other.total(XY) + dx * sy + dy * sx + mass * dx * dy);
+        sum(XZ, other.total(XZ) + dx * sz + dz * sx + mass * dx * dz);
+        sum(YZ, other.total(YZ) + dy * sz + dz * sy + mass * dy * dz);
+        return this;
+    }
+
+    /**
+     * Clears the accumulator for reuse.
+     */
+    public void reset() {
+        Arrays.fill(sums, 0);
+        Arrays.fill(comps, 0);
+        count = 0;
+    }
+
+    /**
+     * @return The number of positions added.
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * @return The total mass in amu.
+     */
+    public double getTotalMass() {
+        return total(MASS);
+    }
+
+    /**
+     * @return The center of mass as X, Y, Z.
+     * @throws IllegalStateException
+     *             If no mass has been added.
+     */
+    public double[] getCenterOfMass() {
+        final double mass = checkMass();
+        return new double[] { refX + total(X) / mass, refY + total(Y) / mass,
+                refZ + total(Z) / mass };
+    }
+
+    /**
+     * @return The inertia tensor about the center of mass, in amu
+     *         Angstrom^2.
+     * @throws IllegalStateException
+     *             If no mass has been added.
+     */
+    public double[][] getInertiaTensor() {
+        final double mass = checkMass();
+        final double sx = total(X);
+        final double sy = total(Y);
+        final double sz = total(Z);
+        final double cxx = total(XX) - sx * sx / mass;
+        final double cyy = total(YY) - sy * sy / mass;
+        final double czz = total(ZZ) - sz * sz / mass;
+        final double cxy = total(XY) - sx * sy / mass;
+        final double cxz = total(XZ) - sx * sz / mass;
+        final double cyz = total(YZ) - sy * sz / mass;
+        return new double[][] { { cyy + czz, -cxy, -cxz },
+                { -cxy, cxx + czz, -cyz }, { -cxz, -cyz, cxx + cyy } };
+    }
+
+    /**
+     * @return The mass-weighted radius of gyration in Angstroms.
+     * @throws IllegalStateException
+     *             If no mass has been added.
+     */
+    public double getRadiusOfGyration() {
+        final double[][] tensor = getInertiaTensor();
+        final double trace = tensor[0][0] + tensor[1][1] + tensor[2][2];
+        return Math.sqrt(Math.max(0, trace / (2 * getTotalMass())));
+    }
+
+    /**
+     * @return The principal moments of inertia in ascending order, in amu
+     *         Angstrom^2.
+     * @throws IllegalStateException
+     *             If no mass has been added.
+     */
+    public double[] getPrincipalMoments() {
+        final double[] moments = new double[3];
+        principal(moments, null);
+        return moments;
+    }
+
+    /**
+     * @return The principal axes as unit row vectors in the order of
+     *         {@link #getPrincipalMoments()}, forming a right-handed frame.
+     *         Axes with equal moments are any orthonormal pair in their
+     *         plane.
+     * @throws IllegalStateException
+     *             If no mass has been added.
+     */
+    public double[][] getPrincipalAxes() {
+        final double[][] axes = new double[3][];
+        principal(new double[3], axes);
+        return axes;
+    }
+
+    /**
+     * @return The rotational constants A, B, C in GHz, in descending order. A
+     *         is infinite for linear molecules and all three are for a single
+     *         atom.
+     * @throws IllegalStateException
+     *             If no mass has been added.
+     */
+    public double[] getRotationalConstants() {
+        final double[] moments = getPrincipalMoments();
+        final double[] constants = new double[3];
+        for (int i = 0; i < 3; i++) {
+            constants[i] = PhysicalConstants.PLANCK
+                    / (8 * Math.PI * Math.PI * moments[i] * AMU_A2_TO_KG_M2)
+                    / 1e9;
+        }
+        return constants;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("InertiaAccumulator[count=%d, mass=%s]", count,
+                getTotalMass());
+    }
+
+    /**
+     * Diagonalizes the inertia tensor.
+     *
+     * @param moments
+     *            Receives the principal moments in ascending order.
+     * @param axes
+     *            Receives the matching axes, or null to skip them.
+     */
+    private void principal(final double[] moments, final double[][] axes) {
+        final EigenDecomposition eigen = new EigenDecomposition(
+                new Array2DRowRealMatrix(getInertiaTensor(), false));
+        final double[] vals = eigen.getRealEigenvalues();
+        final int[] order = { 0, 1, 2 };
+        for (int i = 1; i < 3; i++) {
+            for (int j = i; j > 0 && vals[order[j]] < vals[order[j - 1]]; j--) {
+                final int tmp = order[j];
+                order[j] = order[j - 1];
+                order[j - 1] = tmp;
+            }
+        }
+        for (int i = 0; i < 3; i++) {
+            moments[i] = Math.max(0, vals[order[i]]);
+        }
+        if (axes != null) {
+            for (int i = 0; i < 2; i++) {
+                final RealVector vec = eigen.getEigenvector(order[i]);
+                axes[i] = vec.mapDivide(vec.getNorm()).toArray();
+            }
+            final double[] a = axes[0];
+            final double[] b = axes[1];
+            axes[2] = new double[] { a[1] * b[2] - a[2] * b[1],
+                    a[2] * b[0] - a[0] * b[2], a[0] * b[1] - a[1] * b[0] };
+        }
+    }
+
+    /**
+     * Adds a term to one of the compensated sums.
+     *
+     * @param idx
+     *            The sum to add to.
+     * @param val
+     *            The term.
+     */
+    private void sum(final int idx, final double val) {
+        final double prev = sums[idx];
+        final double next = prev + val;
+        if (Math.abs(prev) >= Math.abs(val)) {
+            comps[idx] += (prev - next) + val;
+        } else {
+            comps[idx] += (val - next) + prev;
+        }
+        sums[idx] = next;
+    }
+
+    /**
+     * @param idx
+     *            The sum to read.
+     * @return The compensated total.
+     */
+    private double total(final int idx) {
+        return sums[idx] + comps[idx];
+    }
+
+    /**
+     * @return The total mass.
+     * @throws IllegalStateException
+     *             If it is not positive.
+     */
+    private double checkMass() {
+        final double mass = getTotalMass();
+        if (!(mass > 0)) {
+            throw new IllegalStateException("No mass has been accumulated");
+        }
+        return mass;
+    }
+
+    /**
+     * @param size
+     *            The number of positions.
+     * @param masses
+     *            The masses to check.
+     */
+    private static void checkMasses(final int size, final double[] masses) {
+        if (asNotNull(masses, "Masses are null").length < size) {
+            throw new IllegalArgumentException(String.format(
+                    "%d masses for %d positions", masses.length, size));
+        }
+    }
+}
@@ -0,0 +1,153 @@
+package com.cmayes.common.chem;
+
+import static com.cmayes.common.exception.ExceptionUtils.asNotNull;
+
+import java.util.Arrays;
+
+import org.apache.commons.lang3.builder.EqualsBuilder;
+import org.apache.commons.lang3.builder.HashCodeBuilder;
+import org.apache.commons.lang3.builder.ToStringBuilder;
+
+/**
+ * Definition of one internal coordinate: a motion type and the indices of the
+ * atoms that define it. Bond stretches take two atoms, angle bends three
+ * (the vertex in the middle) and dihedral rotations four.
+ *
+ * @author cmayes
+ */
+public final class InternalCoordinate {
+    private final InternalMotionType type;
+    private final int[] atoms;
+
+    /**
+     * Creates a coordinate definition.
+     *
+     * @param motionType
+     *            The motion type.
+     * @param atomIdxs
+     *            The atom indices, as many as the motion type requires.
+     */
+    public InternalCoordinate(final InternalMotionType motionType,
+            final int... atomIdxs) {
+        this.type = asNotNull(motionType, "Motion type is null");
+        if (atomIdxs.length != motionType.getAtomCount()) {
+            throw new IllegalArgumentException(String.format(
+                    "%s needs %d atoms but got %d", motionType,
+                    motionType.getAtomCount(), atomIdxs.length));
+        }
+        for (int i = 0; i < atomIdxs.length; i++) {
+            if (atomIdxs[i] < 0) {
+                throw new IllegalArgumentException("Negative atom index "
+                        + atomIdxs[i]);
+            }
+            for (int j = 0; j < i; j++) {
+                if (atomIdxs[i] == atomIdxs[j]) {
+                    throw new IllegalArgumentException("Repeated atom index "
+                            + atomIdxs[i]);
+                }
+            }
+        }
+        this.atoms = atomIdxs.clone();
+    }
+
+    /**
+     * @param first
+     *            The first atom index.
+     * @param second
+     *            The second atom index.
+     * @return A bond stretch definition.
+     */
+    public static InternalCoordinate bond(final int first, final int second) {
+        return new InternalCoordinate(InternalMotionType.BOND_STRETCHING,
+                first, second);
+    }
+
+    /**
+     * @param first
+     *            The first atom index.
+     * @param vertex
+     *            The vertex atom index.
+     * @param third
+     *            The third atom index.
+     * @return An angle bend definition.
+     */
+    public static InternalCoordinate angle(final int first, final int vertex,
+            final int third) {
+        return new InternalCoordinate(InternalMotionType.ANGLE_BENDING, first,
+                vertex, third);
+    }
+
+    /**
+     * @param first
+     *            The first atom index.
+     * @param second
+     *            The second atom index.
+     * @param third
+     *            The third atom index.
+     * @param fourth
+     *            The fourth atom index.
+     * @return A dihedral rotation definition.
+     */
+    public static InternalCoordinate dihedral(final int first,
+            final int second, final int third, final int fourth) {
+        return new InternalCoordinate(InternalMotionType.DIHEDRAL_ROTATION,
+                first, second, third, fourth);
+    }
+
+    /**
+     * @return The motion type.
+     */
+    public InternalMotionType getType() {
+        return type;
+    }
+
+    /**
+     * @param pos
+     *            The position within the definition.
+     * @return The atom index at the given position.
+     */
+    public int getAtom(final int pos) {
+        return atoms[pos];
+    }
+
+    /**
+     * @return A copy of the atom indices.
+     */
+    public int[] getAtoms() {
+        return atoms.clone();
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @see java.lang.Object#equals(Object)
+     */
+    public boolean equals(final Object object) {
+        if (!(object instanceof InternalCoordinate)) {
+            return false;
+        }
+        final InternalCoordinate rhs = (InternalCoordinate) object;
+        return new EqualsBuilder().append(this.type, rhs.type)
+                .append(this.atoms, rhs.atoms).isEquals();
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @see java.lang.Object#hashCode()
+     */
+    public int hashCode() {
+        return new HashCodeBuilder(1094227739, 2017541563).append(this.type)
+                .append(this.atoms).toHashCode();
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @see java.lang.Object#toString()
+     */
+    public String toString() {
+        return new ToStringBuilder(this).append("type", this.type)
+                .append("atoms", Arrays.toString(this.atoms)).toString();
+    }
+}
@@ -0,0 +1,281 @@
+package com.cmayes.common.chem;
+
+import static com.cmayes.common.exception.ExceptionUtils.asNotNull;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.IntFunction;
+import java.util.stream.IntStream;
+
+import org.apache.commons.math3.util.FastMath;
+
+import com.cmayes.common.model.AtomTable;
+import com.cmayes.common.model.Coordinates;
+import com.cmayes.common.util.ChemUtils;
+
+/**
+ * A compiled set of internal coordinates that can be evaluated over many
+ * frames. The definitions are grouped by motion type into packed index arrays
+ * (two, three or four indices per entry) so each frame is evaluated in one
+ * tight loop per type with no per-coordinate dispatch or allocation. Values
+ * are written in definition order: bond lengths in the coordinates' units and
+ * angles and dihedrals in degrees, with NaN for undefined angles.
+ *
+ * Instances are immutable and may be shared between threads.
+ *
+ * @author cmayes
+ */
+public final class InternalCoordinateSet {
+    private final List<InternalCoordinate> defs;
+    private final int[] bondAtoms;
+    private final int[] bondSlots;
+    private final int[] angleAtoms;
+    private final int[] angleSlots;
+    private final int[] dihedralAtoms;
+    private final int[] dihedralSlots;
+    private final int minAtoms;
+
+    /**
+     * Compiles the given definitions.
+     *
+     * @param coords
+     *            The coordinate definitions, in output order.
+     */
+    public InternalCoordinateSet(final List<InternalCoordinate> coords) {
+        asNotNull(coords, "Coordinate definitions are null");
+        this.defs = Collections.unmodifiableList(new ArrayList<InternalCoordinate>(
+                coords));
+        final int[] counts = new int[InternalMotionType.values().length];
+        for (InternalCoordinate def : defs) {
+            counts[asNotNull(def, "Coordinate definition is null").getType()
+                    .ordinal()]++;
+        }
+        this.bondSlots = new int[counts[InternalMotionType.BOND_STRETCHING
+                .ordinal()]];
+        this.angleSlots = new int[counts[InternalMotionType.ANGLE_BENDING
+                .ordinal()]];
+        this.dihedralSlots = new int[counts[InternalMotionType.DIHEDRAL_ROTATION
+                .ordinal()]];
+        this.bondAtoms = new int[bondSlots.length * 2];
+        this.angleAtoms = new int[angleSlots.length * 3];
+        this.dihedralAtoms = new int[dihedralSlots.length * 4];
+        final int[] fill = new int[counts.length];
+        int maxAtom = -1;
+        for (int slot = 0; slot < defs.size(); slot++) {
+            final InternalCoordinate def = defs.get(slot);
+            final InternalMotionType type = def.getType();
+            final int entry = fill[type.ordinal()]++;
+            final int[] atoms;
+            final int[] slots;
+            switch (type) {
+            case BOND_STRETCHING:
+                atoms = bondAtoms;
+                slots = bondSlots;
+                break;
+            case ANGLE_BENDING:
+                atoms = angleAtoms;
+                slots = angleSlots;
+                break;
+            default:
+                atoms = dihedralAtoms;
+                slots = dihedralSlots;
+                break;
+            }
+            slots[entry] = slot;
+            final int width = type.getAtomCount();
+            for (int pos = 0; pos < width; pos++) {
+                atoms[entry * width + pos] = def.getAtom(pos);
+                maxAtom = Math.max(maxAtom, def.getAtom(pos));
+            }
+        }
+        this.minAtoms = maxAtom + 1;
+    }
+
+    /**
+     * @return The number of coordinates.
+     */
+    public int size() {
+        return defs.size();
+    }
+
+    /**
+     * @return The coordinate definitions in output order.
+     */
+    public List<InternalCoordinate> getDefinitions() {
+        return defs;
+    }
+
+    /**
+     * @param type
+     *            The motion type.
+     * @return The number of coordinates of the given type.
+     */
+    public int count(final InternalMotionType type) {
+        switch (asNotNull(type, "Motion type is null")) {
+        case BOND_STRETCHING:
+            return bondSlots.length;
+        case ANGLE_BENDING:
+            return angleSlots.length;
+        default:
+            return dihedralSlots.length;
+        }
+    }
+
+    /**
+     * Evaluates every coordinate for the given frame.
+     *
+     * @param frame
+     *            The frame's atom positions.
+     * @return The values in definition order.
+     */
+    public double[] evaluate(final Coordinates frame) {
+        final double[] out = new double[defs.size()];
+        evaluate(frame, out, 0);
+        return out;
+    }
+
+    /**
+     * Evaluates every coordinate for the given frame into an existing array.
+     *
+     * @param frame
+     *            The frame's atom positions.
+     * @param out
+     *            Receives the values in definition order.
+     * @param offset
+     *            The position in the array of the first value.
+     */
+    public void evaluate(final Coordinates frame, final double[] out,
+            final int offset) {
+        checkFrame(frame.size(), out, offset);
+        if (frame instanceof AtomTable) {
+            final AtomTable table = (AtomTable) frame;
+            evaluate(table.getXs(), table.getYs(), table.getZs(), out, offset);
+            return;
+        }
+        for (int k = 0; k < bondSlots.length; k++) {
+            out[offset + bondSlots[k]] = ChemUtils.findDistance(frame,
+                    bondAtoms[2 * k], bondAtoms[2 * k + 1]);
+        }
+        for (int k = 0; k < angleSlots.length; k++) {
+            out[offset + angleSlots[k]] = ChemUtils.calcBondAngle(frame,
+                    angleAtoms[3 * k], angleAtoms[3 * k + 1],
+                    angleAtoms[3 * k + 2]);
+        }
+        for (int k = 0; k < dihedralSlots.length; k++) {
+            out[offset + dihedralSlots[k]] = ChemUtils.calcDihedralAngle(
+                    frame, dihedralAtoms[4 * k], dihedralAtoms[4 * k + 1],
+                    dihedralAtoms[4 * k + 2], dihedralAtoms[4 * k + 3]);
+        }
+    }
+
+    /**
+     * Evaluates every coordinate over raw coordinate arrays.
+     *
+     * @param xs
+     *            The X coordinates.
+     * @param ys
+     *            The Y coordinates.
+     * @param zs
+     *            The Z coordinates.
+     * @param out
+     *            Receives the values in definition order.
+     * @param offset
+     *            The position in the array of the first value.
+     */
+    public void evaluate(final double[] xs, final double[] ys,
+            final double[] zs, final double[] out, final int offset) {
+        final int atoms = Math.min(xs.length, Math.min(ys.length, zs.length));
+        checkFrame(atoms, out, offset);
+        for (int k = 0; k < bondSlots.length; k++) {
+            final int a = bondAtoms[2 * k];
+            final int b = bondAtoms[2 * k + 1];
+            final double dx = xs[a] - xs[b];
+            final double dy = ys[a] - ys[b];
+            final double dz = zs[a] - zs[b];
+            out[offset + bondSlots[k]] = FastMath.sqrt(dx * dx + dy * dy + dz
+                    * dz);
+        }
+        for (int k = 0; k < angleSlots.length; k++) {
+            final int a = angleAtoms[3 * k];
+            final int b = angleAtoms[3 * k + 1];
+            final int c = angleAtoms[3 * k + 2];
+            out[offset + angleSlots[k]] = ChemUtils.calcBondAngle(xs[a],
+                    ys[a], zs[a], xs[b], ys[b], zs[b], xs[c], ys[c], zs[c]);
+        }
+        for (int k = 0; k < dihedralSlots.length; k++) {
+            final int a = dihedralAtoms[4 * k];
+            final int b = dihedralAtoms[4 * k + 1];
+            final int c = dihedralAtoms[4 * k + 2];
+            final int d = dihedralAtoms[4 * k + 3];
+            out[offset + dihedralSlots[k]] = ChemUtils.calcDihedralAngle(
+                    xs[a], ys[a], zs[a], xs[b], ys[b], zs[b], xs[c], ys[c],
+                    zs[c], xs[d], ys[d], zs[d]);
+        }
+    }
+
+    /**
+     * Evaluates every coordinate for each of the given frames.
+     *
+     * @param frames
+     *            The frames.
+     * @param parallel
+     *            Whether to split the frames across the common fork-join
+     *            pool.
+     * @return One row of values per frame.
+     */
+    public double[][] evaluate(final List<? extends Coordinates> frames,
+            final boolean parallel) {
+        asNotNull(frames, "Frames are null");
+        return evaluate(frames.size(), frames::get, parallel);
+    }
+
+    /**
+     * Evaluates every coordinate for a sequence of frames supplied by index,
+     * such as <code>dcdReader::frame</code>. The supplier must be safe to
+     * call from several threads when running in parallel.
+     *
+     * @param frameCount
+     *            The number of frames.
+     * @param frames
+     *            Supplies the frame for each index.
+     * @param parallel
+     *            Whether to split the frames across the common fork-join
+     *            pool.
+     * @return One row of values per frame.
+     */
+    public double[][] evaluate(final int frameCount,
+            final IntFunction<? extends Coordinates> frames,
+            final boolean parallel) {
+        asNotNull(frames, "Frame supplier is null");
+        final double[][] results = new double[frameCount][];
+        final IntStream idxs = IntStream.range(0, frameCount);
+        (parallel ? idxs.parallel() : idxs).forEach(
+                frame -> results[frame] = evaluate(frames.apply(frame)));
+        return results;
+    }
+
+    /**
+     * Validates a frame and output array.
+     *
+     * @param atoms
+     *            The number of atoms in the frame.
+     * @param out
+     *            The output array.
+     * @param offset
+     *            The output offset.
+     */
+    private void checkFrame(final int atoms, final double[] out,
+            final int offset) {
+        if (atoms < minAtoms) {
+            throw new IllegalArgumentException(String.format(
+                    "Frame has %d atoms but the coordinates need %d", atoms,
+                    minAtoms));
+        }
+        if (offset < 0 || out.length - offset < defs.size()) {
+            throw new IllegalArgumentException(String.format(
+                    "Output of length %d can't hold %d values at offset %d",
+                    out.length, defs.size(), offset));
+        }
+    }
+}
@@ -8,18 +8,22 @@ import static com.cmayes.common.exception.ExceptionUtils.asNotNull;
  * @author cmayes
  */
 public enum InternalMotionType {
-    BOND_STRETCHING("R"), ANGLE_BENDING("A"), DIHEDRAL_ROTATION("D");
+    BOND_STRETCHING("R", 2), ANGLE_BENDING("A", 3), DIHEDRAL_ROTATION("D", 4);
 
     private final String symbol;
+    private final int atomCount;
 
     /**
      * Creates a motion type with the given symbol.
      * 
      * @param sym
      *            The one-letter symbol representing this internal motion type.
+     * @param atoms
+     *            The number of atoms that define a coordinate of this type.
      */
-    private InternalMotionType(final String sym) {
+    private InternalMotionType(final String sym, final int atoms) {
         this.symbol = asNotNull(sym, "Symbol is null");
+        this.atomCount = atoms;
     }
 
     /**
@@ -46,4 +50,11 @@ public enum InternalMotionType {
     public String getSymbol() {
         return symbol;
     }
+
+    /**
+     * @return The number of atoms that define a coordinate of this type.
+     */
+    public int getAtomCount() {
+        return atomCount;
+    }
 }
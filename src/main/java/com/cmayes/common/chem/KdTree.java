@@ -0,0 +1,568 @@
+package com.cmayes.common.chem;
+
+import static com.cmayes.common.exception.ExceptionUtils.asNotNull;
+
+import java.util.Arrays;
+import java.util.List;
+
+import com.cmayes.common.model.Atom;
+import com.cmayes.common.model.AtomTable;
+
+/**
+ * Immutable KD-tree over atom coordinates for nearest-neighbor and radius
+ * queries. The tree is implicit: atoms are permuted in place so that the node
+ * covering slots <code>[lo, hi)</code> has its splitting atom at the middle
+ * slot, with the axis cycling X, Y, Z by depth. Building uses median
+ * selection (O(N log N)) and there are no per-node objects; the tree costs
+ * the coordinates, an index and a type byte per atom.
+ *
+ * Query results are atom indices into the list or table the tree was built
+ * from.
+ *
+ * @author cmayes
+ */
+public final class KdTree {
+    /** Ranges this small are scanned rather than split. */
+    private static final int LEAF_SIZE = 8;
+
+    private final int[] order;
+    private final double[] xs;
+    private final double[] ys;
+    private final double[] zs;
+    private final byte[] types;
+
+    /**
+     * Builds a tree over the given atoms.
+     *
+     * @param atoms
+     *            The atoms to index.
+     */
+    public KdTree(final List<? extends Atom> atoms) {
+        this(AtomTable.fromAtoms(asNotNull(atoms, "Atom list is null")));
+    }
+
+    /**
+     * Builds a tree over the atoms in the given table. The table is not
+     * modified.
+     *
+     * @param table
+     *            The atoms to index.
+     */
+    public KdTree(final AtomTable table) {
+        asNotNull(table, "Atom table is null");
+        final int size = table.size();
+        this.xs = table.getXs().clone();
+        this.ys = table.getYs().clone();
+        this.zs = table.getZs().clone();
+        this.types = table.getTypeOrdinals().clone();
+        this.order = new int[size];
+        for (int i = 0; i < size; i++) {
+            order[i] = i;
+        }
+        build(0, size, 0);
+    }
+
+    /**
+     * @return The number of indexed atoms.
+     */
+    public int size() {
+        return order.length;
+    }
+
+    /**
+     * Finds the atom nearest the given point.
+     *
+     * @param x
+     *            The X coordinate.
+     * @param y
+     *            The Y coordinate.
+     * @param z
+     *            The Z coordinate.
+     * @param elemType
+     *            The element type to search for, or null for any type.
+     * @return The index of the nearest atom, or -1 if none match.
+     */
+    public int nearest(final double x, final double y, final double z,
+            final AtomicElement elemType) {
+        final int[] found = nearest(x, y, z, 1, elemType);
+        return found.length == 0 ? -1 : found[0];
+    }
+
+    /**
+     * Finds the k atoms nearest the given point.
+     *
+     * @param x
+     *            The X coordinate.
+     * @param y
+     *            The Y coordinate.
+     * @param z
+     *            The Z coordinate.
+     * @param count
+     *            The number of atoms to find.
+     * @param elemType
+     *            The element type to search for, or null for any type.
+     * @return The indices of up to <code>count</code> atoms, nearest first.
+     */
+    public int[] nearest(final double x, final double y, final double z,
+            final int count, final AtomicElement elemType) {
+        if (count < 0) {
+            throw new IllegalArgumentException("Negative neighbor count "
+                    + count);
+        }
+        final Heap heap = new Heap(Math.min(count, order.length));
+        if (heap.capacity > 0) {
+            searchNearest(0, order.length, 0, x, y, z, ordinal(elemType), heap);
+        }
+        return heap.drainSorted();
+    }
+
+    /**
+     * Finds all atoms within the given radius of the point.
+     *
+     * @param x
+     *            The X coordinate.
+     * @param y
+     *            The Y coordinate.
+     * @param z
+     *            The Z coordinate.
+     * @param radius
+     *            The search radius.
+     * @param elemType
+     *            The element type to search for, or null for any type.
+     * @return The matching atom indices in ascending order.
+     */
+    public int[] withinRadius(final double x, final double y, final double z,
+            final double radius, final AtomicElement elemType) {
+        if (!(radius > 0)) {
+            throw new IllegalArgumentException("Radius must be positive: "
+                    + radius);
+        }
+        final int[][] found = { new int[16] };
+        final int count = searchRadius(0, order.length, 0, x, y, z, radius
+                * radius, ordinal(elemType), found, 0);
+        final int[] result = Arrays.copyOf(found[0], count);
+        Arrays.sort(result);
+        return result;
+    }
+
+    /**
+     * Arranges the slots in [lo, hi) into a subtree.
+     *
+     * @param lo
+     *            The first slot.
+     * @param hi
+     *            One past the last slot.
+     * @param depth
+     *            The depth of the subtree root.
+     */
+    private void build(final int lo, final int hi, final int depth) {
+        if (hi - lo <= LEAF_SIZE) {
+            return;
+        }
+        final int mid = (lo + hi) >>> 1;
+        select(lo, hi - 1, mid, coords(depth));
+        build(lo, mid, depth + 1);
+        build(mid + 1, hi, depth + 1);
+    }
+
+    /**
+     * Quickselect: moves the k-th smallest slot in [left, right] by the given
+     * key into slot k, with smaller keys before it and larger after.
+     *
+     * @param left
+     *            The first slot.
+     * @param right
+     *            The last slot.
+     * @param kth
+     *            The slot to fill.
+     * @param key
+     *            The coordinate array to order by.
+     */
+    private void select(final int left, final int right, final int kth,
+            final double[] key) {
+        int lo = left;
+        int hi = right;
+        while (hi > lo) {
+            // Median of three pivot to avoid quadratic behavior on sorted
+            // input.
+            final int mid = (lo + hi) >>> 1;
+            if (key[mid] < key[lo]) {
+                swap(mid, lo);
+            }
+            if (key[hi] < key[lo]) {
+                swap(hi, lo);
+            }
+            if (key[hi] < key[mid]) {
+                swap(hi, mid);
+            }
+            final double pivot = key[mid];
+            int i = lo;
+            int j = hi;
+            while (i <= j) {
+                while (key[i] < pivot) {
+                    i++;
+                }
+                while (key[j] > pivot) {
+                    j--;
+                }
+                if (i <= j) {
+                    swap(i++, j--);
+                }
+            }
+            if (kth <= j) {
+                hi = j;
+            } else if (kth >= i) {
+                lo = i;
+            } else {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Swaps two slots.
+     *
+     * @param first
+     *            The first slot.
+     * @param second
+     *            The second slot.
+     */
+    private void swap(final int first, final int second) {
+        final int idx = order[first];
+        order[first] = order[second];
+        order[second] = idx;
+        double tmp = xs[first];
+        xs[first] = xs[second];
+        xs[second] = tmp;
+        tmp = ys[first];
+        ys[first] = ys[second];
+        ys[second] = tmp;
+        tmp = zs[first];
+        zs[first] = zs[second];
+        zs[second] = tmp;
+        final byte type = types[first];
+        types[first] = types[second];
+        types[second] = type;
+    }
+
+    /**
+     * k-nearest search of the subtree over [lo, hi).
+     *
+     * @param lo
+     *            The first slot.
+     * @param hi
+     *            One past the last slot.
+     * @param depth
+     *            The subtree depth.
+     * @param x
+     *            The query X.
+     * @param y
+     *            The query Y.
+     * @param z
+     *            The query Z.
+     * @param want
+     *            The type ordinal to match or -1 for any.
+     * @param heap
+     *            The best candidates so far.
+     */
+    private void searchNearest(final int lo, final int hi, final int depth,
+            final double x, final double y, final double z, final int want,
+            final Heap heap) {
+        if (hi - lo <= LEAF_SIZE) {
+            for (int slot = lo; slot < hi; slot++) {
+                offer(slot, x, y, z, want, heap);
+            }
+            return;
+        }
+        final int mid = (lo + hi) >>> 1;
+        final double diff = axisValue(depth, x, y, z) - coords(depth)[mid];
+        final boolean goLeft = diff < 0;
+        if (goLeft) {
+            searchNearest(lo, mid, depth + 1, x, y, z, want, heap);
+        } else {
+            searchNearest(mid + 1, hi, depth + 1, x, y, z, want, heap);
+        }
+        offer(mid, x, y, z, want, heap);
+        if (!heap.isFull() || diff * diff <= heap.worst()) {
+            if (goLeft) {
+                searchNearest(mid + 1, hi, depth + 1, x, y, z, want, heap);
+            } else {
+                searchNearest(lo, mid, depth + 1, x, y, z, want, heap);
+            }
+        }
+    }
+
+    /**
+     * Offers a slot to the heap if its type matches.
+     *
+     * @param slot
+     *            The slot.
+     * @param x
+     *            The query X.
+     * @param y
+     *            The query Y.
+     * @param z
+     *            The query Z.
+     * @param want
+     *            The type ordinal to match or -1 for any.
+     * @param heap
+     *            The best candidates so far.
+     */
+    private void offer(final int slot, final double x, final double y,
+            final double z, final int want, final Heap heap) {
+        if (want >= 0 && types[slot] != want) {
+            return;
+        }
+        final double dx = xs[slot] - x;
+        final double dy = ys[slot] - y;
+        final double dz = zs[slot] - z;
+        heap.offer(order[slot], dx * dx + dy * dy + dz * dz);
+    }
+
+    /**
+     * Radius search of the subtree over [lo, hi).
+     *
+     * @param lo
+     *            The first slot.
+     * @param hi
+     *            One past the last slot.
+     * @param depth
+     *            The subtree depth.
+     * @param x
+     *            The query X.
+     * @param y
+     *            The query Y.
+     * @param z
+     *            The query Z.
+     * @param radSq
+     *            The squared radius.
+     * @param want
+     *            The type ordinal to match or -1 for any.
+     * @param found
+     *            Holder for the growable result array.
+     * @param count
+     *            The number of results so far.
+     * @return The number of results after searching the subtree.
+     */
+    private int searchRadius(final int lo, final int hi, final int depth,
+            final double x, final double y, final double z,
+            final double radSq, final int want, final int[][] found,
+            final int count) {
+        int total = count;
+        if (hi - lo <= LEAF_SIZE) {
+            for (int slot = lo; slot < hi; slot++) {
+                total = addIfWithin(slot, x, y, z, radSq, want, found, total);
+            }
+            return total;
+        }
+        final int mid = (lo + hi) >>> 1;
+        final double diff = axisValue(depth, x, y, z) - coords(depth)[mid];
+        total = addIfWithin(mid, x, y, z, radSq, want, found, total);
+        if (diff <= 0 || diff * diff <= radSq) {
+            total = searchRadius(lo, mid, depth + 1, x, y, z, radSq, want,
+                    found, total);
+        }
+        if (diff >= 0 || diff * diff <= radSq) {
+            total = searchRadius(mid + 1, hi, depth + 1, x, y, z, radSq, want,
+                    found, total);
+        }
+        return total;
+    }
+
+    /**
+     * Appends the slot's atom index to the results if it matches.
+     *
+     * @param slot
+     *            The slot.
+     * @param x
+     *            The query X.
+     * @param y
+     *            The query Y.
+     * @param z
+     *            The query Z.
+     * @param radSq
+     *            The squared radius.
+     * @param want
+     *            The type ordinal to match or -1 for any.
+     * @param found
+     *            Holder for the growable result array.
+     * @param count
+     *            The number of results so far.
+     * @return The new number of results.
+     */
+    private int addIfWithin(final int slot, final double x, final double y,
+            final double z, final double radSq, final int want,
+            final int[][] found, final int count) {
+        if (want >= 0 && types[slot] != want) {
+            return count;
+        }
+        final double dx = xs[slot] - x;
+        final double dy = ys[slot] - y;
+        final double dz = zs[slot] - z;
+        if (dx * dx + dy * dy + dz * dz > radSq) {
+            return count;
+        }
+        if (count == found[0].length) {
+            found[0] = Arrays.copyOf(found[0], count * 2);
+        }
+        found[0][count] = order[slot];
+        return count + 1;
+    }
+
+    /**
+     * @param depth
+     *            The node depth.
+     * @return The coordinate array split on at the given depth.
+     */
+    private double[] coords(final int depth) {
+        switch (depth % 3) {
+        case 0:
+            return xs;
+        case 1:
+            return ys;
+        default:
+            return zs;
+        }
+    }
+
+    /**
+     * @param depth
+     *            The node depth.
+     * @param x
+     *            The X value.
+     * @param y
+     *            The Y value.
+     * @param z
+     *            The Z value.
+     * @return The value for the axis split on at the given depth.
+     */
+    private static double axisValue(final int depth, final double x,
+            final double y, final double z) {
+        switch (depth % 3) {
+        case 0:
+            return x;
+        case 1:
+            return y;
+        default:
+            return z;
+        }
+    }
+
+    /**
+     * @param elemType
+     *            The element type or null.
+     * @return The element's ordinal, or -1 for any type.
+     */
+    private static int ordinal(final AtomicElement elemType) {
+        return elemType == null ? -1 : elemType.ordinal();
+    }
+
+    /**
+     * Bounded max-heap of candidate indices keyed by squared distance.
+     */
+    private static final class Heap {
+        private final int capacity;
+        private final int[] idxs;
+        private final double[] dists;
+        private int size;
+
+        /**
+         * @param cap
+         *            The number of candidates to keep.
+         */
+        private Heap(final int cap) {
+            this.capacity = cap;
+            this.idxs = new int[cap];
+            this.dists = new double[cap];
+        }
+
+        /**
+         * @return Whether the heap holds its full number of candidates.
+         */
+        private boolean isFull() {
+            return size == capacity;
+        }
+
+        /**
+         * @return The squared distance of the worst kept candidate.
+         */
+        private double worst() {
+            return dists[0];
+        }
+
+        /**
+         * Keeps the candidate if it is better than the worst kept one.
+         *
+         * @param idx
+         *            The atom index.
+         * @param distSq
+         *            The squared distance.
+         */
+        private void offer(final int idx, final double distSq) {
+            if (size < capacity) {
+                int child = size++;
+                while (child > 0) {
+                    final int parent = (child - 1) >>> 1;
+                    if (dists[parent] >= distSq) {
+                        break;
+                    }
+                    idxs[child] = idxs[parent];
+                    dists[child] = dists[parent];
+                    child = parent;
+                }
+                idxs[child] = idx;
+                dists[child] = distSq;
+            } else if (distSq < dists[0]) {
+                siftDown(idx, distSq);
+            }
+        }
+
+        /**
+         * Replaces the root and restores the heap order.
+         *
+         * @param idx
+         *            The new atom index.
+         * @param distSq
+         *            The new squared distance.
+         */
+        private void siftDown(final int idx, final double distSq) {
+            int parent = 0;
+            while (true) {
+                int child = 2 * parent + 1;
+                if (child >= size) {
+                    break;
+                }
+                if (child + 1 < size && dists[child + 1] > dists[child]) {
+                    child++;
+                }
+                if (dists[child] <= distSq) {
+                    break;
+                }
+                idxs[parent] = idxs[child];
+                dists[parent] = dists[child];
+                parent = child;
+            }
+            idxs[parent] = idx;
+            dists[parent] = distSq;
+        }
+
+        /**
+         * Empties the heap.
+         *
+         * @return The kept indices, nearest first.
+         */
+        private int[] drainSorted() {
+            final int[] result = new int[size];
+            for (int pos = size - 1; pos >= 0; pos--) {
+                result[pos] = idxs[0];
+                final int lastIdx = idxs[size - 1];
+                final double lastDist = dists[size - 1];
+                size--;
+                if (size > 0) {
+                    siftDown(lastIdx, lastDist);
+                }
+            }
+            return result;
+        }
+    }
+}
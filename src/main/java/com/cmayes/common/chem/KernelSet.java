@@ -0,0 +1,100 @@
+package com.cmayes.common.chem;
+
+/**
+ * Batch coordinate kernels over structure-of-arrays positions. Every
+ * implementation must give bitwise-identical results to the scalar one so
+ * callers can switch freely between them.
+ *
+ * @author cmayes
+ * @see CoordinateKernels
+ */
+interface KernelSet {
+
+    /**
+     * Writes the distance from a point to each position in a range.
+     *
+     * @param x
+     *            The point's X.
+     * @param y
+     *            The point's Y.
+     * @param z
+     *            The point's Z.
+     * @param xs
+     *            The X coordinates.
+     * @param ys
+     *            The Y coordinates.
+     * @param zs
+     *            The Z coordinates.
+     * @param from
+     *            The first position.
+     * @param to
+     *            One past the last position.
+     * @param out
+     *            Receives the distance to position <code>j</code> at
+     *            <code>outOffset + j - from</code>.
+     * @param outOffset
+     *            The output position for the first distance.
+     */
+    void distances(double x, double y, double z, double[] xs, double[] ys,
+            double[] zs, int from, int to, double[] out, int outOffset);
+
+    /**
+     * Collects the positions in a range within a squared cutoff of a point.
+     *
+     * @param x
+     *            The point's X.
+     * @param y
+     *            The point's Y.
+     * @param z
+     *            The point's Z.
+     * @param xs
+     *            The X coordinates.
+     * @param ys
+     *            The Y coordinates.
+     * @param zs
+     *            The Z coordinates.
+     * @param from
+     *            The first position.
+     * @param to
+     *            One past the last position.
+     * @param cutoffSq
+     *            The squared cutoff (inclusive).
+     * @param out
+     *            Receives the matching positions in ascending order; must
+     *            hold <code>to - from</code> entries.
+     * @return The number of matches.
+     */
+    int within(double x, double y, double z, double[] xs, double[] ys,
+            double[] zs, int from, int to, double cutoffSq, int[] out);
+
+    /**
+     * Calculates the dihedral angles for a range of quadruplets with the same
+     * conventions as
+     * {@link com.cmayes.common.util.ChemUtils#calcDihedralAngle(double, double, double, double, double, double, double, double, double, double, double, double)}
+     * .
+     *
+     * @param xs
+     *            The X coordinates.
+     * @param ys
+     *            The Y coordinates.
+     * @param zs
+     *            The Z coordinates.
+     * @param first
+     *            The first atom index of each quadruplet.
+     * @param second
+     *            The second atom index of each quadruplet.
+     * @param third
+     *            The third atom index of each quadruplet.
+     * @param fourth
+     *            The fourth atom index of each quadruplet.
+     * @param results
+     *            Receives the angles.
+     * @param start
+     *            The first quadruplet to calculate.
+     * @param end
+     *            One past the last quadruplet to calculate.
+     */
+    void dihedrals(double[] xs, double[] ys, double[] zs, int[] first,
+            int[] second, int[] third, int[] fourth, double[] results,
+            int start, int end);
+}
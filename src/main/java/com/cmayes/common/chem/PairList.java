@@ -0,0 +1,96 @@
+package com.cmayes.common.chem;
+
+/**
+ * Immutable list of atom index pairs with their distances, stored as parallel
+ * primitive arrays. Pair <code>k</code> is atoms <code>getFirst(k)</code> and
+ * <code>getSecond(k)</code>, with the first index always less than the second.
+ *
+ * @author cmayes
+ */
+public final class PairList {
+    private final int[] firsts;
+    private final int[] seconds;
+    private final double[] distances;
+
+    /**
+     * Creates a pair list over the given arrays, which are not copied.
+     *
+     * @param firstIdxs
+     *            The first atom index of each pair.
+     * @param secondIdxs
+     *            The second atom index of each pair.
+     * @param dists
+     *            The distance of each pair.
+     */
+    public PairList(final int[] firstIdxs, final int[] secondIdxs,
+            final double[] dists) {
+        if (secondIdxs.length != firstIdxs.length
+                || dists.length != firstIdxs.length) {
+            throw new IllegalArgumentException("Pair arrays differ in length");
+        }
+        this.firsts = firstIdxs;
+        this.seconds = secondIdxs;
+        this.distances = dists;
+    }
+
+    /**
+     * @return The number of pairs.
+     */
+    public int size() {
+        return firsts.length;
+    }
+
+    /**
+     * @param pairIdx
+     *            The pair index.
+     * @return The lower atom index of the pair.
+     */
+    public int getFirst(final int pairIdx) {
+        return firsts[pairIdx];
+    }
+
+    /**
+     * @param pairIdx
+     *            The pair index.
+     * @return The higher atom index of the pair.
+     */
+    public int getSecond(final int pairIdx) {
+        return seconds[pairIdx];
+    }
+
+    /**
+     * @param pairIdx
+     *            The pair index.
+     * @return The distance between the atoms of the pair.
+     */
+    public double getDistance(final int pairIdx) {
+        return distances[pairIdx];
+    }
+
+    /**
+     * Returns the backing array of first indices; do not modify.
+     *
+     * @return The first atom index of each pair.
+     */
+    public int[] getFirsts() {
+        return firsts;
+    }
+
+    /**
+     * Returns the backing array of second indices; do not modify.
+     *
+     * @return The second atom index of each pair.
+     */
+    public int[] getSeconds() {
+        return seconds;
+    }
+
+    /**
+     * Returns the backing array of distances; do not modify.
+     *
+     * @return The distance of each pair.
+     */
+    public double[] getDistances() {
+        return distances;
+    }
+}
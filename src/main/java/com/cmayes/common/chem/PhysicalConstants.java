@@ -25,6 +25,10 @@ public final class PhysicalConstants {
     public static final double AVOGADRO = 6.0221415e23;
     /** Mass of an electron in kg. */
     public static final double MASS_ELEC_KG = 0.910938e-30;
+    /** [u] Atomic mass unit in kg. */
+    public static final double AMU_KG = 1.66053886e-27;
+    /** [e] Elementary charge in Coulombs. */
+    public static final double ELEM_CHARGE = 1.60217653e-19;
 
     /**
      * Constants used for conversions between two units.
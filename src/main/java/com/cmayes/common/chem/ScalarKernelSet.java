@@ -0,0 +1,59 @@
+package com.cmayes.common.chem;
+
+import com.cmayes.common.util.ChemUtils;
+
+/**
+ * Plain-loop kernels; used on Java 8 and whenever the vector kernels are
+ * unavailable.
+ *
+ * @author cmayes
+ */
+final class ScalarKernelSet implements KernelSet {
+
+    @Override
+    public void distances(final double x, final double y, final double z,
+            final double[] xs, final double[] ys, final double[] zs,
+            final int from, final int to, final double[] out,
+            final int outOffset) {
+        final int shift = outOffset - from;
+        for (int j = from; j < to; j++) {
+            final double dx = xs[j] - x;
+            final double dy = ys[j] - y;
+            final double dz = zs[j] - z;
+            out[shift + j] = Math.sqrt(dx * dx + dy * dy + dz * dz);
+        }
+    }
+
+    @Override
+    public int within(final double x, final double y, final double z,
+            final double[] xs, final double[] ys, final double[] zs,
+            final int from, final int to, final double cutoffSq,
+            final int[] out) {
+        int count = 0;
+        for (int j = from; j < to; j++) {
+            final double dx = xs[j] - x;
+            final double dy = ys[j] - y;
+            final double dz = zs[j] - z;
+            if (dx * dx + dy * dy + dz * dz <= cutoffSq) {
+                out[count++] = j;
+            }
+        }
+        return count;
+    }
+
+    @Override
+    public void dihedrals(final double[] xs, final double[] ys,
+            final double[] zs, final int[] first, final int[] second,
+            final int[] third, final int[] fourth, final double[] results,
+            final int start, final int end) {
+        for (int i = start; i < end; i++) {
+            final int a = first[i];
+            final int b = second[i];
+            final int c = third[i];
+            final int d = fourth[i];
+            results[i] = ChemUtils.calcDihedralAngle(xs[a], ys[a], zs[a],
+                    xs[b], ys[b], zs[b], xs[c], ys[c], zs[c], xs[d], ys[d],
+                    zs[d]);
+        }
+    }
+}
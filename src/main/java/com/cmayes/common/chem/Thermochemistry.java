@@ -0,0 +1,405 @@
+package com.cmayes.common.chem;
+
+import static com.cmayes.common.exception.ExceptionUtils.asNotNull;
+
+import java.util.stream.IntStream;
+
+import com.cmayes.common.chem.PhysicalConstants.Conversions;
+import com.cmayes.common.model.AtomTable;
+
+/**
+ * Ideal-gas, rigid-rotor, harmonic-oscillator thermochemistry. Given a
+ * molecule's mass, principal moments of inertia, rotational symmetry number,
+ * spin multiplicity and vibrational frequencies, computes the partition
+ * functions and the zero-point, thermal energy, enthalpy, entropy and Gibbs
+ * free energy corrections at a fixed temperature and pressure.
+ *
+ * Results are written as {@link #STRIDE} consecutive doubles per molecule,
+ * indexed by the column constants ({@link #ZPE}, {@link #ENTHALPY}, ...).
+ * Energies are corrections in Hartrees per particle, to be added to the
+ * electronic energy, and entropies are in Hartrees per Kelvin. Batches of
+ * molecules are evaluated from flat primitive arrays with
+ * {@link #evaluateAll}, so no objects are created per molecule or per mode.
+ *
+ * Masses are in amu, moments of inertia in amu Angstrom^2 and frequencies in
+ * cm^-1. Frequencies that aren't positive (imaginary modes reported as
+ * negative numbers, or translations and rotations left in the list) are
+ * skipped. Low-frequency modes can be treated with a {@link QuasiHarmonic}
+ * correction.
+ *
+ * Instances are immutable and thread-safe.
+ *
+ * @author cmayes
+ */
+public final class Thermochemistry {
+    /** Column of the zero-point energy. */
+    public static final int ZPE = 0;
+    /** Column of the thermal energy correction, including the ZPE. */
+    public static final int THERMAL_ENERGY = 1;
+    /** Column of the enthalpy correction. */
+    public static final int ENTHALPY = 2;
+    /** Column of the entropy. */
+    public static final int ENTROPY = 3;
+    /** Column of the Gibbs free energy correction. */
+    public static final int GIBBS = 4;
+    /** Column of the log translational partition function. */
+    public static final int LN_Q_TRANS = 5;
+    /** Column of the log rotational partition function. */
+    public static final int LN_Q_ROT = 6;
+    /**
+     * Column of the log vibrational partition function, counted from the
+     * zero-point level.
+     */
+    public static final int LN_Q_VIB = 7;
+    /** Column of the log electronic partition function. */
+    public static final int LN_Q_ELEC = 8;
+    /** Number of result columns per molecule. */
+    public static final int STRIDE = 9;
+
+    /** Default low-frequency cutoff for quasi-harmonic corrections (cm^-1). */
+    public static final double DEFAULT_CUTOFF = 100;
+
+    /** [R] Gas constant in J/(mol K), consistent with the other constants. */
+    private static final double GAS = PhysicalConstants.BOLTZ
+            * PhysicalConstants.AVOGADRO;
+    /** Joules per mole in one Hartree per particle. */
+    private static final double J_MOL_PER_HARTREE =
+            Conversions.HARTREE_TO_KCALTH * Conversions.CALTH_TO_JOULE * 1000;
+    /** Converts amu Angstrom^2 to kg m^2. */
+    private static final double AMU_A2_TO_KG_M2 =
+            PhysicalConstants.AMU_KG * 1e-20;
+    /** h c / k: converts cm^-1 to Kelvin. */
+    private static final double WAVENUMBER_TO_K = PhysicalConstants.PLANCK
+            * PhysicalConstants.LIGHT_CM / PhysicalConstants.BOLTZ;
+    /** h^2 / (8 pi^2 k): rotational temperature times moment of inertia. */
+    private static final double ROT_TEMP_MOMENT = PhysicalConstants.PLANCK
+            * PhysicalConstants.PLANCK
+            / (8 * Math.PI * Math.PI * PhysicalConstants.BOLTZ);
+    /** Average moment of inertia for Grimme's free rotors (kg m^2). */
+    private static final double GRIMME_AVG_MOMENT = 1e-44;
+    /** Smallest-to-largest moment ratio below which a molecule is linear. */
+    private static final double LINEAR_RATIO = 1e-6;
+
+    /**
+     * Treatments of low-frequency modes, which the harmonic approximation
+     * handles poorly.
+     */
+    public enum QuasiHarmonic {
+        /** Every mode is a harmonic oscillator. */
+        NONE,
+        /**
+         * Frequencies below the cutoff are raised to the cutoff for the
+         * entropy and partition function (Ribeiro, Marenich, Cramer and
+         * Truhlar, J. Phys. Chem. B 2011, 115, 14556).
+         */
+        TRUHLAR,
+        /**
+         * The vibrational entropy is interpolated toward that of a free rotor
+         * with a damping function centered on the cutoff (Grimme, Chem. Eur.
+         * J. 2012, 18, 9955).
+         */
+        GRIMME
+    }
+
+    private final double temperature;
+    private final double pressure;
+    private final QuasiHarmonic quasiHarmonic;
+    private final double cutoff;
+    /** ln(kT/P) + 3/2 ln(2 pi k T / h^2), less the mass term. */
+    private final double transBase;
+    /** Grimme's free-rotor entropy term that depends only on T. */
+    private final double rotorBase;
+
+    /**
+     * Creates a harmonic engine.
+     *
+     * @param temp
+     *            The temperature in Kelvin.
+     * @param pressureAtm
+     *            The pressure in atmospheres.
+     */
+    public Thermochemistry(final double temp, final double pressureAtm) {
+        this(temp, pressureAtm, QuasiHarmonic.NONE, DEFAULT_CUTOFF);
+    }
+
+    /**
+     * @param temp
+     *            The temperature in Kelvin.
+     * @param pressureAtm
+     *            The pressure in atmospheres.
+     * @param correction
+     *            The low-frequency treatment.
+     * @param cutoffWavenumber
+     *            The low-frequency cutoff in cm^-1.
+     */
+    public Thermochemistry(final double temp, final double pressureAtm,
+            final QuasiHarmonic correction, final double cutoffWavenumber) {
+        if (!(temp > 0) || !(pressureAtm > 0)) {
+            throw new IllegalArgumentException(String.format(
+                    "Temperature %s and pressure %s must be positive", temp,
+                    pressureAtm));
+        }
+        if (!(cutoffWavenumber > 0)) {
+            throw new IllegalArgumentException(String.format(
+                    "Cutoff %s must be positive", cutoffWavenumber));
+        }
+        this.temperature = temp;
+        this.pressure = pressureAtm;
+        this.quasiHarmonic = asNotNull(correction,
+                "Quasi-harmonic correction is null");
+        this.cutoff = cutoffWavenumber;
+        final double kT = PhysicalConstants.BOLTZ * temp;
+        final double planckSq = PhysicalConstants.PLANCK
+                * PhysicalConstants.PLANCK;
+        this.transBase = Math.log(kT
+                / (pressureAtm * Conversions.ATM_TO_PASCALS))
+                + 1.5 * Math.log(2 * Math.PI * kT * PhysicalConstants.AMU_KG
+                        / planckSq);
+        this.rotorBase = 0.5 + 0.5 * Math.log(8 * Math.PI * Math.PI * Math.PI
+                * kT / planckSq);
+    }
+
+    /**
+     * @return The temperature in Kelvin.
+     */
+    public double getTemperature() {
+        return temperature;
+    }
+
+    /**
+     * @return The pressure in atmospheres.
+     */
+    public double getPressure() {
+        return pressure;
+    }
+
+    /**
+     * @return The low-frequency treatment.
+     */
+    public QuasiHarmonic getQuasiHarmonic() {
+        return quasiHarmonic;
+    }
+
+    /**
+     * @return The low-frequency cutoff in cm^-1.
+     */
+    public double getCutoff() {
+        return cutoff;
+    }
+
+    /**
+     * Sums the element masses of the typed rows of a table.
+     *
+     * @param table
+     *            The structure.
+     * @return The molecular mass in amu.
+     */
+    public static double totalMass(final AtomTable table) {
+        final double[] masses = ElementTable.masses();
+        double total = 0;
+        for (byte type : table.getTypeOrdinals()) {
+            if (type != AtomTable.NO_TYPE) {
+                total += masses[type];
+            }
+        }
+        return total;
+    }
+
+    /**
+     * Evaluates a structure, taking its mass and moments of inertia from its
+     * element masses and coordinates.
+     *
+     * @param table
+     *            The structure.
+     * @param symmetry
+     *            The rotational symmetry number.
+     * @param multiplicity
+     *            The spin multiplicity.
+     * @param freqs
+     *            The vibrational frequencies in cm^-1.
+     * @return The {@link #STRIDE} result columns.
+     */
+    public double[] evaluate(final AtomTable table, final int symmetry,
+            final int multiplicity, final double[] freqs) {
+        asNotNull(table, "Atom table is null");
+        final InertiaAccumulator inertia = new InertiaAccumulator();
+        inertia.addAll(table);
+        final double[] out = new double[STRIDE];
+        evaluate(inertia.getTotalMass(), inertia.getPrincipalMoments(), 0,
+                symmetry, multiplicity, freqs, 0, freqs.length, out, 0);
+        return out;
+    }
+
+    /**
+     * Evaluates one molecule.
+     *
+     * @param mass
+     *            The molecular mass in amu.
+     * @param moments
+     *            The principal moments of inertia in amu Angstrom^2, ascending.
+     * @param momentOffset
+     *            The index of the smallest moment in the moments array.
+     * @param symmetry
+     *            The rotational symmetry number.
+     * @param multiplicity
+     *            The spin multiplicity.
+     * @param freqs
+     *            The vibrational frequencies in cm^-1.
+     * @param from
+     *            The index of the molecule's first frequency.
+     * @param to
+     *            One past the index of the molecule's last frequency.
+     * @param out
+     *            The result array.
+     * @param outOffset
+     *            The index of the first of the {@link #STRIDE} result columns.
+     */
+    public void evaluate(final double mass, final double[] moments,
+            final int momentOffset, final int symmetry,
+            final int multiplicity, final double[] freqs, final int from,
+            final int to, final double[] out, final int outOffset) {
+        if (!(mass > 0) || symmetry < 1 || multiplicity < 1) {
+            throw new IllegalArgumentException(String.format(
+                    "Invalid mass %s, symmetry %d or multiplicity %d", mass,
+                    symmetry, multiplicity));
+        }
+        final double temp = temperature;
+
+        // Translation: Sackur-Tetrode.
+        final double lnTrans = transBase + 1.5 * Math.log(mass);
+        double energy = 1.5 * temp;
+        double entropy = lnTrans + 2.5;
+
+        // Rotation: rigid rotor in the high-temperature limit.
+        final double small = moments[momentOffset];
+        final double mid = moments[momentOffset + 1];
+        final double large = moments[momentOffset + 2];
+        double lnRot = 0;
+        if (large > 0 && small < LINEAR_RATIO * large) {
+            lnRot = Math.log(temp * large * AMU_A2_TO_KG_M2
+                    / (symmetry * ROT_TEMP_MOMENT));
+            energy += temp;
+            entropy += lnRot + 1;
+        } else if (large > 0) {
+            final double scale = AMU_A2_TO_KG_M2 / ROT_TEMP_MOMENT;
+            lnRot = 0.5 * Math.log(Math.PI * temp * temp * temp * small * mid
+                    * large * scale * scale * scale)
+                    - Math.log(symmetry);
+            energy += 1.5 * temp;
+            entropy += lnRot + 1.5;
+        }
+
+        // Vibration: harmonic oscillators, optionally corrected.
+        double zpe = 0;
+        double lnVib = 0;
+        for (int k = from; k < to; k++) {
+            final double freq = freqs[k];
+            if (!(freq > 0)) {
+                continue;
+            }
+            final double theta = freq * WAVENUMBER_TO_K;
+            final double x = theta / temp;
+            zpe += 0.5 * theta;
+            energy += theta / Math.expm1(x);
+            switch (quasiHarmonic) {
+            case TRUHLAR:
+                final double xq = Math.max(freq, cutoff) * WAVENUMBER_TO_K
+                        / temp;
+                final double lnModeQ = -Math.log1p(-Math.exp(-xq));
+                lnVib += lnModeQ;
+                entropy += xq / Math.expm1(xq) + lnModeQ;
+                break;
+            case GRIMME:
+                final double lnModeG = -Math.log1p(-Math.exp(-x));
+                lnVib += lnModeG;
+                final double ratio = cutoff / freq;
+                final double ratioSq = ratio * ratio;
+                final double weight = 1 / (1 + ratioSq * ratioSq);
+                final double moment = PhysicalConstants.PLANCK
+                        / (8 * Math.PI * Math.PI * PhysicalConstants.LIGHT_CM
+                                * freq);
+                final double reduced = moment * GRIMME_AVG_MOMENT
+                        / (moment + GRIMME_AVG_MOMENT);
+                final double rotor = rotorBase + 0.5 * Math.log(reduced);
+                entropy += weight * (x / Math.expm1(x) + lnModeG)
+                        + (1 - weight) * rotor;
+                break;
+            default:
+                final double lnMode = -Math.log1p(-Math.exp(-x));
+                lnVib += lnMode;
+                entropy += x / Math.expm1(x) + lnMode;
+                break;
+            }
+        }
+
+        // Electronic: degenerate ground state only.
+        final double lnElec = Math.log(multiplicity);
+        entropy += lnElec;
+
+        // Energies so far are in Kelvin and the entropy in units of R.
+        final double toHartree = GAS / J_MOL_PER_HARTREE;
+        final double thermal = (energy + zpe) * toHartree;
+        final double enthalpy = thermal + temp * toHartree;
+        final double entropyHartree = entropy * toHartree;
+        out[outOffset + ZPE] = zpe * toHartree;
+        out[outOffset + THERMAL_ENERGY] = thermal;
+        out[outOffset + ENTHALPY] = enthalpy;
+        out[outOffset + ENTROPY] = entropyHartree;
+        out[outOffset + GIBBS] = enthalpy - temp * entropyHartree;
+        out[outOffset + LN_Q_TRANS] = lnTrans;
+        out[outOffset + LN_Q_ROT] = lnRot;
+        out[outOffset + LN_Q_VIB] = lnVib;
+        out[outOffset + LN_Q_ELEC] = lnElec;
+    }
+
+    /**
+     * Evaluates a batch of molecules held in flat arrays. The frequencies of
+     * molecule <code>m</code> are <code>freqs[freqOffsets[m]]</code> through
+     * <code>freqs[freqOffsets[m + 1] - 1]</code> and its results are written
+     * to <code>out[m * STRIDE]</code> onward.
+     *
+     * @param masses
+     *            The molecular masses in amu.
+     * @param moments
+     *            The ascending principal moments in amu Angstrom^2, three per
+     *            molecule.
+     * @param symmetries
+     *            The rotational symmetry numbers.
+     * @param multiplicities
+     *            The spin multiplicities.
+     * @param freqs
+     *            The frequencies of every molecule in cm^-1.
+     * @param freqOffsets
+     *            The start of each molecule's frequencies plus an end marker.
+     * @param out
+     *            The result array, at least {@link #STRIDE} times the number
+     *            of molecules long.
+     * @param parallel
+     *            Whether to split the molecules across the common pool.
+     */
+    public void evaluateAll(final double[] masses, final double[] moments,
+            final int[] symmetries, final int[] multiplicities,
+            final double[] freqs, final int[] freqOffsets, final double[] out,
+            final boolean parallel) {
+        final int count = masses.length;
+        if (moments.length < 3 * count || symmetries.length < count
+                || multiplicities.length < count
+                || freqOffsets.length < count + 1
+                || out.length < STRIDE * count) {
+            throw new IllegalArgumentException(String.format(
+                    "Arrays are too short for %d molecules", count));
+        }
+        final IntStream mols = IntStream.range(0, count);
+        (parallel ? mols.parallel() : mols).forEach(
+                m -> evaluate(masses[m], moments, 3 * m, symmetries[m],
+                        multiplicities[m], freqs, freqOffsets[m],
+                        freqOffsets[m + 1], out, STRIDE * m));
+    }
+
+    @Override
+    public String toString() {
+        return String.format(
+                "Thermochemistry[T=%s K, P=%s atm, %s below %s cm^-1]",
+                temperature, pressure, quasiHarmonic, cutoff);
+    }
+}
@@ -0,0 +1,509 @@
+package com.cmayes.common.chem;
+
+import org.apache.commons.lang3.builder.EqualsBuilder;
+import org.apache.commons.lang3.builder.HashCodeBuilder;
+import org.apache.commons.lang3.builder.ToStringBuilder;
+
+import com.cmayes.common.model.Coordinates;
+
+/**
+ * A periodic simulation cell, orthorhombic or triclinic, with minimum-image
+ * distances. The lattice vectors are held in the usual lower-triangular form:
+ * <code>a</code> along X, <code>b</code> in the XY plane and <code>c</code>
+ * with a positive Z component.
+ *
+ * Minimum-image separations are found by rounding fractional coordinates,
+ * which is exact whenever the shortest image is within
+ * {@link #getMaxCutoff()}, half the smallest distance between opposite faces.
+ * Longer separations in strongly skewed cells may come back as an image that
+ * is not the shortest; neighbor searches refuse cutoffs beyond that limit.
+ *
+ * Instances are immutable.
+ *
+ * @author cmayes
+ */
+public final class UnitCell {
+    private final double ax;
+    private final double bx;
+    private final double by;
+    private final double cx;
+    private final double cy;
+    private final double cz;
+    private final boolean orthorhombic;
+    private final double[] widths;
+
+    /**
+     * @param aX
+     *            The X component of a.
+     * @param bX
+     *            The X component of b.
+     * @param bY
+     *            The Y component of b.
+     * @param cX
+     *            The X component of c.
+     * @param cY
+     *            The Y component of c.
+     * @param cZ
+     *            The Z component of c.
+     */
+    private UnitCell(final double aX, final double bX, final double bY,
+            final double cX, final double cY, final double cZ) {
+        if (!(aX > 0) || !(bY > 0) || !(cZ > 0) || Double.isInfinite(aX)
+                || Double.isInfinite(bY) || Double.isInfinite(cZ)) {
+            throw new IllegalArgumentException(String.format(
+                    "Degenerate unit cell a=%s, b=(%s, %s), c=(%s, %s, %s)",
+                    aX, bX, bY, cX, cY, cZ));
+        }
+        this.ax = aX;
+        this.bx = bX;
+        this.by = bY;
+        this.cx = cX;
+        this.cy = cY;
+        this.cz = cZ;
+        this.orthorhombic = bX == 0 && cX == 0 && cY == 0;
+        // Face separations are the volume over the opposite face's area.
+        final double volume = aX * bY * cZ;
+        final double bcArea = norm(bY * cZ, -bX * cZ, bX * cY - bY * cX);
+        final double acArea = aX * Math.hypot(cY, cZ);
+        final double abArea = aX * bY;
+        this.widths = new double[] { volume / bcArea, volume / acArea,
+                volume / abArea };
+    }
+
+    /**
+     * Creates a rectangular cell.
+     *
+     * @param a
+     *            The length along X.
+     * @param b
+     *            The length along Y.
+     * @param c
+     *            The length along Z.
+     * @return The cell.
+     */
+    public static UnitCell orthorhombic(final double a, final double b,
+            final double c) {
+        return new UnitCell(a, 0, b, 0, 0, c);
+    }
+
+    /**
+     * Creates a cell from its lattice parameters.
+     *
+     * @param a
+     *            The length of a.
+     * @param b
+     *            The length of b.
+     * @param c
+     *            The length of c.
+     * @param alpha
+     *            The angle between b and c in degrees.
+     * @param beta
+     *            The angle between a and c in degrees.
+     * @param gamma
+     *            The angle between a and b in degrees.
+     * @return The cell.
+     */
+    public static UnitCell triclinic(final double a, final double b,
+            final double c, final double alpha, final double beta,
+            final double gamma) {
+        final double cosA = cosDegrees(alpha);
+        final double cosB = cosDegrees(beta);
+        final double cosG = cosDegrees(gamma);
+        final double sinG = Math.sin(Math.toRadians(gamma));
+        final double cyFrac = (cosA - cosB * cosG) / sinG;
+        final double czSq = 1 - cosB * cosB - cyFrac * cyFrac;
+        if (!(czSq > 0)) {
+            throw new IllegalArgumentException(String.format(
+                    "Impossible cell angles %s, %s, %s", alpha, beta, gamma));
+        }
+        return new UnitCell(a, b * cosG, b * sinG, c * cosB, c * cyFrac, c
+                * Math.sqrt(czSq));
+    }
+
+    /**
+     * Creates a cell from lattice vectors already in lower-triangular form.
+     *
+     * @param aX
+     *            The X component of a.
+     * @param bX
+     *            The X component of b.
+     * @param bY
+     *            The Y component of b.
+     * @param cX
+     *            The X component of c.
+     * @param cY
+     *            The Y component of c.
+     * @param cZ
+     *            The Z component of c.
+     * @return The cell.
+     */
+    public static UnitCell fromVectors(final double aX, final double bX,
+            final double bY, final double cX, final double cY, final double cZ) {
+        return new UnitCell(aX, bX, bY, cX, cY, cZ);
+    }
+
+    /**
+     * @return Whether the lattice vectors are along the axes.
+     */
+    public boolean isOrthorhombic() {
+        return orthorhombic;
+    }
+
+    /**
+     * @return The cell volume.
+     */
+    public double getVolume() {
+        return ax * by * cz;
+    }
+
+    /**
+     * @return The lattice vectors a, b and c as rows.
+     */
+    public double[][] getVectors() {
+        return new double[][] { { ax, 0, 0 }, { bx, by, 0 }, { cx, cy, cz } };
+    }
+
+    /**
+     * @return The distances between opposite faces, across b-c, a-c and a-b.
+     */
+    public double[] getWidths() {
+        return widths.clone();
+    }
+
+    /**
+     * @return The largest separation for which minimum images are exact: half
+     *         the smallest face separation.
+     */
+    public double getMaxCutoff() {
+        return Math.min(widths[0], Math.min(widths[1], widths[2])) / 2;
+    }
+
+    /**
+     * Converts a position to fractional coordinates.
+     *
+     * @param x
+     *            The X coordinate.
+     * @param y
+     *            The Y coordinate.
+     * @param z
+     *            The Z coordinate.
+     * @param out
+     *            Receives the fractional coordinates along a, b and c.
+     */
+    public void toFractional(final double x, final double y, final double z,
+            final double[] out) {
+        final double sc = z / cz;
+        final double sb = (y - cy * sc) / by;
+        out[0] = (x - bx * sb - cx * sc) / ax;
+        out[1] = sb;
+        out[2] = sc;
+    }
+
+    /**
+     * Converts fractional coordinates to a position.
+     *
+     * @param sa
+     *            The coordinate along a.
+     * @param sb
+     *            The coordinate along b.
+     * @param sc
+     *            The coordinate along c.
+     * @param out
+     *            Receives X, Y and Z.
+     */
+    public void toCartesian(final double sa, final double sb, final double sc,
+            final double[] out) {
+        out[0] = ax * sa + bx * sb + cx * sc;
+        out[1] = by * sb + cy * sc;
+        out[2] = cz * sc;
+    }
+
+    /**
+     * Replaces a separation with its minimum image.
+     *
+     * @param delta
+     *            The separation X, Y, Z; overwritten with the image.
+     */
+    public void minimumImage(final double[] delta) {
+        final double sc = delta[2] / cz;
+        final double sb = (delta[1] - cy * sc) / by;
+        final double sa = (delta[0] - bx * sb - cx * sc) / ax;
+        final double fa = sa - Math.rint(sa);
+        final double fb = sb - Math.rint(sb);
+        final double fc = sc - Math.rint(sc);
+        delta[0] = ax * fa + bx * fb + cx * fc;
+        delta[1] = by * fb + cy * fc;
+        delta[2] = cz * fc;
+    }
+
+    /**
+     * Returns the squared minimum-image distance between two positions.
+     *
+     * @param x1
+     *            The first X.
+     * @param y1
+     *            The first Y.
+     * @param z1
+     *            The first Z.
+     * @param x2
+     *            The second X.
+     * @param y2
+     *            The second Y.
+     * @param z2
+     *            The second Z.
+     * @return The squared distance.
+     */
+    public double distanceSq(final double x1, final double y1,
+            final double z1, final double x2, final double y2, final double z2) {
+        return imageSq(x2 - x1, y2 - y1, z2 - z1);
+    }
+
+    /**
+     * Returns the minimum-image distance between two positions.
+     *
+     * @param x1
+     *            The first X.
+     * @param y1
+     *            The first Y.
+     * @param z1
+     *            The first Z.
+     * @param x2
+     *            The second X.
+     * @param y2
+     *            The second Y.
+     * @param z2
+     *            The second Z.
+     * @return The distance.
+     */
+    public double distance(final double x1, final double y1, final double z1,
+            final double x2, final double y2, final double z2) {
+        return Math.sqrt(imageSq(x2 - x1, y2 - y1, z2 - z1));
+    }
+
+    /**
+     * Returns the minimum-image distance between two indexed atoms.
+     *
+     * @param coords
+     *            The coordinates holding the atoms.
+     * @param first
+     *            The index of the first atom.
+     * @param second
+     *            The index of the second atom.
+     * @return The distance.
+     */
+    public double distance(final Coordinates coords, final int first,
+            final int second) {
+        return Math.sqrt(imageSq(coords.getX(second) - coords.getX(first),
+                coords.getY(second) - coords.getY(first), coords.getZ(second)
+                        - coords.getZ(first)));
+    }
+
+    /**
+     * Writes the minimum-image distance from a point to each position in a
+     * range.
+     *
+     * @param x
+     *            The point's X.
+     * @param y
+     *            The point's Y.
+     * @param z
+     *            The point's Z.
+     * @param xs
+     *            The X coordinates.
+     * @param ys
+     *            The Y coordinates.
+     * @param zs
+     *            The Z coordinates.
+     * @param from
+     *            The first position.
+     * @param to
+     *            One past the last position.
+     * @param out
+     *            Receives the distance to position <code>j</code> at
+     *            <code>outOffset + j - from</code>.
+     * @param outOffset
+     *            The output position for the first distance.
+     */
+    public void distances(final double x, final double y, final double z,
+            final double[] xs, final double[] ys, final double[] zs,
+            final int from, final int to, final double[] out,
+            final int outOffset) {
+        if (orthorhombic) {
+            for (int j = from; j < to; j++) {
+                out[outOffset + j - from] = Math.sqrt(orthoSq(xs[j] - x, ys[j]
+                        - y, zs[j] - z));
+            }
+        } else {
+            for (int j = from; j < to; j++) {
+                out[outOffset + j - from] = Math.sqrt(imageSq(xs[j] - x, ys[j]
+                        - y, zs[j] - z));
+            }
+        }
+    }
+
+    /**
+     * Collects the positions in a range whose minimum image is within the
+     * cutoff of a point.
+     *
+     * @param x
+     *            The point's X.
+     * @param y
+     *            The point's Y.
+     * @param z
+     *            The point's Z.
+     * @param xs
+     *            The X coordinates.
+     * @param ys
+     *            The Y coordinates.
+     * @param zs
+     *            The Z coordinates.
+     * @param from
+     *            The first position.
+     * @param to
+     *            One past the last position.
+     * @param cutoffSq
+     *            The squared cutoff (inclusive).
+     * @param out
+     *            Receives the matching positions in ascending order; must hold
+     *            <code>to - from</code> entries.
+     * @return The number of matches.
+     */
+    public int within(final double x, final double y, final double z,
+            final double[] xs, final double[] ys, final double[] zs,
+            final int from, final int to, final double cutoffSq,
+            final int[] out) {
+        int count = 0;
+        for (int j = from; j < to; j++) {
+            final double dx = xs[j] - x;
+            final double dy = ys[j] - y;
+            final double dz = zs[j] - z;
+            final double distSq = orthorhombic ? orthoSq(dx, dy, dz) : imageSq(
+                    dx, dy, dz);
+            if (distSq <= cutoffSq) {
+                out[count++] = j;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * @param x
+     *            The X coordinate.
+     * @param y
+     *            The Y coordinate.
+     * @param z
+     *            The Z coordinate.
+     * @return The fractional coordinate along a.
+     */
+    double fractionalA(final double x, final double y, final double z) {
+        final double sc = z / cz;
+        return (x - bx * ((y - cy * sc) / by) - cx * sc) / ax;
+    }
+
+    /**
+     * @param y
+     *            The Y coordinate.
+     * @param z
+     *            The Z coordinate.
+     * @return The fractional coordinate along b.
+     */
+    double fractionalB(final double y, final double z) {
+        return (y - cy * (z / cz)) / by;
+    }
+
+    /**
+     * @param z
+     *            The Z coordinate.
+     * @return The fractional coordinate along c.
+     */
+    double fractionalC(final double z) {
+        return z / cz;
+    }
+
+    /**
+     * @param dx
+     *            The X separation.
+     * @param dy
+     *            The Y separation.
+     * @param dz
+     *            The Z separation.
+     * @return The squared length of the separation's minimum image.
+     */
+    double imageSq(final double dx, final double dy, final double dz) {
+        if (orthorhombic) {
+            return orthoSq(dx, dy, dz);
+        }
+        final double sc = dz / cz;
+        final double sb = (dy - cy * sc) / by;
+        final double sa = (dx - bx * sb - cx * sc) / ax;
+        final double fa = sa - Math.rint(sa);
+        final double fb = sb - Math.rint(sb);
+        final double fc = sc - Math.rint(sc);
+        final double ix = ax * fa + bx * fb + cx * fc;
+        final double iy = by * fb + cy * fc;
+        final double iz = cz * fc;
+        return ix * ix + iy * iy + iz * iz;
+    }
+
+    /**
+     * @param dx
+     *            The X separation.
+     * @param dy
+     *            The Y separation.
+     * @param dz
+     *            The Z separation.
+     * @return The squared length of the minimum image in a rectangular cell.
+     */
+    private double orthoSq(final double dx, final double dy, final double dz) {
+        final double ix = dx - ax * Math.rint(dx / ax);
+        final double iy = dy - by * Math.rint(dy / by);
+        final double iz = dz - cz * Math.rint(dz / cz);
+        return ix * ix + iy * iy + iz * iz;
+    }
+
+    @Override
+    public boolean equals(final Object obj) {
+        if (!(obj instanceof UnitCell)) {
+            return false;
+        }
+        final UnitCell other = (UnitCell) obj;
+        return new EqualsBuilder().append(ax, other.ax).append(bx, other.bx)
+                .append(by, other.by).append(cx, other.cx)
+                .append(cy, other.cy).append(cz, other.cz).isEquals();
+    }
+
+    @Override
+    public int hashCode() {
+        return new HashCodeBuilder().append(ax).append(bx).append(by)
+                .append(cx).append(cy).append(cz).toHashCode();
+    }
+
+    @Override
+    public String toString() {
+        return new ToStringBuilder(this).append("a", ax)
+                .append("b", new double[] { bx, by })
+                .append("c", new double[] { cx, cy, cz }).toString();
+    }
+
+    /**
+     * @param degrees
+     *            An angle.
+     * @return Its cosine, exactly zero at right angles.
+     */
+    private static double cosDegrees(final double degrees) {
+        return degrees == 90 ? 0 : Math.cos(Math.toRadians(degrees));
+    }
+
+    /**
+     * @param x
+     *            The X component.
+     * @param y
+     *            The Y component.
+     * @param z
+     *            The Z component.
+     * @return The vector's length.
+     */
+    private static double norm(final double x, final double y, final double z) {
+        return Math.sqrt(x * x + y * y + z * z);
+    }
+}
@@ -0,0 +1,282 @@
+package com.cmayes.common.chem;
+
+import static com.cmayes.common.exception.ExceptionUtils.asNotNull;
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+import com.cmayes.common.model.AtomTable;
+
+/**
+ * Verlet neighbor list for processing successive frames of a trajectory. The
+ * list holds every pair within <code>cutoff + skin</code> at the time it was
+ * built; as long as no atom has moved more than half the skin since then, it
+ * still contains every pair within the cutoff, so each frame only filters the
+ * candidate pairs instead of searching from scratch. The list rebuilds itself
+ * (with a {@link CellList} pass) when the displacement limit is exceeded or
+ * the atom count changes.
+ *
+ * Candidates are stored as a half list in compressed-sparse-row form: the
+ * partners <code>j &gt; i</code> of atom <code>i</code> are
+ * <code>partners[offsets[i]]</code> through
+ * <code>partners[offsets[i + 1] - 1]</code>.
+ *
+ * Instances are not thread-safe.
+ *
+ * @author cmayes
+ */
+public final class VerletList {
+    private final double cutoff;
+    private final double skin;
+    private final double listCutoff;
+    private int[] offsets;
+    private int[] partners;
+    private double[] refX;
+    private double[] refY;
+    private double[] refZ;
+    private int rebuilds;
+
+    /**
+     * Creates an empty list; it is built by the first frame.
+     *
+     * @param cutoffDist
+     *            The contact cutoff.
+     * @param skinDist
+     *            The extra distance kept in the list to absorb motion.
+     */
+    public VerletList(final double cutoffDist, final double skinDist) {
+        if (!(cutoffDist > 0) || !(skinDist >= 0)) {
+            throw new IllegalArgumentException(String.format(
+                    "Invalid cutoff %s or skin %s", cutoffDist, skinDist));
+        }
+        this.cutoff = cutoffDist;
+        this.skin = skinDist;
+        this.listCutoff = cutoffDist + skinDist;
+    }
+
+    /**
+     * Creates a list sized for bond perception with the given criterion.
+     *
+     * @param criterion
+     *            The bond criterion the list will serve.
+     * @param skinDist
+     *            The extra distance kept in the list to absorb motion.
+     */
+    public VerletList(final BondCriterion criterion, final double skinDist) {
+        this(asNotNull(criterion, "Bond criterion is null").getMaxCutoff(),
+                skinDist);
+    }
+
+    /**
+     * @return The contact cutoff.
+     */
+    public double getCutoff() {
+        return cutoff;
+    }
+
+    /**
+     * @return The skin distance.
+     */
+    public double getSkin() {
+        return skin;
+    }
+
+    /**
+     * @return The number of times the list has been built.
+     */
+    public int getRebuildCount() {
+        return rebuilds;
+    }
+
+    /**
+     * @return The number of candidate pairs in the current list.
+     */
+    public int candidateCount() {
+        return partners == null ? 0 : partners.length;
+    }
+
+    /**
+     * Brings the list up to date for the given frame, rebuilding it if any
+     * atom has moved more than half the skin since the last build.
+     *
+     * @param frame
+     *            The frame's atoms.
+     * @return Whether the list was rebuilt.
+     */
+    public boolean update(final AtomTable frame) {
+        asNotNull(frame, "Frame is null");
+        if (refX == null || refX.length != frame.size() || exceedsSkin(frame)) {
+            rebuild(frame);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Finds all pairs within the cutoff in the given frame, updating the list
+     * first.
+     *
+     * @param frame
+     *            The frame's atoms.
+     * @return The contact pairs, ordered by first and then second index.
+     */
+    public PairList contacts(final AtomTable frame) {
+        update(frame);
+        final double[] xs = frame.getXs();
+        final double[] ys = frame.getYs();
+        final double[] zs = frame.getZs();
+        final double cutoffSq = cutoff * cutoff;
+        int[] firsts = new int[Math.max(16, partners.length / 2)];
+        int[] seconds = new int[firsts.length];
+        double[] dists = new double[firsts.length];
+        int count = 0;
+        for (int i = 0; i < xs.length; i++) {
+            for (int k = offsets[i]; k < offsets[i + 1]; k++) {
+                final int j = partners[k];
+                final double dx = xs[j] - xs[i];
+                final double dy = ys[j] - ys[i];
+                final double dz = zs[j] - zs[i];
+                final double distSq = dx * dx + dy * dy + dz * dz;
+                if (distSq <= cutoffSq) {
+                    if (count == firsts.length) {
+                        firsts = Arrays.copyOf(firsts, count * 2);
+                        seconds = Arrays.copyOf(seconds, count * 2);
+                        dists = Arrays.copyOf(dists, count * 2);
+                    }
+                    firsts[count] = i;
+                    seconds[count] = j;
+                    dists[count++] = Math.sqrt(distSq);
+                }
+            }
+        }
+        return new PairList(Arrays.copyOf(firsts, count), Arrays.copyOf(
+                seconds, count), Arrays.copyOf(dists, count));
+    }
+
+    /**
+     * Perceives the bonds of the given frame, updating the list first.
+     *
+     * @param frame
+     *            The frame's atoms.
+     * @param criterion
+     *            The bond criterion; its largest cutoff may not exceed this
+     *            list's cutoff.
+     * @param withLengths
+     *            Whether to store bond lengths.
+     * @return The frame's bond graph.
+     */
+    public BondGraph bonds(final AtomTable frame,
+            final BondCriterion criterion, final boolean withLengths) {
+        if (criterion.getMaxCutoff() > cutoff) {
+            throw new IllegalArgumentException(String.format(
+                    "Bond cutoff %s exceeds neighbor list cutoff %s",
+                    criterion.getMaxCutoff(), cutoff));
+        }
+        update(frame);
+        final byte[] types = frame.getTypeOrdinals();
+        final double[] xs = frame.getXs();
+        final double[] ys = frame.getYs();
+        final double[] zs = frame.getZs();
+        int[] firsts = new int[Math.max(16, xs.length)];
+        int[] seconds = new int[firsts.length];
+        int count = 0;
+        for (int i = 0; i < xs.length; i++) {
+            for (int k = offsets[i]; k < offsets[i + 1]; k++) {
+                final int j = partners[k];
+                final double dx = xs[j] - xs[i];
+                final double dy = ys[j] - ys[i];
+                final double dz = zs[j] - zs[i];
+                if (criterion.isBonded(types[i], types[j], dx * dx + dy * dy
+                        + dz * dz)) {
+                    if (count == firsts.length) {
+                        firsts = Arrays.copyOf(firsts, count * 2);
+                        seconds = Arrays.copyOf(seconds, count * 2);
+                    }
+                    firsts[count] = i;
+                    seconds[count++] = j;
+                }
+            }
+        }
+        return BondGraph.fromPairs(frame, firsts, seconds, count, withLengths);
+    }
+
+    /**
+     * @param frame
+     *            The frame's atoms.
+     * @return Whether any atom has moved more than half the skin since the
+     *         last build.
+     */
+    private boolean exceedsSkin(final AtomTable frame) {
+        final double limitSq = skin * skin / 4;
+        final double[] xs = frame.getXs();
+        final double[] ys = frame.getYs();
+        final double[] zs = frame.getZs();
+        for (int i = 0; i < xs.length; i++) {
+            final double dx = xs[i] - refX[i];
+            final double dy = ys[i] - refY[i];
+            final double dz = zs[i] - refZ[i];
+            if (dx * dx + dy * dy + dz * dz > limitSq) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Rebuilds the candidate list from the given frame.
+     *
+     * @param frame
+     *            The frame's atoms.
+     */
+    private void rebuild(final AtomTable frame) {
+        final int size = frame.size();
+        final CellList cells = new CellList(frame, listCutoff);
+        final double[] xs = frame.getXs();
+        final double[] ys = frame.getYs();
+        final double[] zs = frame.getZs();
+        final HalfListCollector collector = new HalfListCollector(size);
+        final int[] offs = new int[size + 1];
+        for (int i = 0; i < size; i++) {
+            collector.current = i;
+            final int start = collector.count;
+            cells.forEachWithin(xs[i], ys[i], zs[i], listCutoff, null,
+                    collector);
+            Arrays.sort(collector.partners, start, collector.count);
+            offs[i + 1] = collector.count;
+        }
+        this.offsets = offs;
+        this.partners = Arrays.copyOf(collector.partners, collector.count);
+        this.refX = xs.clone();
+        this.refY = ys.clone();
+        this.refZ = zs.clone();
+        rebuilds++;
+    }
+
+    /**
+     * Appends partners with a higher index than the current atom.
+     */
+    private static final class HalfListCollector implements IntConsumer {
+        private int current;
+        private int count;
+        private int[] partners;
+
+        /**
+         * @param atomCount
+         *            The number of atoms; used to size the initial buffer.
+         */
+        private HalfListCollector(final int atomCount) {
+            this.partners = new int[Math.max(16, atomCount * 4)];
+        }
+
+        @Override
+        public void accept(final int other) {
+            if (other <= current) {
+                return;
+            }
+            if (count == partners.length) {
+                partners = Arrays.copyOf(partners, count * 2);
+            }
+            partners[count++] = other;
+        }
+    }
+}
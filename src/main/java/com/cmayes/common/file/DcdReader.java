@@ -0,0 +1,367 @@
+package com.cmayes.common.file;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import com.cmayes.common.exception.EnvironmentException;
+import com.cmayes.common.exception.InvalidDataException;
+import com.cmayes.common.model.Coordinates;
+import com.cmayes.common.model.impl.FloatBufferCoordinates;
+
+/**
+ * Random-access reader for CHARMM/NAMD-style DCD trajectories. The file is
+ * memory-mapped in segments of whole frames, and each frame is exposed as a
+ * read-only {@link Coordinates} view over the mapped float32 X, Y and Z
+ * blocks, so frames are never copied onto the heap. Byte order is detected
+ * from the header.
+ *
+ * Files with fixed atoms or a fourth dimension are not supported. The frame
+ * count is taken from the file length, so trajectories that are still being
+ * written (or have a stale header count) are read up to their last complete
+ * frame.
+ *
+ * @author cmayes
+ */
+public class DcdReader implements Closeable {
+    /** Length of the main header record. */
+    private static final int HEADER_LEN = 84;
+    /** Length of the unit cell record (six doubles). */
+    private static final int CELL_LEN = 48;
+    /** Length of a Fortran record marker. */
+    private static final int MARKER_LEN = 4;
+    /** Length of each title line. */
+    private static final int TITLE_LEN = 80;
+
+    private final FileChannel channel;
+    private final ByteOrder order;
+    private final int atomCount;
+    private final int frameCount;
+    private final boolean unitCell;
+    private final int startStep;
+    private final int stepInterval;
+    private final float timeStep;
+    private final List<String> titles;
+    private final long firstFrame;
+    private final long frameLen;
+    private final int framesPerSegment;
+    private final ByteBuffer[] segments;
+
+    /**
+     * Opens and maps the given DCD file.
+     *
+     * @param file
+     *            The trajectory to read.
+     * @throws EnvironmentException
+     *             If the file cannot be read.
+     * @throws InvalidDataException
+     *             If the file is not a supported DCD trajectory.
+     */
+    public DcdReader(final File file) {
+        try {
+            this.channel = FileChannel.open(file.toPath(),
+                    StandardOpenOption.READ);
+        } catch (final IOException e) {
+            throw new EnvironmentException("Couldn't open trajectory %s", e,
+                    file);
+        }
+        try {
+            ByteBuffer head = map(0, Math.min(channel.size(), 1 << 16));
+            this.order = detectOrder(head, file);
+            head.order(order);
+            if (head.getInt(MARKER_LEN) != 0x44524f43
+                    && head.getInt(MARKER_LEN) != 0x434f5244) {
+                throw new InvalidDataException("%s is not a CORD trajectory",
+                        file);
+            }
+            final int ctrl = MARKER_LEN * 2;
+            this.startStep = head.getInt(ctrl + 4);
+            this.stepInterval = head.getInt(ctrl + 8);
+            final int fixedAtoms = head.getInt(ctrl + 32);
+            this.timeStep = head.getFloat(ctrl + 36);
+            final boolean charmm = head.getInt(ctrl + 76) != 0;
+            this.unitCell = charmm && head.getInt(ctrl + 40) != 0;
+            if (fixedAtoms != 0 || (charmm && head.getInt(ctrl + 44) != 0)) {
+                throw new InvalidDataException(
+                        "Fixed atoms and 4D trajectories are unsupported: %s",
+                        file);
+            }
+
+            int pos = HEADER_LEN + MARKER_LEN * 2;
+            if (head.limit() < pos + MARKER_LEN * 2) {
+                throw new InvalidDataException("Truncated header in %s", file);
+            }
+            final int titleLen = head.getInt(pos);
+            final int numTitles = head.getInt(pos + MARKER_LEN);
+            if (numTitles < 0
+                    || titleLen != MARKER_LEN + (long) numTitles * TITLE_LEN) {
+                throw new InvalidDataException("Bad title record in %s", file);
+            }
+            // The titles, their closing marker and the atom count record.
+            final long headerEnd = pos + MARKER_LEN + (long) titleLen
+                    + MARKER_LEN * 3;
+            if (headerEnd > Math.min(channel.size(), Integer.MAX_VALUE)) {
+                throw new InvalidDataException("Truncated header in %s", file);
+            }
+            if (headerEnd > head.limit()) {
+                head = map(0, headerEnd).order(order);
+            }
+            final List<String> lines = new ArrayList<String>(numTitles);
+            for (int t = 0; t < numTitles; t++) {
+                final byte[] line = new byte[TITLE_LEN];
+                for (int b = 0; b < TITLE_LEN; b++) {
+                    line[b] = head.get(pos + MARKER_LEN * 2 + t * TITLE_LEN
+                            + b);
+                }
+                lines.add(new String(line, StandardCharsets.US_ASCII).trim());
+            }
+            this.titles = Collections.unmodifiableList(lines);
+            pos += titleLen + MARKER_LEN * 2;
+            if (head.getInt(pos) != MARKER_LEN) {
+                throw new InvalidDataException("Bad atom count record in %s",
+                        file);
+            }
+            this.atomCount = head.getInt(pos + MARKER_LEN);
+            this.firstFrame = pos + MARKER_LEN * 3;
+
+            final long coordLen = 3L * (MARKER_LEN * 2 + 4L * atomCount);
+            this.frameLen = coordLen
+                    + (unitCell ? CELL_LEN + MARKER_LEN * 2 : 0);
+            if (atomCount < 0 || frameLen > Integer.MAX_VALUE) {
+                throw new InvalidDataException("Bad atom count %d in %s",
+                        atomCount, file);
+            }
+            this.frameCount = (int) Math.max(0,
+                    (channel.size() - firstFrame) / frameLen);
+            this.framesPerSegment = (int) Math.max(1, Integer.MAX_VALUE
+                    / frameLen);
+            this.segments = new ByteBuffer[(frameCount + framesPerSegment - 1)
+                    / framesPerSegment];
+        } catch (final IOException e) {
+            closeQuietly();
+            throw new EnvironmentException("Couldn't read trajectory %s", e,
+                    file);
+        } catch (final RuntimeException e) {
+            closeQuietly();
+            throw e;
+        }
+    }
+
+    /**
+     * @return The number of atoms in each frame.
+     */
+    public int getAtomCount() {
+        return atomCount;
+    }
+
+    /**
+     * @return The number of complete frames in the file.
+     */
+    public int getFrameCount() {
+        return frameCount;
+    }
+
+    /**
+     * @return Whether each frame carries unit cell data.
+     */
+    public boolean hasUnitCell() {
+        return unitCell;
+    }
+
+    /**
+     * @return The simulation step of the first frame.
+     */
+    public int getStartStep() {
+        return startStep;
+    }
+
+    /**
+     * @return The number of simulation steps between frames.
+     */
+    public int getStepInterval() {
+        return stepInterval;
+    }
+
+    /**
+     * @return The simulation time step in the file's native units.
+     */
+    public float getTimeStep() {
+        return timeStep;
+    }
+
+    /**
+     * @return The title lines from the header.
+     */
+    public List<String> getTitles() {
+        return titles;
+    }
+
+    /**
+     * Returns a read-only view of the given frame's coordinates backed by the
+     * mapped file.
+     *
+     * @param frame
+     *            The zero-based frame number.
+     * @return The frame's coordinates.
+     */
+    public FloatBufferCoordinates frame(final int frame) {
+        final int offset = frameOffset(frame)
+                + (unitCell ? CELL_LEN + MARKER_LEN * 2 : 0);
+        final FloatBuffer floats = segment(frame).asFloatBuffer();
+        final int block = MARKER_LEN * 2 / 4 + atomCount;
+        final int xStart = offset / 4 + 1;
+        return new FloatBufferCoordinates(slice(floats, xStart), slice(floats,
+                xStart + block), slice(floats, xStart + 2 * block));
+    }
+
+    /**
+     * Returns the unit cell of the given frame as stored in the file: for
+     * CHARMM-format files, A, gamma, B, beta, alpha, C.
+     *
+     * @param frame
+     *            The zero-based frame number.
+     * @return The six unit cell values.
+     * @throws IllegalStateException
+     *             If the trajectory has no unit cell data.
+     */
+    public double[] getUnitCell(final int frame) {
+        if (!unitCell) {
+            throw new IllegalStateException("Trajectory has no unit cell data");
+        }
+        final ByteBuffer seg = segment(frame);
+        final int offset = frameOffset(frame) + MARKER_LEN;
+        final double[] cell = new double[6];
+        for (int i = 0; i < cell.length; i++) {
+            cell[i] = seg.getDouble(offset + i * 8);
+        }
+        return cell;
+    }
+
+    /**
+     * Closes the file. Views handed out remain readable until they are
+     * garbage collected.
+     */
+    @Override
+    public void close() {
+        try {
+            channel.close();
+        } catch (final IOException e) {
+            throw new EnvironmentException("Couldn't close trajectory", e);
+        }
+    }
+
+    /**
+     * @param frame
+     *            The frame number.
+     * @return The byte offset of the frame within its segment.
+     */
+    private int frameOffset(final int frame) {
+        return (int) ((frame % framesPerSegment) * frameLen);
+    }
+
+    /**
+     * Returns the mapped segment holding the given frame, mapping it on first
+     * use.
+     *
+     * @param frame
+     *            The frame number.
+     * @return The segment, positioned at zero.
+     */
+    private synchronized ByteBuffer segment(final int frame) {
+        if (frame < 0 || frame >= frameCount) {
+            throw new IndexOutOfBoundsException(String.format(
+                    "Frame %d is outside 0-%d", frame, frameCount - 1));
+        }
+        final int segIdx = frame / framesPerSegment;
+        if (segments[segIdx] == null) {
+            final long start = firstFrame + segIdx * framesPerSegment
+                    * frameLen;
+            final long frames = Math.min(framesPerSegment, frameCount - segIdx
+                    * framesPerSegment);
+            try {
+                segments[segIdx] = map(start, frames * frameLen).order(order);
+            } catch (final IOException e) {
+                throw new EnvironmentException(
+                        "Couldn't map trajectory frames from %d", e, frame);
+            }
+        }
+        return segments[segIdx].duplicate().order(order);
+    }
+
+    /**
+     * Maps a read-only region of the file.
+     *
+     * @param start
+     *            The starting byte.
+     * @param len
+     *            The length in bytes.
+     * @return The mapped region.
+     * @throws IOException
+     *             If the region cannot be mapped.
+     */
+    private ByteBuffer map(final long start, final long len)
+            throws IOException {
+        return channel.map(FileChannel.MapMode.READ_ONLY, start, len);
+    }
+
+    /**
+     * Returns a view of one coordinate block.
+     *
+     * @param floats
+     *            The segment as floats.
+     * @param start
+     *            The float index of the block's first value.
+     * @return The block's values.
+     */
+    private FloatBuffer slice(final FloatBuffer floats, final int start) {
+        final FloatBuffer dup = floats.duplicate();
+        ((Buffer) dup).limit(start + atomCount);
+        ((Buffer) dup).position(start);
+        return dup.slice();
+    }
+
+    /**
+     * Determines the byte order from the first record marker.
+     *
+     * @param head
+     *            The start of the file.
+     * @param file
+     *            The file (for error messages).
+     * @return The file's byte order.
+     */
+    private static ByteOrder detectOrder(final ByteBuffer head, final File file) {
+        if (head.limit() < HEADER_LEN + MARKER_LEN * 2) {
+            throw new InvalidDataException("%s is too short for a DCD header",
+                    file);
+        }
+        if (head.order(ByteOrder.LITTLE_ENDIAN).getInt(0) == HEADER_LEN) {
+            return ByteOrder.LITTLE_ENDIAN;
+        }
+        if (head.order(ByteOrder.BIG_ENDIAN).getInt(0) == HEADER_LEN) {
+            return ByteOrder.BIG_ENDIAN;
+        }
+        throw new InvalidDataException("%s does not start with a DCD header",
+                file);
+    }
+
+    /**
+     * Closes the channel after a failed open.
+     */
+    private void closeQuietly() {
+        try {
+            channel.close();
+        } catch (final IOException e) {
+            // Already failing; keep the original exception.
+        }
+    }
+}
@@ -0,0 +1,480 @@
+package com.cmayes.common.file;
+
+import static com.cmayes.common.exception.ExceptionUtils.asNotNull;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import com.cmayes.common.chem.AtomicElement;
+import com.cmayes.common.chem.ElementTable;
+import com.cmayes.common.exception.EnvironmentException;
+import com.cmayes.common.exception.InvalidDataException;
+import com.cmayes.common.model.Atom;
+import com.cmayes.common.model.AtomTable;
+import com.cmayes.common.model.impl.DefaultAtom;
+
+/**
+ * Streaming reader for XYZ and multi-frame XYZ files. Each frame is an atom
+ * count line, a comment line and one <code>symbol x y z</code> line per atom;
+ * extra columns are ignored and symbols may also be atomic numbers. Frames
+ * are read one at a time from a {@link ReadableByteChannel} through a fixed
+ * buffer, and symbols and coordinates are parsed directly from the bytes, so
+ * files far larger than the heap can be processed. Atom IDs are the 1-based
+ * line positions within the frame.
+ *
+ * Instances are not thread-safe.
+ *
+ * @author cmayes
+ */
+public class XyzReader implements Closeable, Iterable<AtomTable> {
+    private static final int BUF_SIZE = 1 << 16;
+    /** Exactly representable powers of ten for the fast double path. */
+    private static final double[] POW10 = { 1e0, 1e1, 1e2, 1e3, 1e4, 1e5,
+            1e6, 1e7, 1e8, 1e9, 1e10, 1e11, 1e12, 1e13, 1e14, 1e15, 1e16,
+            1e17, 1e18, 1e19, 1e20, 1e21, 1e22 };
+    /** Largest mantissa that converts to a double without rounding. */
+    private static final long MAX_EXACT = 1L << 53;
+    private final ReadableByteChannel channel;
+    private byte[] buf = new byte[BUF_SIZE];
+    private int pos;
+    private int limit;
+    private boolean eof;
+    private long lineNum;
+    private int frameNum;
+    private String comment;
+    /** Line bounds set by {@link #nextLine()}. */
+    private int lineStart;
+    private int lineEnd;
+    private int nextStart;
+
+    /**
+     * Creates a reader over the given channel.
+     *
+     * @param chan
+     *            The channel to read.
+     */
+    public XyzReader(final ReadableByteChannel chan) {
+        this.channel = asNotNull(chan, "Channel is null");
+    }
+
+    /**
+     * Opens a reader over the given file.
+     *
+     * @param file
+     *            The file to read.
+     * @throws EnvironmentException
+     *             If the file cannot be opened.
+     */
+    public XyzReader(final File file) {
+        this(open(file));
+    }
+
+    /**
+     * Reads the next frame into a new table.
+     *
+     * @return The frame, or null at the end of the input.
+     * @throws InvalidDataException
+     *             If the frame is malformed.
+     */
+    public AtomTable nextFrame() {
+        final int count = readHeader();
+        if (count < 0) {
+            return null;
+        }
+        final AtomTable table = new AtomTable(count);
+        readAtoms(table);
+        return table;
+    }
+
+    /**
+     * Reads the next frame into the given table without allocating. The table
+     * must have the same number of atoms as the frame.
+     *
+     * @param table
+     *            The table to fill.
+     * @return Whether a frame was read; false at the end of the input.
+     * @throws InvalidDataException
+     *             If the frame is malformed or a different size.
+     */
+    public boolean nextFrame(final AtomTable table) {
+        final int count = readHeader();
+        if (count < 0) {
+            return false;
+        }
+        if (count != table.size()) {
+            throw new InvalidDataException(
+                    "Frame %d has %d atoms but the table holds %d", frameNum,
+                    count, table.size());
+        }
+        readAtoms(table);
+        return true;
+    }
+
+    /**
+     * Reads the next frame as {@link DefaultAtom} instances.
+     *
+     * @return The frame's atoms, or null at the end of the input.
+     * @throws InvalidDataException
+     *             If the frame is malformed.
+     */
+    public List<Atom> nextAtoms() {
+        final AtomTable table = nextFrame();
+        if (table == null) {
+            return null;
+        }
+        final List<Atom> atoms = new ArrayList<Atom>(table.size());
+        for (int i = 0; i < table.size(); i++) {
+            atoms.add(new DefaultAtom(table.atom(i)));
+        }
+        return atoms;
+    }
+
+    /**
+     * @return The comment line of the last frame read.
+     */
+    public String getComment() {
+        return comment;
+    }
+
+    /**
+     * @return The number of frames read so far.
+     */
+    public int getFrameCount() {
+        return frameNum;
+    }
+
+    /**
+     * Returns a single-use iterator that lazily reads the remaining frames.
+     *
+     * @return An iterator of frames.
+     */
+    @Override
+    public Iterator<AtomTable> iterator() {
+        return new Iterator<AtomTable>() {
+            private AtomTable pending;
+
+            @Override
+            public boolean hasNext() {
+                if (pending == null) {
+                    pending = nextFrame();
+                }
+                return pending != null;
+            }
+
+            @Override
+            public AtomTable next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException("No more XYZ frames");
+                }
+                final AtomTable frame = pending;
+                pending = null;
+                return frame;
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+
+    /**
+     * Closes the underlying channel.
+     */
+    @Override
+    public void close() {
+        try {
+            channel.close();
+        } catch (final IOException e) {
+            throw new EnvironmentException("Couldn't close XYZ input", e);
+        }
+    }
+
+    /**
+     * Reads a frame's count and comment lines, skipping blank lines before
+     * the count.
+     *
+     * @return The atom count, or -1 at the end of the input.
+     */
+    private int readHeader() {
+        do {
+            if (!nextLine()) {
+                return -1;
+            }
+            skipSpace();
+        } while (pos == lineEnd);
+        final long count = parseLong();
+        skipSpace();
+        if (count < 0 || count > Integer.MAX_VALUE || pos != lineEnd) {
+            throw new InvalidDataException("Bad atom count on line %d",
+                    lineNum);
+        }
+        if (!nextLine()) {
+            throw new InvalidDataException(
+                    "Missing comment line after line %d", lineNum);
+        }
+        comment = new String(buf, lineStart, lineEnd - lineStart,
+                StandardCharsets.UTF_8).trim();
+        frameNum++;
+        return (int) count;
+    }
+
+    /**
+     * Reads the atom lines of a frame into the table.
+     *
+     * @param table
+     *            The table to fill.
+     */
+    private void readAtoms(final AtomTable table) {
+        final double[] xs = table.getXs();
+        final double[] ys = table.getYs();
+        final double[] zs = table.getZs();
+        for (int i = 0; i < xs.length; i++) {
+            if (!nextLine()) {
+                throw new InvalidDataException(
+                        "Frame %d ended after %d of %d atoms", frameNum, i,
+                        xs.length);
+            }
+            skipSpace();
+            table.setType(i, parseElement());
+            table.setId(i, i + 1);
+            xs[i] = parseDouble();
+            ys[i] = parseDouble();
+            zs[i] = parseDouble();
+        }
+    }
+
+    /**
+     * Parses the element token at the current position.
+     *
+     * @return The element.
+     */
+    private AtomicElement parseElement() {
+        final int start = pos;
+        while (pos < lineEnd && !isSpace(buf[pos])) {
+            pos++;
+        }
+        final int len = pos - start;
+        if (len > 0 && buf[start] >= '0' && buf[start] <= '9') {
+            pos = start;
+            final long num = parseLong();
+            if (pos == start + len) {
+                try {
+                    return ElementTable.forNumber((int) num);
+                } catch (final IllegalArgumentException e) {
+                    throw new InvalidDataException(
+                            "Unknown atomic number on line %d", e, lineNum);
+                }
+            }
+        } else if (len == 1 || len == 2) {
+            final AtomicElement elem = ElementTable.lookupSymbol(buf, start,
+                    len);
+            if (elem != null) {
+                return elem;
+            }
+        }
+        throw new InvalidDataException("Unknown element '%s' on line %d",
+                new String(buf, start, Math.max(0, len),
+                        StandardCharsets.UTF_8), lineNum);
+    }
+
+    /**
+     * Parses a decimal number, optionally with a fraction and exponent, at the
+     * current position after skipping leading whitespace.
+     *
+     * @return The parsed value.
+     */
+    private double parseDouble() {
+        skipSpace();
+        final int start = pos;
+        boolean negative = false;
+        if (pos < lineEnd && (buf[pos] == '-' || buf[pos] == '+')) {
+            negative = buf[pos] == '-';
+            pos++;
+        }
+        long mantissa = 0;
+        int scale = 0;
+        int digits = 0;
+        boolean exact = true;
+        while (pos < lineEnd && buf[pos] >= '0' && buf[pos] <= '9') {
+            if (mantissa < MAX_EXACT / 10) {
+                mantissa = mantissa * 10 + (buf[pos] - '0');
+            } else {
+                exact = false;
+            }
+            digits++;
+            pos++;
+        }
+        if (pos < lineEnd && buf[pos] == '.') {
+            pos++;
+            while (pos < lineEnd && buf[pos] >= '0' && buf[pos] <= '9') {
+                if (mantissa < MAX_EXACT / 10) {
+                    mantissa = mantissa * 10 + (buf[pos] - '0');
+                    scale--;
+                } else if (buf[pos] != '0') {
+                    exact = false;
+                }
+                digits++;
+                pos++;
+            }
+        }
+        if (digits == 0) {
+            throw new InvalidDataException("Missing coordinate on line %d",
+                    lineNum);
+        }
+        if (pos < lineEnd && (buf[pos] == 'e' || buf[pos] == 'E')) {
+            pos++;
+            final int signEnd = pos < lineEnd
+                    && (buf[pos] == '-' || buf[pos] == '+') ? pos + 1 : pos;
+            if (signEnd >= lineEnd || buf[signEnd] < '0'
+                    || buf[signEnd] > '9') {
+                throw new InvalidDataException(
+                        "Missing exponent digits on line %d", lineNum);
+            }
+            final long exp = parseLong();
+            if (Math.abs(exp) > 400) {
+                exact = false;
+            } else {
+                scale += (int) exp;
+            }
+        }
+        if (pos < lineEnd && !isSpace(buf[pos])) {
+            throw new InvalidDataException("Bad coordinate on line %d",
+                    lineNum);
+        }
+        if (!exact || Math.abs(scale) >= POW10.length) {
+            // Rare: too many digits or an extreme exponent for the fast path.
+            try {
+                return Double.parseDouble(new String(buf, start, pos - start,
+                        StandardCharsets.US_ASCII));
+            } catch (final NumberFormatException e) {
+                throw new InvalidDataException("Bad coordinate on line %d", e,
+                        lineNum);
+            }
+        }
+        final double val = scale < 0 ? mantissa / POW10[-scale] : mantissa
+                * POW10[scale];
+        return negative ? -val : val;
+    }
+
+    /**
+     * Parses an optionally signed integer at the current position.
+     *
+     * @return The value (zero if there are no digits).
+     */
+    private long parseLong() {
+        boolean negative = false;
+        if (pos < lineEnd && (buf[pos] == '-' || buf[pos] == '+')) {
+            negative = buf[pos] == '-';
+            pos++;
+        }
+        long val = 0;
+        while (pos < lineEnd && buf[pos] >= '0' && buf[pos] <= '9'
+                && val < Integer.MAX_VALUE) {
+            val = val * 10 + (buf[pos++] - '0');
+        }
+        return negative ? -val : val;
+    }
+
+    /**
+     * Advances past spaces and tabs within the current line.
+     */
+    private void skipSpace() {
+        while (pos < lineEnd && isSpace(buf[pos])) {
+            pos++;
+        }
+    }
+
+    /**
+     * Advances to the next line, making sure all of it is in the buffer.
+     *
+     * @return Whether there was another line.
+     */
+    private boolean nextLine() {
+        pos = nextStart;
+        int scan = pos;
+        while (true) {
+            while (scan < limit && buf[scan] != '\n') {
+                scan++;
+            }
+            if (scan < limit || eof) {
+                break;
+            }
+            final int consumed = pos;
+            fill();
+            scan -= consumed;
+        }
+        if (pos >= limit) {
+            return false;
+        }
+        lineNum++;
+        lineStart = pos;
+        lineEnd = scan;
+        nextStart = Math.min(limit, scan + 1);
+        if (lineEnd > lineStart && buf[lineEnd - 1] == '\r') {
+            lineEnd--;
+        }
+        return true;
+    }
+
+    /**
+     * Moves unread bytes to the start of the buffer, growing it if one line
+     * fills it, and reads more from the channel.
+     */
+    private void fill() {
+        final int remaining = limit - pos;
+        if (pos == 0 && remaining == buf.length) {
+            buf = Arrays.copyOf(buf, buf.length * 2);
+        } else {
+            System.arraycopy(buf, pos, buf, 0, remaining);
+        }
+        pos = 0;
+        limit = remaining;
+        try {
+            final int read = channel.read(ByteBuffer.wrap(buf, limit,
+                    buf.length - limit));
+            if (read < 0) {
+                eof = true;
+            } else {
+                limit += read;
+            }
+        } catch (final IOException e) {
+            throw new EnvironmentException(
+                    "Couldn't read XYZ input after line %d", e, lineNum);
+        }
+    }
+
+    /**
+     * @param chr
+     *            The byte to check.
+     * @return Whether the byte is a space or tab.
+     */
+    private static boolean isSpace(final byte chr) {
+        return chr == ' ' || chr == '\t' || chr == '\r';
+    }
+
+    /**
+     * @param file
+     *            The file to open.
+     * @return A channel for the file.
+     */
+    private static ReadableByteChannel open(final File file) {
+        try {
+            return FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        } catch (final IOException e) {
+            throw new EnvironmentException("Couldn't open XYZ file %s", e,
+                    file);
+        }
+    }
+}
@@ -0,0 +1,422 @@
+package com.cmayes.common.model;
+
+import static com.cmayes.common.exception.ExceptionUtils.asNotNull;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+import com.cmayes.common.chem.AtomicElement;
+
+/**
+ * Structure-of-arrays store for large atom sets. Coordinates are held in
+ * contiguous <code>double[]</code> columns, IDs in an <code>int[]</code> and
+ * element types as {@link AtomicElement} ordinals in a <code>byte[]</code>, so
+ * a table costs 29 bytes per atom instead of a separate object per atom.
+ * Individual rows can be accessed as {@link Atom} flyweights via
+ * {@link #atom(int)} or {@link #asList()}; changes made through the views are
+ * written to the table.
+ *
+ * @author cmayes
+ */
+public class AtomTable implements Coordinates {
+    /** Type ordinal stored for atoms with no element type. */
+    public static final byte NO_TYPE = -1;
+    private static final AtomicElement[] ELEMENTS = AtomicElement.values();
+
+    private final double[] xs;
+    private final double[] ys;
+    private final double[] zs;
+    private final int[] ids;
+    private final byte[] types;
+
+    /**
+     * Creates a table with room for the given number of atoms. All rows start
+     * at the origin with an ID of zero and no type.
+     *
+     * @param size
+     *            The number of atoms in the table.
+     */
+    public AtomTable(final int size) {
+        if (size < 0) {
+            throw new IllegalArgumentException("Negative table size " + size);
+        }
+        this.xs = new double[size];
+        this.ys = new double[size];
+        this.zs = new double[size];
+        this.ids = new int[size];
+        this.types = new byte[size];
+        Arrays.fill(types, NO_TYPE);
+    }
+
+    /**
+     * Creates a table holding a copy of the given atoms in iteration order.
+     *
+     * @param atoms
+     *            The atoms to copy.
+     * @return A new table for the given atoms.
+     */
+    public static AtomTable fromAtoms(final Collection<? extends Atom> atoms) {
+        asNotNull(atoms, "Atom collection is null");
+        final AtomTable table = new AtomTable(atoms.size());
+        int idx = 0;
+        for (Atom atom : atoms) {
+            table.set(idx++, atom);
+        }
+        return table;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @see com.cmayes.common.model.Coordinates#size()
+     */
+    @Override
+    public int size() {
+        return ids.length;
+    }
+
+    /**
+     * Copies the given atom's values into the row at the given index.
+     *
+     * @param index
+     *            The row to set.
+     * @param atom
+     *            The atom to copy.
+     */
+    public void set(final int index, final Atom atom) {
+        set(index, atom.getId(), atom.getType(), atom.getX(), atom.getY(),
+                atom.getZ());
+    }
+
+    /**
+     * Sets all of the values for the row at the given index.
+     *
+     * @param index
+     *            The row to set.
+     * @param atomId
+     *            The atom's ID.
+     * @param atomType
+     *            The atom's element type (may be null).
+     * @param xPosition
+     *            The X coordinate.
+     * @param yPosition
+     *            The Y coordinate.
+     * @param zPosition
+     *            The Z coordinate.
+     */
+    public void set(final int index, final int atomId,
+            final AtomicElement atomType, final double xPosition,
+            final double yPosition, final double zPosition) {
+        ids[index] = atomId;
+        types[index] = toOrdinal(atomType);
+        xs[index] = xPosition;
+        ys[index] = yPosition;
+        zs[index] = zPosition;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @see com.cmayes.common.model.Coordinates#getX(int)
+     */
+    @Override
+    public double getX(final int index) {
+        return xs[index];
+    }
+
+    /**
+     * @param index
+     *            The row index.
+     * @param xPosition
+     *            The X coordinate to set.
+     */
+    public void setX(final int index, final double xPosition) {
+        xs[index] = xPosition;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @see com.cmayes.common.model.Coordinates#getY(int)
+     */
+    @Override
+    public double getY(final int index) {
+        return ys[index];
+    }
+
+    /**
+     * @param index
+     *            The row index.
+     * @param yPosition
+     *            The Y coordinate to set.
+     */
+    public void setY(final int index, final double yPosition) {
+        ys[index] = yPosition;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @see com.cmayes.common.model.Coordinates#getZ(int)
+     */
+    @Override
+    public double getZ(final int index) {
+        return zs[index];
+    }
+
+    /**
+     * @param index
+     *            The row index.
+     * @param zPosition
+     *            The Z coordinate to set.
+     */
+    public void setZ(final int index, final double zPosition) {
+        zs[index] = zPosition;
+    }
+
+    /**
+     * @param index
+     *            The row index.
+     * @return The ID of the atom at the given index.
+     */
+    public int getId(final int index) {
+        return ids[index];
+    }
+
+    /**
+     * @param index
+     *            The row index.
+     * @param atomId
+     *            The ID to set.
+     */
+    public void setId(final int index, final int atomId) {
+        ids[index] = atomId;
+    }
+
+    /**
+     * @param index
+     *            The row index.
+     * @return The element type of the atom at the given index or null if no
+     *         type is set.
+     */
+    public AtomicElement getType(final int index) {
+        final byte ord = types[index];
+        return ord == NO_TYPE ? null : ELEMENTS[ord];
+    }
+
+    /**
+     * @param index
+     *            The row index.
+     * @return The {@link AtomicElement} ordinal of the atom at the given index
+     *         or {@link #NO_TYPE}.
+     */
+    public byte getTypeOrdinal(final int index) {
+        return types[index];
+    }
+
+    /**
+     * @param index
+     *            The row index.
+     * @param atomType
+     *            The element type to set (may be null).
+     */
+    public void setType(final int index, final AtomicElement atomType) {
+        types[index] = toOrdinal(atomType);
+    }
+
+    /**
+     * Returns the backing X coordinate column. Changes to the array are
+     * changes to the table.
+     *
+     * @return The X coordinates indexed by row.
+     */
+    public double[] getXs() {
+        return xs;
+    }
+
+    /**
+     * Returns the backing Y coordinate column. Changes to the array are
+     * changes to the table.
+     *
+     * @return The Y coordinates indexed by row.
+     */
+    public double[] getYs() {
+        return ys;
+    }
+
+    /**
+     * Returns the backing Z coordinate column. Changes to the array are
+     * changes to the table.
+     *
+     * @return The Z coordinates indexed by row.
+     */
+    public double[] getZs() {
+        return zs;
+    }
+
+    /**
+     * Returns the backing ID column. Changes to the array are changes to the
+     * table.
+     *
+     * @return The atom IDs indexed by row.
+     */
+    public int[] getIds() {
+        return ids;
+    }
+
+    /**
+     * Returns the backing type column. Changes to the array are changes to the
+     * table.
+     *
+     * @return The {@link AtomicElement} ordinals (or {@link #NO_TYPE}) indexed
+     *         by row.
+     */
+    public byte[] getTypeOrdinals() {
+        return types;
+    }
+
+    /**
+     * Returns a flyweight {@link Atom} view of the row at the given index.
+     *
+     * @param index
+     *            The row index.
+     * @return A view of the given row.
+     */
+    public Atom atom(final int index) {
+        if (index < 0 || index >= ids.length) {
+            throw new IndexOutOfBoundsException("No atom at index " + index);
+        }
+        return new RowAtom(index);
+    }
+
+    /**
+     * Returns a fixed-size list of flyweight views over this table's rows.
+     *
+     * @return A list view of this table.
+     */
+    public List<Atom> asList() {
+        return new AbstractList<Atom>() {
+            @Override
+            public Atom get(final int index) {
+                return atom(index);
+            }
+
+            @Override
+            public int size() {
+                return ids.length;
+            }
+        };
+    }
+
+    /**
+     * Converts the given element into the stored ordinal.
+     *
+     * @param atomType
+     *            The type to convert (may be null).
+     * @return The ordinal or {@link #NO_TYPE}.
+     */
+    private static byte toOrdinal(final AtomicElement atomType) {
+        return atomType == null ? NO_TYPE : (byte) atomType.ordinal();
+    }
+
+    /**
+     * Flyweight view of a single table row.
+     */
+    private final class RowAtom implements Atom {
+        private final int index;
+
+        /**
+         * @param rowIdx
+         *            The row this view wraps.
+         */
+        private RowAtom(final int rowIdx) {
+            this.index = rowIdx;
+        }
+
+        @Override
+        public double getX() {
+            return xs[index];
+        }
+
+        @Override
+        public void setX(final double xPosition) {
+            xs[index] = xPosition;
+        }
+
+        @Override
+        public double getY() {
+            return ys[index];
+        }
+
+        @Override
+        public void setY(final double yPosition) {
+            ys[index] = yPosition;
+        }
+
+        @Override
+        public double getZ() {
+            return zs[index];
+        }
+
+        @Override
+        public void setZ(final double zPosition) {
+            zs[index] = zPosition;
+        }
+
+        @Override
+        public int getId() {
+            return ids[index];
+        }
+
+        @Override
+        public void setId(final int atomId) {
+            ids[index] = atomId;
+        }
+
+        @Override
+        public AtomicElement getType() {
+            return AtomTable.this.getType(index);
+        }
+
+        @Override
+        public void setType(final AtomicElement atomType) {
+            types[index] = toOrdinal(atomType);
+        }
+
+        /**
+         * Views are equal when they wrap the same row of the same table.
+         *
+         * @see java.lang.Object#equals(Object)
+         */
+        @Override
+        public boolean equals(final Object object) {
+            if (!(object instanceof RowAtom)) {
+                return false;
+            }
+            final RowAtom rhs = (RowAtom) object;
+            return index == rhs.index && table() == rhs.table();
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * System.identityHashCode(table()) + index;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(
+                    "AtomTable.RowAtom[index=%d,type=%s,xPos=%s,yPos=%s,"
+                            + "zPos=%s,id=%d]", index, getType(), getX(),
+                    getY(), getZ(), getId());
+        }
+
+        /**
+         * @return The table this view belongs to.
+         */
+        private AtomTable table() {
+            return AtomTable.this;
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package com.cmayes.common.model;
+
+/**
+ * Read access to an indexed set of atom positions, independent of how they
+ * are stored.
+ * 
+ * @author cmayes
+ */
+public interface Coordinates {
+
+    /**
+     * @return The number of positions.
+     */
+    int size();
+
+    /**
+     * @param index
+     *            The atom index.
+     * @return The X coordinate of the atom at the given index.
+     */
+    double getX(final int index);
+
+    /**
+     * @param index
+     *            The atom index.
+     * @return The Y coordinate of the atom at the given index.
+     */
+    double getY(final int index);
+
+    /**
+     * @param index
+     *            The atom index.
+     * @return The Z coordinate of the atom at the given index.
+     */
+    double getZ(final int index);
+}
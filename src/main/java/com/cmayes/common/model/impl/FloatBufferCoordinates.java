@@ -0,0 +1,101 @@
+package com.cmayes.common.model.impl;
+
+import java.nio.FloatBuffer;
+
+import com.cmayes.common.model.Coordinates;
+
+/**
+ * Read-only {@link Coordinates} view over three single-precision buffers, one
+ * per axis. The buffers are used in place (for example, slices of a
+ * memory-mapped file), so no coordinates are copied.
+ * 
+ * @author cmayes
+ */
+public class FloatBufferCoordinates implements Coordinates {
+    private final FloatBuffer xBuf;
+    private final FloatBuffer yBuf;
+    private final FloatBuffer zBuf;
+
+    /**
+     * Creates a view over the given buffers. Index zero of the view is each
+     * buffer's position at construction time.
+     * 
+     * @param xs
+     *            The X coordinates.
+     * @param ys
+     *            The Y coordinates.
+     * @param zs
+     *            The Z coordinates.
+     */
+    public FloatBufferCoordinates(final FloatBuffer xs, final FloatBuffer ys,
+            final FloatBuffer zs) {
+        if (xs.remaining() != ys.remaining()
+                || xs.remaining() != zs.remaining()) {
+            throw new IllegalArgumentException(
+                    "Coordinate buffers differ in length");
+        }
+        this.xBuf = xs.slice();
+        this.yBuf = ys.slice();
+        this.zBuf = zs.slice();
+    }
+
+    /**
+     * {@inheritDoc}
+     * 
+     * @see com.cmayes.common.model.Coordinates#size()
+     */
+    @Override
+    public int size() {
+        return xBuf.limit();
+    }
+
+    /**
+     * {@inheritDoc}
+     * 
+     * @see com.cmayes.common.model.Coordinates#getX(int)
+     */
+    @Override
+    public double getX(final int index) {
+        return xBuf.get(index);
+    }
+
+    /**
+     * {@inheritDoc}
+     * 
+     * @see com.cmayes.common.model.Coordinates#getY(int)
+     */
+    @Override
+    public double getY(final int index) {
+        return yBuf.get(index);
+    }
+
+    /**
+     * {@inheritDoc}
+     * 
+     * @see com.cmayes.common.model.Coordinates#getZ(int)
+     */
+    @Override
+    public double getZ(final int index) {
+        return zBuf.get(index);
+    }
+
+    /**
+     * Copies the coordinates into the given arrays, which must hold at least
+     * {@link #size()} values.
+     * 
+     * @param xs
+     *            Receives the X coordinates.
+     * @param ys
+     *            Receives the Y coordinates.
+     * @param zs
+     *            Receives the Z coordinates.
+     */
+    public void copyTo(final double[] xs, final double[] ys, final double[] zs) {
+        final int size = size();
+        for (int i = 0; i < size; i++) {
+            xs[i] = xBuf.get(i);
+            ys[i] = yBuf.get(i);
+            zs[i] = zBuf.get(i);
+        }
+    }
+}
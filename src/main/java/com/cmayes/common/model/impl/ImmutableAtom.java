@@ -0,0 +1,324 @@
+package com.cmayes.common.model.impl;
+
+import static com.cmayes.common.exception.ExceptionUtils.asNotNull;
+
+import com.cmayes.common.chem.AtomicElement;
+import com.cmayes.common.model.Atom;
+
+/**
+ * Immutable atom implementation for use as a hash key. The hash is computed
+ * once at construction and {@link #equals(Object)} compares fields directly,
+ * so set and map operations allocate nothing. Coordinates compare by bit
+ * pattern, as with {@link DefaultAtom}. The setters throw
+ * {@link UnsupportedOperationException}.
+ *
+ * @author cmayes
+ */
+public final class ImmutableAtom implements Atom {
+    private static final int HASH_SEED = 1651062229;
+    private static final int HASH_MULT = 1240753677;
+
+    private final double xPos;
+    private final double yPos;
+    private final double zPos;
+    private final int id;
+    private final int hash;
+    private final AtomicElement type;
+
+    /**
+     * @param atomId
+     *            The atom ID.
+     * @param atomType
+     *            The element type (may be null).
+     * @param xPosition
+     *            The X coordinate.
+     * @param yPosition
+     *            The Y coordinate.
+     * @param zPosition
+     *            The Z coordinate.
+     */
+    public ImmutableAtom(final int atomId, final AtomicElement atomType,
+            final double xPosition, final double yPosition,
+            final double zPosition) {
+        this.id = atomId;
+        this.type = atomType;
+        this.xPos = xPosition;
+        this.yPos = yPosition;
+        this.zPos = zPosition;
+        int total = HASH_SEED * HASH_MULT + atomId;
+        total = total * HASH_MULT + hashOf(yPosition);
+        total = total * HASH_MULT + hashOf(xPosition);
+        total = total * HASH_MULT + hashOf(zPosition);
+        this.hash = total * HASH_MULT
+                + (atomType == null ? 0 : atomType.hashCode());
+    }
+
+    /**
+     * Returns an immutable copy of the given atom, or the atom itself if it is
+     * already immutable.
+     *
+     * @param atom
+     *            The atom to copy.
+     * @return The immutable atom.
+     */
+    public static ImmutableAtom copyOf(final Atom atom) {
+        asNotNull(atom, "Atom is null");
+        if (atom instanceof ImmutableAtom) {
+            return (ImmutableAtom) atom;
+        }
+        return new ImmutableAtom(atom.getId(), atom.getType(), atom.getX(),
+                atom.getY(), atom.getZ());
+    }
+
+    /**
+     * @return A new builder with every field zeroed and no type.
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @see com.cmayes.common.model.Atom#getX()
+     */
+    @Override
+    public double getX() {
+        return xPos;
+    }
+
+    /**
+     * Unsupported.
+     *
+     * @param xPosition
+     *            Ignored.
+     */
+    @Override
+    public void setX(final double xPosition) {
+        throw immutable();
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @see com.cmayes.common.model.Atom#getY()
+     */
+    @Override
+    public double getY() {
+        return yPos;
+    }
+
+    /**
+     * Unsupported.
+     *
+     * @param yPosition
+     *            Ignored.
+     */
+    @Override
+    public void setY(final double yPosition) {
+        throw immutable();
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @see com.cmayes.common.model.Atom#getZ()
+     */
+    @Override
+    public double getZ() {
+        return zPos;
+    }
+
+    /**
+     * Unsupported.
+     *
+     * @param zPosition
+     *            Ignored.
+     */
+    @Override
+    public void setZ(final double zPosition) {
+        throw immutable();
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @see com.cmayes.common.model.Atom#getId()
+     */
+    @Override
+    public int getId() {
+        return id;
+    }
+
+    /**
+     * Unsupported.
+     *
+     * @param atomId
+     *            Ignored.
+     */
+    @Override
+    public void setId(final int atomId) {
+        throw immutable();
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @see com.cmayes.common.model.Atom#getType()
+     */
+    @Override
+    public AtomicElement getType() {
+        return type;
+    }
+
+    /**
+     * Unsupported.
+     *
+     * @param atomType
+     *            Ignored.
+     */
+    @Override
+    public void setType(final AtomicElement atomType) {
+        throw immutable();
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @see java.lang.Object#equals(Object)
+     */
+    @Override
+    public boolean equals(final Object object) {
+        if (this == object) {
+            return true;
+        }
+        if (!(object instanceof ImmutableAtom)) {
+            return false;
+        }
+        final ImmutableAtom rhs = (ImmutableAtom) object;
+        return hash == rhs.hash
+                && id == rhs.id
+                && type == rhs.type
+                && Double.doubleToLongBits(xPos) == Double
+                        .doubleToLongBits(rhs.xPos)
+                && Double.doubleToLongBits(yPos) == Double
+                        .doubleToLongBits(rhs.yPos)
+                && Double.doubleToLongBits(zPos) == Double
+                        .doubleToLongBits(rhs.zPos);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @see java.lang.Object#hashCode()
+     */
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @see java.lang.Object#toString()
+     */
+    @Override
+    public String toString() {
+        return new StringBuilder(96).append("ImmutableAtom[type=")
+                .append(type).append(",xPos=").append(xPos).append(",yPos=")
+                .append(yPos).append(",zPos=").append(zPos).append(",id=")
+                .append(id).append(']').toString();
+    }
+
+    /**
+     * @param value
+     *            The coordinate.
+     * @return The hash of the coordinate's bit pattern.
+     */
+    private static int hashOf(final double value) {
+        final long bits = Double.doubleToLongBits(value);
+        return (int) (bits ^ (bits >>> 32));
+    }
+
+    /**
+     * @return The exception thrown by the setters.
+     */
+    private static UnsupportedOperationException immutable() {
+        return new UnsupportedOperationException("Atom is immutable");
+    }
+
+    /**
+     * Reusable builder for {@link ImmutableAtom}s. Fields keep their values
+     * between calls to {@link #build()}, so bulk loaders can set only what
+     * changes from one atom to the next.
+     */
+    public static final class Builder {
+        private double xPos;
+        private double yPos;
+        private double zPos;
+        private int id;
+        private AtomicElement type;
+
+        /**
+         * Use {@link ImmutableAtom#builder()}.
+         */
+        private Builder() {
+        }
+
+        /**
+         * @param atomId
+         *            The atom ID.
+         * @return This builder.
+         */
+        public Builder id(final int atomId) {
+            this.id = atomId;
+            return this;
+        }
+
+        /**
+         * @param atomType
+         *            The element type (may be null).
+         * @return This builder.
+         */
+        public Builder type(final AtomicElement atomType) {
+            this.type = atomType;
+            return this;
+        }
+
+        /**
+         * @param xPosition
+         *            The X coordinate.
+         * @param yPosition
+         *            The Y coordinate.
+         * @param zPosition
+         *            The Z coordinate.
+         * @return This builder.
+         */
+        public Builder position(final double xPosition,
+                final double yPosition, final double zPosition) {
+            this.xPos = xPosition;
+            this.yPos = yPosition;
+            this.zPos = zPosition;
+            return this;
+        }
+
+        /**
+         * Sets every field from the given atom.
+         *
+         * @param atom
+         *            The atom to copy.
+         * @return This builder.
+         */
+        public Builder from(final Atom atom) {
+            return id(atom.getId()).type(atom.getType()).position(
+                    atom.getX(), atom.getY(), atom.getZ());
+        }
+
+        /**
+         * @return A new atom with the current field values.
+         */
+        public ImmutableAtom build() {
+            return new ImmutableAtom(id, type, xPos, yPos, zPos);
+        }
+    }
+}
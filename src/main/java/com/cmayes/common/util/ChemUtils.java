@@ -1,15 +1,26 @@
 package com.cmayes.common.util;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.stream.IntStream;
 
+import org.apache.commons.math3.exception.MathArithmeticException;
+import org.apache.commons.math3.exception.util.LocalizedFormats;
 import org.apache.commons.math3.geometry.euclidean.threed.Vector3D;
 import org.apache.commons.math3.util.FastMath;
 
 import com.cmayes.common.chem.AtomicElement;
+import com.cmayes.common.chem.BondCriterion;
+import com.cmayes.common.chem.CellList;
+import com.cmayes.common.chem.CoordinateKernels;
+import com.cmayes.common.chem.ElementIndex;
+import com.cmayes.common.chem.UnitCell;
 import com.cmayes.common.exception.NotFoundException;
 import com.cmayes.common.exception.TooManyException;
 import com.cmayes.common.model.Atom;
+import com.cmayes.common.model.AtomTable;
+import com.cmayes.common.model.Coordinates;
 
 /**
  * Chemistry-related utility methods.
@@ -19,6 +30,14 @@ import com.cmayes.common.model.Atom;
 public final class ChemUtils {
     /** Default bond length in Angstroms. */
     public static final double BOND_LEN = 1.8;
+    /**
+     * Number of quadruplets handed to each task by parallel batch methods, and
+     * of positions scanned per kernel call by table searches.
+     */
+    private static final int BATCH_CHUNK = 4096;
+    /** Per-thread kernel output for table searches, reused across calls. */
+    private static final ThreadLocal<int[]> HITS = ThreadLocal
+            .withInitial(() -> new int[BATCH_CHUNK]);
 
     /**
      * Private constructor for util class.
@@ -48,7 +67,59 @@ public final class ChemUtils {
      * @return Whether the two atoms have a bond.
      */
     public static boolean hasBond(final Atom first, final Atom second) {
-        return findDistance(first, second) <= BOND_LEN;
+        return BondCriterion.DEFAULT.isBonded(first, second);
+    }
+
+    /**
+     * Returns whether the two atoms are bonded according to the given
+     * criterion.
+     * 
+     * @param first
+     *            The first atom to compare.
+     * @param second
+     *            The second atom to compare.
+     * @param criterion
+     *            The bond criterion to apply.
+     * @return Whether the two atoms have a bond.
+     */
+    public static boolean hasBond(final Atom first, final Atom second,
+            final BondCriterion criterion) {
+        return criterion.isBonded(first, second);
+    }
+
+    /**
+     * Returns whether the two table atoms are within BOND_LEN of each other.
+     * 
+     * @param table
+     *            The table holding the atoms.
+     * @param first
+     *            The index of the first atom to compare.
+     * @param second
+     *            The index of the second atom to compare.
+     * @return Whether the two atoms have a bond.
+     */
+    public static boolean hasBond(final AtomTable table, final int first,
+            final int second) {
+        return BondCriterion.DEFAULT.isBonded(table, first, second);
+    }
+
+    /**
+     * Returns whether the two table atoms are within BOND_LEN of each other,
+     * using the minimum-image distance when a periodic cell is given.
+     * 
+     * @param table
+     *            The table holding the atoms.
+     * @param first
+     *            The index of the first atom to compare.
+     * @param second
+     *            The index of the second atom to compare.
+     * @param cell
+     *            The periodic cell, or null for an isolated structure.
+     * @return Whether the two atoms have a bond.
+     */
+    public static boolean hasBond(final AtomTable table, final int first,
+            final int second, final UnitCell cell) {
+        return BondCriterion.DEFAULT.isBonded(table, first, second, cell);
     }
 
     /**
@@ -137,15 +208,124 @@ public final class ChemUtils {
      */
     public static List<Atom> findBondAtoms(final Atom tgtAtom,
             final List<Atom> otherAtoms, final AtomicElement elemType) {
+        return findBondAtoms(tgtAtom, otherAtoms, elemType,
+                BondCriterion.DEFAULT);
+    }
+
+    /**
+     * Finds all atoms of the given type from the given list that are bonded to
+     * the given atom according to the given criterion.
+     * 
+     * @param tgtAtom
+     *            The atom to check.
+     * @param otherAtoms
+     *            The list of atoms to check.
+     * @param elemType
+     *            The element type to search for.
+     * @param criterion
+     *            The bond criterion to apply.
+     * @return The bonded atoms of the given type.
+     */
+    public static List<Atom> findBondAtoms(final Atom tgtAtom,
+            final List<Atom> otherAtoms, final AtomicElement elemType,
+            final BondCriterion criterion) {
         final List<Atom> founds = new ArrayList<Atom>();
         for (Atom atom : otherAtoms) {
-            if (hasBond(tgtAtom, atom) && elemType.equals(atom.getType())) {
+            if (elemType.equals(atom.getType())
+                    && criterion.isBonded(tgtAtom, atom)) {
                 founds.add(atom);
             }
         }
         return founds;
     }
 
+    /**
+     * Finds all atoms of the given type in the cell list that are within the
+     * list's cutoff of the given atom. Build the {@link CellList} once with
+     * the default {@link #BOND_LEN} cutoff to answer repeated bond queries
+     * against the same structure without rescanning every atom.
+     * 
+     * @param tgtAtom
+     *            The atom to check.
+     * @param cells
+     *            The indexed atoms to check.
+     * @param elemType
+     *            The element type to search for.
+     * @return The bonded atoms of the given type.
+     */
+    public static List<Atom> findBondAtoms(final Atom tgtAtom,
+            final CellList cells, final AtomicElement elemType) {
+        return cells.findWithin(tgtAtom, elemType);
+    }
+
+    /**
+     * Finds the indices of all atoms of the given type in the table that have a
+     * bond with the atom at the given index. As with
+     * {@link #findBondAtoms(Atom, List, AtomicElement)}, the target atom itself
+     * is included when it is of the given type.
+     * 
+     * @param table
+     *            The table to search.
+     * @param tgtIdx
+     *            The index of the atom to check.
+     * @param elemType
+     *            The element type to search for.
+     * @return The indices of the bonded atoms of the given type in ascending
+     *         order.
+     */
+    public static int[] findBondAtoms(final AtomTable table, final int tgtIdx,
+            final AtomicElement elemType) {
+        return findBondAtoms(table, tgtIdx, elemType, BondCriterion.DEFAULT);
+    }
+
+    /**
+     * Finds the indices of all atoms of the given type in the table that are
+     * bonded to the atom at the given index according to the given criterion.
+     * The target atom itself is included when it is of the given type.
+     * 
+     * @param table
+     *            The table to search.
+     * @param tgtIdx
+     *            The index of the atom to check.
+     * @param elemType
+     *            The element type to search for.
+     * @param criterion
+     *            The bond criterion to apply.
+     * @return The indices of the bonded atoms of the given type in ascending
+     *         order.
+     */
+    public static int[] findBondAtoms(final AtomTable table, final int tgtIdx,
+            final AtomicElement elemType, final BondCriterion criterion) {
+        final double[] xs = table.getXs();
+        final double[] ys = table.getYs();
+        final double[] zs = table.getZs();
+        final byte[] types = table.getTypeOrdinals();
+        final byte tgtType = (byte) elemType.ordinal();
+        final double tgtX = xs[tgtIdx];
+        final double tgtY = ys[tgtIdx];
+        final double tgtZ = zs[tgtIdx];
+        final double maxSq = criterion.getCutoffSq(
+                table.getTypeOrdinal(tgtIdx), tgtType);
+        final int[] hits = HITS.get();
+        int[] founds = new int[8];
+        int count = 0;
+        for (int from = 0; from < types.length; from += BATCH_CHUNK) {
+            final int numHits = CoordinateKernels.within(tgtX, tgtY, tgtZ, xs,
+                    ys, zs, from, Math.min(types.length, from + BATCH_CHUNK),
+                    maxSq, hits);
+            for (int h = 0; h < numHits; h++) {
+                if (types[hits[h]] != tgtType) {
+                    continue;
+                }
+                if (count == founds.length) {
+                    founds = Arrays.copyOf(founds, count * 2);
+                }
+                founds[count++] = hits[h];
+            }
+        }
+        return Arrays.copyOf(founds, count);
+    }
+
     /**
      * Finds the distance between the two atoms.
      * 
@@ -160,8 +340,52 @@ public final class ChemUtils {
         return vectorForAtom(first).distance(vectorForAtom(second));
     }
 
+    /**
+     * Finds the distance between two indexed atoms, such as the rows of an
+     * {@link AtomTable} or the atoms of a trajectory frame.
+     * 
+     * @param coords
+     *            The coordinates holding the atoms.
+     * @param first
+     *            The index of the first atom.
+     * @param second
+     *            The index of the second atom.
+     * @return The distance between the two atoms.
+     */
+    public static double findDistance(final Coordinates coords,
+            final int first, final int second) {
+        final double dx = coords.getX(first) - coords.getX(second);
+        final double dy = coords.getY(first) - coords.getY(second);
+        final double dz = coords.getZ(first) - coords.getZ(second);
+        return FastMath.sqrt(dx * dx + dy * dy + dz * dz);
+    }
+
+    /**
+     * Finds the distance between two indexed atoms, using the minimum-image
+     * distance when a periodic cell is given.
+     * 
+     * @param coords
+     *            The coordinates holding the atoms.
+     * @param first
+     *            The index of the first atom.
+     * @param second
+     *            The index of the second atom.
+     * @param cell
+     *            The periodic cell, or null for an isolated structure.
+     * @return The distance between the two atoms.
+     */
+    public static double findDistance(final Coordinates coords,
+            final int first, final int second, final UnitCell cell) {
+        if (cell == null) {
+            return findDistance(coords, first, second);
+        }
+        return cell.distance(coords, first, second);
+    }
+
     /**
      * Returns the single atom of the given type from the given collection.
+     * Lists from {@link ElementIndex#asList()} are answered from their index
+     * without a scan.
      * 
      * @param elemType
      *            The element type to search for.
@@ -176,6 +400,10 @@ public final class ChemUtils {
      */
     public static Atom findSingle(final AtomicElement elemType,
             final List<Atom> atoms) {
+        if (atoms instanceof ElementIndex.IndexedList) {
+            return atoms.get(((ElementIndex.IndexedList) atoms).getIndex()
+                    .singleIndex(elemType));
+        }
         final List<Atom> allAtoms = findAllForType(elemType, atoms);
         if (allAtoms.isEmpty()) {
             throw new NotFoundException("No atoms of type %s found",
@@ -192,7 +420,8 @@ public final class ChemUtils {
     /**
      * Returns a list of all of the atoms of the given type. Note that the
      * collection retains the reference to the original atom from the given
-     * list.
+     * list. For lists from {@link ElementIndex#asList()} the result is a
+     * fixed-size view of the index's slice for the type.
      * 
      * @param elemType
      *            The element type to search for.
@@ -202,6 +431,10 @@ public final class ChemUtils {
      */
     public static List<Atom> findAllForType(final AtomicElement elemType,
             final List<Atom> atoms) {
+        if (atoms instanceof ElementIndex.IndexedList) {
+            return ((ElementIndex.IndexedList) atoms).getIndex().atomsOf(
+                    elemType);
+        }
         final List<Atom> foundList = new ArrayList<Atom>();
         for (Atom atom : atoms) {
             if (elemType.equals(atom.getType())) {
@@ -211,6 +444,128 @@ public final class ChemUtils {
         return foundList;
     }
 
+    /**
+     * Returns the indices of all of the atoms of the given type in the table.
+     * 
+     * @param elemType
+     *            The element type to search for.
+     * @param table
+     *            The table to search.
+     * @return The indices of the atoms of the given type in ascending order.
+     */
+    public static int[] findAllForType(final AtomicElement elemType,
+            final AtomTable table) {
+        final byte[] types = table.getTypeOrdinals();
+        final byte tgtType = (byte) elemType.ordinal();
+        int count = 0;
+        for (byte type : types) {
+            if (type == tgtType) {
+                count++;
+            }
+        }
+        final int[] founds = new int[count];
+        int idx = 0;
+        for (int i = 0; idx < count; i++) {
+            if (types[i] == tgtType) {
+                founds[idx++] = i;
+            }
+        }
+        return founds;
+    }
+
+    /**
+     * Finds the bond angle in degrees at the second of the three given atoms.
+     * 
+     * @param atom1
+     *            The first atom.
+     * @param atom2
+     *            The vertex atom.
+     * @param atom3
+     *            The third atom.
+     * @return The angle (in degrees) between the bonds 2-1 and 2-3.
+     * @throws MathArithmeticException
+     *             If the vertex coincides with either other atom.
+     */
+    public static double calcBondAngle(final Atom atom1, final Atom atom2,
+            final Atom atom3) {
+        final double angle = calcBondAngle(atom1.getX(), atom1.getY(),
+                atom1.getZ(), atom2.getX(), atom2.getY(), atom2.getZ(),
+                atom3.getX(), atom3.getY(), atom3.getZ());
+        if (Double.isNaN(angle)) {
+            throw new MathArithmeticException(LocalizedFormats.ZERO_NORM);
+        }
+        return angle;
+    }
+
+    /**
+     * Allocation-free form of {@link #calcBondAngle(Atom, Atom, Atom)} over
+     * raw coordinates. Uses atan2 of the cross and dot products, which stays
+     * accurate near 0 and 180 degrees.
+     * 
+     * @param x1
+     *            The first atom's X.
+     * @param y1
+     *            The first atom's Y.
+     * @param z1
+     *            The first atom's Z.
+     * @param x2
+     *            The vertex atom's X.
+     * @param y2
+     *            The vertex atom's Y.
+     * @param z2
+     *            The vertex atom's Z.
+     * @param x3
+     *            The third atom's X.
+     * @param y3
+     *            The third atom's Y.
+     * @param z3
+     *            The third atom's Z.
+     * @return The bond angle in degrees, or NaN if the vertex coincides with
+     *         either other atom.
+     */
+    public static double calcBondAngle(final double x1, final double y1,
+            final double z1, final double x2, final double y2,
+            final double z2, final double x3, final double y3,
+            final double z3) {
+        final double ax = x1 - x2;
+        final double ay = y1 - y2;
+        final double az = z1 - z2;
+        final double bx = x3 - x2;
+        final double by = y3 - y2;
+        final double bz = z3 - z2;
+        if ((ax == 0 && ay == 0 && az == 0) || (bx == 0 && by == 0 && bz == 0)) {
+            return Double.NaN;
+        }
+        final double crx = ay * bz - az * by;
+        final double cry = az * bx - ax * bz;
+        final double crz = ax * by - ay * bx;
+        return FastMath.toDegrees(FastMath.atan2(
+                FastMath.sqrt(crx * crx + cry * cry + crz * crz), ax * bx + ay
+                        * by + az * bz));
+    }
+
+    /**
+     * Finds the bond angle in degrees at the second of three indexed atoms.
+     * See {@link #calcBondAngle(Atom, Atom, Atom)}.
+     * 
+     * @param coords
+     *            The coordinates holding the atoms.
+     * @param first
+     *            The index of the first atom.
+     * @param vertex
+     *            The index of the vertex atom.
+     * @param third
+     *            The index of the third atom.
+     * @return The bond angle in degrees, or NaN if undefined.
+     */
+    public static double calcBondAngle(final Coordinates coords,
+            final int first, final int vertex, final int third) {
+        return calcBondAngle(coords.getX(first), coords.getY(first),
+                coords.getZ(first), coords.getX(vertex), coords.getY(vertex),
+                coords.getZ(vertex), coords.getX(third), coords.getY(third),
+                coords.getZ(third));
+    }
+
     /**
      * Finds the dihedral angle in degrees for the "arm" described by the given
      * four atoms.
@@ -227,25 +582,241 @@ public final class ChemUtils {
      *            The fourth atom.
      * @return The angle (in degrees) of the intersection of the two planes (1,
      *         2, 3) and (2, 3, 4) described by the given atoms.
+     * @throws MathArithmeticException
+     *             If either plane is undefined because its atoms are
+     *             collinear.
      */
     public static double calcDihedralAngle(final Atom atom1, final Atom atom2,
             final Atom atom3, final Atom atom4) {
-        final Vector3D atomVec1 = vectorForAtom(atom1);
-        final Vector3D atomVec2 = vectorForAtom(atom2);
-        final Vector3D atomVec3 = vectorForAtom(atom3);
-        final Vector3D atomVec4 = vectorForAtom(atom4);
-
-        Vector3D vec2ToVec1 = atomVec1.subtract(atomVec2);
-        Vector3D vec2ToVec3 = atomVec3.subtract(atomVec2);
-        // Normalized vector: length 1 with same angle.
-        final Vector3D normVec1 = vec2ToVec1.crossProduct(vec2ToVec3);
-        Vector3D vec3ToVec2 = atomVec2.subtract(atomVec3);
-        Vector3D vec3ToVec4 = atomVec4.subtract(atomVec3);
-        final Vector3D normVec2 = vec3ToVec2.crossProduct(vec3ToVec4);
-        final double dhAngle = FastMath.toDegrees(Vector3D.angle(normVec1,
-                normVec2));
-
-        // Checks the sign of the dihedral angle.
-        return normVec1.dotProduct(atomVec4) < 0 ? -dhAngle : dhAngle;
+        final double angle = calcDihedralAngle(atom1.getX(), atom1.getY(),
+                atom1.getZ(), atom2.getX(), atom2.getY(), atom2.getZ(),
+                atom3.getX(), atom3.getY(), atom3.getZ(), atom4.getX(),
+                atom4.getY(), atom4.getZ());
+        if (Double.isNaN(angle)) {
+            throw new MathArithmeticException(LocalizedFormats.ZERO_NORM);
+        }
+        return angle;
+    }
+
+    /**
+     * Allocation-free form of
+     * {@link #calcDihedralAngle(Atom, Atom, Atom, Atom)} over raw coordinates.
+     * The sign convention matches the atom form: the sign of the dot product
+     * of the first plane normal with the fourth atom's position.
+     * 
+     * @param x1
+     *            The first atom's X.
+     * @param y1
+     *            The first atom's Y.
+     * @param z1
+     *            The first atom's Z.
+     * @param x2
+     *            The second atom's X.
+     * @param y2
+     *            The second atom's Y.
+     * @param z2
+     *            The second atom's Z.
+     * @param x3
+     *            The third atom's X.
+     * @param y3
+     *            The third atom's Y.
+     * @param z3
+     *            The third atom's Z.
+     * @param x4
+     *            The fourth atom's X.
+     * @param y4
+     *            The fourth atom's Y.
+     * @param z4
+     *            The fourth atom's Z.
+     * @return The dihedral angle in degrees, or NaN if either plane is
+     *         undefined.
+     */
+    public static double calcDihedralAngle(final double x1, final double y1,
+            final double z1, final double x2, final double y2,
+            final double z2, final double x3, final double y3,
+            final double z3, final double x4, final double y4,
+            final double z4) {
+        // 2->1 and 2->3
+        final double ax = x1 - x2;
+        final double ay = y1 - y2;
+        final double az = z1 - z2;
+        final double bx = x3 - x2;
+        final double by = y3 - y2;
+        final double bz = z3 - z2;
+        // 3->4; 3->2 is -b
+        final double cx = x4 - x3;
+        final double cy = y4 - y3;
+        final double cz = z4 - z3;
+        // n1 = a x b
+        final double n1x = ay * bz - az * by;
+        final double n1y = az * bx - ax * bz;
+        final double n1z = ax * by - ay * bx;
+        // n2 = -b x c
+        final double n2x = bz * cy - by * cz;
+        final double n2y = bx * cz - bz * cx;
+        final double n2z = by * cx - bx * cy;
+
+        final double normProd = FastMath.sqrt((n1x * n1x + n1y * n1y + n1z
+                * n1z)
+                * (n2x * n2x + n2y * n2y + n2z * n2z));
+        if (normProd == 0) {
+            return Double.NaN;
+        }
+        final double dot = n1x * n2x + n1y * n2y + n1z * n2z;
+        final double threshold = normProd * 0.9999;
+        double angle;
+        if (dot < -threshold || dot > threshold) {
+            // Nearly (anti)parallel normals: acos loses precision, so use the
+            // cross product as Vector3D.angle does.
+            final double crx = n1y * n2z - n1z * n2y;
+            final double cry = n1z * n2x - n1x * n2z;
+            final double crz = n1x * n2y - n1y * n2x;
+            final double sin = FastMath.sqrt(crx * crx + cry * cry + crz * crz)
+                    / normProd;
+            angle = dot >= 0 ? FastMath.asin(sin) : FastMath.PI
+                    - FastMath.asin(sin);
+        } else {
+            angle = FastMath.acos(dot / normProd);
+        }
+        final double dhAngle = FastMath.toDegrees(angle);
+        return n1x * x4 + n1y * y4 + n1z * z4 < 0 ? -dhAngle : dhAngle;
+    }
+
+    /**
+     * Calculates the dihedral angles for a batch of quadruplets. Quadruplet
+     * <code>i</code> is atoms <code>first[i]</code>, <code>second[i]</code>,
+     * <code>third[i]</code> and <code>fourth[i]</code>, indexing into the
+     * coordinate arrays; its angle in degrees (or NaN if undefined) is
+     * written to <code>results[i]</code>.
+     * 
+     * @param xs
+     *            The X coordinates.
+     * @param ys
+     *            The Y coordinates.
+     * @param zs
+     *            The Z coordinates.
+     * @param first
+     *            The first atom index of each quadruplet.
+     * @param second
+     *            The second atom index of each quadruplet.
+     * @param third
+     *            The third atom index of each quadruplet.
+     * @param fourth
+     *            The fourth atom index of each quadruplet.
+     * @param results
+     *            Receives the angles.
+     * @param parallel
+     *            Whether to split the quadruplets across the common fork-join
+     *            pool.
+     */
+    public static void calcDihedralAngles(final double[] xs,
+            final double[] ys, final double[] zs, final int[] first,
+            final int[] second, final int[] third, final int[] fourth,
+            final double[] results, final boolean parallel) {
+        final int count = first.length;
+        checkQuadruplets(first, second, third, fourth, results);
+        if (!parallel || count <= BATCH_CHUNK) {
+            CoordinateKernels.dihedrals(xs, ys, zs, first, second, third,
+                    fourth, results, 0, count);
+            return;
+        }
+        final int chunks = (count + BATCH_CHUNK - 1) / BATCH_CHUNK;
+        IntStream.range(0, chunks).parallel().forEach(chunk -> {
+            final int start = chunk * BATCH_CHUNK;
+            CoordinateKernels.dihedrals(xs, ys, zs, first, second, third,
+                    fourth, results, start, Math.min(count, start + BATCH_CHUNK));
+        });
+    }
+
+    /**
+     * Finds the dihedral angle in degrees for four indexed atoms. See
+     * {@link #calcDihedralAngle(Atom, Atom, Atom, Atom)}.
+     * 
+     * @param coords
+     *            The coordinates holding the atoms.
+     * @param first
+     *            The index of the first atom.
+     * @param second
+     *            The index of the second atom.
+     * @param third
+     *            The index of the third atom.
+     * @param fourth
+     *            The index of the fourth atom.
+     * @return The dihedral angle in degrees, or NaN if either plane is
+     *         undefined.
+     */
+    public static double calcDihedralAngle(final Coordinates coords,
+            final int first, final int second, final int third,
+            final int fourth) {
+        return calcDihedralAngle(coords.getX(first), coords.getY(first),
+                coords.getZ(first), coords.getX(second), coords.getY(second),
+                coords.getZ(second), coords.getX(third), coords.getY(third),
+                coords.getZ(third), coords.getX(fourth), coords.getY(fourth),
+                coords.getZ(fourth));
+    }
+
+    /**
+     * Calculates the dihedral angles for a batch of quadruplets of indexed
+     * atoms on the calling thread. See
+     * {@link #calcDihedralAngles(double[], double[], double[], int[], int[], int[], int[], double[], boolean)}
+     * .
+     * 
+     * @param coords
+     *            The coordinates holding the atoms.
+     * @param first
+     *            The first atom index of each quadruplet.
+     * @param second
+     *            The second atom index of each quadruplet.
+     * @param third
+     *            The third atom index of each quadruplet.
+     * @param fourth
+     *            The fourth atom index of each quadruplet.
+     * @param results
+     *            Receives the angles.
+     */
+    public static void calcDihedralAngles(final Coordinates coords,
+            final int[] first, final int[] second, final int[] third,
+            final int[] fourth, final double[] results) {
+        if (coords instanceof AtomTable) {
+            final AtomTable table = (AtomTable) coords;
+            calcDihedralAngles(table.getXs(), table.getYs(), table.getZs(),
+                    first, second, third, fourth, results, false);
+            return;
+        }
+        checkQuadruplets(first, second, third, fourth, results);
+        for (int i = 0; i < first.length; i++) {
+            results[i] = calcDihedralAngle(coords, first[i], second[i],
+                    third[i], fourth[i]);
+        }
+    }
+
+    /**
+     * Validates the arrays passed to a batch dihedral calculation.
+     * 
+     * @param first
+     *            The first atom index of each quadruplet.
+     * @param second
+     *            The second atom index of each quadruplet.
+     * @param third
+     *            The third atom index of each quadruplet.
+     * @param fourth
+     *            The fourth atom index of each quadruplet.
+     * @param results
+     *            Receives the angles.
+     */
+    private static void checkQuadruplets(final int[] first,
+            final int[] second, final int[] third, final int[] fourth,
+            final double[] results) {
+        final int count = first.length;
+        if (second.length != count || third.length != count
+                || fourth.length != count) {
+            throw new IllegalArgumentException(
+                    "Quadruplet index arrays differ in length");
+        }
+        if (results.length < count) {
+            throw new IllegalArgumentException(String.format(
+                    "Result array length %d is less than %d quadruplets",
+                    results.length, count));
+        }
     }
 }
@@ -0,0 +1,207 @@
+package com.cmayes.common.chem;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Kernels built on the incubating Vector API, using the widest double shape
+ * the CPU supports (four lanes on AVX2, eight on AVX-512). Each lane performs
+ * the same operations in the same order as {@link ScalarKernelSet}, so results
+ * are bitwise identical; ranges that don't fill a vector finish with scalar
+ * loops.
+ *
+ * @author cmayes
+ */
+final class VectorKernelSet implements KernelSet {
+    private static final VectorSpecies<Double> SPECIES = DoubleVector.SPECIES_PREFERRED;
+    private static final int LANES = SPECIES.length();
+    private static final ScalarKernelSet TAIL = new ScalarKernelSet();
+
+    /**
+     * Creates the kernels.
+     *
+     * @throws UnsupportedOperationException
+     *             If the CPU has no multi-lane double shape.
+     */
+    VectorKernelSet() {
+        if (LANES < 2) {
+            throw new UnsupportedOperationException(
+                    "No multi-lane double vectors on this platform");
+        }
+    }
+
+    @Override
+    public void distances(final double x, final double y, final double z,
+            final double[] xs, final double[] ys, final double[] zs,
+            final int from, final int to, final double[] out,
+            final int outOffset) {
+        final DoubleVector vx = DoubleVector.broadcast(SPECIES, x);
+        final DoubleVector vy = DoubleVector.broadcast(SPECIES, y);
+        final DoubleVector vz = DoubleVector.broadcast(SPECIES, z);
+        final int bound = from + SPECIES.loopBound(to - from);
+        final int shift = outOffset - from;
+        int j = from;
+        for (; j < bound; j += LANES) {
+            distSq(vx, vy, vz, xs, ys, zs, j).lanewise(VectorOperators.SQRT)
+                    .intoArray(out, shift + j);
+        }
+        TAIL.distances(x, y, z, xs, ys, zs, j, to, out, shift + j);
+    }
+
+    @Override
+    public int within(final double x, final double y, final double z,
+            final double[] xs, final double[] ys, final double[] zs,
+            final int from, final int to, final double cutoffSq,
+            final int[] out) {
+        final DoubleVector vx = DoubleVector.broadcast(SPECIES, x);
+        final DoubleVector vy = DoubleVector.broadcast(SPECIES, y);
+        final DoubleVector vz = DoubleVector.broadcast(SPECIES, z);
+        final int bound = from + SPECIES.loopBound(to - from);
+        int count = 0;
+        int j = from;
+        for (; j < bound; j += LANES) {
+            long hits = distSq(vx, vy, vz, xs, ys, zs, j).compare(
+                    VectorOperators.LE, cutoffSq).toLong();
+            while (hits != 0) {
+                out[count++] = j + Long.numberOfTrailingZeros(hits);
+                hits &= hits - 1;
+            }
+        }
+        for (; j < to; j++) {
+            final double dx = xs[j] - x;
+            final double dy = ys[j] - y;
+            final double dz = zs[j] - z;
+            if (dx * dx + dy * dy + dz * dz <= cutoffSq) {
+                out[count++] = j;
+            }
+        }
+        return count;
+    }
+
+    @Override
+    public void dihedrals(final double[] xs, final double[] ys,
+            final double[] zs, final int[] first, final int[] second,
+            final int[] third, final int[] fourth, final double[] results,
+            final int start, final int end) {
+        final double[] dots = new double[LANES];
+        final double[] normProds = new double[LANES];
+        final double[] crossNorms = new double[LANES];
+        final double[] sides = new double[LANES];
+        final int bound = start + SPECIES.loopBound(end - start);
+        int i = start;
+        for (; i < bound; i += LANES) {
+            final DoubleVector x2 = gather(xs, second, i);
+            final DoubleVector y2 = gather(ys, second, i);
+            final DoubleVector z2 = gather(zs, second, i);
+            final DoubleVector x3 = gather(xs, third, i);
+            final DoubleVector y3 = gather(ys, third, i);
+            final DoubleVector z3 = gather(zs, third, i);
+            final DoubleVector x4 = gather(xs, fourth, i);
+            final DoubleVector y4 = gather(ys, fourth, i);
+            final DoubleVector z4 = gather(zs, fourth, i);
+            // 2->1 and 2->3
+            final DoubleVector ax = gather(xs, first, i).sub(x2);
+            final DoubleVector ay = gather(ys, first, i).sub(y2);
+            final DoubleVector az = gather(zs, first, i).sub(z2);
+            final DoubleVector bx = x3.sub(x2);
+            final DoubleVector by = y3.sub(y2);
+            final DoubleVector bz = z3.sub(z2);
+            // 3->4
+            final DoubleVector cx = x4.sub(x3);
+            final DoubleVector cy = y4.sub(y3);
+            final DoubleVector cz = z4.sub(z3);
+            // n1 = a x b, n2 = -b x c
+            final DoubleVector n1x = ay.mul(bz).sub(az.mul(by));
+            final DoubleVector n1y = az.mul(bx).sub(ax.mul(bz));
+            final DoubleVector n1z = ax.mul(by).sub(ay.mul(bx));
+            final DoubleVector n2x = bz.mul(cy).sub(by.mul(cz));
+            final DoubleVector n2y = bx.mul(cz).sub(bz.mul(cx));
+            final DoubleVector n2z = by.mul(cx).sub(bx.mul(cy));
+            final DoubleVector crx = n1y.mul(n2z).sub(n1z.mul(n2y));
+            final DoubleVector cry = n1z.mul(n2x).sub(n1x.mul(n2z));
+            final DoubleVector crz = n1x.mul(n2y).sub(n1y.mul(n2x));
+
+            dot(n1x, n1y, n1z, n1x, n1y, n1z).mul(
+                    dot(n2x, n2y, n2z, n2x, n2y, n2z))
+                    .lanewise(VectorOperators.SQRT).intoArray(normProds, 0);
+            dot(n1x, n1y, n1z, n2x, n2y, n2z).intoArray(dots, 0);
+            dot(crx, cry, crz, crx, cry, crz).lanewise(VectorOperators.SQRT)
+                    .intoArray(crossNorms, 0);
+            dot(n1x, n1y, n1z, x4, y4, z4).intoArray(sides, 0);
+            for (int lane = 0; lane < LANES; lane++) {
+                results[i + lane] = CoordinateKernels.dihedralAngle(
+                        dots[lane], normProds[lane], crossNorms[lane],
+                        sides[lane]);
+            }
+        }
+        TAIL.dihedrals(xs, ys, zs, first, second, third, fourth, results, i,
+                end);
+    }
+
+    /**
+     * @param vx
+     *            The point's X in every lane.
+     * @param vy
+     *            The point's Y in every lane.
+     * @param vz
+     *            The point's Z in every lane.
+     * @param xs
+     *            The X coordinates.
+     * @param ys
+     *            The Y coordinates.
+     * @param zs
+     *            The Z coordinates.
+     * @param start
+     *            The first position of the vector.
+     * @return The squared distances from the point to the positions.
+     */
+    private static DoubleVector distSq(final DoubleVector vx,
+            final DoubleVector vy, final DoubleVector vz, final double[] xs,
+            final double[] ys, final double[] zs, final int start) {
+        final DoubleVector dx = DoubleVector.fromArray(SPECIES, xs, start)
+                .sub(vx);
+        final DoubleVector dy = DoubleVector.fromArray(SPECIES, ys, start)
+                .sub(vy);
+        final DoubleVector dz = DoubleVector.fromArray(SPECIES, zs, start)
+                .sub(vz);
+        return dx.mul(dx).add(dy.mul(dy)).add(dz.mul(dz));
+    }
+
+    /**
+     * @param ax
+     *            The first vectors' X components.
+     * @param ay
+     *            The first vectors' Y components.
+     * @param az
+     *            The first vectors' Z components.
+     * @param bx
+     *            The second vectors' X components.
+     * @param by
+     *            The second vectors' Y components.
+     * @param bz
+     *            The second vectors' Z components.
+     * @return The lane-wise dot products, summed in X, Y, Z order as the
+     *         scalar code does.
+     */
+    private static DoubleVector dot(final DoubleVector ax,
+            final DoubleVector ay, final DoubleVector az,
+            final DoubleVector bx, final DoubleVector by,
+            final DoubleVector bz) {
+        return ax.mul(bx).add(ay.mul(by)).add(az.mul(bz));
+    }
+
+    /**
+     * @param coords
+     *            One coordinate array.
+     * @param idxs
+     *            The atom indices.
+     * @param start
+     *            The first index to gather.
+     * @return The coordinates of the indexed atoms.
+     */
+    private static DoubleVector gather(final double[] coords,
+            final int[] idxs, final int start) {
+        return DoubleVector.fromArray(SPECIES, coords, 0, idxs, start);
+    }
+}
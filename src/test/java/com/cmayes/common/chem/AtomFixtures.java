@@ -0,0 +1,76 @@
+package com.cmayes.common.chem;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import com.cmayes.common.model.Atom;
+import com.cmayes.common.model.impl.DefaultAtom;
+
+/**
+ * Atoms shared by the structure tests.
+ * 
+ * @author cmayes
+ */
+public final class AtomFixtures {
+    /** The element types given to random atoms. */
+    static final AtomicElement[] TYPES = { AtomicElement.CARBON,
+            AtomicElement.HYDROGEN, AtomicElement.OXYGEN };
+
+    /**
+     * Private constructor for util class.
+     */
+    private AtomFixtures() {
+
+    }
+
+    /**
+     * Creates randomly placed atoms in a cube, with IDs matching their
+     * indices.
+     * 
+     * @param count
+     *            The number of atoms.
+     * @param side
+     *            The side length of the cube.
+     * @param seed
+     *            The random seed.
+     * @return The atoms.
+     */
+    public static List<Atom> randomAtoms(final int count, final double side,
+            final long seed) {
+        final Random rand = new Random(seed);
+        final List<Atom> atoms = new ArrayList<Atom>();
+        for (int i = 0; i < count; i++) {
+            atoms.add(createAtom(i, TYPES[rand.nextInt(TYPES.length)],
+                    rand.nextDouble() * side, rand.nextDouble() * side,
+                    rand.nextDouble() * side));
+        }
+        return atoms;
+    }
+
+    /**
+     * Creates an atom with the given values.
+     * 
+     * @param id
+     *            The atom ID.
+     * @param type
+     *            The atom type.
+     * @param x
+     *            The X coordinate.
+     * @param y
+     *            The Y coordinate.
+     * @param z
+     *            The Z coordinate.
+     * @return The new atom.
+     */
+    public static Atom createAtom(final int id, final AtomicElement type,
+            final double x, final double y, final double z) {
+        final Atom atom = new DefaultAtom();
+        atom.setId(id);
+        atom.setType(type);
+        atom.setX(x);
+        atom.setY(y);
+        atom.setZ(z);
+        return atom;
+    }
+}
@@ -0,0 +1,200 @@
+package com.cmayes.common.chem;
+
+import static com.cmayes.common.chem.AtomFixtures.randomAtoms;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertThat;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.cmayes.common.model.Atom;
+import com.cmayes.common.model.AtomTable;
+
+/**
+ * Tests for {@link AtomOrdering}.
+ *
+ * @author cmayes
+ */
+public class TestAtomOrdering {
+    /**
+     * The radix sort matches a stable comparator sort, including repeated and
+     * negative IDs.
+     */
+    @Test
+    public void testMatchesComparatorSort() {
+        final List<Atom> atoms = randomAtoms(2000, 10, 6);
+        final Random rand = new Random(6);
+        for (Atom atom : atoms) {
+            atom.setId(rand.nextInt(600) - 300 + (rand.nextBoolean() ? 0
+                    : rand.nextInt() & 0x7fff0000));
+        }
+        final List<Atom> sorted = new ArrayList<Atom>(atoms);
+        Collections.sort(sorted, new AtomIdComparator());
+        for (boolean parallel : new boolean[] { false, true }) {
+            final int[] perm = AtomOrdering.byId(atoms, parallel);
+            for (int k = 0; k < perm.length; k++) {
+                assertThat(atoms.get(perm[k]), sameInstance(sorted.get(k)));
+            }
+        }
+        assertThat(AtomOrdering.byId(new int[0]).length, equalTo(0));
+    }
+
+    /**
+     * Parallel passes over large inputs match the serial sort.
+     */
+    @Test
+    public void testParallelLarge() {
+        final Random rand = new Random(11);
+        final int[] ids = new int[300000];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = rand.nextInt(100000) - 50000;
+        }
+        final int[] serial = AtomOrdering.byId(ids, false);
+        assertArrayEquals(serial, AtomOrdering.byId(ids, true));
+        for (int k = 1; k < serial.length; k++) {
+            final int prev = ids[serial[k - 1]];
+            final int cur = ids[serial[k]];
+            assertThat(prev < cur || prev == cur && serial[k - 1] < serial[k],
+                    equalTo(true));
+        }
+    }
+
+    /**
+     * Applying the ID order reorders every table column together, and the
+     * inverse restores the original rows.
+     */
+    @Test
+    public void testApply() {
+        final List<Atom> atoms = randomAtoms(500, 10, 2);
+        Collections.shuffle(atoms, new Random(2));
+        final AtomTable table = AtomTable.fromAtoms(atoms);
+        final double[] xs = table.getXs().clone();
+        final int[] perm = AtomOrdering.sortById(table, false);
+        for (int k = 0; k < table.size(); k++) {
+            final Atom source = atoms.get(perm[k]);
+            assertThat(table.getId(k), equalTo(k));
+            assertThat(table.getId(k), equalTo(source.getId()));
+            assertThat(table.getX(k), equalTo(source.getX()));
+            assertThat(table.getZ(k), equalTo(source.getZ()));
+            assertThat(table.getType(k), equalTo(source.getType()));
+        }
+        AtomOrdering.apply(AtomOrdering.inverse(perm), table);
+        assertArrayEquals(xs, table.getXs(), 0);
+
+        final double[] column = xs.clone();
+        AtomOrdering.apply(perm, column);
+        final int[] ids = new int[xs.length];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = atoms.get(i).getId();
+        }
+        AtomOrdering.apply(perm, ids);
+        for (int k = 0; k < perm.length; k++) {
+            assertThat(column[k], equalTo(xs[perm[k]]));
+            assertThat(ids[k], equalTo(k));
+        }
+    }
+
+    /**
+     * The first 64 Hilbert keys fill the 4x4x4 corner cube one unit step at
+     * a time, and Morton keys interleave X, Y and Z bits.
+     */
+    @Test
+    public void testCurveKeys() {
+        final int[][] cells = new int[64][];
+        for (int x = 0; x < 4; x++) {
+            for (int y = 0; y < 4; y++) {
+                for (int z = 0; z < 4; z++) {
+                    final long key = AtomOrdering.hilbert(x, y, z);
+                    assertThat(key < 64, equalTo(true));
+                    assertThat(cells[(int) key] == null, equalTo(true));
+                    cells[(int) key] = new int[] { x, y, z };
+                }
+            }
+        }
+        for (int k = 1; k < cells.length; k++) {
+            int steps = 0;
+            for (int axis = 0; axis < 3; axis++) {
+                steps += Math.abs(cells[k][axis] - cells[k - 1][axis]);
+            }
+            assertThat(steps, equalTo(1));
+        }
+        assertThat(AtomOrdering.morton(1, 0, 0), equalTo(4L));
+        assertThat(AtomOrdering.morton(0, 1, 0), equalTo(2L));
+        assertThat(AtomOrdering.morton(0, 0, 3), equalTo(9L));
+        final int max = (1 << 21) - 1;
+        assertThat(AtomOrdering.morton(max, max, max),
+                equalTo(Long.MAX_VALUE));
+    }
+
+    /**
+     * Spatial orders keep consecutive atoms close, agree between serial and
+     * parallel runs, and can be undone by the inverse or by ID order.
+     */
+    @Test
+    public void testSortBySpace() {
+        final List<Atom> atoms = randomAtoms(80000, 40, 4);
+        final AtomTable original = AtomTable.fromAtoms(atoms);
+        final double shuffled = meanStep(original);
+        for (AtomOrdering.Curve curve : AtomOrdering.Curve.values()) {
+            final AtomTable table = AtomTable.fromAtoms(atoms);
+            final int[] perm = AtomOrdering.sortBySpace(table, curve, false);
+            assertArrayEquals(perm, AtomOrdering.bySpace(original.getXs(),
+                    original.getYs(), original.getZs(), curve, true));
+            assertThat(meanStep(table) < shuffled / 10, equalTo(true));
+
+            final int[] inv = AtomOrdering.inverse(perm);
+            for (int i = 0; i < atoms.size(); i += 97) {
+                assertThat(table.getId(inv[i]), equalTo(original.getId(i)));
+            }
+            AtomOrdering.sortById(table, true);
+            assertArrayEquals(original.getIds(), table.getIds());
+            assertArrayEquals(original.getYs(), table.getYs(), 0);
+        }
+    }
+
+    /**
+     * Permutations must match the data they reorder.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testSizeMismatch() {
+        AtomOrdering.apply(new int[] { 0, 1 }, new double[3]);
+    }
+
+    /**
+     * Arrays with repeated indices are rejected instead of looping forever.
+     */
+    @Test(expected = IllegalArgumentException.class, timeout = 5000)
+    public void testNotPermutation() {
+        AtomOrdering.apply(new int[] { 1, 1 }, new double[2]);
+    }
+
+    /**
+     * Out-of-range indices are rejected.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testIndexOutOfRange() {
+        AtomOrdering.apply(new int[] { 2, 0 }, new int[2]);
+    }
+
+    /**
+     * @param table
+     *            The positions.
+     * @return The mean distance between consecutive rows.
+     */
+    private static double meanStep(final AtomTable table) {
+        double sum = 0;
+        for (int i = 1; i < table.size(); i++) {
+            final double dx = table.getX(i) - table.getX(i - 1);
+            final double dy = table.getY(i) - table.getY(i - 1);
+            final double dz = table.getZ(i) - table.getZ(i - 1);
+            sum += Math.sqrt(dx * dx + dy * dy + dz * dz);
+        }
+        return sum / (table.size() - 1);
+    }
+}
@@ -0,0 +1,157 @@
+package com.cmayes.common.chem;
+
+import static org.hamcrest.Matchers.closeTo;
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.Assert.assertThat;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.cmayes.common.chem.PhysicalConstants.Conversions;
+
+/**
+ * Tests for {@link BoltzmannAccumulator}.
+ *
+ * @author cmayes
+ */
+public class TestBoltzmannAccumulator {
+    private static final double KELVIN = PhysicalConstants.KELVIN_25C;
+    private static final double BETA = Conversions.HARTREE_TO_KCALTH
+            / (PhysicalConstants.GAS_KCAL * KELVIN);
+
+    /**
+     * Streaming results match a two-pass reference in any insertion order.
+     */
+    @Test
+    public void testMatchesTwoPass() {
+        final Random rand = new Random(8);
+        final int size = 500;
+        final double[] energies = new double[size];
+        final double[] props = new double[2 * size];
+        for (int i = 0; i < size; i++) {
+            energies[i] = -230.5 + rand.nextDouble() * 0.01;
+            props[2 * i] = rand.nextGaussian();
+            props[2 * i + 1] = 10 + i;
+        }
+        double min = Double.POSITIVE_INFINITY;
+        for (double energy : energies) {
+            min = Math.min(min, energy);
+        }
+        double norm = 0;
+        double avgE = 0;
+        double avg0 = 0;
+        double avg1 = 0;
+        for (int i = 0; i < size; i++) {
+            final double weight = Math.exp(-BETA * (energies[i] - min));
+            norm += weight;
+            avgE += weight * energies[i];
+            avg0 += weight * props[2 * i];
+            avg1 += weight * props[2 * i + 1];
+        }
+
+        final BoltzmannAccumulator acc = new BoltzmannAccumulator(KELVIN, 2);
+        for (int i = 0; i < size; i++) {
+            acc.add(energies[i], props, 2 * i);
+        }
+        assertThat(acc.getCount(), equalTo((long) size));
+        assertThat(acc.getMinEnergy(), equalTo(min));
+        assertThat(acc.getAverageEnergy(), closeTo(avgE / norm, 1e-10));
+        assertThat(acc.getAverage(0), closeTo(avg0 / norm, 1e-10));
+        assertThat(acc.getAverages()[1], closeTo(avg1 / norm, 1e-9));
+        assertThat(acc.getLogPartition(),
+                closeTo(Math.log(norm) - BETA * min, 1e-6));
+        assertThat(acc.getFreeEnergy(),
+                closeTo(min - Math.log(norm) / BETA, 1e-10));
+        assertThat(acc.getWeight(min), closeTo(1 / norm, 1e-12));
+
+        final BoltzmannAccumulator reversed = new BoltzmannAccumulator(
+                KELVIN, 2);
+        for (int i = size - 1; i >= 0; i--) {
+            reversed.add(energies[i], new double[] { props[2 * i],
+                    props[2 * i + 1] });
+        }
+        assertThat(reversed.getAverage(0), closeTo(acc.getAverage(0), 1e-10));
+        assertThat(reversed.getAverageEnergy(),
+                closeTo(acc.getAverageEnergy(), 1e-10));
+    }
+
+    /**
+     * Energies hundreds of RT apart neither overflow nor underflow the sums.
+     */
+    @Test
+    public void testWideRange() {
+        final BoltzmannAccumulator acc = new BoltzmannAccumulator(KELVIN, 1);
+        acc.add(-500, new double[] { 1 });
+        acc.add(-502, new double[] { 2 });
+        acc.add(-501, new double[] { 3 });
+        assertThat(acc.getAverage(0), closeTo(2, 1e-12));
+        assertThat(acc.getAverageEnergy(), closeTo(-502, 1e-12));
+        assertThat(acc.getFreeEnergy(), closeTo(-502, 1e-12));
+        assertThat(acc.getWeight(-502), closeTo(1, 1e-12));
+        assertThat(acc.getLogPartition(), closeTo(502 * BETA, 1e-6));
+    }
+
+    /**
+     * Parallel reduction and explicit merges match serial accumulation.
+     */
+    @Test
+    public void testParallelAndCombine() {
+        final Random rand = new Random(3);
+        final int size = 100000;
+        final double[] energies = new double[size];
+        final double[] props = new double[size];
+        for (int i = 0; i < size; i++) {
+            energies[i] = -77 + rand.nextDouble() * 0.02;
+            props[i] = rand.nextDouble();
+        }
+        final BoltzmannAccumulator serial = BoltzmannAccumulator.of(KELVIN,
+                energies, props, 1, false);
+        final BoltzmannAccumulator parallel = BoltzmannAccumulator.of(KELVIN,
+                energies, props, 1, true);
+        assertThat(parallel.getCount(), equalTo((long) size));
+        assertThat(parallel.getAverage(0),
+                closeTo(serial.getAverage(0), 1e-12));
+        assertThat(parallel.getAverageEnergy(),
+                closeTo(serial.getAverageEnergy(), 1e-12));
+        assertThat(parallel.getFreeEnergy(),
+                closeTo(serial.getFreeEnergy(), 1e-12));
+
+        final BoltzmannAccumulator first = new BoltzmannAccumulator(KELVIN, 1);
+        final BoltzmannAccumulator second = new BoltzmannAccumulator(KELVIN,
+                1);
+        for (int i = 0; i < size; i++) {
+            (i % 3 == 0 ? first : second).add(energies[i], props, i);
+        }
+        second.combine(first).combine(new BoltzmannAccumulator(KELVIN, 1));
+        assertThat(second.getAverage(0), closeTo(serial.getAverage(0), 1e-12));
+        assertThat(second.getAverageEnergy(),
+                closeTo(serial.getAverageEnergy(), 1e-12));
+        second.reset();
+        assertThat(second.getCount(), equalTo(0L));
+    }
+
+    /**
+     * Empty accumulators have no averages.
+     */
+    @Test(expected = IllegalStateException.class)
+    public void testEmpty() {
+        new BoltzmannAccumulator(KELVIN, 0).getFreeEnergy();
+    }
+
+    /**
+     * Conformers without their properties are rejected.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testMissingProperties() {
+        new BoltzmannAccumulator(KELVIN, 2).add(-1);
+    }
+
+    /**
+     * Property arrays too short for the offset are rejected.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testShortProperties() {
+        new BoltzmannAccumulator(KELVIN, 2).add(-1, new double[3], 2);
+    }
+}
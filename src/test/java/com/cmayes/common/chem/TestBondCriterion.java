@@ -0,0 +1,79 @@
+package com.cmayes.common.chem;
+
+import static com.cmayes.common.chem.AtomFixtures.randomAtoms;
+import static org.hamcrest.Matchers.closeTo;
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+
+import org.junit.Test;
+
+import com.cmayes.common.model.Atom;
+import com.cmayes.common.model.AtomTable;
+import com.cmayes.common.util.ChemUtils;
+
+/**
+ * Tests for {@link BondCriterion}.
+ * 
+ * @author cmayes
+ */
+public class TestBondCriterion {
+    private static final double DELTA = 1e-9;
+
+    /**
+     * Tests that the default criterion matches the BOND_LEN distance test.
+     */
+    @Test
+    public void testDefaultMatchesBondLen() {
+        final List<Atom> atoms = randomAtoms(100, 6, 5);
+        for (Atom first : atoms) {
+            for (Atom second : atoms) {
+                assertThat(BondCriterion.DEFAULT.isBonded(first, second),
+                        equalTo(ChemUtils.findDistance(first, second)
+                                <= ChemUtils.BOND_LEN));
+            }
+        }
+        assertThat(BondCriterion.DEFAULT.getMaxCutoff(),
+                closeTo(ChemUtils.BOND_LEN, DELTA));
+    }
+
+    /**
+     * Tests covalent cutoffs for a few element pairs.
+     */
+    @Test
+    public void testCovalentCutoffs() {
+        final BondCriterion crit = BondCriterion.covalent();
+        assertThat(crit.getCutoff(AtomicElement.CARBON,
+                AtomicElement.HYDROGEN), closeTo(0.76 + 0.31 + 0.45, DELTA));
+        assertThat(crit.getCutoff(AtomicElement.IRON, AtomicElement.OXYGEN),
+                equalTo(crit.getCutoff(AtomicElement.OXYGEN,
+                        AtomicElement.IRON)));
+        assertThat(crit.getCutoff(null, AtomicElement.IRON),
+                closeTo(ChemUtils.BOND_LEN, DELTA));
+    }
+
+    /**
+     * Tests that the covalent criterion does not bond the hydrogens of water.
+     */
+    @Test
+    public void testCovalentWater() {
+        final AtomTable water = AtomTable.fromAtoms(TestBondGraph.water());
+        final BondCriterion crit = BondCriterion.covalent();
+        assertTrue(crit.isBonded(water, 0, 1));
+        assertFalse(crit.isBonded(water, 1, 2));
+        assertTrue(BondCriterion.DEFAULT.isBonded(water, 1, 2));
+        assertThat(BondGraph.build(water, crit, false).bondCount(),
+                equalTo(2));
+    }
+
+    /**
+     * Tests that non-positive cutoffs are rejected.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testBadCutoff() {
+        BondCriterion.uniform(0);
+    }
+}
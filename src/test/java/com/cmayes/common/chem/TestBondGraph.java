@@ -0,0 +1,124 @@
+package com.cmayes.common.chem;
+
+import static com.cmayes.common.chem.AtomFixtures.createAtom;
+import static com.cmayes.common.chem.AtomFixtures.randomAtoms;
+import static org.hamcrest.Matchers.closeTo;
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.cmayes.common.exception.NotFoundException;
+import com.cmayes.common.exception.TooManyException;
+import com.cmayes.common.model.Atom;
+import com.cmayes.common.model.AtomTable;
+import com.cmayes.common.util.ChemUtils;
+
+/**
+ * Tests for {@link BondGraph}.
+ * 
+ * @author cmayes
+ */
+public class TestBondGraph {
+    /**
+     * Tests that the graph matches a brute-force pair search.
+     */
+    @Test
+    public void testMatchesBruteForce() {
+        final List<Atom> atoms = randomAtoms(400, 10, 11);
+        final BondGraph graph = BondGraph.build(atoms);
+        int bonds = 0;
+        for (int i = 0; i < atoms.size(); i++) {
+            final List<Integer> expected = new ArrayList<Integer>();
+            for (int j = 0; j < atoms.size(); j++) {
+                if (i != j && ChemUtils.hasBond(atoms.get(i), atoms.get(j))) {
+                    expected.add(j);
+                }
+            }
+            bonds += expected.size();
+            assertThat(graph.degree(i), equalTo(expected.size()));
+            for (int k = 0; k < expected.size(); k++) {
+                assertThat(graph.neighborsOf(i)[k], equalTo(expected.get(k)));
+            }
+        }
+        assertThat(graph.bondCount() * 2, equalTo(bonds));
+    }
+
+    /**
+     * Tests element-filtered neighbors and stored lengths.
+     */
+    @Test
+    public void testFilteredNeighbors() {
+        final BondGraph graph = BondGraph.build(
+                AtomTable.fromAtoms(water()), true);
+        assertArrayEquals(new int[] { 1, 2 },
+                graph.neighborsOf(0, AtomicElement.HYDROGEN));
+        assertThat(graph.singleNeighbor(1, AtomicElement.OXYGEN), equalTo(0));
+        assertThat((double) graph.bondLength(0, 0), closeTo(0.96, 1e-6));
+        assertThat(graph.neighborsOf(1, AtomicElement.CARBON).length,
+                equalTo(0));
+    }
+
+    /**
+     * Bonds across the faces of a periodic cell are found and measured by
+     * minimum image.
+     */
+    @Test
+    public void testPeriodic() {
+        final List<Atom> atoms = new ArrayList<Atom>();
+        atoms.add(createAtom(1, AtomicElement.OXYGEN, 0.2, 5, 5));
+        atoms.add(createAtom(2, AtomicElement.HYDROGEN, 9.4, 5, 5));
+        atoms.add(createAtom(3, AtomicElement.HYDROGEN, 0.2, 5.96, 5));
+        final AtomTable table = AtomTable.fromAtoms(atoms);
+        final UnitCell cell = UnitCell.orthorhombic(10, 10, 10);
+        final BondCriterion criterion = BondCriterion.covalent();
+        assertThat(BondGraph.build(table, criterion, true).bondCount(),
+                equalTo(1));
+        final BondGraph graph = BondGraph.build(table, criterion, cell, true);
+        assertThat(graph.bondCount(), equalTo(2));
+        assertThat(graph.neighborsOf(0), equalTo(new int[] { 1, 2 }));
+        assertThat((double) graph.bondLength(0, 0), closeTo(0.8, 1e-6));
+        assertThat((double) graph.bondLength(0, 1), closeTo(0.96, 1e-6));
+        assertThat(ChemUtils.hasBond(table, 0, 1, cell), equalTo(true));
+        assertThat(ChemUtils.hasBond(table, 0, 1), equalTo(false));
+    }
+
+    /**
+     * Tests that a missing single neighbor is reported.
+     */
+    @Test(expected = NotFoundException.class)
+    public void testSingleNeighborMissing() {
+        BondGraph.build(water()).singleNeighbor(0, AtomicElement.CARBON);
+    }
+
+    /**
+     * Tests that multiple single neighbors are reported.
+     */
+    @Test(expected = TooManyException.class)
+    public void testSingleNeighborTooMany() {
+        BondGraph.build(water()).singleNeighbor(0, AtomicElement.HYDROGEN);
+    }
+
+    /**
+     * Tests that lengths are unavailable unless requested.
+     */
+    @Test(expected = IllegalStateException.class)
+    public void testNoLengths() {
+        BondGraph.build(water()).bondLength(0, 0);
+    }
+
+    /**
+     * @return A water molecule.
+     */
+    static List<Atom> water() {
+        final List<Atom> atoms = new ArrayList<Atom>();
+        atoms.add(createAtom(1, AtomicElement.OXYGEN, 0, 0, 0));
+        atoms.add(createAtom(2, AtomicElement.HYDROGEN, 0.96, 0, 0));
+        atoms.add(createAtom(3, AtomicElement.HYDROGEN, -0.24, 0.93, 0));
+        return atoms;
+    }
+}
@@ -0,0 +1,112 @@
+package com.cmayes.common.chem;
+
+import static com.cmayes.common.chem.AtomFixtures.TYPES;
+import static com.cmayes.common.chem.AtomFixtures.createAtom;
+import static com.cmayes.common.chem.AtomFixtures.randomAtoms;
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.Assert.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.cmayes.common.model.Atom;
+import com.cmayes.common.util.ChemUtils;
+
+/**
+ * Tests for {@link CellList}.
+ * 
+ * @author cmayes
+ */
+public class TestCellList {
+    /**
+     * Tests that cell list queries match the brute-force bond search.
+     */
+    @Test
+    public void testMatchesBruteForce() {
+        final List<Atom> atoms = randomAtoms(500, 12, 42);
+        final CellList cells = new CellList(atoms);
+        for (Atom atom : atoms) {
+            for (AtomicElement type : TYPES) {
+                assertThat(ChemUtils.findBondAtoms(atom, cells, type),
+                        equalTo(ChemUtils.findBondAtoms(atom, atoms, type)));
+            }
+        }
+    }
+
+    /**
+     * Tests that sparse sets still answer correctly when the cells are grown
+     * past the cutoff.
+     */
+    @Test
+    public void testSparse() {
+        final List<Atom> atoms = randomAtoms(20, 1000, 7);
+        atoms.add(createAtom(99, AtomicElement.OXYGEN, atoms.get(0).getX()
+                + 1.0, atoms.get(0).getY(), atoms.get(0).getZ()));
+        final CellList cells = new CellList(atoms);
+        assertThat(
+                ChemUtils.findBondAtoms(atoms.get(0), cells,
+                        AtomicElement.OXYGEN),
+                equalTo(ChemUtils.findBondAtoms(atoms.get(0), atoms,
+                        AtomicElement.OXYGEN)));
+    }
+
+    /**
+     * Tests that a point outside the indexed box finds nothing.
+     */
+    @Test
+    public void testOutsideBox() {
+        final CellList cells = new CellList(randomAtoms(50, 5, 3));
+        assertThat(cells.findWithin(-100, -100, -100, null).length,
+                equalTo(0));
+    }
+
+    /**
+     * Tests that a radius larger than the cutoff is rejected.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testRadiusTooLarge() {
+        final CellList cells = new CellList(randomAtoms(5, 5, 3));
+        cells.forEachWithin(0, 0, 0, ChemUtils.BOND_LEN * 2, null, null);
+    }
+
+    /**
+     * Tests that a periodic index matches a minimum-image scan, including
+     * atoms placed outside the cell.
+     */
+    @Test
+    public void testPeriodicMatchesBruteForce() {
+        for (UnitCell cell : new UnitCell[] {
+                UnitCell.orthorhombic(10, 11, 12),
+                UnitCell.triclinic(10, 11, 12, 75, 85, 100) }) {
+            final List<Atom> atoms = randomAtoms(400, 12, 9);
+            atoms.add(createAtom(400, AtomicElement.OXYGEN, -30.5, 2, 2));
+            final CellList cells = new CellList(atoms, 3.0, cell);
+            for (Atom atom : atoms) {
+                final List<Integer> expected = new ArrayList<Integer>();
+                for (int j = 0; j < atoms.size(); j++) {
+                    final Atom other = atoms.get(j);
+                    if (cell.distanceSq(atom.getX(), atom.getY(), atom.getZ(),
+                            other.getX(), other.getY(), other.getZ()) <= 9) {
+                        expected.add(j);
+                    }
+                }
+                final List<Integer> found = new ArrayList<Integer>();
+                for (int idx : cells.findWithin(atom.getX(), atom.getY(),
+                        atom.getZ(), null)) {
+                    found.add(idx);
+                }
+                assertThat(found, equalTo(expected));
+            }
+        }
+    }
+
+    /**
+     * Tests that a cutoff wider than half the cell is rejected.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testPeriodicCutoffTooLarge() {
+        new CellList(randomAtoms(5, 5, 3), 3.0, UnitCell.orthorhombic(5, 5, 5));
+    }
+}
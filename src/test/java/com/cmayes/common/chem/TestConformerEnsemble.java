@@ -0,0 +1,200 @@
+package com.cmayes.common.chem;
+
+import static com.cmayes.common.chem.AtomFixtures.createAtom;
+import static com.cmayes.common.chem.AtomFixtures.randomAtoms;
+import static org.hamcrest.Matchers.closeTo;
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertThat;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.apache.commons.math3.linear.Array2DRowRealMatrix;
+import org.apache.commons.math3.linear.LUDecomposition;
+import org.apache.commons.math3.linear.RealMatrix;
+import org.apache.commons.math3.linear.SingularValueDecomposition;
+import org.junit.Test;
+
+import com.cmayes.common.exception.InvalidDataException;
+import com.cmayes.common.model.Atom;
+import com.cmayes.common.model.AtomTable;
+
+/**
+ * Tests for {@link ConformerEnsemble}.
+ *
+ * @author cmayes
+ */
+public class TestConformerEnsemble {
+    private static final double DELTA = 1e-8;
+
+    /**
+     * A rotated, translated copy superposes exactly.
+     */
+    @Test
+    public void testRigidMotion() {
+        final List<Atom> base = randomAtoms(25, 5, 3);
+        final List<Atom> moved = new ArrayList<Atom>();
+        final double cos = Math.cos(0.7);
+        final double sin = Math.sin(0.7);
+        for (Atom atom : base) {
+            moved.add(createAtom(atom.getId(), atom.getType(), cos
+                    * atom.getX() - sin * atom.getY() + 10, sin * atom.getX()
+                    + cos * atom.getY() - 4, atom.getZ() + 2));
+        }
+        Collections.reverse(moved);
+        final List<List<Atom>> confs = new ArrayList<List<Atom>>();
+        confs.add(base);
+        confs.add(moved);
+        final ConformerEnsemble ens = ConformerEnsemble.fromAtoms(confs);
+        assertThat(ens.size(), equalTo(2));
+        assertThat(ens.getAtomCount(), equalTo(25));
+        assertThat(ens.rmsd(0, 1), closeTo(0, 1e-6));
+    }
+
+    /**
+     * QCP agrees with a Kabsch SVD superposition, and the serial, parallel
+     * and thresholded matrices agree with single calls.
+     */
+    @Test
+    public void testMatrixMatchesKabsch() {
+        final List<AtomTable> tables = new ArrayList<AtomTable>();
+        for (int k = 0; k < 12; k++) {
+            tables.add(AtomTable.fromAtoms(randomAtoms(20, 4, k)));
+        }
+        final ConformerEnsemble ens = new ConformerEnsemble(tables);
+        final double[] serial = ens.rmsdMatrix(false);
+        final double[] parallel = ens.rmsdMatrix(true);
+        assertArrayEquals(serial, parallel, 0);
+        assertThat(serial.length, equalTo(12 * 11 / 2));
+        final double threshold = serial[serial.length / 2];
+        final double[] cut = ens.rmsdMatrix(threshold, true);
+        for (int i = 0; i < 12; i++) {
+            for (int j = i + 1; j < 12; j++) {
+                final int idx = ConformerEnsemble.condensedIndex(12, i, j);
+                assertThat(serial[idx], closeTo(
+                        kabsch(tables.get(i), tables.get(j)), DELTA));
+                assertThat(ens.rmsd(j, i), closeTo(serial[idx], DELTA));
+                if (serial[idx] <= threshold) {
+                    assertThat(cut[idx], equalTo(serial[idx]));
+                } else {
+                    assertThat(cut[idx], equalTo(Double.POSITIVE_INFINITY));
+                }
+            }
+        }
+    }
+
+    /**
+     * Both clusterings recover groups of perturbed copies of distinct
+     * structures.
+     */
+    @Test
+    public void testClustering() {
+        final Random rand = new Random(4);
+        final List<AtomTable> confs = new ArrayList<AtomTable>();
+        for (int k = 0; k < 30; k++) {
+            final AtomTable table = AtomTable.fromAtoms(randomAtoms(15, 6,
+                    100 + k % 3));
+            for (int i = 0; i < table.size(); i++) {
+                table.setX(i, table.getX(i) + rand.nextGaussian() * 0.02);
+                table.setY(i, table.getY(i) + rand.nextGaussian() * 0.02);
+            }
+            confs.add(table);
+        }
+        final ConformerEnsemble ens = new ConformerEnsemble(confs);
+        for (boolean parallel : new boolean[] { false, true }) {
+            checkGroups(ens.leaderCluster(0.5, parallel));
+            checkGroups(ens.butinaCluster(0.5, parallel));
+        }
+        assertThat(ens.leaderCluster(0.5, false).get(1)[0], equalTo(1));
+        assertThat(ens.butinaCluster(0, false).size(), equalTo(30));
+    }
+
+    /**
+     * Conformers must have the same atom IDs.
+     */
+    @Test(expected = InvalidDataException.class)
+    public void testMismatchedIds() {
+        final List<List<Atom>> confs = new ArrayList<List<Atom>>();
+        confs.add(randomAtoms(5, 3, 1));
+        final List<Atom> other = randomAtoms(5, 3, 2);
+        other.get(2).setId(99);
+        confs.add(other);
+        ConformerEnsemble.fromAtoms(confs);
+    }
+
+    /**
+     * @param clusters
+     *            Clusters of 30 conformers built from three structures in
+     *            rotation.
+     */
+    private static void checkGroups(final List<int[]> clusters) {
+        assertThat(clusters.size(), equalTo(3));
+        int total = 0;
+        for (int[] members : clusters) {
+            total += members.length;
+            for (int member : members) {
+                assertThat(member % 3, equalTo(members[0] % 3));
+            }
+        }
+        assertThat(total, equalTo(30));
+    }
+
+    /**
+     * Reference RMSD by SVD of the covariance matrix.
+     *
+     * @param first
+     *            The first conformer.
+     * @param second
+     *            The second conformer.
+     * @return The minimum RMSD.
+     */
+    private static double kabsch(final AtomTable first, final AtomTable second) {
+        final double[][] a = centered(first);
+        final double[][] b = centered(second);
+        final double[][] cov = new double[3][3];
+        double sq = 0;
+        for (int i = 0; i < a.length; i++) {
+            for (int r = 0; r < 3; r++) {
+                sq += a[i][r] * a[i][r] + b[i][r] * b[i][r];
+                for (int c = 0; c < 3; c++) {
+                    cov[r][c] += a[i][r] * b[i][c];
+                }
+            }
+        }
+        final SingularValueDecomposition svd = new SingularValueDecomposition(
+                new Array2DRowRealMatrix(cov));
+        final RealMatrix rot = svd.getV().multiply(svd.getUT());
+        final double sign = Math.signum(new LUDecomposition(rot)
+                .getDeterminant());
+        final double[] sv = svd.getSingularValues();
+        final double trace = sv[0] + sv[1] + sign * sv[2];
+        return Math.sqrt(Math.max(0, (sq - 2 * trace) / a.length));
+    }
+
+    /**
+     * @param table
+     *            The positions.
+     * @return The positions shifted to their centroid.
+     */
+    private static double[][] centered(final AtomTable table) {
+        final double[][] out = new double[table.size()][3];
+        final double[] sums = new double[3];
+        for (int i = 0; i < table.size(); i++) {
+            out[i][0] = table.getX(i);
+            out[i][1] = table.getY(i);
+            out[i][2] = table.getZ(i);
+            for (int r = 0; r < 3; r++) {
+                sums[r] += out[i][r];
+            }
+        }
+        for (double[] row : out) {
+            for (int r = 0; r < 3; r++) {
+                row[r] -= sums[r] / table.size();
+            }
+        }
+        return out;
+    }
+}
@@ -0,0 +1,114 @@
+package com.cmayes.common.chem;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertThat;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Tests for {@link CoordinateKernels}. Whichever kernels are active must
+ * match {@link ScalarKernelSet} bitwise.
+ *
+ * @author cmayes
+ */
+public class TestCoordinateKernels {
+    private static final int SIZE = 1037;
+    private static final ScalarKernelSet SCALAR = new ScalarKernelSet();
+    private final Random rand = new Random(5);
+    private final double[] xs = randomCoords();
+    private final double[] ys = randomCoords();
+    private final double[] zs = randomCoords();
+
+    /**
+     * Compares distances over ranges with and without vector tails.
+     */
+    @Test
+    public void testDistances() {
+        for (int from = 0; from < 20; from += 3) {
+            final int to = SIZE - from * 7;
+            final double[] actual = new double[to - from + 2];
+            final double[] expected = new double[actual.length];
+            CoordinateKernels.distances(xs[5], ys[5], zs[5], xs, ys, zs, from,
+                    to, actual, 2);
+            SCALAR.distances(xs[5], ys[5], zs[5], xs, ys, zs, from, to,
+                    expected, 2);
+            assertArrayEquals(expected, actual, 0);
+        }
+    }
+
+    /**
+     * Compares cutoff filtering, including a point exactly on the cutoff.
+     */
+    @Test
+    public void testWithin() {
+        final double cutoffSq = (xs[9] - xs[3]) * (xs[9] - xs[3])
+                + (ys[9] - ys[3]) * (ys[9] - ys[3]) + (zs[9] - zs[3])
+                * (zs[9] - zs[3]);
+        for (int from = 0; from < 10; from++) {
+            final int[] actual = new int[SIZE];
+            final int[] expected = new int[SIZE];
+            final int count = CoordinateKernels.within(xs[3], ys[3], zs[3], xs,
+                    ys, zs, from, SIZE - from, cutoffSq, actual);
+            assertThat(count, equalTo(SCALAR.within(xs[3], ys[3], zs[3], xs,
+                    ys, zs, from, SIZE - from, cutoffSq, expected)));
+            assertArrayEquals(Arrays.copyOf(expected, count),
+                    Arrays.copyOf(actual, count));
+            assertThat(Arrays.binarySearch(actual, 0, count, 9) >= 0,
+                    equalTo(from <= 9));
+        }
+    }
+
+    /**
+     * Compares dihedrals, including degenerate and near-planar quadruplets.
+     */
+    @Test
+    public void testDihedrals() {
+        final int count = 503;
+        final int[][] quads = new int[4][count];
+        for (int i = 0; i < count; i++) {
+            for (int j = 0; j < 4; j++) {
+                quads[j][i] = rand.nextInt(SIZE);
+            }
+        }
+        // Collinear first plane.
+        quads[1][7] = quads[0][7];
+        // Planar: 1, 2, 3 and 4 share z.
+        for (int j = 0; j < 4; j++) {
+            quads[j][11] = j;
+            zs[j] = 1.5;
+        }
+        final double[] actual = new double[count];
+        final double[] expected = new double[count];
+        CoordinateKernels.dihedrals(xs, ys, zs, quads[0], quads[1], quads[2],
+                quads[3], actual, 1, count);
+        SCALAR.dihedrals(xs, ys, zs, quads[0], quads[1], quads[2], quads[3],
+                expected, 1, count);
+        assertArrayEquals(expected, actual, 0);
+        assertThat(Double.isNaN(actual[7]), equalTo(true));
+        assertThat(actual[0], equalTo(0.0));
+    }
+
+    /**
+     * Rejects a range outside the coordinates.
+     */
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void testBadRange() {
+        CoordinateKernels.within(0, 0, 0, xs, ys, zs, 0, SIZE + 1, 1,
+                new int[SIZE + 1]);
+    }
+
+    /**
+     * @return Random coordinates in a 20 Angstrom box.
+     */
+    private double[] randomCoords() {
+        final double[] coords = new double[SIZE];
+        for (int i = 0; i < SIZE; i++) {
+            coords[i] = rand.nextDouble() * 20;
+        }
+        return coords;
+    }
+}
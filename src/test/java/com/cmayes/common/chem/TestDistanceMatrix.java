@@ -0,0 +1,96 @@
+package com.cmayes.common.chem;
+
+import static com.cmayes.common.chem.AtomFixtures.randomAtoms;
+import static org.hamcrest.Matchers.closeTo;
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertThat;
+
+import org.junit.Test;
+
+import com.cmayes.common.model.AtomTable;
+import com.cmayes.common.util.ChemUtils;
+
+/**
+ * Tests for {@link DistanceMatrix}.
+ * 
+ * @author cmayes
+ */
+public class TestDistanceMatrix {
+    private static final double DELTA = 1e-9;
+    private static final AtomTable TABLE = AtomTable.fromAtoms(randomAtoms(
+            700, 20, 23));
+
+    /**
+     * Tests that condensed entries match single distance calls.
+     */
+    @Test
+    public void testCondensed() {
+        final double[] dists = DistanceMatrix.condensed(TABLE, false);
+        final int size = TABLE.size();
+        assertThat(dists.length, equalTo(size * (size - 1) / 2));
+        int k = 0;
+        for (int i = 0; i < size; i++) {
+            for (int j = i + 1; j < size; j++) {
+                assertThat(DistanceMatrix.condensedIndex(size, j, i),
+                        equalTo(k));
+                assertThat(dists[k++],
+                        closeTo(ChemUtils.findDistance(TABLE, i, j), DELTA));
+            }
+        }
+    }
+
+    /**
+     * Tests that parallel and float results match the serial result.
+     */
+    @Test
+    public void testParallelAndFloat() {
+        final double[] serial = DistanceMatrix.condensed(TABLE, false);
+        assertArrayEquals(serial, DistanceMatrix.condensed(TABLE, true), 0);
+        final float[] floats = DistanceMatrix.condensedFloat(TABLE.getXs(),
+                TABLE.getYs(), TABLE.getZs(), true);
+        for (int k = 0; k < serial.length; k++) {
+            assertThat((double) floats[k], equalTo((double) (float) serial[k]));
+        }
+    }
+
+    /**
+     * Tests that the cutoff mode returns exactly the pairs under the cutoff.
+     */
+    @Test
+    public void testPairsWithin() {
+        final double cutoff = 3.0;
+        final double[] dists = DistanceMatrix.condensed(TABLE, false);
+        final PairList pairs = DistanceMatrix.pairsWithin(TABLE.getXs(),
+                TABLE.getYs(), TABLE.getZs(), cutoff, true);
+        int expected = 0;
+        for (double dist : dists) {
+            if (dist <= cutoff) {
+                expected++;
+            }
+        }
+        assertThat(pairs.size(), equalTo(expected));
+        for (int p = 0; p < pairs.size(); p++) {
+            assertThat(pairs.getDistance(p), equalTo(dists[DistanceMatrix
+                    .condensedIndex(TABLE.size(), pairs.getFirst(p),
+                            pairs.getSecond(p))]));
+        }
+    }
+
+    /**
+     * Tests that the diagonal has no condensed entry.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testDiagonalIndex() {
+        DistanceMatrix.condensedIndex(5, 2, 2);
+    }
+
+    /**
+     * Pair searches need a positive cutoff.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testBadCutoff() {
+        DistanceMatrix.pairsWithin(TABLE.getXs(), TABLE.getYs(), TABLE.getZs(),
+                Double.NaN, false);
+    }
+}
@@ -0,0 +1,102 @@
+package com.cmayes.common.chem;
+
+import static com.cmayes.common.chem.AtomFixtures.createAtom;
+import static com.cmayes.common.chem.AtomFixtures.randomAtoms;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.cmayes.common.exception.NotFoundException;
+import com.cmayes.common.exception.TooManyException;
+import com.cmayes.common.model.Atom;
+import com.cmayes.common.model.AtomTable;
+import com.cmayes.common.util.ChemUtils;
+
+/**
+ * Tests for {@link ElementIndex}.
+ *
+ * @author cmayes
+ */
+public class TestElementIndex {
+    /**
+     * Table and list indices agree with a scan for every element.
+     */
+    @Test
+    public void testMatchesScan() {
+        final List<Atom> atoms = randomAtoms(500, 10, 9);
+        atoms.add(createAtom(500, AtomicElement.IRON, 0, 0, 0));
+        atoms.add(createAtom(501, null, 1, 1, 1));
+        final AtomTable table = AtomTable.fromAtoms(atoms);
+        final ElementIndex tableIdx = ElementIndex.of(table);
+        final ElementIndex listIdx = ElementIndex.of(atoms);
+        assertArrayEquals(tableIdx.getOffsets(), listIdx.getOffsets());
+        assertArrayEquals(tableIdx.getMembers(), listIdx.getMembers());
+        assertThat(tableIdx.getMembers().length, equalTo(501));
+        for (AtomicElement elem : AtomicElement.values()) {
+            final int[] expected = ChemUtils.findAllForType(elem, table);
+            assertArrayEquals(expected, tableIdx.indicesOf(elem));
+            assertThat(tableIdx.count(elem), equalTo(expected.length));
+            final List<Atom> found = listIdx.atomsOf(elem);
+            assertThat(found.size(), equalTo(expected.length));
+            for (int k = 0; k < expected.length; k++) {
+                assertThat(found.get(k), sameInstance(atoms.get(expected[k])));
+            }
+        }
+        assertThat(tableIdx.singleIndex(AtomicElement.IRON), equalTo(500));
+        final List<Integer> visited = new ArrayList<Integer>();
+        tableIdx.forEach(AtomicElement.OXYGEN, visited::add);
+        assertThat(visited.size(),
+                equalTo(tableIdx.count(AtomicElement.OXYGEN)));
+    }
+
+    /**
+     * The type searches answer indexed lists from the index.
+     */
+    @Test
+    public void testIndexedList() {
+        final List<Atom> atoms = randomAtoms(50, 5, 2);
+        atoms.add(createAtom(50, AtomicElement.IRON, 0, 0, 0));
+        final List<Atom> indexed = ElementIndex.of(atoms).asList();
+        assertThat(indexed, equalTo(atoms));
+        for (AtomicElement elem : new AtomicElement[] { AtomicElement.CARBON,
+                AtomicElement.HYDROGEN, AtomicElement.OXYGEN,
+                AtomicElement.NITROGEN }) {
+            assertThat(ChemUtils.findAllForType(elem, indexed),
+                    equalTo(ChemUtils.findAllForType(elem, atoms)));
+        }
+        assertThat(ChemUtils.findSingle(AtomicElement.IRON, indexed),
+                sameInstance(atoms.get(50)));
+    }
+
+    /**
+     * A missing element is reported as not found.
+     */
+    @Test(expected = NotFoundException.class)
+    public void testSingleMissing() {
+        ChemUtils.findSingle(AtomicElement.IRON,
+                ElementIndex.of(randomAtoms(10, 3, 1)).asList());
+    }
+
+    /**
+     * A repeated element is reported as too many.
+     */
+    @Test(expected = TooManyException.class)
+    public void testSingleRepeated() {
+        ElementIndex.of(AtomTable.fromAtoms(randomAtoms(10, 3, 1)))
+                .singleIndex(AtomicElement.CARBON);
+    }
+
+    /**
+     * Table indices have no atoms to view.
+     */
+    @Test(expected = IllegalStateException.class)
+    public void testTableHasNoList() {
+        ElementIndex.of(AtomTable.fromAtoms(randomAtoms(10, 3, 1))).asList();
+    }
+}
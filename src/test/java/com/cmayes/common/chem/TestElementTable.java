@@ -0,0 +1,114 @@
+package com.cmayes.common.chem;
+
+import static org.hamcrest.Matchers.closeTo;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Test;
+
+/**
+ * Tests for {@link ElementTable}.
+ *
+ * @author cmayes
+ */
+public class TestElementTable {
+    private static final double DELTA = 1e-9;
+
+    /**
+     * Every element resolves by number and by symbol in any case.
+     */
+    @Test
+    public void testRoundTrip() {
+        for (AtomicElement elem : AtomicElement.values()) {
+            assertThat(ElementTable.forNumber(elem.getNumber()),
+                    sameInstance(elem));
+            assertThat(ElementTable.ordinalForNumber(elem.getNumber()),
+                    equalTo(elem.ordinal()));
+            final String sym = elem.getSymbol();
+            assertThat(ElementTable.valueOfSymbol(sym), sameInstance(elem));
+            assertThat(ElementTable.valueOfSymbol(sym.toUpperCase()),
+                    sameInstance(elem));
+            assertThat(ElementTable.valueOfSymbol(sym.toLowerCase()),
+                    sameInstance(elem));
+            final byte[] bytes = (" " + sym + " ")
+                    .getBytes(StandardCharsets.US_ASCII);
+            assertThat(ElementTable.lookupSymbol(bytes, 1, sym.length()),
+                    sameInstance(elem));
+        }
+    }
+
+    /**
+     * Unknown symbols and numbers are rejected.
+     */
+    @Test
+    public void testUnknown() {
+        assertThat(ElementTable.lookupSymbol("Xx", 0, 2), nullValue());
+        assertThat(ElementTable.lookupSymbol("J", 0, 1), nullValue());
+        assertThat(ElementTable.lookupSymbol("Cl2", 0, 3), nullValue());
+        assertThat(ElementTable.lookupSymbol("", 0, 0), nullValue());
+        assertThat(ElementTable.lookupSymbol("1H", 0, 2), nullValue());
+        assertThat(ElementTable.ordinalForNumber(0), equalTo(-1));
+        assertThat(ElementTable.ordinalForNumber(-3), equalTo(-1));
+        assertThat(ElementTable.ordinalForNumber(ElementTable.MAX_NUMBER + 1),
+                equalTo(-1));
+    }
+
+    /**
+     * An unknown number throws.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testBadNumber() {
+        ElementTable.forNumber(ElementTable.MAX_NUMBER + 1);
+    }
+
+    /**
+     * An unknown symbol throws.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testBadSymbol() {
+        AtomicElement.valueOfSymbol("Qq");
+    }
+
+    /**
+     * The IUPAC symbol for manganese is accepted alongside the enum's.
+     */
+    @Test
+    public void testManganeseAlias() {
+        assertThat(ElementTable.valueOfSymbol("Mn"),
+                sameInstance(AtomicElement.MANGANESE));
+    }
+
+    /**
+     * Spot-checks property values and the bulk columns.
+     */
+    @Test
+    public void testProperties() {
+        assertThat(ElementTable.getMass(AtomicElement.CARBON),
+                closeTo(12.0107, DELTA));
+        assertThat(ElementTable.getCovalentRadius(AtomicElement.CARBON),
+                closeTo(0.76, DELTA));
+        assertThat(ElementTable.getVdwRadius(AtomicElement.CARBON),
+                closeTo(1.70, DELTA));
+        assertThat(ElementTable.getElectronegativity(AtomicElement.FLUORINE),
+                closeTo(3.98, DELTA));
+        assertTrue(Double.isNaN(ElementTable
+                .getElectronegativity(AtomicElement.HELIUM)));
+
+        final double[] masses = ElementTable.masses();
+        final double[] radii = ElementTable.covalentRadii();
+        final double[] vdw = ElementTable.vdwRadii();
+        for (AtomicElement elem : AtomicElement.values()) {
+            assertThat(masses[elem.ordinal()], equalTo(elem.getMass()));
+            assertTrue(radii[elem.ordinal()] > 0);
+            assertTrue(vdw[elem.ordinal()] > radii[elem.ordinal()]);
+        }
+        masses[0] = -1;
+        assertThat(ElementTable.getMass(AtomicElement.HYDROGEN),
+                closeTo(1.00794, DELTA));
+    }
+}
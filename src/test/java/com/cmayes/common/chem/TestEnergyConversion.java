@@ -0,0 +1,110 @@
+package com.cmayes.common.chem;
+
+import static org.hamcrest.Matchers.closeTo;
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.Assert.assertThat;
+
+import java.nio.ByteBuffer;
+import java.nio.DoubleBuffer;
+
+import org.junit.Test;
+
+/**
+ * Tests for {@link EnergyConversion} and {@link EnergyUnit}.
+ *
+ * @author cmayes
+ */
+public class TestEnergyConversion {
+    /**
+     * Factors from the Hartree match reference values.
+     */
+    @Test
+    public void testFactors() {
+        assertThat(EnergyUnit.HARTREE.factorTo(EnergyUnit.KCAL_MOL),
+                closeTo(627.5095, 1e-3));
+        assertThat(EnergyUnit.HARTREE.factorTo(EnergyUnit.KJ_MOL),
+                closeTo(2625.500, 1e-2));
+        assertThat(EnergyUnit.HARTREE.factorTo(EnergyUnit.EV),
+                closeTo(27.2114, 1e-3));
+        assertThat(EnergyUnit.HARTREE.factorTo(EnergyUnit.WAVENUMBER),
+                closeTo(219474.6, 1));
+        assertThat(EnergyUnit.HARTREE.factorTo(EnergyUnit.JOULE),
+                closeTo(4.3597e-18, 1e-21));
+        assertThat(EnergyUnit.KCAL_MOL.convert(1, EnergyUnit.KJ_MOL),
+                closeTo(4.184, 1e-12));
+        for (EnergyUnit from : EnergyUnit.values()) {
+            assertThat(from.factorTo(from), equalTo(1.0));
+            for (EnergyUnit to : EnergyUnit.values()) {
+                assertThat(from.factorTo(to) * to.factorTo(from),
+                        closeTo(1, 1e-12));
+            }
+        }
+    }
+
+    /**
+     * Array ranges convert in place serially and in parallel.
+     */
+    @Test
+    public void testArrays() {
+        final EnergyConversion conv = EnergyUnit.HARTREE
+                .to(EnergyUnit.KJ_MOL);
+        final int size = EnergyConversion.PARALLEL_THRESHOLD * 3 + 17;
+        final double[] values = new double[size];
+        for (int i = 0; i < size; i++) {
+            values[i] = i * 1e-3;
+        }
+        conv.apply(values, 5, size - 5);
+        for (int i = 0; i < size; i++) {
+            final double expected = i < 5 || i >= size - 5 ? i * 1e-3 : i
+                    * 1e-3 * conv.getFactor();
+            assertThat(values[i], equalTo(expected));
+        }
+        conv.inverse().apply(values, 5, size - 5);
+        for (int i = 0; i < size; i += 1001) {
+            assertThat(values[i], closeTo(i * 1e-3, 1e-12));
+        }
+        final double[] small = { 1, 2 };
+        EnergyUnit.EV.to(EnergyUnit.EV).apply(small);
+        assertThat(small[1], equalTo(2.0));
+    }
+
+    /**
+     * Heap, sliced and direct buffers convert in place without moving the
+     * position.
+     */
+    @Test
+    public void testBuffers() {
+        final EnergyConversion conv = EnergyUnit.KCAL_MOL
+                .to(EnergyUnit.WAVENUMBER);
+        final int size = EnergyConversion.PARALLEL_THRESHOLD + 100;
+        final DoubleBuffer direct = ByteBuffer.allocateDirect(size * 8)
+                .asDoubleBuffer();
+        final double[] backing = new double[size + 10];
+        for (int i = 0; i < size; i++) {
+            direct.put(i, i);
+            backing[i + 10] = i;
+        }
+        direct.position(3);
+        conv.apply(direct);
+        assertThat(direct.position(), equalTo(3));
+        assertThat(direct.get(2), equalTo(2.0));
+        assertThat(direct.get(size - 1), equalTo((size - 1)
+                * conv.getFactor()));
+
+        final DoubleBuffer wrapped = DoubleBuffer.wrap(backing);
+        wrapped.position(10);
+        final DoubleBuffer slice = wrapped.slice();
+        conv.apply(slice, 1, 4);
+        assertThat(backing[10], equalTo(0.0));
+        assertThat(backing[13], equalTo(3 * conv.getFactor()));
+        assertThat(backing[14], equalTo(4.0));
+    }
+
+    /**
+     * Ranges past the end are rejected.
+     */
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void testBadRange() {
+        EnergyUnit.HARTREE.to(EnergyUnit.EV).apply(new double[3], 1, 4);
+    }
+}
@@ -0,0 +1,144 @@
+package com.cmayes.common.chem;
+
+import static com.cmayes.common.chem.AtomFixtures.createAtom;
+import static com.cmayes.common.chem.AtomFixtures.randomAtoms;
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertThat;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.cmayes.common.model.Atom;
+import com.cmayes.common.model.AtomTable;
+import com.cmayes.common.util.ChemUtils;
+
+/**
+ * Tests for {@link Fragments}.
+ *
+ * @author cmayes
+ */
+public class TestFragments {
+    /**
+     * Separated waters form one fragment each, labeled in atom order.
+     */
+    @Test
+    public void testWaters() {
+        final List<Atom> atoms = new ArrayList<Atom>();
+        for (int mol = 0; mol < 3; mol++) {
+            for (Atom atom : TestBondGraph.water()) {
+                atoms.add(createAtom(atoms.size(), atom.getType(), atom.getX()
+                        + mol * 10, atom.getY(), atom.getZ()));
+            }
+        }
+        // Interleave the molecules to check labeling and grouping.
+        final List<Atom> mixed = new ArrayList<Atom>();
+        for (int k = 0; k < 3; k++) {
+            for (int mol = 2; mol >= 0; mol--) {
+                mixed.add(atoms.get(mol * 3 + k));
+            }
+        }
+        final Fragments frags = Fragments.find(AtomTable.fromAtoms(mixed));
+        assertThat(frags.size(), equalTo(9));
+        assertThat(frags.getFragmentCount(), equalTo(3));
+        assertArrayEquals(new int[] { 0, 1, 2, 0, 1, 2, 0, 1, 2 },
+                frags.getLabels());
+        assertArrayEquals(new int[] { 0, 3, 6 }, frags.atomsOf(0));
+        assertArrayEquals(new int[] { 2, 5, 8 }, frags.atomsOf(2));
+        assertArrayEquals(new int[] { 0, 3, 6, 9 }, frags.getOffsets());
+        assertThat(frags.fragmentSize(1), equalTo(3));
+    }
+
+    /**
+     * The neighbor-search, graph and pair routes agree with a flood fill.
+     */
+    @Test
+    public void testMatchesFloodFill() {
+        final List<Atom> atoms = randomAtoms(600, 16, 13);
+        final AtomTable table = AtomTable.fromAtoms(atoms);
+        final int[] expected = floodFill(atoms);
+        final Fragments found = Fragments.find(table);
+        assertArrayEquals(expected, found.getLabels());
+
+        final BondGraph graph = BondGraph.build(table, false);
+        assertArrayEquals(expected, Fragments.fromGraph(graph).getLabels());
+
+        final int[] firsts = new int[graph.bondCount()];
+        final int[] seconds = new int[graph.bondCount()];
+        int count = 0;
+        for (int i = 0; i < graph.size(); i++) {
+            for (int nbr : graph.neighborsOf(i)) {
+                if (nbr > i) {
+                    firsts[count] = nbr;
+                    seconds[count++] = i;
+                }
+            }
+        }
+        assertArrayEquals(expected,
+                Fragments.fromPairs(graph.size(), firsts, seconds, count)
+                        .getLabels());
+
+        int total = 0;
+        for (int f = 0; f < found.getFragmentCount(); f++) {
+            for (int atom : found.atomsOf(f)) {
+                assertThat(found.fragmentOf(atom), equalTo(f));
+                total++;
+            }
+        }
+        assertThat(total, equalTo(atoms.size()));
+    }
+
+    /**
+     * A molecule split across a periodic face is one fragment.
+     */
+    @Test
+    public void testPeriodic() {
+        final List<Atom> atoms = new ArrayList<Atom>();
+        atoms.add(createAtom(1, AtomicElement.OXYGEN, 0.2, 5, 5));
+        atoms.add(createAtom(2, AtomicElement.HYDROGEN, 9.4, 5, 5));
+        atoms.add(createAtom(3, AtomicElement.HYDROGEN, 0.2, 5.96, 5));
+        final AtomTable table = AtomTable.fromAtoms(atoms);
+        assertThat(Fragments.find(table, BondCriterion.covalent(), null)
+                .getFragmentCount(), equalTo(2));
+        assertThat(Fragments.find(table, BondCriterion.covalent(),
+                UnitCell.orthorhombic(10, 10, 10)).getFragmentCount(),
+                equalTo(1));
+    }
+
+    /**
+     * @param atoms
+     *            The structure.
+     * @return Fragment labels from a breadth-first flood fill over
+     *         {@link ChemUtils#hasBond(Atom, Atom)}.
+     */
+    private static int[] floodFill(final List<Atom> atoms) {
+        final int[] labels = new int[atoms.size()];
+        Arrays.fill(labels, -1);
+        int next = 0;
+        for (int start = 0; start < atoms.size(); start++) {
+            if (labels[start] >= 0) {
+                continue;
+            }
+            final Deque<Integer> queue = new ArrayDeque<Integer>();
+            labels[start] = next;
+            queue.add(start);
+            while (!queue.isEmpty()) {
+                final int cur = queue.poll();
+                for (int j = 0; j < atoms.size(); j++) {
+                    if (labels[j] < 0
+                            && ChemUtils.hasBond(atoms.get(cur), atoms.get(j))) {
+                        labels[j] = next;
+                        queue.add(j);
+                    }
+                }
+            }
+            next++;
+        }
+        return labels;
+    }
+}
@@ -0,0 +1,176 @@
+package com.cmayes.common.chem;
+
+import static com.cmayes.common.chem.AtomFixtures.createAtom;
+import static com.cmayes.common.chem.AtomFixtures.randomAtoms;
+import static org.hamcrest.Matchers.closeTo;
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.cmayes.common.model.Atom;
+import com.cmayes.common.model.AtomTable;
+
+/**
+ * Tests for {@link InertiaAccumulator}.
+ *
+ * @author cmayes
+ */
+public class TestInertiaAccumulator {
+    private static final double DELTA = 1e-9;
+
+    /**
+     * Checks carbon monoxide against the diatomic formulas.
+     */
+    @Test
+    public void testDiatomic() {
+        final double bond = 1.128;
+        final double mc = AtomicElement.CARBON.getMass();
+        final double mo = AtomicElement.OXYGEN.getMass();
+        final InertiaAccumulator acc = new InertiaAccumulator();
+        acc.add(createAtom(1, AtomicElement.CARBON, 0, 0, 0));
+        acc.add(createAtom(2, AtomicElement.OXYGEN, bond, 0, 0));
+        assertThat(acc.getCount(), equalTo(2L));
+        assertThat(acc.getTotalMass(), closeTo(mc + mo, DELTA));
+        assertThat(acc.getCenterOfMass()[0],
+                closeTo(bond * mo / (mc + mo), DELTA));
+
+        final double reduced = mc * mo / (mc + mo);
+        final double[] moments = acc.getPrincipalMoments();
+        assertThat(moments[0], closeTo(0, DELTA));
+        assertThat(moments[1], closeTo(reduced * bond * bond, DELTA));
+        assertThat(moments[2], closeTo(reduced * bond * bond, DELTA));
+        final double[] rot = acc.getRotationalConstants();
+        assertTrue(rot[0] > 1e6);
+        assertThat(rot[1], closeTo(57.9, 0.05));
+        assertThat(rot[2], closeTo(rot[1], DELTA));
+        assertThat(acc.getRadiusOfGyration(),
+                closeTo(Math.sqrt(reduced / (mc + mo)) * bond, DELTA));
+    }
+
+    /**
+     * The principal axes are orthonormal, right-handed and diagonalize the
+     * tensor.
+     */
+    @Test
+    public void testPrincipalAxes() {
+        final InertiaAccumulator acc = new InertiaAccumulator();
+        acc.addAll(randomAtoms(30, 6, 5));
+        final double[][] tensor = acc.getInertiaTensor();
+        final double[][] axes = acc.getPrincipalAxes();
+        final double[] moments = acc.getPrincipalMoments();
+        assertTrue(moments[0] <= moments[1] && moments[1] <= moments[2]);
+        for (int i = 0; i < 3; i++) {
+            for (int j = 0; j < 3; j++) {
+                assertThat(dot(axes[i], axes[j]), closeTo(i == j ? 1 : 0,
+                        DELTA));
+                double proj = 0;
+                for (int k = 0; k < 3; k++) {
+                    proj += axes[i][k] * dot(tensor[k], axes[j]);
+                }
+                assertThat(proj, closeTo(i == j ? moments[i] : 0, 1e-7));
+            }
+        }
+        final double[] a = axes[0];
+        final double[] b = axes[1];
+        assertThat(dot(axes[2], new double[] { a[1] * b[2] - a[2] * b[1],
+                a[2] * b[0] - a[0] * b[2], a[0] * b[1] - a[1] * b[0] }),
+                closeTo(1, DELTA));
+    }
+
+    /**
+     * Merged partial accumulators and table input match a single pass over
+     * the atom list.
+     */
+    @Test
+    public void testCombineAndTable() {
+        final List<Atom> atoms = randomAtoms(200, 12, 8);
+        final InertiaAccumulator whole = new InertiaAccumulator();
+        whole.addAll(atoms);
+        final InertiaAccumulator first = new InertiaAccumulator();
+        first.addAll(atoms.subList(0, 70));
+        final InertiaAccumulator second = new InertiaAccumulator();
+        second.addAll(atoms.subList(70, atoms.size()));
+        final InertiaAccumulator merged = new InertiaAccumulator()
+                .combine(first).combine(second);
+        final InertiaAccumulator table = new InertiaAccumulator();
+        table.addAll(AtomTable.fromAtoms(atoms));
+
+        assertThat(merged.getCount(), equalTo(whole.getCount()));
+        for (InertiaAccumulator acc : Arrays.asList(merged, table)) {
+            assertClose(acc.getCenterOfMass(), whole.getCenterOfMass(), DELTA);
+            for (int i = 0; i < 3; i++) {
+                assertClose(acc.getInertiaTensor()[i],
+                        whole.getInertiaTensor()[i], 1e-7);
+            }
+        }
+    }
+
+    /**
+     * A frame far from the origin gives the same tensor as at the origin.
+     */
+    @Test
+    public void testFarFromOrigin() {
+        final double shift = 1e7;
+        final InertiaAccumulator near = new InertiaAccumulator();
+        final InertiaAccumulator far = new InertiaAccumulator();
+        for (Atom atom : TestBondGraph.water()) {
+            near.add(atom);
+            far.add(atom.getType(), atom.getX() + shift, atom.getY() + shift,
+                    atom.getZ() - shift);
+        }
+        for (int i = 0; i < 3; i++) {
+            assertClose(far.getInertiaTensor()[i], near.getInertiaTensor()[i],
+                    1e-6);
+        }
+        assertThat(far.getCenterOfMass()[0] - shift,
+                closeTo(near.getCenterOfMass()[0], 1e-6));
+    }
+
+    /**
+     * Results are undefined without mass.
+     */
+    @Test(expected = IllegalStateException.class)
+    public void testEmpty() {
+        new InertiaAccumulator().getCenterOfMass();
+    }
+
+    /**
+     * Untyped atoms are rejected.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testNoType() {
+        new InertiaAccumulator().add(createAtom(1, null, 0, 0, 0));
+    }
+
+    /**
+     * @param first
+     *            The first vector.
+     * @param second
+     *            The second vector.
+     * @return The dot product.
+     */
+    private static double dot(final double[] first, final double[] second) {
+        return first[0] * second[0] + first[1] * second[1] + first[2]
+                * second[2];
+    }
+
+    /**
+     * @param actual
+     *            The actual values.
+     * @param expected
+     *            The expected values.
+     * @param delta
+     *            The allowed difference.
+     */
+    private static void assertClose(final double[] actual,
+            final double[] expected, final double delta) {
+        for (int i = 0; i < expected.length; i++) {
+            assertThat(actual[i], closeTo(expected[i], delta));
+        }
+    }
+}
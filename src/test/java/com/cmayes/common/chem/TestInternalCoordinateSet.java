@@ -0,0 +1,165 @@
+package com.cmayes.common.chem;
+
+import static com.cmayes.common.chem.AtomFixtures.randomAtoms;
+import static org.hamcrest.Matchers.closeTo;
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertThat;
+
+import java.nio.FloatBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.cmayes.common.model.AtomTable;
+import com.cmayes.common.model.Coordinates;
+import com.cmayes.common.model.impl.FloatBufferCoordinates;
+import com.cmayes.common.util.ChemUtils;
+
+/**
+ * Tests for {@link InternalCoordinateSet}.
+ *
+ * @author cmayes
+ */
+public class TestInternalCoordinateSet {
+    private static final double DELTA = 1e-9;
+
+    /**
+     * Evaluates a water molecule's bonds and angle in definition order.
+     */
+    @Test
+    public void testWater() {
+        final InternalCoordinateSet set = new InternalCoordinateSet(
+                Arrays.asList(InternalCoordinate.bond(0, 1),
+                        InternalCoordinate.angle(1, 0, 2),
+                        InternalCoordinate.bond(0, 2)));
+        assertThat(set.count(InternalMotionType.BOND_STRETCHING), equalTo(2));
+        assertThat(set.count(InternalMotionType.DIHEDRAL_ROTATION),
+                equalTo(0));
+        final AtomTable water = AtomTable.fromAtoms(TestBondGraph.water());
+        final double[] vals = set.evaluate(water);
+        assertThat(vals[0], closeTo(ChemUtils.findDistance(water, 0, 1), DELTA));
+        assertThat(vals[1], closeTo(ChemUtils.calcBondAngle(water, 1, 0, 2),
+                DELTA));
+        assertThat(vals[2], closeTo(ChemUtils.findDistance(water, 0, 2), DELTA));
+    }
+
+    /**
+     * Checks a mixed set against the single-tuple routines, for tables and
+     * generic coordinates, serially and in parallel across frames.
+     */
+    @Test
+    public void testFramesMatchSingleCalls() {
+        final Random rand = new Random(11);
+        final int atoms = 40;
+        final List<InternalCoordinate> defs = new ArrayList<InternalCoordinate>();
+        for (int i = 0; i < 300; i++) {
+            final int[] idxs = distinct(rand, atoms, 2 + i % 3);
+            defs.add(new InternalCoordinate(
+                    InternalMotionType.values()[i % 3], idxs));
+        }
+        final InternalCoordinateSet set = new InternalCoordinateSet(defs);
+        final List<Coordinates> frames = new ArrayList<Coordinates>();
+        for (int f = 0; f < 20; f++) {
+            final AtomTable table = AtomTable.fromAtoms(randomAtoms(atoms, 8,
+                    f));
+            frames.add(f % 2 == 0 ? table : floats(table));
+        }
+        final double[][] serial = set.evaluate(frames, false);
+        final double[][] parallel = set.evaluate(frames, true);
+        for (int f = 0; f < frames.size(); f++) {
+            assertArrayEquals(serial[f], parallel[f], 0);
+            final Coordinates frame = frames.get(f);
+            for (int k = 0; k < defs.size(); k++) {
+                final InternalCoordinate def = defs.get(k);
+                final double expected;
+                switch (def.getType()) {
+                case BOND_STRETCHING:
+                    expected = ChemUtils.findDistance(frame, def.getAtom(0),
+                            def.getAtom(1));
+                    break;
+                case ANGLE_BENDING:
+                    expected = ChemUtils.calcBondAngle(frame, def.getAtom(0),
+                            def.getAtom(1), def.getAtom(2));
+                    break;
+                default:
+                    expected = ChemUtils.calcDihedralAngle(frame,
+                            def.getAtom(0), def.getAtom(1), def.getAtom(2),
+                            def.getAtom(3));
+                    break;
+                }
+                assertThat(serial[f][k], closeTo(expected, DELTA));
+            }
+        }
+    }
+
+    /**
+     * Rejects a definition with the wrong number of atoms.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testWrongAtomCount() {
+        new InternalCoordinate(InternalMotionType.ANGLE_BENDING, 0, 1);
+    }
+
+    /**
+     * Rejects a definition with a repeated atom.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testRepeatedAtom() {
+        InternalCoordinate.dihedral(0, 1, 2, 1);
+    }
+
+    /**
+     * Rejects a frame too small for the definitions.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testFrameTooSmall() {
+        new InternalCoordinateSet(Arrays.asList(InternalCoordinate.bond(0, 5)))
+                .evaluate(new AtomTable(3));
+    }
+
+    /**
+     * @param rand
+     *            The random source.
+     * @param bound
+     *            The exclusive upper bound.
+     * @param count
+     *            The number of indices.
+     * @return Distinct random indices.
+     */
+    private static int[] distinct(final Random rand, final int bound,
+            final int count) {
+        final int[] idxs = new int[count];
+        for (int i = 0; i < count; i++) {
+            boolean repeat;
+            do {
+                idxs[i] = rand.nextInt(bound);
+                repeat = false;
+                for (int j = 0; j < i; j++) {
+                    repeat |= idxs[j] == idxs[i];
+                }
+            } while (repeat);
+        }
+        return idxs;
+    }
+
+    /**
+     * @param table
+     *            The source positions.
+     * @return A float-buffer view of the table's positions.
+     */
+    private static Coordinates floats(final AtomTable table) {
+        final FloatBuffer xs = FloatBuffer.allocate(table.size());
+        final FloatBuffer ys = FloatBuffer.allocate(table.size());
+        final FloatBuffer zs = FloatBuffer.allocate(table.size());
+        for (int i = 0; i < table.size(); i++) {
+            xs.put(i, (float) table.getX(i));
+            ys.put(i, (float) table.getY(i));
+            zs.put(i, (float) table.getZ(i));
+        }
+        return new FloatBufferCoordinates(xs, ys, zs);
+    }
+}
@@ -0,0 +1,134 @@
+package com.cmayes.common.chem;
+
+import static com.cmayes.common.chem.AtomFixtures.randomAtoms;
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertThat;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.cmayes.common.model.Atom;
+import com.cmayes.common.model.impl.DefaultAtom;
+import com.cmayes.common.util.ChemUtils;
+
+/**
+ * Tests for {@link KdTree}.
+ * 
+ * @author cmayes
+ */
+public class TestKdTree {
+    private static final List<Atom> ATOMS = randomAtoms(1000, 15, 31);
+    private static final KdTree TREE = new KdTree(ATOMS);
+
+    /**
+     * Tests that k-nearest queries match sorting by distance.
+     */
+    @Test
+    public void testNearest() {
+        final Random rand = new Random(8);
+        for (int q = 0; q < 50; q++) {
+            final Atom probe = probe(rand);
+            for (AtomicElement type : new AtomicElement[] { null,
+                    AtomicElement.OXYGEN }) {
+                assertArrayEquals(bruteNearest(probe, 7, type), TREE.nearest(
+                        probe.getX(), probe.getY(), probe.getZ(), 7, type));
+            }
+        }
+    }
+
+    /**
+     * Tests that radius queries match a brute-force scan.
+     */
+    @Test
+    public void testWithinRadius() {
+        final Random rand = new Random(9);
+        for (int q = 0; q < 50; q++) {
+            final Atom probe = probe(rand);
+            final List<Integer> expected = new ArrayList<Integer>();
+            for (int i = 0; i < ATOMS.size(); i++) {
+                if (ChemUtils.findDistance(probe, ATOMS.get(i)) <= 2.5
+                        && ATOMS.get(i).getType() == AtomicElement.CARBON) {
+                    expected.add(i);
+                }
+            }
+            final int[] found = TREE.withinRadius(probe.getX(), probe.getY(),
+                    probe.getZ(), 2.5, AtomicElement.CARBON);
+            assertThat(found.length, equalTo(expected.size()));
+            for (int i = 0; i < found.length; i++) {
+                assertThat(found[i], equalTo(expected.get(i)));
+            }
+        }
+    }
+
+    /**
+     * Tests queries that match nothing.
+     */
+    @Test
+    public void testNoMatches() {
+        assertThat(TREE.nearest(0, 0, 0, AtomicElement.IRON), equalTo(-1));
+        assertThat(TREE.nearest(0, 0, 0, 0, null).length, equalTo(0));
+        assertThat(TREE.nearest(1, 1, 1, 5000, null).length,
+                equalTo(ATOMS.size()));
+    }
+
+    /**
+     * Radius searches need a positive radius.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testBadRadius() {
+        TREE.withinRadius(0, 0, 0, -1, null);
+    }
+
+    /**
+     * Finds the nearest atoms by sorting.
+     * 
+     * @param probe
+     *            The query point.
+     * @param count
+     *            The number to find.
+     * @param type
+     *            The type to match or null.
+     * @return The indices of the nearest atoms.
+     */
+    private static int[] bruteNearest(final Atom probe, final int count,
+            final AtomicElement type) {
+        final List<Integer> idxs = new ArrayList<Integer>();
+        for (int i = 0; i < ATOMS.size(); i++) {
+            if (type == null || ATOMS.get(i).getType() == type) {
+                idxs.add(i);
+            }
+        }
+        Collections.sort(idxs, new Comparator<Integer>() {
+            @Override
+            public int compare(final Integer o1, final Integer o2) {
+                return Double.compare(
+                        ChemUtils.findDistance(probe, ATOMS.get(o1)),
+                        ChemUtils.findDistance(probe, ATOMS.get(o2)));
+            }
+        });
+        final int[] result = new int[Math.min(count, idxs.size())];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = idxs.get(i);
+        }
+        return result;
+    }
+
+    /**
+     * @param rand
+     *            The random source.
+     * @return A random query point.
+     */
+    private static Atom probe(final Random rand) {
+        final Atom probe = new DefaultAtom();
+        probe.setX(rand.nextDouble() * 17 - 1);
+        probe.setY(rand.nextDouble() * 17 - 1);
+        probe.setZ(rand.nextDouble() * 17 - 1);
+        return probe;
+    }
+}
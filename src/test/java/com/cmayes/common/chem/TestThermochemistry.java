@@ -0,0 +1,190 @@
+package com.cmayes.common.chem;
+
+import static com.cmayes.common.chem.AtomFixtures.createAtom;
+import static org.hamcrest.Matchers.closeTo;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.cmayes.common.chem.PhysicalConstants.Conversions;
+import com.cmayes.common.chem.Thermochemistry.QuasiHarmonic;
+import com.cmayes.common.model.Atom;
+import com.cmayes.common.model.AtomTable;
+
+/**
+ * Tests for {@link Thermochemistry}.
+ *
+ * @author cmayes
+ */
+public class TestThermochemistry {
+    private static final double J_MOL_PER_HARTREE =
+            Conversions.HARTREE_TO_KCALTH * Conversions.CALTH_TO_JOULE * 1000;
+    private static final double GAS = PhysicalConstants.BOLTZ
+            * PhysicalConstants.AVOGADRO;
+    private static final double KELVIN = PhysicalConstants.KELVIN_25C;
+    private static final double[] NO_FREQS = {};
+
+    /**
+     * Argon's standard entropy is the Sackur-Tetrode value.
+     */
+    @Test
+    public void testArgon() {
+        final List<Atom> atoms = new ArrayList<Atom>();
+        atoms.add(createAtom(1, AtomicElement.ARGON, 1, 2, 3));
+        final double[] res = new Thermochemistry(KELVIN, 1).evaluate(
+                AtomTable.fromAtoms(atoms), 1, 1, NO_FREQS);
+        assertThat(res[Thermochemistry.ENTROPY] * J_MOL_PER_HARTREE,
+                closeTo(154.73, 0.05));
+        assertThat(res[Thermochemistry.ENTHALPY],
+                closeTo(2.5 * GAS * KELVIN / J_MOL_PER_HARTREE, 1e-12));
+        assertThat(res[Thermochemistry.LN_Q_ROT], equalTo(0.0));
+        assertThat(res[Thermochemistry.GIBBS],
+                closeTo(res[Thermochemistry.ENTHALPY] - KELVIN
+                        * res[Thermochemistry.ENTROPY], 1e-15));
+    }
+
+    /**
+     * Rotational and vibrational terms match sums over the energy levels.
+     */
+    @Test
+    public void testMatchesLevelSums() {
+        final Thermochemistry thermo = new Thermochemistry(KELVIN, 1);
+        final double[] out = new double[Thermochemistry.STRIDE];
+        // Linear rotor with a rotational temperature of 0.5 K.
+        final double theta = 0.5;
+        final double moment = PhysicalConstants.PLANCK
+                * PhysicalConstants.PLANCK
+                / (8 * Math.PI * Math.PI * PhysicalConstants.BOLTZ * theta)
+                / (PhysicalConstants.AMU_KG * 1e-20);
+        final double freq = 500;
+        thermo.evaluate(30, new double[] { 0, moment, moment }, 0, 2, 1,
+                new double[] { -80, freq }, 0, 2, out, 0);
+        double rotSum = 0;
+        for (int j = 0; j < 2000; j++) {
+            rotSum += (2 * j + 1) * Math.exp(-j * (j + 1) * theta / KELVIN);
+        }
+        assertThat(out[Thermochemistry.LN_Q_ROT],
+                closeTo(Math.log(rotSum / 2), 1e-3));
+
+        final double x = freq * PhysicalConstants.PLANCK
+                * PhysicalConstants.LIGHT_CM / PhysicalConstants.BOLTZ / KELVIN;
+        double vibSum = 0;
+        double levelSum = 0;
+        for (int n = 0; n < 200; n++) {
+            vibSum += Math.exp(-n * x);
+            levelSum += n * x * Math.exp(-n * x);
+        }
+        assertThat(out[Thermochemistry.LN_Q_VIB],
+                closeTo(Math.log(vibSum), 1e-12));
+        assertThat(out[Thermochemistry.ZPE] * J_MOL_PER_HARTREE,
+                closeTo(0.5 * x * GAS * KELVIN, 1e-6));
+
+        final double[] bare = new double[Thermochemistry.STRIDE];
+        thermo.evaluate(30, new double[] { 0, moment, moment }, 0, 2, 1,
+                NO_FREQS, 0, 0, bare, 0);
+        final double vibEntropy = (out[Thermochemistry.ENTROPY]
+                - bare[Thermochemistry.ENTROPY]) * J_MOL_PER_HARTREE / GAS;
+        assertThat(vibEntropy,
+                closeTo(Math.log(vibSum) + levelSum / vibSum, 1e-10));
+    }
+
+    /**
+     * Quasi-harmonic treatments leave high frequencies alone and raise the
+     * entropy of low ones less than the harmonic model does.
+     */
+    @Test
+    public void testQuasiHarmonic() {
+        final double[] moments = { 10, 40, 50 };
+        final double[] stiff = { 800, 1200, 3000 };
+        final double[] floppy = { 15, 800, 1200, 3000 };
+        final double[] harmStiff = run(QuasiHarmonic.NONE, moments, stiff);
+        final double[] truhStiff = run(QuasiHarmonic.TRUHLAR, moments, stiff);
+        final double[] grimStiff = run(QuasiHarmonic.GRIMME, moments, stiff);
+        assertArrayEquals(harmStiff, truhStiff, 1e-15);
+        assertThat(grimStiff[Thermochemistry.ENTROPY],
+                closeTo(harmStiff[Thermochemistry.ENTROPY], 1e-8));
+
+        final double harm = run(QuasiHarmonic.NONE, moments, floppy)
+                [Thermochemistry.ENTROPY];
+        final double truh = run(QuasiHarmonic.TRUHLAR, moments, floppy)
+                [Thermochemistry.ENTROPY];
+        final double grim = run(QuasiHarmonic.GRIMME, moments, floppy)
+                [Thermochemistry.ENTROPY];
+        assertThat(harm, greaterThan(grim));
+        assertThat(grim, greaterThan(truh));
+        assertThat(truh, greaterThan(harmStiff[Thermochemistry.ENTROPY]));
+    }
+
+    /**
+     * Serial and parallel batches match one-at-a-time evaluation.
+     */
+    @Test
+    public void testBatch() {
+        final int count = 50;
+        final double[] masses = new double[count];
+        final double[] moments = new double[3 * count];
+        final int[] symmetries = new int[count];
+        final int[] mults = new int[count];
+        final int[] offsets = new int[count + 1];
+        final double[] freqs = new double[count * 6];
+        for (int m = 0; m < count; m++) {
+            masses[m] = 20 + m;
+            moments[3 * m] = m % 5 == 0 ? 0 : 5 + m;
+            moments[3 * m + 1] = 30 + m;
+            moments[3 * m + 2] = 30 + 2 * m;
+            symmetries[m] = 1 + m % 3;
+            mults[m] = 1 + m % 2;
+            offsets[m + 1] = offsets[m] + 1 + m % 6;
+            for (int k = offsets[m]; k < offsets[m + 1]; k++) {
+                freqs[k] = 50 + 97.5 * k;
+            }
+        }
+        final Thermochemistry thermo = new Thermochemistry(400, 2,
+                QuasiHarmonic.GRIMME, 120);
+        final double[] serial = new double[Thermochemistry.STRIDE * count];
+        final double[] parallel = new double[serial.length];
+        thermo.evaluateAll(masses, moments, symmetries, mults, freqs, offsets,
+                serial, false);
+        thermo.evaluateAll(masses, moments, symmetries, mults, freqs, offsets,
+                parallel, true);
+        assertArrayEquals(serial, parallel, 0);
+        final double[] single = new double[Thermochemistry.STRIDE];
+        thermo.evaluate(masses[7], moments, 21, symmetries[7], mults[7],
+                freqs, offsets[7], offsets[8], single, 0);
+        for (int c = 0; c < Thermochemistry.STRIDE; c++) {
+            assertThat(serial[7 * Thermochemistry.STRIDE + c],
+                    equalTo(single[c]));
+        }
+    }
+
+    /**
+     * Temperatures must be positive.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testBadTemperature() {
+        new Thermochemistry(0, 1);
+    }
+
+    /**
+     * @param correction
+     *            The low-frequency treatment.
+     * @param moments
+     *            The principal moments.
+     * @param freqs
+     *            The frequencies.
+     * @return The results for a molecule of mass 40.
+     */
+    private static double[] run(final QuasiHarmonic correction,
+            final double[] moments, final double[] freqs) {
+        final double[] out = new double[Thermochemistry.STRIDE];
+        new Thermochemistry(KELVIN, 1, correction, 100).evaluate(40, moments,
+                0, 1, 1, freqs, 0, freqs.length, out, 0);
+        return out;
+    }
+}
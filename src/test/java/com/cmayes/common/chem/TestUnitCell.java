@@ -0,0 +1,130 @@
+package com.cmayes.common.chem;
+
+import static org.hamcrest.Matchers.closeTo;
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Tests for {@link UnitCell}.
+ *
+ * @author cmayes
+ */
+public class TestUnitCell {
+    private static final double DELTA = 1e-9;
+
+    /**
+     * Atoms near opposite faces of a rectangular box are close.
+     */
+    @Test
+    public void testOrthorhombic() {
+        final UnitCell cell = UnitCell.orthorhombic(10, 12, 14);
+        assertTrue(cell.isOrthorhombic());
+        assertThat(cell.getVolume(), closeTo(1680, DELTA));
+        assertThat(cell.getMaxCutoff(), closeTo(5, DELTA));
+        assertThat(cell.distance(0.5, 1, 1, 9.5, 1, 1), closeTo(1, DELTA));
+        assertThat(cell.distance(0.5, 0.5, 0.5, 9.5, 11.5, -12.5),
+                closeTo(Math.sqrt(3), DELTA));
+        assertThat(cell.distance(0, 0, 0, 25, 0, 0), closeTo(5, DELTA));
+        assertTrue(UnitCell.triclinic(10, 12, 14, 90, 90, 90)
+                .isOrthorhombic());
+        assertThat(UnitCell.triclinic(10, 12, 14, 90, 90, 90),
+                equalTo(cell));
+    }
+
+    /**
+     * Minimum images in a skewed cell match a search over nearby images for
+     * every separation within the cutoff limit.
+     */
+    @Test
+    public void testTriclinicMatchesImageSearch() {
+        final UnitCell cell = UnitCell.triclinic(9, 10, 11, 70, 80, 100);
+        final double[][] vecs = cell.getVectors();
+        final Random rand = new Random(21);
+        final double[] frac = new double[3];
+        final double[] back = new double[3];
+        int checked = 0;
+        for (int trial = 0; trial < 2000; trial++) {
+            final double dx = (rand.nextDouble() - 0.5) * 40;
+            final double dy = (rand.nextDouble() - 0.5) * 40;
+            final double dz = (rand.nextDouble() - 0.5) * 40;
+            double best = Double.POSITIVE_INFINITY;
+            for (int i = -3; i <= 3; i++) {
+                for (int j = -3; j <= 3; j++) {
+                    for (int k = -3; k <= 3; k++) {
+                        final double ix = dx + i * vecs[0][0] + j * vecs[1][0]
+                                + k * vecs[2][0];
+                        final double iy = dy + j * vecs[1][1] + k * vecs[2][1];
+                        final double iz = dz + k * vecs[2][2];
+                        best = Math.min(best, ix * ix + iy * iy + iz * iz);
+                    }
+                }
+            }
+            final double got = cell.distanceSq(0, 0, 0, dx, dy, dz);
+            assertTrue(got >= best - DELTA);
+            if (Math.sqrt(best) <= cell.getMaxCutoff()) {
+                assertThat(got, closeTo(best, 1e-8));
+                checked++;
+            }
+            final double[] delta = { dx, dy, dz };
+            cell.minimumImage(delta);
+            assertThat(delta[0] * delta[0] + delta[1] * delta[1] + delta[2]
+                    * delta[2], closeTo(got, 1e-8));
+
+            cell.toFractional(dx, dy, dz, frac);
+            cell.toCartesian(frac[0], frac[1], frac[2], back);
+            assertThat(back[0], closeTo(dx, 1e-9));
+            assertThat(back[1], closeTo(dy, 1e-9));
+            assertThat(back[2], closeTo(dz, 1e-9));
+        }
+        assertTrue(checked > 50);
+    }
+
+    /**
+     * The batch kernels agree with single distances.
+     */
+    @Test
+    public void testKernels() {
+        for (UnitCell cell : new UnitCell[] {
+                UnitCell.orthorhombic(8, 9, 10),
+                UnitCell.triclinic(8, 9, 10, 80, 95, 105) }) {
+            final Random rand = new Random(5);
+            final int size = 100;
+            final double[] xs = new double[size];
+            final double[] ys = new double[size];
+            final double[] zs = new double[size];
+            for (int i = 0; i < size; i++) {
+                xs[i] = rand.nextDouble() * 20 - 5;
+                ys[i] = rand.nextDouble() * 20 - 5;
+                zs[i] = rand.nextDouble() * 20 - 5;
+            }
+            final double[] dists = new double[size];
+            cell.distances(xs[0], ys[0], zs[0], xs, ys, zs, 0, size, dists, 0);
+            final int[] hits = new int[size];
+            final int count = cell.within(xs[0], ys[0], zs[0], xs, ys, zs, 0,
+                    size, 9, hits);
+            int expected = 0;
+            for (int j = 0; j < size; j++) {
+                final double dist = cell.distance(xs[0], ys[0], zs[0], xs[j],
+                        ys[j], zs[j]);
+                assertThat(dists[j], closeTo(dist, DELTA));
+                if (dist * dist <= 9) {
+                    assertThat(hits[expected++], equalTo(j));
+                }
+            }
+            assertThat(count, equalTo(expected));
+        }
+    }
+
+    /**
+     * Angles that can't close a cell are rejected.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testImpossibleAngles() {
+        UnitCell.triclinic(5, 5, 5, 150, 150, 150);
+    }
+}
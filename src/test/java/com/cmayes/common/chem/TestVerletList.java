@@ -0,0 +1,106 @@
+package com.cmayes.common.chem;
+
+import static com.cmayes.common.chem.AtomFixtures.randomAtoms;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.lessThan;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.cmayes.common.model.AtomTable;
+
+/**
+ * Tests for {@link VerletList}.
+ * 
+ * @author cmayes
+ */
+public class TestVerletList {
+    private static final double CUTOFF = 3.0;
+
+    /**
+     * Tests that contacts match a full search on every frame of a drifting
+     * trajectory while rebuilding only occasionally.
+     */
+    @Test
+    public void testContactsAcrossFrames() {
+        final AtomTable frame = AtomTable.fromAtoms(randomAtoms(300, 12, 4));
+        final VerletList list = new VerletList(CUTOFF, 1.0);
+        final Random rand = new Random(5);
+        final int frames = 40;
+        for (int f = 0; f < frames; f++) {
+            final PairList expected = DistanceMatrix.pairsWithin(
+                    frame.getXs(), frame.getYs(), frame.getZs(), CUTOFF, false);
+            final PairList actual = list.contacts(frame);
+            assertArrayEquals(expected.getFirsts(), actual.getFirsts());
+            assertArrayEquals(expected.getSeconds(), actual.getSeconds());
+            jiggle(frame, rand, 0.05);
+        }
+        assertThat(list.getRebuildCount(), lessThan(frames / 2));
+    }
+
+    /**
+     * Tests that a large move triggers a rebuild and a small one does not.
+     */
+    @Test
+    public void testRebuildOnDisplacement() {
+        final AtomTable frame = AtomTable.fromAtoms(randomAtoms(50, 8, 6));
+        final VerletList list = new VerletList(CUTOFF, 1.0);
+        assertTrue(list.update(frame));
+        frame.setX(3, frame.getX(3) + 0.4);
+        assertFalse(list.update(frame));
+        frame.setX(3, frame.getX(3) + 0.2);
+        assertTrue(list.update(frame));
+        assertThat(list.getRebuildCount(), equalTo(2));
+    }
+
+    /**
+     * Tests that frame bonds match a fresh bond graph.
+     */
+    @Test
+    public void testBonds() {
+        final AtomTable frame = AtomTable.fromAtoms(randomAtoms(200, 9, 7));
+        final BondCriterion crit = BondCriterion.covalent();
+        final VerletList list = new VerletList(crit, 0.5);
+        final Random rand = new Random(8);
+        for (int f = 0; f < 10; f++) {
+            final BondGraph expected = BondGraph.build(frame, crit, false);
+            final BondGraph actual = list.bonds(frame, crit, false);
+            assertArrayEquals(expected.getOffsets(), actual.getOffsets());
+            assertArrayEquals(expected.getNeighbors(), actual.getNeighbors());
+            jiggle(frame, rand, 0.05);
+        }
+    }
+
+    /**
+     * Tests that a criterion reaching past the list cutoff is rejected.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testBondCutoffTooLarge() {
+        new VerletList(1.0, 0.5).bonds(new AtomTable(0),
+                BondCriterion.DEFAULT, false);
+    }
+
+    /**
+     * Moves every atom by a small random amount.
+     * 
+     * @param frame
+     *            The atoms to move.
+     * @param rand
+     *            The random source.
+     * @param scale
+     *            The largest move along each axis.
+     */
+    private static void jiggle(final AtomTable frame, final Random rand,
+            final double scale) {
+        for (int i = 0; i < frame.size(); i++) {
+            frame.setX(i, frame.getX(i) + (rand.nextDouble() - 0.5) * scale);
+            frame.setY(i, frame.getY(i) + (rand.nextDouble() - 0.5) * scale);
+            frame.setZ(i, frame.getZ(i) + (rand.nextDouble() - 0.5) * scale);
+        }
+    }
+}
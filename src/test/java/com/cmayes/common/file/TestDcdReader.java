@@ -0,0 +1,352 @@
+package com.cmayes.common.file;
+
+import static org.hamcrest.Matchers.closeTo;
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.cmayes.common.CommonConstants;
+import com.cmayes.common.exception.InvalidDataException;
+import com.cmayes.common.model.Coordinates;
+import com.cmayes.common.util.ChemUtils;
+import com.cmayes.common.util.EnvUtils;
+
+/**
+ * Tests for {@link DcdReader}.
+ * 
+ * @author cmayes
+ */
+public class TestDcdReader {
+    private static final File DCDDIR = new File(CommonConstants.TMPDIR,
+            "testdcddir");
+    private static final int ATOMS = 5;
+    private static final int FRAMES = 3;
+
+    /**
+     * Creates an empty working directory.
+     */
+    @Before
+    public void setUp() {
+        if (DCDDIR.exists()) {
+            EnvUtils.recursiveDelete(DCDDIR);
+        }
+        assertTrue(DCDDIR.mkdirs());
+    }
+
+    /**
+     * Deletes the working directory.
+     */
+    @After
+    public void tearDown() {
+        if (DCDDIR.exists()) {
+            EnvUtils.recursiveDelete(DCDDIR);
+        }
+    }
+
+    /**
+     * Reads a little-endian CHARMM trajectory with unit cells.
+     * 
+     * @throws IOException
+     *             If the test file can't be written.
+     */
+    @Test
+    public void testLittleEndianWithCell() throws IOException {
+        final File file = writeDcd("cell.dcd", ByteOrder.LITTLE_ENDIAN, true);
+        final DcdReader reader = new DcdReader(file);
+        try {
+            assertThat(reader.getAtomCount(), equalTo(ATOMS));
+            assertThat(reader.getFrameCount(), equalTo(FRAMES));
+            assertTrue(reader.hasUnitCell());
+            assertThat(reader.getTitles(), equalTo(Arrays.asList("Test title",
+                    "Second")));
+            assertThat(reader.getStepInterval(), equalTo(10));
+            assertArrayEquals(new double[] { 20, 90, 21, 90, 90, 22 + 2 },
+                    reader.getUnitCell(2), 0);
+            checkFrames(reader);
+        } finally {
+            reader.close();
+        }
+    }
+
+    /**
+     * Reads a big-endian trajectory without unit cells.
+     * 
+     * @throws IOException
+     *             If the test file can't be written.
+     */
+    @Test
+    public void testBigEndianNoCell() throws IOException {
+        final File file = writeDcd("plain.dcd", ByteOrder.BIG_ENDIAN, false);
+        final DcdReader reader = new DcdReader(file);
+        try {
+            assertFalse(reader.hasUnitCell());
+            assertThat(reader.getFrameCount(), equalTo(FRAMES));
+            checkFrames(reader);
+        } finally {
+            reader.close();
+        }
+    }
+
+    /**
+     * Tests that frames past the end are rejected.
+     * 
+     * @throws IOException
+     *             If the test file can't be written.
+     */
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void testFrameOutOfRange() throws IOException {
+        final DcdReader reader = new DcdReader(writeDcd("range.dcd",
+                ByteOrder.LITTLE_ENDIAN, false));
+        try {
+            reader.frame(FRAMES);
+        } finally {
+            reader.close();
+        }
+    }
+
+    /**
+     * Tests that a non-DCD file is rejected.
+     * 
+     * @throws IOException
+     *             If the test file can't be written.
+     */
+    @Test(expected = InvalidDataException.class)
+    public void testNotDcd() throws IOException {
+        final File file = new File(DCDDIR, "bad.dcd");
+        final FileOutputStream out = new FileOutputStream(file);
+        try {
+            out.write(new byte[200]);
+        } finally {
+            out.close();
+        }
+        new DcdReader(file);
+    }
+
+    /**
+     * Tests a title record longer than the initial header mapping.
+     * 
+     * @throws IOException
+     *             If the test file can't be written.
+     */
+    @Test
+    public void testManyTitles() throws IOException {
+        final DcdReader reader = new DcdReader(writeTitled("titles.dcd",
+                1000, ATOMS, false));
+        try {
+            assertThat(reader.getTitles().size(), equalTo(1000));
+            assertThat(reader.getTitles().get(999), equalTo("Title 999"));
+            assertThat(reader.getAtomCount(), equalTo(ATOMS));
+            assertThat(reader.getFrameCount(), equalTo(0));
+        } finally {
+            reader.close();
+        }
+    }
+
+    /**
+     * Tests that a file ending inside the title record is rejected.
+     * 
+     * @throws IOException
+     *             If the test file can't be written.
+     */
+    @Test(expected = InvalidDataException.class)
+    public void testTruncatedTitles() throws IOException {
+        new DcdReader(writeTitled("short.dcd", 1000, ATOMS, true));
+    }
+
+    /**
+     * Tests that a negative atom count is rejected.
+     * 
+     * @throws IOException
+     *             If the test file can't be written.
+     */
+    @Test(expected = InvalidDataException.class)
+    public void testNegativeAtomCount() throws IOException {
+        new DcdReader(writeTitled("negative.dcd", 1, -1, false));
+    }
+
+    /**
+     * Tests that an atom count too large for a frame to be mapped is
+     * rejected.
+     * 
+     * @throws IOException
+     *             If the test file can't be written.
+     */
+    @Test(expected = InvalidDataException.class)
+    public void testHugeAtomCount() throws IOException {
+        new DcdReader(writeTitled("huge.dcd", 1, Integer.MAX_VALUE, false));
+    }
+
+    /**
+     * Checks the coordinates of every frame, in reverse order to exercise
+     * random access.
+     * 
+     * @param reader
+     *            The reader to check.
+     */
+    private static void checkFrames(final DcdReader reader) {
+        for (int f = FRAMES - 1; f >= 0; f--) {
+            final Coordinates frame = reader.frame(f);
+            assertThat(frame.size(), equalTo(ATOMS));
+            for (int a = 0; a < ATOMS; a++) {
+                assertThat(frame.getX(a), equalTo((double) coord(f, a, 0)));
+                assertThat(frame.getY(a), equalTo((double) coord(f, a, 1)));
+                assertThat(frame.getZ(a), equalTo((double) coord(f, a, 2)));
+            }
+            assertThat(ChemUtils.findDistance(frame, 0, 1), closeTo(
+                    Math.sqrt(3 * 1.5 * 1.5), 1e-6));
+        }
+    }
+
+    /**
+     * @param frame
+     *            The frame.
+     * @param atom
+     *            The atom.
+     * @param axis
+     *            The axis.
+     * @return The test coordinate value.
+     */
+    private static float coord(final int frame, final int atom, final int axis) {
+        return frame * 0.25f + atom * 1.5f + axis * 10;
+    }
+
+    /**
+     * Writes a small DCD file.
+     * 
+     * @param name
+     *            The file name.
+     * @param order
+     *            The byte order.
+     * @param withCell
+     *            Whether to write unit cells.
+     * @return The file.
+     * @throws IOException
+     *             If the file can't be written.
+     */
+    private static File writeDcd(final String name, final ByteOrder order,
+            final boolean withCell) throws IOException {
+        final ByteBuffer buf = ByteBuffer.allocate(4096).order(order);
+        buf.putInt(84);
+        buf.put("CORD".getBytes(StandardCharsets.US_ASCII));
+        final int[] ctrl = new int[20];
+        ctrl[0] = FRAMES;
+        ctrl[1] = 100;
+        ctrl[2] = 10;
+        ctrl[10] = withCell ? 1 : 0;
+        ctrl[19] = 24;
+        for (int i = 0; i < ctrl.length; i++) {
+            if (i == 9) {
+                buf.putFloat(0.002f);
+            } else {
+                buf.putInt(ctrl[i]);
+            }
+        }
+        buf.putInt(84);
+        buf.putInt(4 + 2 * 80);
+        buf.putInt(2);
+        buf.put(pad("Test title"));
+        buf.put(pad("Second"));
+        buf.putInt(4 + 2 * 80);
+        buf.putInt(4);
+        buf.putInt(ATOMS);
+        buf.putInt(4);
+        for (int f = 0; f < FRAMES; f++) {
+            if (withCell) {
+                buf.putInt(48);
+                buf.putDouble(20).putDouble(90).putDouble(21).putDouble(90)
+                        .putDouble(90).putDouble(22 + f);
+                buf.putInt(48);
+            }
+            for (int axis = 0; axis < 3; axis++) {
+                buf.putInt(4 * ATOMS);
+                for (int a = 0; a < ATOMS; a++) {
+                    buf.putFloat(coord(f, a, axis));
+                }
+                buf.putInt(4 * ATOMS);
+            }
+        }
+        // A partial trailing frame should be ignored.
+        buf.putInt(4 * ATOMS);
+        final File file = new File(DCDDIR, name);
+        final FileOutputStream out = new FileOutputStream(file);
+        try {
+            out.write(buf.array(), 0, buf.position());
+        } finally {
+            out.close();
+        }
+        return file;
+    }
+
+    /**
+     * Writes a frameless little-endian trajectory with numbered titles.
+     * 
+     * @param name
+     *            The file name.
+     * @param numTitles
+     *            The number of titles.
+     * @param atoms
+     *            The atom count to record.
+     * @param truncate
+     *            Whether to cut the file off halfway through the titles.
+     * @return The file.
+     * @throws IOException
+     *             If the file can't be written.
+     */
+    private static File writeTitled(final String name, final int numTitles,
+            final int atoms, final boolean truncate) throws IOException {
+        final int titleLen = 4 + numTitles * 80;
+        final ByteBuffer buf = ByteBuffer.allocate(124 + titleLen).order(
+                ByteOrder.LITTLE_ENDIAN);
+        buf.putInt(84);
+        buf.put("CORD".getBytes(StandardCharsets.US_ASCII));
+        for (int i = 0; i < 20; i++) {
+            buf.putInt(i == 19 ? 24 : 0);
+        }
+        buf.putInt(84);
+        buf.putInt(titleLen);
+        buf.putInt(numTitles);
+        for (int t = 0; t < numTitles; t++) {
+            buf.put(pad("Title " + t));
+        }
+        buf.putInt(titleLen);
+        buf.putInt(4);
+        buf.putInt(atoms);
+        buf.putInt(4);
+        final File file = new File(DCDDIR, name);
+        final FileOutputStream out = new FileOutputStream(file);
+        try {
+            out.write(buf.array(), 0, truncate ? 100 + titleLen / 2
+                    : buf.position());
+        } finally {
+            out.close();
+        }
+        return file;
+    }
+
+    /**
+     * @param title
+     *            The title.
+     * @return The title padded to 80 bytes.
+     */
+    private static byte[] pad(final String title) {
+        final byte[] line = new byte[80];
+        Arrays.fill(line, (byte) ' ');
+        final byte[] text = title.getBytes(StandardCharsets.US_ASCII);
+        System.arraycopy(text, 0, line, 0, text.length);
+        return line;
+    }
+}
@@ -0,0 +1,229 @@
+package com.cmayes.common.file;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.cmayes.common.chem.AtomicElement;
+import com.cmayes.common.exception.InvalidDataException;
+import com.cmayes.common.model.Atom;
+import com.cmayes.common.model.AtomTable;
+
+/**
+ * Tests for {@link XyzReader}.
+ *
+ * @author cmayes
+ */
+public class TestXyzReader {
+    private static final String WATER = "3\nwater molecule\n"
+            + "O  0.000000  0.000000  0.117300\n"
+            + "H  0.000000  0.757200 -0.469200\n"
+            + "H  0.000000 -0.757200 -0.469200\n";
+
+    /**
+     * Reads a single frame into a table.
+     */
+    @Test
+    public void testSingleFrame() {
+        final XyzReader reader = new XyzReader(channel(WATER));
+        final AtomTable table = reader.nextFrame();
+        assertThat(table.size(), equalTo(3));
+        assertThat(reader.getComment(), equalTo("water molecule"));
+        assertThat(table.getType(0), equalTo(AtomicElement.OXYGEN));
+        assertThat(table.getType(2), equalTo(AtomicElement.HYDROGEN));
+        assertThat(table.getId(2), equalTo(3));
+        assertThat(table.getZ(0), equalTo(0.1173));
+        assertThat(table.getY(1), equalTo(0.7572));
+        assertThat(table.getY(2), equalTo(-0.7572));
+        assertThat(reader.nextFrame(), nullValue());
+        assertThat(reader.getFrameCount(), equalTo(1));
+        reader.close();
+    }
+
+    /**
+     * Iterates frames lazily, across CRLF endings, blank separators and
+     * reads that split lines.
+     */
+    @Test
+    public void testMultiFrame() {
+        final String text = WATER + "\r\n2\r\nsecond\r\ncl 1 2 3\r\n"
+                + "17\t-4.5e1 +2E-2 .5 extra\r\n";
+        final XyzReader reader = new XyzReader(new TrickleChannel(text, 3));
+        final Iterator<AtomTable> frames = reader.iterator();
+        assertTrue(frames.hasNext());
+        assertThat(frames.next().size(), equalTo(3));
+        assertTrue(frames.hasNext());
+        final AtomTable second = frames.next();
+        assertThat(reader.getComment(), equalTo("second"));
+        assertThat(second.getType(0), equalTo(AtomicElement.CHLORINE));
+        assertThat(second.getType(1), equalTo(AtomicElement.CHLORINE));
+        assertThat(second.getX(1), equalTo(-45.0));
+        assertThat(second.getY(1), equalTo(0.02));
+        assertThat(second.getZ(1), equalTo(0.5));
+        assertFalse(frames.hasNext());
+    }
+
+    /**
+     * Refills an existing table and rejects a frame of a different size.
+     */
+    @Test(expected = InvalidDataException.class)
+    public void testReuseTable() {
+        final XyzReader reader = new XyzReader(channel(WATER + WATER
+                + "1\n\nC 0 0 0\n"));
+        final AtomTable table = new AtomTable(3);
+        assertTrue(reader.nextFrame(table));
+        assertTrue(reader.nextFrame(table));
+        assertThat(table.getType(1), equalTo(AtomicElement.HYDROGEN));
+        reader.nextFrame(table);
+    }
+
+    /**
+     * Produces atom instances.
+     */
+    @Test
+    public void testAtoms() {
+        final List<Atom> atoms = new XyzReader(channel(WATER)).nextAtoms();
+        assertThat(atoms.size(), equalTo(3));
+        assertThat(atoms.get(1).getType(), equalTo(AtomicElement.HYDROGEN));
+        assertThat(atoms.get(1).getZ(), equalTo(-0.4692));
+    }
+
+    /**
+     * Matches Double.parseDouble on many formatted values, including ones too
+     * long for the fast path.
+     */
+    @Test
+    public void testParsePrecision() {
+        final Random rand = new Random(42);
+        final int count = 2000;
+        final double[] expected = new double[count * 3];
+        final StringBuilder text = new StringBuilder();
+        text.append(count).append("\n\n");
+        for (int i = 0; i < count; i++) {
+            text.append("C");
+            for (int axis = 0; axis < 3; axis++) {
+                final double val = (rand.nextDouble() - 0.5)
+                        * Math.pow(10, rand.nextInt(8) - 3);
+                final String str = axis == 0 ? String.format("%.6f", val)
+                        : axis == 1 ? Double.toString(val) : String.format(
+                                "%.10e", val);
+                expected[i * 3 + axis] = Double.parseDouble(str);
+                text.append(' ').append(str);
+            }
+            text.append('\n');
+        }
+        final AtomTable table = new XyzReader(channel(text.toString()))
+                .nextFrame();
+        for (int i = 0; i < count; i++) {
+            assertThat(table.getX(i), equalTo(expected[i * 3]));
+            assertThat(table.getY(i), equalTo(expected[i * 3 + 1]));
+            assertThat(table.getZ(i), equalTo(expected[i * 3 + 2]));
+        }
+    }
+
+    /**
+     * Rejects an unknown element.
+     */
+    @Test(expected = InvalidDataException.class)
+    public void testBadElement() {
+        new XyzReader(channel("1\n\nXq 0 0 0\n")).nextFrame();
+    }
+
+    /**
+     * Rejects a truncated frame.
+     */
+    @Test(expected = InvalidDataException.class)
+    public void testTruncated() {
+        new XyzReader(channel("3\n\nO 0 0 0\n")).nextFrame();
+    }
+
+    /**
+     * Rejects a malformed coordinate.
+     */
+    @Test(expected = InvalidDataException.class)
+    public void testBadCoordinate() {
+        new XyzReader(channel("1\n\nO 0 1.2x 0\n")).nextFrame();
+    }
+
+    /**
+     * Rejects exponents with a sign but no digits, as
+     * {@link Double#parseDouble(String)} does.
+     */
+    @Test
+    public void testMalformedExponent() {
+        for (String coord : new String[] { "1.5e-", "1.5e+", "1.5E", "2e-x" }) {
+            try {
+                new XyzReader(channel("1\n\nO 0 " + coord + " 0\n"))
+                        .nextFrame();
+                fail("Accepted " + coord);
+            } catch (final InvalidDataException e) {
+                // Expected.
+            }
+        }
+    }
+
+    /**
+     * @param text
+     *            The content.
+     * @return A channel over the content.
+     */
+    private static ReadableByteChannel channel(final String text) {
+        return Channels.newChannel(new ByteArrayInputStream(text
+                .getBytes(StandardCharsets.US_ASCII)));
+    }
+
+    /**
+     * Channel that returns at most a few bytes per read.
+     */
+    private static final class TrickleChannel implements ReadableByteChannel {
+        private final byte[] data;
+        private final int chunk;
+        private int pos;
+
+        /**
+         * @param text
+         *            The content.
+         * @param chunkSize
+         *            The most bytes returned per read.
+         */
+        private TrickleChannel(final String text, final int chunkSize) {
+            this.data = text.getBytes(StandardCharsets.US_ASCII);
+            this.chunk = chunkSize;
+        }
+
+        @Override
+        public int read(final ByteBuffer dst) {
+            if (pos == data.length) {
+                return -1;
+            }
+            final int len = Math.min(chunk, Math.min(dst.remaining(),
+                    data.length - pos));
+            dst.put(data, pos, len);
+            pos += len;
+            return len;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return true;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package com.cmayes.common.model;
+
+import static com.cmayes.common.chem.AtomFixtures.createAtom;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.cmayes.common.chem.AtomicElement;
+
+/**
+ * Tests for {@link AtomTable}.
+ * 
+ * @author cmayes
+ */
+public class TestAtomTable {
+    /**
+     * Tests that atoms are copied into the table in order.
+     */
+    @Test
+    public void testFromAtoms() {
+        final AtomTable table = AtomTable.fromAtoms(Arrays.asList(
+                createAtom(7, AtomicElement.CARBON, 1, 2, 3),
+                createAtom(3, AtomicElement.OXYGEN, 4, 5, 6)));
+        assertThat(table.size(), equalTo(2));
+        assertThat(table.getId(1), equalTo(3));
+        assertThat(table.getType(0), equalTo(AtomicElement.CARBON));
+        assertThat(table.getTypeOrdinal(1),
+                equalTo((byte) AtomicElement.OXYGEN.ordinal()));
+        assertThat(table.getY(1), equalTo(5.0));
+    }
+
+    /**
+     * Tests that new rows have no type.
+     */
+    @Test
+    public void testNoType() {
+        final AtomTable table = new AtomTable(1);
+        assertThat(table.getType(0), nullValue());
+        assertThat(table.atom(0).getType(), nullValue());
+    }
+
+    /**
+     * Tests that changes through the flyweight views reach the table.
+     */
+    @Test
+    public void testViewWriteThrough() {
+        final AtomTable table = new AtomTable(2);
+        final List<Atom> view = table.asList();
+        view.get(1).setX(2.5);
+        view.get(1).setType(AtomicElement.IRON);
+        assertThat(table.getXs()[1], equalTo(2.5));
+        assertThat(table.getType(1), equalTo(AtomicElement.IRON));
+        assertThat(view.get(1), equalTo(table.atom(1)));
+    }
+
+    /**
+     * Tests that views outside the table are rejected.
+     */
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void testViewOutOfBounds() {
+        new AtomTable(2).atom(2);
+    }
+}
@@ -0,0 +1,75 @@
+package com.cmayes.common.model.impl;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.Test;
+
+import com.cmayes.common.chem.AtomicElement;
+import com.cmayes.common.model.Atom;
+
+/**
+ * Tests for {@link ImmutableAtom}.
+ *
+ * @author cmayes
+ */
+public class TestImmutableAtom {
+    /**
+     * Equal fields give equal atoms and hashes; any differing field doesn't.
+     */
+    @Test
+    public void testEquality() {
+        final ImmutableAtom.Builder builder = ImmutableAtom.builder().id(3)
+                .type(AtomicElement.OXYGEN).position(1.5, -2, 0.25);
+        final ImmutableAtom atom = builder.build();
+        final ImmutableAtom same = builder.build();
+        assertThat(same, equalTo(atom));
+        assertThat(same.hashCode(), equalTo(atom.hashCode()));
+        assertThat(builder.id(4).build(), not(equalTo(atom)));
+        assertThat(builder.id(3).type(null).build(), not(equalTo(atom)));
+        assertThat(builder.type(AtomicElement.OXYGEN).position(1.5, -2, 0)
+                .build(), not(equalTo(atom)));
+        assertThat(builder.position(-0.0, 0, 0).build(),
+                not(equalTo(builder.position(0.0, 0, 0).build())));
+
+        final Set<Atom> seen = new HashSet<Atom>();
+        seen.add(atom);
+        seen.add(same);
+        assertThat(seen.size(), equalTo(1));
+    }
+
+    /**
+     * Copies keep every field and reuse immutable atoms.
+     */
+    @Test
+    public void testCopyOf() {
+        final Atom source = new DefaultAtom();
+        source.setId(7);
+        source.setType(AtomicElement.CARBON);
+        source.setX(1);
+        source.setY(2);
+        source.setZ(3);
+        final ImmutableAtom copy = ImmutableAtom.copyOf(source);
+        assertThat(copy, equalTo(ImmutableAtom.builder().from(source).build()));
+        assertThat(copy.getId(), equalTo(7));
+        assertThat(copy.getType(), equalTo(AtomicElement.CARBON));
+        assertThat(copy.getZ(), equalTo(3.0));
+        assertThat(ImmutableAtom.copyOf(copy), sameInstance(copy));
+        assertThat(new DefaultAtom(copy), equalTo(source));
+        assertThat(copy.toString(), equalTo(
+                "ImmutableAtom[type=CARBON,xPos=1.0,yPos=2.0,zPos=3.0,id=7]"));
+    }
+
+    /**
+     * The setters are rejected.
+     */
+    @Test(expected = UnsupportedOperationException.class)
+    public void testSetter() {
+        ImmutableAtom.builder().build().setX(1);
+    }
+}
@@ -0,0 +1,250 @@
+package com.cmayes.common.util;
+
+import static com.cmayes.common.chem.AtomFixtures.createAtom;
+import static org.hamcrest.Matchers.closeTo;
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.apache.commons.math3.exception.MathArithmeticException;
+import org.apache.commons.math3.geometry.euclidean.threed.Vector3D;
+import org.apache.commons.math3.util.FastMath;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.cmayes.common.chem.AtomicElement;
+import com.cmayes.common.model.Atom;
+import com.cmayes.common.model.AtomTable;
+
+/**
+ * Tests for {@link ChemUtils}.
+ * 
+ * @author cmayes
+ */
+public class TestChemUtils {
+    private static final double DELTA = 1e-9;
+    private List<Atom> atoms;
+    private AtomTable table;
+
+    /**
+     * Sets up a small methanol-like structure.
+     */
+    @Before
+    public void setUp() {
+        atoms = new ArrayList<Atom>();
+        atoms.add(createAtom(1, AtomicElement.CARBON, 0, 0, 0));
+        atoms.add(createAtom(2, AtomicElement.OXYGEN, 1.43, 0, 0));
+        atoms.add(createAtom(3, AtomicElement.HYDROGEN, -0.36, 1.03, 0));
+        atoms.add(createAtom(4, AtomicElement.HYDROGEN, -0.36, -0.51, 0.89));
+        atoms.add(createAtom(5, AtomicElement.HYDROGEN, 1.75, 0.9, 0));
+        atoms.add(createAtom(6, AtomicElement.OXYGEN, 5, 5, 5));
+        table = AtomTable.fromAtoms(atoms);
+    }
+
+    /**
+     * Tests that the table bond search matches the list bond search.
+     */
+    @Test
+    public void testTableFindBondAtoms() {
+        for (int i = 0; i < atoms.size(); i++) {
+            for (AtomicElement type : new AtomicElement[] {
+                    AtomicElement.HYDROGEN, AtomicElement.OXYGEN }) {
+                assertArrayEquals(
+                        toIds(ChemUtils.findBondAtoms(atoms.get(i), atoms,
+                                type)),
+                        toTableIds(ChemUtils.findBondAtoms(table, i, type)));
+            }
+        }
+    }
+
+    /**
+     * Tests that the table distance matches the list distance.
+     */
+    @Test
+    public void testTableFindDistance() {
+        assertThat(ChemUtils.findDistance(table, 1, 4),
+                closeTo(ChemUtils.findDistance(atoms.get(1), atoms.get(4)),
+                        DELTA));
+    }
+
+    /**
+     * Tests the table type search.
+     */
+    @Test
+    public void testTableFindAllForType() {
+        assertArrayEquals(new int[] { 2, 3, 4 },
+                ChemUtils.findAllForType(AtomicElement.HYDROGEN, table));
+        assertThat(ChemUtils.findAllForType(AtomicElement.IRON, table).length,
+                equalTo(0));
+    }
+
+    /**
+     * Tests that the primitive dihedral kernel matches the vector form.
+     */
+    @Test
+    public void testDihedralMatchesVectorForm() {
+        final Random rand = new Random(17);
+        for (int i = 0; i < 1000; i++) {
+            final Atom[] quad = new Atom[4];
+            for (int j = 0; j < quad.length; j++) {
+                quad[j] = createAtom(j, AtomicElement.CARBON,
+                        rand.nextGaussian() * 3, rand.nextGaussian() * 3,
+                        rand.nextGaussian() * 3);
+            }
+            assertThat(
+                    ChemUtils.calcDihedralAngle(quad[0], quad[1], quad[2],
+                            quad[3]),
+                    closeTo(vectorDihedral(quad[0], quad[1], quad[2], quad[3]),
+                            1e-7));
+        }
+    }
+
+    /**
+     * Tests a known dihedral angle.
+     */
+    @Test
+    public void testDihedralKnown() {
+        assertThat(ChemUtils.calcDihedralAngle(1, 0, 0, 0, 0, 0, 0, 0, 1, 0,
+                1, 1), closeTo(-90, DELTA));
+        assertThat(ChemUtils.calcDihedralAngle(1, 0, 0, 0, 0, 0, 0, 0, 1, 1,
+                0, 1), closeTo(0, DELTA));
+    }
+
+    /**
+     * Tests known bond angles, including the straight and folded extremes.
+     */
+    @Test
+    public void testBondAngle() {
+        assertThat(ChemUtils.calcBondAngle(1, 0, 0, 0, 0, 0, 0, 2, 0),
+                closeTo(90, DELTA));
+        assertThat(ChemUtils.calcBondAngle(1, 0, 0, 0, 0, 0, -3, 0, 0),
+                closeTo(180, DELTA));
+        assertThat(ChemUtils.calcBondAngle(1, 0, 0, 0, 0, 0, 2, 0, 0),
+                closeTo(0, DELTA));
+        assertThat(ChemUtils.calcBondAngle(
+                createAtom(1, AtomicElement.HYDROGEN, 1, 1, 0),
+                createAtom(2, AtomicElement.OXYGEN, 0, 0, 0),
+                createAtom(3, AtomicElement.HYDROGEN, 1, 0, 0)),
+                closeTo(45, DELTA));
+    }
+
+    /**
+     * Tests that a vertex coinciding with another atom is rejected.
+     */
+    @Test(expected = MathArithmeticException.class)
+    public void testBondAngleDegenerate() {
+        ChemUtils.calcBondAngle(createAtom(1, AtomicElement.CARBON, 1, 0, 0),
+                createAtom(2, AtomicElement.CARBON, 1, 0, 0),
+                createAtom(3, AtomicElement.CARBON, 0, 0, 0));
+    }
+
+    /**
+     * Tests that collinear atoms are rejected as before.
+     */
+    @Test(expected = MathArithmeticException.class)
+    public void testDihedralCollinear() {
+        ChemUtils.calcDihedralAngle(atoms.get(0),
+                createAtom(9, AtomicElement.CARBON, 1, 0, 0),
+                createAtom(10, AtomicElement.CARBON, 2, 0, 0), atoms.get(2));
+    }
+
+    /**
+     * Tests that the serial and parallel batch dihedrals match the single
+     * calls.
+     */
+    @Test
+    public void testDihedralBatch() {
+        final Random rand = new Random(3);
+        final AtomTable big = new AtomTable(200);
+        for (int i = 0; i < big.size(); i++) {
+            big.set(i, i, AtomicElement.CARBON, rand.nextDouble() * 10,
+                    rand.nextDouble() * 10, rand.nextDouble() * 10);
+        }
+        final int count = 10000;
+        final int[][] quads = new int[4][count];
+        for (int i = 0; i < count; i++) {
+            for (int j = 0; j < 4; j++) {
+                quads[j][i] = rand.nextInt(big.size());
+            }
+        }
+        final double[] serial = new double[count];
+        final double[] parallel = new double[count];
+        ChemUtils.calcDihedralAngles(big, quads[0], quads[1], quads[2],
+                quads[3], serial);
+        ChemUtils.calcDihedralAngles(big.getXs(), big.getYs(), big.getZs(),
+                quads[0], quads[1], quads[2], quads[3], parallel, true);
+        assertArrayEquals(serial, parallel, 0);
+        for (int i = 0; i < count; i += 97) {
+            assertThat(serial[i], equalTo(ChemUtils.calcDihedralAngle(
+                    big.getX(quads[0][i]), big.getY(quads[0][i]),
+                    big.getZ(quads[0][i]), big.getX(quads[1][i]),
+                    big.getY(quads[1][i]), big.getZ(quads[1][i]),
+                    big.getX(quads[2][i]), big.getY(quads[2][i]),
+                    big.getZ(quads[2][i]), big.getX(quads[3][i]),
+                    big.getY(quads[3][i]), big.getZ(quads[3][i]))));
+        }
+    }
+
+    /**
+     * The original {@link Vector3D}-based dihedral calculation.
+     * 
+     * @param atom1
+     *            The first atom.
+     * @param atom2
+     *            The second atom.
+     * @param atom3
+     *            The third atom.
+     * @param atom4
+     *            The fourth atom.
+     * @return The dihedral angle in degrees.
+     */
+    private static double vectorDihedral(final Atom atom1, final Atom atom2,
+            final Atom atom3, final Atom atom4) {
+        final Vector3D atomVec1 = ChemUtils.vectorForAtom(atom1);
+        final Vector3D atomVec2 = ChemUtils.vectorForAtom(atom2);
+        final Vector3D atomVec3 = ChemUtils.vectorForAtom(atom3);
+        final Vector3D atomVec4 = ChemUtils.vectorForAtom(atom4);
+        final Vector3D normVec1 = atomVec1.subtract(atomVec2).crossProduct(
+                atomVec3.subtract(atomVec2));
+        final Vector3D normVec2 = atomVec2.subtract(atomVec3).crossProduct(
+                atomVec4.subtract(atomVec3));
+        final double dhAngle = FastMath.toDegrees(Vector3D.angle(normVec1,
+                normVec2));
+        return normVec1.dotProduct(atomVec4) < 0 ? -dhAngle : dhAngle;
+    }
+
+    /**
+     * Converts the given atoms to their IDs.
+     * 
+     * @param found
+     *            The atoms to convert.
+     * @return The IDs of the given atoms.
+     */
+    private static int[] toIds(final List<Atom> found) {
+        final int[] ids = new int[found.size()];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = found.get(i).getId();
+        }
+        return ids;
+    }
+
+    /**
+     * Converts the given table indices to their IDs.
+     * 
+     * @param found
+     *            The indices to convert.
+     * @return The IDs of the atoms at the given indices.
+     */
+    private int[] toTableIds(final int[] found) {
+        final int[] ids = new int[found.length];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = table.getId(found[i]);
+        }
+        return ids;
+    }
+}